@@ -31,4 +31,10 @@ public interface NotificationsGateway {
     )
     public void send(@Payload ProcessEngineNotification notification, @Header("routingKey") String routingKey);
 
+    @Gateway(requestChannel = NotificationsGatewayChannels.NOTIFICATIONS_GATEWAY,
+        headers={@GatewayHeader(name="content-type", value="application/json")}
+    )
+    public void send(@Payload ProcessEngineNotification notification, @Header("routingKey") String routingKey,
+                     @Header("notificationId") String notificationId);
+
 }
@@ -41,6 +41,16 @@ public class ActivitiNotificationsGatewayProperties {
     @NotBlank
     private String processEngineEventTypeKey = "eventType";
 
+    /**
+     * Also publish notifications in-process to subscribers running in the same JVM, i.e. GraphQL WebSockets module
+     */
+    private boolean localTransportEnabled = false;
+
+    /**
+     * Also publish notifications in-process as application events, i.e. to invalidate GraphQL query result cache
+     */
+    private boolean localEventsEnabled = false;
+
 
     public ActivitiNotificationsGatewayProperties() {
         // default constructor
@@ -69,4 +79,20 @@ public class ActivitiNotificationsGatewayProperties {
     public void setProcessEngineEventTypeKey(String processEngineEventTypeKey) {
         this.processEngineEventTypeKey = processEngineEventTypeKey;
     }
+
+    public boolean isLocalTransportEnabled() {
+        return localTransportEnabled;
+    }
+
+    public void setLocalTransportEnabled(boolean localTransportEnabled) {
+        this.localTransportEnabled = localTransportEnabled;
+    }
+
+    public boolean isLocalEventsEnabled() {
+        return localEventsEnabled;
+    }
+
+    public void setLocalEventsEnabled(boolean localEventsEnabled) {
+        this.localEventsEnabled = localEventsEnabled;
+    }
 }
@@ -28,6 +28,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.integration.annotation.IntegrationComponentScan;
@@ -70,10 +71,13 @@ public class NotificationsGatewayAutoConfiguration {
     @ConditionalOnMissingBean
     public NotificationsConsumerChannelHandler notificationsConsumerChannelHandler(NotificationsGateway notificationsGateway,
                                                                                    ProcessEngineNotificationTransformer processEngineNotificationTransformer,
-                                                                                   RoutingKeyResolver routingKeyResolver)    {
+                                                                                   RoutingKeyResolver routingKeyResolver,
+                                                                                   ApplicationEventPublisher applicationEventPublisher)    {
         return new NotificationsConsumerChannelHandler(notificationsGateway,
                                                        processEngineNotificationTransformer,
-                                                       routingKeyResolver);
+                                                       routingKeyResolver,
+                                                       properties.isLocalTransportEnabled() ? applicationEventPublisher : null,
+                                                       properties.isLocalEventsEnabled() ? applicationEventPublisher : null);
     }
 
 }
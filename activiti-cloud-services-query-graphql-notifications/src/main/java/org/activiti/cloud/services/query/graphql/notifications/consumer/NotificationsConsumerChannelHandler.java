@@ -18,6 +18,7 @@ package org.activiti.cloud.services.query.graphql.notifications.consumer;
 
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -25,35 +26,72 @@ import org.activiti.cloud.services.query.graphql.notifications.NotificationsGate
 import org.activiti.cloud.services.query.graphql.notifications.RoutingKeyResolver;
 import org.activiti.cloud.services.query.graphql.notifications.config.NotificationsGatewayChannels;
 import org.activiti.cloud.services.query.graphql.notifications.model.ProcessEngineNotification;
+import org.activiti.cloud.services.query.graphql.notifications.model.ProcessEngineNotificationEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 
 public class NotificationsConsumerChannelHandler {
 
     private static Logger log = LoggerFactory.getLogger(NotificationsConsumerChannelHandler.class);
     private static ObjectMapper objectMapper = new ObjectMapper();
 
+    public static final String ROUTING_KEY_HEADER = "routingKey";
+    public static final String NOTIFICATION_ID_HEADER = "notificationId";
+
     private final ProcessEngineNotificationTransformer transformer;
     private final NotificationsGateway notificationsGateway;
     private final RoutingKeyResolver routingKeyResolver;
+    private final ApplicationEventPublisher localEventPublisher;
+    private final ApplicationEventPublisher notificationEventPublisher;
 
 
     public NotificationsConsumerChannelHandler(NotificationsGateway notificationsGateway,
                                                ProcessEngineNotificationTransformer transformer,
                                                RoutingKeyResolver routingKeyResolver)
     {
+        this(notificationsGateway, transformer, routingKeyResolver, null, null);
+    }
+
+    /**
+     * @param localEventPublisher if not null, notifications are also published in-process as Spring messages
+     * with routingKey and notificationId headers for consumers running in the same JVM
+     */
+    public NotificationsConsumerChannelHandler(NotificationsGateway notificationsGateway,
+                                               ProcessEngineNotificationTransformer transformer,
+                                               RoutingKeyResolver routingKeyResolver,
+                                               ApplicationEventPublisher localEventPublisher)
+    {
+        this(notificationsGateway, transformer, routingKeyResolver, localEventPublisher, null);
+    }
+
+    /**
+     * @param localEventPublisher if not null, notifications are also published in-process as Spring messages
+     * with routingKey and notificationId headers for consumers running in the same JVM
+     * @param notificationEventPublisher if not null, notifications are also published in-process as
+     * {@link ProcessEngineNotificationEvent} application events, i.e. to invalidate cached query results
+     */
+    public NotificationsConsumerChannelHandler(NotificationsGateway notificationsGateway,
+                                               ProcessEngineNotificationTransformer transformer,
+                                               RoutingKeyResolver routingKeyResolver,
+                                               ApplicationEventPublisher localEventPublisher,
+                                               ApplicationEventPublisher notificationEventPublisher)
+    {
 
         this.transformer = transformer;
         this.notificationsGateway = notificationsGateway;
         this.routingKeyResolver = routingKeyResolver;
+        this.localEventPublisher = localEventPublisher;
+        this.notificationEventPublisher = notificationEventPublisher;
     }
 
     @StreamListener(NotificationsGatewayChannels.NOTIFICATIONS_CONSUMER)
     public synchronized void receive(Message<List<Map<String,Object>>> source) throws JsonProcessingException {
         List<Map<String,Object>> events = source.getPayload();
-        String sourceRoutingKey = (String) source.getHeaders().get("routingKey");
+        String sourceRoutingKey = (String) source.getHeaders().get(ROUTING_KEY_HEADER);
 
         log.info("Recieved source message with routingKey: {}", sourceRoutingKey);
         
@@ -70,8 +108,24 @@ public class NotificationsConsumerChannelHandler {
             String routingKey = routingKeyResolver.resolveRoutingKey(notification);
 
             log.info("Routing notification to: {}", routingKey);
-            
-            notificationsGateway.send(notification, routingKey);
+
+            if(notificationEventPublisher != null) {
+                notificationEventPublisher.publishEvent(new ProcessEngineNotificationEvent(this, notification, routingKey));
+            }
+
+            if(localEventPublisher != null) {
+                String notificationId = UUID.randomUUID().toString();
+
+                // deliver to local subscribers first, then to the broker for cross-node fan-out
+                localEventPublisher.publishEvent(MessageBuilder.withPayload(notification)
+                                                               .setHeader(ROUTING_KEY_HEADER, routingKey)
+                                                               .setHeader(NOTIFICATION_ID_HEADER, notificationId)
+                                                               .build());
+
+                notificationsGateway.send(notification, routingKey, notificationId);
+            } else {
+                notificationsGateway.send(notification, routingKey);
+            }
         }
     }
 
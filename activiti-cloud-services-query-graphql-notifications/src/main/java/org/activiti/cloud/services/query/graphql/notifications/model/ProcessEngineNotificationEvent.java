@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.notifications.model;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Application event published in-process by the notifications gateway for each routed notification,
+ * so that listeners in the same JVM, i.e. query result caches, receive notifications without the broker.
+ */
+public class ProcessEngineNotificationEvent extends ApplicationEvent {
+
+    /**
+     * serialVersionUID
+     */
+    private static final long serialVersionUID = 1L;
+
+    private final ProcessEngineNotification notification;
+
+    private final String routingKey;
+
+    public ProcessEngineNotificationEvent(Object source, ProcessEngineNotification notification, String routingKey) {
+        super(source);
+
+        this.notification = notification;
+        this.routingKey = routingKey;
+    }
+
+    public ProcessEngineNotification getNotification() {
+        return notification;
+    }
+
+    public String getRoutingKey() {
+        return routingKey;
+    }
+
+}
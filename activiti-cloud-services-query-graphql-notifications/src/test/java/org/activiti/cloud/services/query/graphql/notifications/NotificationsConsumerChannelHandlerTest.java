@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.notifications;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.activiti.cloud.services.query.graphql.notifications.consumer.NotificationsConsumerChannelHandler;
+import org.activiti.cloud.services.query.graphql.notifications.consumer.ProcessEngineNotificationTransformer;
+import org.activiti.cloud.services.query.graphql.notifications.graphql.GraphQLProcessEngineNotification;
+import org.activiti.cloud.services.query.graphql.notifications.model.ProcessEngineNotification;
+import org.activiti.cloud.services.query.graphql.notifications.model.ProcessEngineNotificationEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+public class NotificationsConsumerChannelHandlerTest {
+
+    private static final String ROUTING_KEY = "ProcessEngineNotification.rb.app.Simple.1._";
+
+    @Mock
+    private NotificationsGateway notificationsGateway;
+
+    @Mock
+    private ProcessEngineNotificationTransformer transformer;
+
+    @Mock
+    private RoutingKeyResolver routingKeyResolver;
+
+    @Mock
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Captor
+    private ArgumentCaptor<Message<ProcessEngineNotification>> messageCaptor;
+
+    @Captor
+    private ArgumentCaptor<ProcessEngineNotificationEvent> eventCaptor;
+
+    private ProcessEngineNotification notification = new GraphQLProcessEngineNotification();
+
+    private Message<List<Map<String, Object>>> source = MessageBuilder.withPayload(Collections.<Map<String, Object>>emptyList())
+                                                                      .build();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        when(transformer.transform(any())).thenReturn(Collections.singletonList(notification));
+        when(routingKeyResolver.resolveRoutingKey(notification)).thenReturn(ROUTING_KEY);
+    }
+
+    @Test
+    public void testReceiveSendsToGateway() throws Exception {
+        // given
+        NotificationsConsumerChannelHandler subject = new NotificationsConsumerChannelHandler(notificationsGateway,
+                                                                                              transformer,
+                                                                                              routingKeyResolver);
+        // when
+        subject.receive(source);
+
+        // then
+        verify(notificationsGateway).send(notification, ROUTING_KEY);
+        verify(notificationsGateway, never()).send(any(), anyString(), anyString());
+    }
+
+    @Test
+    public void testReceivePublishesLocallyAndSendsToGateway() throws Exception {
+        // given
+        NotificationsConsumerChannelHandler subject = new NotificationsConsumerChannelHandler(notificationsGateway,
+                                                                                              transformer,
+                                                                                              routingKeyResolver,
+                                                                                              applicationEventPublisher);
+        // when
+        subject.receive(source);
+
+        // then
+        verify(applicationEventPublisher).publishEvent(messageCaptor.capture());
+
+        Message<ProcessEngineNotification> message = messageCaptor.getValue();
+        String notificationId = message.getHeaders().get(NotificationsConsumerChannelHandler.NOTIFICATION_ID_HEADER, String.class);
+
+        assertThat(message.getPayload()).isSameAs(notification);
+        assertThat(message.getHeaders().get(NotificationsConsumerChannelHandler.ROUTING_KEY_HEADER)).isEqualTo(ROUTING_KEY);
+        assertThat(notificationId).isNotEmpty();
+
+        verify(notificationsGateway).send(eq(notification), eq(ROUTING_KEY), eq(notificationId));
+    }
+
+    @Test
+    public void testReceivePublishesNotificationEvents() throws Exception {
+        // given
+        NotificationsConsumerChannelHandler subject = new NotificationsConsumerChannelHandler(notificationsGateway,
+                                                                                              transformer,
+                                                                                              routingKeyResolver,
+                                                                                              null,
+                                                                                              applicationEventPublisher);
+        // when
+        subject.receive(source);
+
+        // then
+        verify(applicationEventPublisher).publishEvent(eventCaptor.capture());
+
+        assertThat(eventCaptor.getValue().getNotification()).isSameAs(notification);
+        assertThat(eventCaptor.getValue().getRoutingKey()).isEqualTo(ROUTING_KEY);
+        assertThat(eventCaptor.getValue().getSource()).isSameAs(subject);
+
+        verify(notificationsGateway).send(notification, ROUTING_KEY);
+    }
+
+}
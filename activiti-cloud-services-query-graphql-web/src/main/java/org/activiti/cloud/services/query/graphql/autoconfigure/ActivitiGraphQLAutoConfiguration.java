@@ -17,12 +17,36 @@ package org.activiti.cloud.services.query.graphql.autoconfigure;
 
 import javax.persistence.EntityManager;
 
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLAggregates;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLAssociationBatchingInstrumentation;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLAutoPaginator;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLCursorPagination;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLDocumentCache;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLExecutor;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLExporter;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLPagedProjection;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLParallelExecutionStrategy;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLQueryCostAnalyzer;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLQueryCostInstrumentation;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLQueryExecutor;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLQueryTimeoutInstrumentation;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLResultCache;
+import org.activiti.cloud.services.query.graphql.execution.QueryCostAction;
+import org.activiti.cloud.services.query.graphql.web.ActivitiGraphQLAsyncController;
 import org.activiti.cloud.services.query.graphql.web.ActivitiGraphQLController;
+import org.activiti.cloud.services.query.graphql.web.ActivitiGraphQLExportController;
+import org.activiti.cloud.services.query.graphql.web.ActivitiGraphQLIncrementalDelivery;
+import org.activiti.cloud.services.query.graphql.web.ExecutionResultHttpMessageConverter;
+import org.activiti.cloud.services.query.graphql.web.InMemoryPersistedQueryStore;
+import org.activiti.cloud.services.query.graphql.web.PersistedQueryStore;
+import org.activiti.cloud.services.query.graphql.notifications.model.ProcessEngineNotificationEvent;
 import org.activiti.cloud.services.query.model.ProcessInstanceEntity;
 import org.activiti.cloud.services.query.model.VariableValue;
 import org.activiti.cloud.services.query.qraphql.ws.schema.GraphQLSubscriptionSchemaBuilder;
 import org.activiti.cloud.services.query.qraphql.ws.schema.GraphQLSubscriptionSchemaProperties;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -31,16 +55,20 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.ImportAware;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.introproventures.graphql.jpa.query.schema.GraphQLExecutor;
 import com.introproventures.graphql.jpa.query.schema.GraphQLSchemaBuilder;
 import com.introproventures.graphql.jpa.query.schema.JavaScalars;
 import com.introproventures.graphql.jpa.query.schema.JavaScalars.GraphQLObjectCoercing;
-import com.introproventures.graphql.jpa.query.schema.impl.GraphQLJpaExecutor;
 import com.introproventures.graphql.jpa.query.schema.impl.GraphQLJpaSchemaBuilder;
 
+import graphql.Directives;
 import graphql.GraphQL;
 import graphql.schema.GraphQLScalarType;
 import graphql.schema.GraphQLSchema;
@@ -58,7 +86,7 @@ public class ActivitiGraphQLAutoConfiguration {
      * Provides default configuration of Activiti GraphQL JPA Query Components
      */
     @Configuration
-    @Import(ActivitiGraphQLController.class)
+    @Import({ActivitiGraphQLController.class, ActivitiGraphQLAsyncController.class, ActivitiGraphQLExportController.class})
     @EntityScan(basePackageClasses = ProcessInstanceEntity.class)
     public static class DefaultActivitiGraphQLJpaConfiguration implements ImportAware {
 
@@ -70,8 +98,12 @@ public class ActivitiGraphQLAutoConfiguration {
 
         @Bean
         @ConditionalOnMissingBean(GraphQLExecutor.class)
-        public GraphQLExecutor graphQLExecutor(final GraphQLSchemaBuilder querySchemaBuilder,
-                                               final GraphQLSubscriptionSchemaBuilder subscriptionSchemaBuilder) {
+        public ActivitiGraphQLExecutor graphQLExecutor(final GraphQLSchemaBuilder querySchemaBuilder,
+                                                       final GraphQLSubscriptionSchemaBuilder subscriptionSchemaBuilder,
+                                                       final ObjectProvider<ActivitiGraphQLDocumentCache> documentCache,
+                                                       final ObjectProvider<ActivitiGraphQLResultCache> resultCache,
+                                                       final ObjectProvider<ActivitiGraphQLParallelExecutionStrategy> parallelExecutionStrategy,
+                                                       final EntityManager entityManager) {
 
             // Use NoOp DataFetcher for subscription schema fields via REST endpoint
             subscriptionSchemaBuilder.withSubscription(subscriptionProperties.getSubscriptionFieldName(),
@@ -80,13 +112,184 @@ public class ActivitiGraphQLAutoConfiguration {
             JavaScalars.register(VariableValue.class,
                     new GraphQLScalarType("VariableValue", "VariableValue type", new GraphQLObjectCoercing()));
 
+            GraphQLSchema jpaSchema = querySchemaBuilder.build();
+
+            if (properties.isPagedProjectionEnabled()) {
+                jpaSchema = new ActivitiGraphQLPagedProjection(entityManager).apply(jpaSchema);
+            }
+
+            ActivitiGraphQLAggregates aggregates = new ActivitiGraphQLAggregates(entityManager)
+                    .defaultCountByLimit(properties.getAggregatesCountByDefaultLimit())
+                    .maxCountByLimit(properties.getAggregatesCountByMaxLimit());
+
+            if (properties.isAggregatesEnabled()) {
+                jpaSchema = aggregates.apply(jpaSchema);
+            }
+
+            if (properties.isCursorPaginationEnabled()) {
+                jpaSchema = new ActivitiGraphQLCursorPagination(entityManager)
+                        .defaultPageSize(properties.getCursorDefaultPageSize())
+                        .maxPageSize(properties.getCursorMaxPageSize())
+                        .apply(jpaSchema);
+            }
+
             // Merge query and subscriptions schemas into one
-            GraphQLSchema querySchema = GraphQLSchema
-                    .newSchema(querySchemaBuilder.build())
-                    .subscription(subscriptionSchemaBuilder.getGraphQLSchema().getSubscriptionType())
-                    .build();
+            GraphQLSchema.Builder mergedSchemaBuilder = GraphQLSchema
+                    .newSchema(jpaSchema)
+                    .subscription(subscriptionSchemaBuilder.getGraphQLSchema().getSubscriptionType());
+
+            if (properties.isDeferEnabled()) {
+                mergedSchemaBuilder.additionalDirective(Directives.DeferDirective);
+            }
+
+            GraphQLSchema querySchema = mergedSchemaBuilder.build();
+
+            ActivitiGraphQLExecutor executor = new ActivitiGraphQLExecutor(querySchema);
+
+            documentCache.ifAvailable(executor::preparsedDocumentProvider);
+            resultCache.ifAvailable(cache -> {
+                aggregates.getAggregateTypes().forEach(cache::derivedType);
+                executor.resultCache(cache);
+            });
+            parallelExecutionStrategy.ifAvailable(executor::queryExecutionStrategy);
+
+            if (properties.isQueryCostEnabled()) {
+                ActivitiGraphQLQueryCostAnalyzer analyzer = new ActivitiGraphQLQueryCostAnalyzer()
+                        .unpagedListSize(properties.getQueryUnpagedListSize())
+                        .associationListSize(properties.getQueryAssociationListSize());
+
+                executor.instrumentation(new ActivitiGraphQLQueryCostInstrumentation(analyzer)
+                                                 .maxCost(properties.getQueryMaxCost())
+                                                 .maxDepth(properties.getQueryMaxDepth()));
+
+                if (properties.getQueryCostAction() == QueryCostAction.PAGINATE) {
+                    executor.autoPaginator(new ActivitiGraphQLAutoPaginator(querySchema, properties.getAutoPaginatorCacheMaxEntries())
+                                                   .defaultPageLimit(properties.getQueryDefaultPageLimit()));
+                }
+            }
+
+            if (properties.isAssociationBatchingEnabled()) {
+                executor.instrumentation(new ActivitiGraphQLAssociationBatchingInstrumentation(entityManager)
+                                                 .batchSize(properties.getAssociationBatchSize()));
+            }
+
+            // Chained last to check the deadline before other instrumented data fetchers run statements
+            if (properties.isQueryTimeoutEnabled()) {
+                executor.instrumentation(new ActivitiGraphQLQueryTimeoutInstrumentation(entityManager)
+                                                 .timeoutMs(properties.getQueryTimeoutMs())
+                                                 .operationTimeoutsMs(properties.getQueryOperationTimeoutsMs()));
+            }
+
+            return executor;
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(name = "spring.activiti.cloud.services.query.graphql.document-cache-enabled", matchIfMissing = true)
+        public ActivitiGraphQLDocumentCache activitiGraphQLDocumentCache() {
+            return new ActivitiGraphQLDocumentCache(properties.getDocumentCacheMaxEntries(),
+                                                    properties.getDocumentCacheMaxWeight());
+        }
+
+        /**
+         * Invalidated by notifications published in-process by notifications gateway with local events enabled
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(name = "spring.activiti.cloud.services.query.graphql.result-cache-enabled", havingValue = "true")
+        public ActivitiGraphQLResultCache activitiGraphQLResultCache() {
+            return new ActivitiGraphQLResultCache(properties.getResultCacheMaxEntries(),
+                                                  properties.getResultCacheTimeToLiveMs());
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(name = "spring.activiti.cloud.services.query.graphql.async-enabled", havingValue = "true")
+        public ActivitiGraphQLQueryExecutor activitiGraphQLQueryExecutor(final ObjectProvider<PlatformTransactionManager> transactionManager) {
+            ActivitiGraphQLQueryExecutor queryExecutor = new ActivitiGraphQLQueryExecutor(properties.getAsyncThreads(),
+                                                                                          properties.getAsyncQueueCapacity(),
+                                                                                          properties.isAsyncVirtualThreads());
+
+            // Fixes unable to access lob stream in auto-commit mode, same as synchronous controller
+            transactionManager.ifAvailable(manager -> queryExecutor.transactionTemplate(readOnlyTransactionTemplate(manager)));
+
+            return queryExecutor;
+        }
+
+        /**
+         * Uses its own query executor, so that root fields of queries executed by the async query executor
+         * never wait for threads of the same pool
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(name = "spring.activiti.cloud.services.query.graphql.parallel-enabled", havingValue = "true")
+        public ActivitiGraphQLParallelExecutionStrategy activitiGraphQLParallelExecutionStrategy(final ObjectProvider<PlatformTransactionManager> transactionManager) {
+            ActivitiGraphQLQueryExecutor queryExecutor = new ActivitiGraphQLQueryExecutor(properties.getParallelThreads(),
+                                                                                          properties.getParallelQueueCapacity(),
+                                                                                          properties.isAsyncVirtualThreads());
+
+            // Parallel query threads resolve root fields in their own read-only transactions on their own pooled connections,
+            // while the calling thread resolves the rest in the request transaction without waiting for a connection
+            transactionManager.ifAvailable(manager -> queryExecutor.transactionTemplate(readOnlyTransactionTemplate(manager)));
 
-            return new GraphQLJpaExecutor(querySchema);
+            return new ActivitiGraphQLParallelExecutionStrategy(queryExecutor)
+                    .maxParallelism(properties.getParallelMaxPerRequest());
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(name = "spring.activiti.cloud.services.query.graphql.export-enabled", havingValue = "true")
+        public ActivitiGraphQLExporter activitiGraphQLExporter(final GraphQLExecutor graphQLExecutor,
+                                                               final GraphQLSchemaBuilder querySchemaBuilder,
+                                                               final EntityManager entityManager,
+                                                               final ObjectMapper mapper,
+                                                               final ObjectProvider<PlatformTransactionManager> transactionManager) {
+            GraphQLSchema graphQLSchema = graphQLExecutor instanceof ActivitiGraphQLExecutor ? ((ActivitiGraphQLExecutor) graphQLExecutor).getGraphQLSchema()
+                                                                                             : querySchemaBuilder.build();
+
+            ActivitiGraphQLExporter exporter = new ActivitiGraphQLExporter(graphQLSchema, entityManager, mapper)
+                    .fetchSize(properties.getExportFetchSize());
+
+            // Scrollable results need an open connection while the response is streamed
+            transactionManager.ifAvailable(manager -> exporter.transactionTemplate(readOnlyTransactionTemplate(manager)));
+
+            return exporter;
+        }
+
+        /**
+         * Only created along with the default executor, custom {@link GraphQLExecutor} beans keep serving
+         * deferred queries as single responses
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnBean(ActivitiGraphQLExecutor.class)
+        @ConditionalOnProperty(name = "spring.activiti.cloud.services.query.graphql.defer-enabled", matchIfMissing = true)
+        public ActivitiGraphQLIncrementalDelivery activitiGraphQLIncrementalDelivery(final ActivitiGraphQLExecutor graphQLExecutor,
+                                                                                     final ObjectMapper mapper,
+                                                                                     final ObjectProvider<PlatformTransactionManager> transactionManager) {
+            ActivitiGraphQLIncrementalDelivery incrementalDelivery = new ActivitiGraphQLIncrementalDelivery(graphQLExecutor, mapper);
+
+            // Deferred fields are resolved while the response is streamed, after the controller transaction has ended
+            transactionManager.ifAvailable(manager -> incrementalDelivery.transactionTemplate(readOnlyTransactionTemplate(manager)));
+
+            return incrementalDelivery;
+        }
+
+        /**
+         * Registered with Spring MVC message converters ahead of the default Jackson converter
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(name = "spring.activiti.cloud.services.query.graphql.streaming-enabled", matchIfMissing = true)
+        public ExecutionResultHttpMessageConverter executionResultHttpMessageConverter(final ObjectMapper mapper) {
+            return new ExecutionResultHttpMessageConverter(mapper);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean(PersistedQueryStore.class)
+        @ConditionalOnProperty(name = "spring.activiti.cloud.services.query.graphql.persisted-queries-enabled", matchIfMissing = true)
+        public PersistedQueryStore persistedQueryStore() {
+            return new InMemoryPersistedQueryStore(properties.getPersistedQueriesMaxEntries());
         }
 
         @Bean
@@ -102,9 +305,34 @@ public class ActivitiGraphQLAutoConfiguration {
                     .description(properties.getDescription());
         }
 
+        private static TransactionTemplate readOnlyTransactionTemplate(PlatformTransactionManager transactionManager) {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+
+            return transactionTemplate;
+        }
+
         @Override
         public void setImportMetadata(AnnotationMetadata importMetadata) {
             this.properties.setEnabled(true);
         }
     }
+
+    /**
+     * Invalidates cached query results with process engine notifications published in-process by
+     * the notifications gateway with local events enabled
+     */
+    @Configuration
+    @ConditionalOnClass(ProcessEngineNotificationEvent.class)
+    @ConditionalOnProperty(name = "spring.activiti.cloud.services.query.graphql.result-cache-enabled", havingValue = "true")
+    public static class ActivitiGraphQLResultCacheNotificationsConfiguration {
+
+        @Autowired
+        private ObjectProvider<ActivitiGraphQLResultCache> resultCache;
+
+        @EventListener
+        public void onNotification(ProcessEngineNotificationEvent event) {
+            resultCache.ifAvailable(cache -> cache.onNotification(event.getNotification()));
+        }
+    }
 }
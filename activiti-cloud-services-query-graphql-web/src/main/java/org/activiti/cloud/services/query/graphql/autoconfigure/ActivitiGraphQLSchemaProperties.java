@@ -15,9 +15,13 @@
  */
 package org.activiti.cloud.services.query.graphql.autoconfigure;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
+import org.activiti.cloud.services.query.graphql.execution.QueryCostAction;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
@@ -56,6 +60,220 @@ public class ActivitiGraphQLSchemaProperties {
     @NotBlank
     private String path = "/graphql";
 
+    /**
+     * Enable or disable cache of parsed and validated query documents. Default value is true
+     */
+    private boolean documentCacheEnabled = true;
+
+    /**
+     * Maximum number of cached query documents. Default value is 1000
+     */
+    private int documentCacheMaxEntries = 1000;
+
+    /**
+     * Maximum total length of cached query texts in characters. Default value is 10000000
+     */
+    private long documentCacheMaxWeight = 10000000;
+
+    /**
+     * Enable or disable automatic persisted queries. Default value is true
+     */
+    private boolean persistedQueriesEnabled = true;
+
+    /**
+     * Maximum number of persisted queries in default in-memory store. Default value is 10000
+     */
+    private int persistedQueriesMaxEntries = 10000;
+
+    /**
+     * Enable or disable asynchronous execution of queries on dedicated query executor. Default value is false
+     */
+    private boolean asyncEnabled = false;
+
+    /**
+     * Maximum number of concurrently executing asynchronous queries. Default value is 10
+     */
+    private int asyncThreads = 10;
+
+    /**
+     * Maximum number of asynchronous queries waiting for execution before requests are rejected with 503 status. Default value is 100
+     */
+    private int asyncQueueCapacity = 100;
+
+    /**
+     * Execute asynchronous queries on virtual threads if supported by Java runtime. Default value is false
+     */
+    private boolean asyncVirtualThreads = false;
+
+    /**
+     * Enable or disable streaming of query responses to the response output stream. Default value is true
+     */
+    private boolean streamingEnabled = true;
+
+    /**
+     * Enable or disable query cost analysis and admission limits. Default value is false
+     */
+    private boolean queryCostEnabled = false;
+
+    /**
+     * Maximum estimated cost, i.e. number of resolved fields, of admitted queries. Default value is 100000
+     */
+    private long queryMaxCost = 100000;
+
+    /**
+     * Maximum selection depth of admitted queries. Default value is 10
+     */
+    private int queryMaxDepth = 10;
+
+    /**
+     * Action taken for queries over the cost budget, REJECT or PAGINATE. Default value is REJECT
+     */
+    private QueryCostAction queryCostAction = QueryCostAction.REJECT;
+
+    /**
+     * Estimated size of query lists selected without page argument. Default value is 1000
+     */
+    private int queryUnpagedListSize = 1000;
+
+    /**
+     * Estimated size of nested entity association lists. Default value is 10
+     */
+    private int queryAssociationListSize = 10;
+
+    /**
+     * Page limit added to query fields selected without page argument with PAGINATE action. Default value is 100
+     */
+    private int queryDefaultPageLimit = 100;
+
+    /**
+     * Enable or disable cache of query results invalidated by process engine notifications. Default value is false
+     */
+    private boolean resultCacheEnabled = false;
+
+    /**
+     * Maximum number of cached query results. Default value is 1000
+     */
+    private int resultCacheMaxEntries = 1000;
+
+    /**
+     * Maximum age of cached query results in milliseconds. Default value is 30000
+     */
+    private long resultCacheTimeToLiveMs = 30000;
+
+    /**
+     * Maximum number of operations in batched JSON requests. Default value is 25
+     */
+    private int batchMaxSize = 25;
+
+    /**
+     * Enable batching of selected JPA association fetches into one query per association path
+     */
+    private boolean associationBatchingEnabled = true;
+
+    /**
+     * Maximum number of parent ids per association batch query
+     */
+    private int associationBatchSize = 500;
+
+    /**
+     * Enable keyset paginated cursor query fields, i.e. TasksCursor(first: 100, after: "...")
+     */
+    private boolean cursorPaginationEnabled = true;
+
+    /**
+     * Default number of records selected by cursor query fields
+     */
+    private int cursorDefaultPageSize = 100;
+
+    /**
+     * Maximum number of records selected by cursor query fields
+     */
+    private int cursorMaxPageSize = 1000;
+
+    /**
+     * Enable concurrent resolution of independent root query fields, each in its own read-only transaction
+     */
+    private boolean parallelEnabled = false;
+
+    /**
+     * Maximum number of parallel query threads resolving root query fields of all requests, each on its own pooled connection
+     */
+    private int parallelThreads = 20;
+
+    /**
+     * Maximum number of parallel query threads waiting to start, root fields of rejected threads are resolved in the calling thread
+     */
+    private int parallelQueueCapacity = 100;
+
+    /**
+     * Maximum number of root query fields of a single request resolved concurrently, by the calling thread
+     * and up to parallelMaxPerRequest - 1 parallel query threads
+     */
+    private int parallelMaxPerRequest = 4;
+
+    /**
+     * Enable aggregate query fields computed by the database, i.e. TasksAggregate { count countBy(by: [status]) { status count } }
+     */
+    private boolean aggregatesEnabled = true;
+
+    /**
+     * Enable newline delimited JSON export endpoint at {path}/export, which streams all records matching
+     * an entity query without row limit or query timeout
+     */
+    private boolean exportEnabled = false;
+
+    /**
+     * Number of records fetched per database round trip and cleared from persistence context by exports
+     */
+    private int exportFetchSize = 500;
+
+    /**
+     * Enable @defer directive with incremental delivery of deferred fields as multipart/mixed responses
+     */
+    private boolean deferEnabled = true;
+
+    /**
+     * Enable per query operation deadline propagated to JDBC statements, and cancellation of asynchronous requests
+     */
+    private boolean queryTimeoutEnabled = true;
+
+    /**
+     * Default query operation timeout in milliseconds, 0 for no timeout. Default value is 0, so that
+     * existing long running queries keep working and only cancellation of asynchronous requests is observed
+     */
+    private long queryTimeoutMs = 0;
+
+    /**
+     * Query operation timeouts in milliseconds by operation name, overriding default query timeout,
+     * i.e. query-operation-timeouts-ms.TaskReport=120000
+     */
+    private Map<String, Long> queryOperationTimeoutsMs = new LinkedHashMap<>();
+
+    /**
+     * Maximum number of paginated documents cached by the PAGINATE action. Default value is 1000
+     */
+    private int autoPaginatorCacheMaxEntries = 1000;
+
+    /**
+     * Cache-Control max-age in seconds of successful GET results for persisted query hashes, 0 to disable
+     */
+    private long persistedQueriesCacheMaxAgeSeconds = 60;
+
+    /**
+     * Number of countBy groups selected without limit argument
+     */
+    private int aggregatesCountByDefaultLimit = 100;
+
+    /**
+     * Maximum number of countBy groups selected by a countBy field
+     */
+    private int aggregatesCountByMaxLimit = 1000;
+
+    /**
+     * Enable projection of selected basic columns in paged query fields, i.e. Tasks(page: ...){select{id assignee}}
+     */
+    private boolean pagedProjectionEnabled = true;
+
     @Configuration
     @PropertySource("classpath:META-INF/graphql.properties")
     @PropertySource(value="classpath:graphql.properties", ignoreResourceNotFound=true)
@@ -140,4 +358,592 @@ public class ActivitiGraphQLSchemaProperties {
         this.path = path;
     }
 
+    /**
+     * @return the documentCacheEnabled
+     */
+    public boolean isDocumentCacheEnabled() {
+        return this.documentCacheEnabled;
+    }
+
+    /**
+     * @param documentCacheEnabled the documentCacheEnabled to set
+     */
+    public void setDocumentCacheEnabled(boolean documentCacheEnabled) {
+        this.documentCacheEnabled = documentCacheEnabled;
+    }
+
+    /**
+     * @return the documentCacheMaxEntries
+     */
+    public int getDocumentCacheMaxEntries() {
+        return this.documentCacheMaxEntries;
+    }
+
+    /**
+     * @param documentCacheMaxEntries the documentCacheMaxEntries to set
+     */
+    public void setDocumentCacheMaxEntries(int documentCacheMaxEntries) {
+        this.documentCacheMaxEntries = documentCacheMaxEntries;
+    }
+
+    /**
+     * @return the documentCacheMaxWeight
+     */
+    public long getDocumentCacheMaxWeight() {
+        return this.documentCacheMaxWeight;
+    }
+
+    /**
+     * @param documentCacheMaxWeight the documentCacheMaxWeight to set
+     */
+    public void setDocumentCacheMaxWeight(long documentCacheMaxWeight) {
+        this.documentCacheMaxWeight = documentCacheMaxWeight;
+    }
+
+    /**
+     * @return the persistedQueriesEnabled
+     */
+    public boolean isPersistedQueriesEnabled() {
+        return this.persistedQueriesEnabled;
+    }
+
+    /**
+     * @param persistedQueriesEnabled the persistedQueriesEnabled to set
+     */
+    public void setPersistedQueriesEnabled(boolean persistedQueriesEnabled) {
+        this.persistedQueriesEnabled = persistedQueriesEnabled;
+    }
+
+    /**
+     * @return the persistedQueriesMaxEntries
+     */
+    public int getPersistedQueriesMaxEntries() {
+        return this.persistedQueriesMaxEntries;
+    }
+
+    /**
+     * @param persistedQueriesMaxEntries the persistedQueriesMaxEntries to set
+     */
+    public void setPersistedQueriesMaxEntries(int persistedQueriesMaxEntries) {
+        this.persistedQueriesMaxEntries = persistedQueriesMaxEntries;
+    }
+
+    /**
+     * @return the asyncEnabled
+     */
+    public boolean isAsyncEnabled() {
+        return this.asyncEnabled;
+    }
+
+    /**
+     * @param asyncEnabled the asyncEnabled to set
+     */
+    public void setAsyncEnabled(boolean asyncEnabled) {
+        this.asyncEnabled = asyncEnabled;
+    }
+
+    /**
+     * @return the asyncThreads
+     */
+    public int getAsyncThreads() {
+        return this.asyncThreads;
+    }
+
+    /**
+     * @param asyncThreads the asyncThreads to set
+     */
+    public void setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
+
+    /**
+     * @return the asyncQueueCapacity
+     */
+    public int getAsyncQueueCapacity() {
+        return this.asyncQueueCapacity;
+    }
+
+    /**
+     * @param asyncQueueCapacity the asyncQueueCapacity to set
+     */
+    public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+        this.asyncQueueCapacity = asyncQueueCapacity;
+    }
+
+    /**
+     * @return the asyncVirtualThreads
+     */
+    public boolean isAsyncVirtualThreads() {
+        return this.asyncVirtualThreads;
+    }
+
+    /**
+     * @param asyncVirtualThreads the asyncVirtualThreads to set
+     */
+    public void setAsyncVirtualThreads(boolean asyncVirtualThreads) {
+        this.asyncVirtualThreads = asyncVirtualThreads;
+    }
+
+    /**
+     * @return the streamingEnabled
+     */
+    public boolean isStreamingEnabled() {
+        return this.streamingEnabled;
+    }
+
+    /**
+     * @param streamingEnabled the streamingEnabled to set
+     */
+    public void setStreamingEnabled(boolean streamingEnabled) {
+        this.streamingEnabled = streamingEnabled;
+    }
+
+    /**
+     * @return the queryCostEnabled
+     */
+    public boolean isQueryCostEnabled() {
+        return this.queryCostEnabled;
+    }
+
+    /**
+     * @param queryCostEnabled the queryCostEnabled to set
+     */
+    public void setQueryCostEnabled(boolean queryCostEnabled) {
+        this.queryCostEnabled = queryCostEnabled;
+    }
+
+    /**
+     * @return the queryMaxCost
+     */
+    public long getQueryMaxCost() {
+        return this.queryMaxCost;
+    }
+
+    /**
+     * @param queryMaxCost the queryMaxCost to set
+     */
+    public void setQueryMaxCost(long queryMaxCost) {
+        this.queryMaxCost = queryMaxCost;
+    }
+
+    /**
+     * @return the queryMaxDepth
+     */
+    public int getQueryMaxDepth() {
+        return this.queryMaxDepth;
+    }
+
+    /**
+     * @param queryMaxDepth the queryMaxDepth to set
+     */
+    public void setQueryMaxDepth(int queryMaxDepth) {
+        this.queryMaxDepth = queryMaxDepth;
+    }
+
+    /**
+     * @return the queryCostAction
+     */
+    public QueryCostAction getQueryCostAction() {
+        return this.queryCostAction;
+    }
+
+    /**
+     * @param queryCostAction the queryCostAction to set
+     */
+    public void setQueryCostAction(QueryCostAction queryCostAction) {
+        this.queryCostAction = queryCostAction;
+    }
+
+    /**
+     * @return the queryUnpagedListSize
+     */
+    public int getQueryUnpagedListSize() {
+        return this.queryUnpagedListSize;
+    }
+
+    /**
+     * @param queryUnpagedListSize the queryUnpagedListSize to set
+     */
+    public void setQueryUnpagedListSize(int queryUnpagedListSize) {
+        this.queryUnpagedListSize = queryUnpagedListSize;
+    }
+
+    /**
+     * @return the queryAssociationListSize
+     */
+    public int getQueryAssociationListSize() {
+        return this.queryAssociationListSize;
+    }
+
+    /**
+     * @param queryAssociationListSize the queryAssociationListSize to set
+     */
+    public void setQueryAssociationListSize(int queryAssociationListSize) {
+        this.queryAssociationListSize = queryAssociationListSize;
+    }
+
+    /**
+     * @return the queryDefaultPageLimit
+     */
+    public int getQueryDefaultPageLimit() {
+        return this.queryDefaultPageLimit;
+    }
+
+    /**
+     * @param queryDefaultPageLimit the queryDefaultPageLimit to set
+     */
+    public void setQueryDefaultPageLimit(int queryDefaultPageLimit) {
+        this.queryDefaultPageLimit = queryDefaultPageLimit;
+    }
+
+    /**
+     * @return the resultCacheEnabled
+     */
+    public boolean isResultCacheEnabled() {
+        return this.resultCacheEnabled;
+    }
+
+    /**
+     * @param resultCacheEnabled the resultCacheEnabled to set
+     */
+    public void setResultCacheEnabled(boolean resultCacheEnabled) {
+        this.resultCacheEnabled = resultCacheEnabled;
+    }
+
+    /**
+     * @return the resultCacheMaxEntries
+     */
+    public int getResultCacheMaxEntries() {
+        return this.resultCacheMaxEntries;
+    }
+
+    /**
+     * @param resultCacheMaxEntries the resultCacheMaxEntries to set
+     */
+    public void setResultCacheMaxEntries(int resultCacheMaxEntries) {
+        this.resultCacheMaxEntries = resultCacheMaxEntries;
+    }
+
+    /**
+     * @return the resultCacheTimeToLiveMs
+     */
+    public long getResultCacheTimeToLiveMs() {
+        return this.resultCacheTimeToLiveMs;
+    }
+
+    /**
+     * @param resultCacheTimeToLiveMs the resultCacheTimeToLiveMs to set
+     */
+    public void setResultCacheTimeToLiveMs(long resultCacheTimeToLiveMs) {
+        this.resultCacheTimeToLiveMs = resultCacheTimeToLiveMs;
+    }
+
+    /**
+     * @return the batchMaxSize
+     */
+    public int getBatchMaxSize() {
+        return this.batchMaxSize;
+    }
+
+    /**
+     * @param batchMaxSize the batchMaxSize to set
+     */
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    /**
+     * @return the associationBatchingEnabled
+     */
+    public boolean isAssociationBatchingEnabled() {
+        return this.associationBatchingEnabled;
+    }
+
+    /**
+     * @param associationBatchingEnabled the associationBatchingEnabled to set
+     */
+    public void setAssociationBatchingEnabled(boolean associationBatchingEnabled) {
+        this.associationBatchingEnabled = associationBatchingEnabled;
+    }
+
+    /**
+     * @return the associationBatchSize
+     */
+    public int getAssociationBatchSize() {
+        return this.associationBatchSize;
+    }
+
+    /**
+     * @param associationBatchSize the associationBatchSize to set
+     */
+    public void setAssociationBatchSize(int associationBatchSize) {
+        this.associationBatchSize = associationBatchSize;
+    }
+
+    /**
+     * @return the cursorPaginationEnabled
+     */
+    public boolean isCursorPaginationEnabled() {
+        return this.cursorPaginationEnabled;
+    }
+
+    /**
+     * @param cursorPaginationEnabled the cursorPaginationEnabled to set
+     */
+    public void setCursorPaginationEnabled(boolean cursorPaginationEnabled) {
+        this.cursorPaginationEnabled = cursorPaginationEnabled;
+    }
+
+    /**
+     * @return the cursorDefaultPageSize
+     */
+    public int getCursorDefaultPageSize() {
+        return this.cursorDefaultPageSize;
+    }
+
+    /**
+     * @param cursorDefaultPageSize the cursorDefaultPageSize to set
+     */
+    public void setCursorDefaultPageSize(int cursorDefaultPageSize) {
+        this.cursorDefaultPageSize = cursorDefaultPageSize;
+    }
+
+    /**
+     * @return the cursorMaxPageSize
+     */
+    public int getCursorMaxPageSize() {
+        return this.cursorMaxPageSize;
+    }
+
+    /**
+     * @param cursorMaxPageSize the cursorMaxPageSize to set
+     */
+    public void setCursorMaxPageSize(int cursorMaxPageSize) {
+        this.cursorMaxPageSize = cursorMaxPageSize;
+    }
+
+    /**
+     * @return the parallelEnabled
+     */
+    public boolean isParallelEnabled() {
+        return this.parallelEnabled;
+    }
+
+    /**
+     * @param parallelEnabled the parallelEnabled to set
+     */
+    public void setParallelEnabled(boolean parallelEnabled) {
+        this.parallelEnabled = parallelEnabled;
+    }
+
+    /**
+     * @return the parallelThreads
+     */
+    public int getParallelThreads() {
+        return this.parallelThreads;
+    }
+
+    /**
+     * @param parallelThreads the parallelThreads to set
+     */
+    public void setParallelThreads(int parallelThreads) {
+        this.parallelThreads = parallelThreads;
+    }
+
+    /**
+     * @return the parallelQueueCapacity
+     */
+    public int getParallelQueueCapacity() {
+        return this.parallelQueueCapacity;
+    }
+
+    /**
+     * @param parallelQueueCapacity the parallelQueueCapacity to set
+     */
+    public void setParallelQueueCapacity(int parallelQueueCapacity) {
+        this.parallelQueueCapacity = parallelQueueCapacity;
+    }
+
+    /**
+     * @return the parallelMaxPerRequest
+     */
+    public int getParallelMaxPerRequest() {
+        return this.parallelMaxPerRequest;
+    }
+
+    /**
+     * @param parallelMaxPerRequest the parallelMaxPerRequest to set
+     */
+    public void setParallelMaxPerRequest(int parallelMaxPerRequest) {
+        this.parallelMaxPerRequest = parallelMaxPerRequest;
+    }
+
+    /**
+     * @return the aggregatesEnabled
+     */
+    public boolean isAggregatesEnabled() {
+        return this.aggregatesEnabled;
+    }
+
+    /**
+     * @param aggregatesEnabled the aggregatesEnabled to set
+     */
+    public void setAggregatesEnabled(boolean aggregatesEnabled) {
+        this.aggregatesEnabled = aggregatesEnabled;
+    }
+
+    /**
+     * @return the exportEnabled
+     */
+    public boolean isExportEnabled() {
+        return this.exportEnabled;
+    }
+
+    /**
+     * @param exportEnabled the exportEnabled to set
+     */
+    public void setExportEnabled(boolean exportEnabled) {
+        this.exportEnabled = exportEnabled;
+    }
+
+    /**
+     * @return the exportFetchSize
+     */
+    public int getExportFetchSize() {
+        return this.exportFetchSize;
+    }
+
+    /**
+     * @param exportFetchSize the exportFetchSize to set
+     */
+    public void setExportFetchSize(int exportFetchSize) {
+        this.exportFetchSize = exportFetchSize;
+    }
+
+    /**
+     * @return the deferEnabled
+     */
+    public boolean isDeferEnabled() {
+        return this.deferEnabled;
+    }
+
+    /**
+     * @param deferEnabled the deferEnabled to set
+     */
+    public void setDeferEnabled(boolean deferEnabled) {
+        this.deferEnabled = deferEnabled;
+    }
+
+    /**
+     * @return the queryTimeoutEnabled
+     */
+    public boolean isQueryTimeoutEnabled() {
+        return this.queryTimeoutEnabled;
+    }
+
+    /**
+     * @param queryTimeoutEnabled the queryTimeoutEnabled to set
+     */
+    public void setQueryTimeoutEnabled(boolean queryTimeoutEnabled) {
+        this.queryTimeoutEnabled = queryTimeoutEnabled;
+    }
+
+    /**
+     * @return the queryTimeoutMs
+     */
+    public long getQueryTimeoutMs() {
+        return this.queryTimeoutMs;
+    }
+
+    /**
+     * @param queryTimeoutMs the queryTimeoutMs to set
+     */
+    public void setQueryTimeoutMs(long queryTimeoutMs) {
+        this.queryTimeoutMs = queryTimeoutMs;
+    }
+
+    /**
+     * @return the queryOperationTimeoutsMs
+     */
+    public Map<String, Long> getQueryOperationTimeoutsMs() {
+        return this.queryOperationTimeoutsMs;
+    }
+
+    /**
+     * @param queryOperationTimeoutsMs the queryOperationTimeoutsMs to set
+     */
+    public void setQueryOperationTimeoutsMs(Map<String, Long> queryOperationTimeoutsMs) {
+        this.queryOperationTimeoutsMs = queryOperationTimeoutsMs;
+    }
+
+    /**
+     * @return the autoPaginatorCacheMaxEntries
+     */
+    public int getAutoPaginatorCacheMaxEntries() {
+        return this.autoPaginatorCacheMaxEntries;
+    }
+
+    /**
+     * @param autoPaginatorCacheMaxEntries the autoPaginatorCacheMaxEntries to set
+     */
+    public void setAutoPaginatorCacheMaxEntries(int autoPaginatorCacheMaxEntries) {
+        this.autoPaginatorCacheMaxEntries = autoPaginatorCacheMaxEntries;
+    }
+
+    /**
+     * @return the persistedQueriesCacheMaxAgeSeconds
+     */
+    public long getPersistedQueriesCacheMaxAgeSeconds() {
+        return this.persistedQueriesCacheMaxAgeSeconds;
+    }
+
+    /**
+     * @param persistedQueriesCacheMaxAgeSeconds the persistedQueriesCacheMaxAgeSeconds to set
+     */
+    public void setPersistedQueriesCacheMaxAgeSeconds(long persistedQueriesCacheMaxAgeSeconds) {
+        this.persistedQueriesCacheMaxAgeSeconds = persistedQueriesCacheMaxAgeSeconds;
+    }
+
+    /**
+     * @return the aggregatesCountByDefaultLimit
+     */
+    public int getAggregatesCountByDefaultLimit() {
+        return this.aggregatesCountByDefaultLimit;
+    }
+
+    /**
+     * @param aggregatesCountByDefaultLimit the aggregatesCountByDefaultLimit to set
+     */
+    public void setAggregatesCountByDefaultLimit(int aggregatesCountByDefaultLimit) {
+        this.aggregatesCountByDefaultLimit = aggregatesCountByDefaultLimit;
+    }
+
+    /**
+     * @return the aggregatesCountByMaxLimit
+     */
+    public int getAggregatesCountByMaxLimit() {
+        return this.aggregatesCountByMaxLimit;
+    }
+
+    /**
+     * @param aggregatesCountByMaxLimit the aggregatesCountByMaxLimit to set
+     */
+    public void setAggregatesCountByMaxLimit(int aggregatesCountByMaxLimit) {
+        this.aggregatesCountByMaxLimit = aggregatesCountByMaxLimit;
+    }
+
+    /**
+     * @return the pagedProjectionEnabled
+     */
+    public boolean isPagedProjectionEnabled() {
+        return this.pagedProjectionEnabled;
+    }
+
+    /**
+     * @param pagedProjectionEnabled the pagedProjectionEnabled to set
+     */
+    public void setPagedProjectionEnabled(boolean pagedProjectionEnabled) {
+        this.pagedProjectionEnabled = pagedProjectionEnabled;
+    }
+
 }
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import graphql.Scalars;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLEnumType;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLInputType;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLOutputType;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+
+/**
+ * Adds aggregate variants of paged entity query fields to the GraphQL JPA schema, computed by the database
+ * instead of by clients from fetched records, i.e.
+ *
+ * TasksAggregate(where: {status: {EQ: CREATED}}) { count countBy(by: [assignee], limit: 10) { assignee count } max { createdDate } }
+ *
+ * The count and the selected min and max of date attributes are computed with a single aggregate query, each
+ * countBy selection with a single 'group by' query. Aggregate fields take the 'where' argument of their paged query
+ * field with the same grammar, see {@link ActivitiGraphQLWhereCriteria}.
+ *
+ * Groups of countBy are ordered by descending count and limited by its 'limit' argument, at most maxCountByLimit,
+ * so that grouping by high cardinality attributes, i.e. id, does not return a group per record.
+ */
+public class ActivitiGraphQLAggregates {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLAggregates.class);
+
+    public static final String FIELD_SUFFIX = "Aggregate";
+    public static final String ATTRIBUTE_TYPE_SUFFIX = "AggregateAttribute";
+    public static final String GROUP_TYPE_SUFFIX = "CountGroup";
+    public static final String DATES_TYPE_SUFFIX = "AggregateDates";
+
+    public static final String WHERE_ARGUMENT = "where";
+    public static final String BY_ARGUMENT = "by";
+    public static final String LIMIT_ARGUMENT = ActivitiGraphQLQueryCostAnalyzer.LIMIT_ARGUMENT;
+
+    public static final String COUNT_FIELD = "count";
+    public static final String COUNT_BY_FIELD = "countBy";
+    public static final String MIN_FIELD = "min";
+    public static final String MAX_FIELD = "max";
+
+    private final EntityManager entityManager;
+
+    private final ActivitiGraphQLWhereCriteria whereCriteria = new ActivitiGraphQLWhereCriteria();
+
+    private final Map<String, String> aggregateTypes = new LinkedHashMap<>();
+
+    private int defaultCountByLimit = 100;
+
+    private int maxCountByLimit = 1000;
+
+    public ActivitiGraphQLAggregates(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public ActivitiGraphQLAggregates defaultCountByLimit(int defaultCountByLimit) {
+        Assert.isTrue(defaultCountByLimit > 0, "defaultCountByLimit must be greater than 0");
+        this.defaultCountByLimit = defaultCountByLimit;
+
+        return this;
+    }
+
+    public ActivitiGraphQLAggregates maxCountByLimit(int maxCountByLimit) {
+        Assert.isTrue(maxCountByLimit > 0, "maxCountByLimit must be greater than 0");
+        this.maxCountByLimit = maxCountByLimit;
+
+        return this;
+    }
+
+    public int getDefaultCountByLimit() {
+        return defaultCountByLimit;
+    }
+
+    public int getMaxCountByLimit() {
+        return maxCountByLimit;
+    }
+
+    /**
+     * Adds aggregate query fields for paged query fields of the schema query type selecting JPA entities
+     *
+     * @param graphQLSchema GraphQL JPA schema
+     * @return schema with aggregate query fields or the original schema if it has no paged entity query fields
+     */
+    public GraphQLSchema apply(GraphQLSchema graphQLSchema) {
+        GraphQLObjectType queryType = graphQLSchema.getQueryType();
+
+        List<GraphQLFieldDefinition> aggregateFields = new ArrayList<>();
+
+        for (GraphQLFieldDefinition fieldDefinition : queryType.getFieldDefinitions()) {
+            GraphQLObjectType recordType = ActivitiGraphQLCursorPagination.recordType(fieldDefinition);
+
+            if (recordType == null || queryType.getFieldDefinition(fieldDefinition.getName() + FIELD_SUFFIX) != null) {
+                continue;
+            }
+
+            EntityType<?> entityType = GraphQLSelections.entityType(entityManager.getMetamodel(), recordType.getName());
+
+            if (entityType != null) {
+                aggregateFields.add(aggregateField(fieldDefinition, recordType, entityType));
+            }
+        }
+
+        if (aggregateFields.isEmpty()) {
+            return graphQLSchema;
+        }
+
+        GraphQLObjectType aggregateQueryType = GraphQLObjectType.newObject()
+                                                                .name(queryType.getName())
+                                                                .description(queryType.getDescription())
+                                                                .fields(queryType.getFieldDefinitions())
+                                                                .fields(aggregateFields)
+                                                                .build();
+
+        log.debug("Added aggregate query fields: {}", aggregateFields.stream().map(GraphQLFieldDefinition::getName).toArray());
+
+        return GraphQLSchema.newSchema(graphQLSchema)
+                            .query(aggregateQueryType)
+                            .build();
+    }
+
+    /**
+     * Returns names of aggregate types by names of aggregated entity types, i.e. to invalidate cached aggregates
+     * with entity notifications
+     */
+    public Map<String, String> getAggregateTypes() {
+        return Collections.unmodifiableMap(aggregateTypes);
+    }
+
+    protected GraphQLFieldDefinition aggregateField(GraphQLFieldDefinition fieldDefinition,
+                                                    GraphQLObjectType recordType,
+                                                    EntityType<?> entityType) {
+        List<String> groupAttributes = new ArrayList<>();
+        List<GraphQLFieldDefinition> dateFields = new ArrayList<>();
+
+        for (GraphQLFieldDefinition recordField : recordType.getFieldDefinitions()) {
+            Attribute<?, ?> attribute = ActivitiGraphQLWhereCriteria.basicAttribute(entityType, recordField.getName());
+            GraphQLType type = ActivitiGraphQLQueryCostAnalyzer.unwrapNonNull(recordField.getType());
+
+            if (attribute == null || !(type instanceof GraphQLScalarType || type instanceof GraphQLEnumType)) {
+                continue;
+            }
+
+            groupAttributes.add(attribute.getName());
+
+            if (isDate(attribute.getJavaType())) {
+                dateFields.add(GraphQLFieldDefinition.newFieldDefinition()
+                                                     .name(attribute.getName())
+                                                     .type((GraphQLOutputType) type)
+                                                     .build());
+            }
+        }
+
+        GraphQLObjectType.Builder aggregateType = GraphQLObjectType.newObject()
+                .name(recordType.getName() + FIELD_SUFFIX)
+                .description("Aggregates of " + recordType.getName() + " records")
+                .field(GraphQLFieldDefinition.newFieldDefinition()
+                                             .name(COUNT_FIELD)
+                                             .description("Number of records")
+                                             .type(Scalars.GraphQLLong));
+
+        if (!groupAttributes.isEmpty()) {
+            GraphQLEnumType.Builder attributeType = GraphQLEnumType.newEnum()
+                                                                   .name(recordType.getName() + ATTRIBUTE_TYPE_SUFFIX)
+                                                                   .description("Attributes of " + recordType.getName() + " records to group by");
+
+            GraphQLObjectType.Builder groupType = GraphQLObjectType.newObject()
+                    .name(recordType.getName() + GROUP_TYPE_SUFFIX)
+                    .description("Number of " + recordType.getName() + " records with the same grouped attribute values")
+                    .field(GraphQLFieldDefinition.newFieldDefinition()
+                                                 .name(COUNT_FIELD)
+                                                 .type(Scalars.GraphQLLong));
+
+            for (String attribute : groupAttributes) {
+                attributeType.value(attribute);
+                groupType.field(GraphQLFieldDefinition.newFieldDefinition()
+                                                      .name(attribute)
+                                                      .type((GraphQLOutputType) ActivitiGraphQLQueryCostAnalyzer.unwrapNonNull(recordType.getFieldDefinition(attribute)
+                                                                                                                                         .getType())));
+            }
+
+            aggregateType.field(GraphQLFieldDefinition.newFieldDefinition()
+                                                      .name(COUNT_BY_FIELD)
+                                                      .description("Numbers of records grouped by attributes, ordered by descending number")
+                                                      .type(new GraphQLList(groupType.build()))
+                                                      .argument(GraphQLArgument.newArgument()
+                                                                               .name(BY_ARGUMENT)
+                                                                               .type(new GraphQLNonNull(new GraphQLList(new GraphQLNonNull(attributeType.build())))))
+                                                      .argument(GraphQLArgument.newArgument()
+                                                                               .name(LIMIT_ARGUMENT)
+                                                                               .description("Number of groups to select, at most " + maxCountByLimit)
+                                                                               .type(Scalars.GraphQLInt)
+                                                                               .defaultValue(defaultCountByLimit))
+                                                      .dataFetcher(environment -> countBy(entityType, environment)));
+        }
+
+        if (!dateFields.isEmpty()) {
+            GraphQLObjectType datesType = GraphQLObjectType.newObject()
+                                                           .name(recordType.getName() + DATES_TYPE_SUFFIX)
+                                                           .fields(dateFields)
+                                                           .build();
+
+            aggregateType.field(GraphQLFieldDefinition.newFieldDefinition()
+                                                      .name(MIN_FIELD)
+                                                      .description("Earliest dates of records")
+                                                      .type(datesType))
+                         .field(GraphQLFieldDefinition.newFieldDefinition()
+                                                      .name(MAX_FIELD)
+                                                      .description("Latest dates of records")
+                                                      .type(datesType));
+        }
+
+        aggregateTypes.put(recordType.getName() + FIELD_SUFFIX, recordType.getName());
+
+        GraphQLFieldDefinition.Builder aggregateField = GraphQLFieldDefinition.newFieldDefinition()
+                                                                              .name(fieldDefinition.getName() + FIELD_SUFFIX)
+                                                                              .description("Aggregates of " + recordType.getName() + " records")
+                                                                              .type(aggregateType.build())
+                                                                              .dataFetcher(environment -> aggregate(entityType, environment));
+
+        GraphQLArgument where = fieldDefinition.getArgument(WHERE_ARGUMENT);
+
+        if (where != null) {
+            aggregateField.argument(GraphQLArgument.newArgument()
+                                                   .name(WHERE_ARGUMENT)
+                                                   .description(where.getDescription())
+                                                   .type((GraphQLInputType) where.getType()));
+        }
+
+        return aggregateField.build();
+    }
+
+    /**
+     * Computes count and selected min and max dates with one query
+     */
+    protected Aggregate aggregate(EntityType<?> entityType, DataFetchingEnvironment environment) {
+        Map<String, Object> where = environment.getArgument(WHERE_ARGUMENT);
+        Map<String, FragmentDefinition> fragments = environment.getFragmentsByName();
+
+        List<String> min = new ArrayList<>();
+        List<String> max = new ArrayList<>();
+        boolean count = false;
+
+        for (Field field : GraphQLSelections.fields(environment.getField().getSelectionSet(), fragments)) {
+            if (COUNT_FIELD.equals(field.getName())) {
+                count = true;
+            } else if (MIN_FIELD.equals(field.getName()) || MAX_FIELD.equals(field.getName())) {
+                List<String> attributes = MIN_FIELD.equals(field.getName()) ? min : max;
+
+                GraphQLSelections.fields(field.getSelectionSet(), fragments)
+                                 .stream()
+                                 .map(Field::getName)
+                                 .filter(name -> ActivitiGraphQLWhereCriteria.basicAttribute(entityType, name) != null && !attributes.contains(name))
+                                 .forEach(attributes::add);
+            }
+        }
+
+        Aggregate aggregate = new Aggregate(where);
+
+        if (!count && min.isEmpty() && max.isEmpty()) {
+            return aggregate;
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<?> root = query.from(entityType);
+
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(cb.count(root));
+        min.forEach(attribute -> selections.add(cb.least(root.<Comparable<Object>>get(attribute))));
+        max.forEach(attribute -> selections.add(cb.greatest(root.<Comparable<Object>>get(attribute))));
+
+        query.multiselect(selections);
+
+        if (where != null) {
+            query.where(whereCriteria.toPredicate(cb, root, entityType, where));
+        }
+
+        Tuple tuple = entityManager.createQuery(query).getSingleResult();
+
+        aggregate.count = tuple.get(0, Long.class);
+
+        for (int i = 0; i < min.size(); i++) {
+            aggregate.min.put(min.get(i), tuple.get(1 + i));
+        }
+
+        for (int i = 0; i < max.size(); i++) {
+            aggregate.max.put(max.get(i), tuple.get(1 + min.size() + i));
+        }
+
+        return aggregate;
+    }
+
+    /**
+     * Counts records grouped by attributes with one 'group by' query
+     */
+    protected List<Map<String, Object>> countBy(EntityType<?> entityType, DataFetchingEnvironment environment) {
+        Aggregate aggregate = environment.getSource();
+        List<String> by = environment.<List<Object>>getArgument(BY_ARGUMENT)
+                                     .stream()
+                                     .map(String::valueOf)
+                                     .distinct()
+                                     .collect(Collectors.toList());
+        Integer argument = environment.getArgument(LIMIT_ARGUMENT);
+        int limit = argument != null ? argument : defaultCountByLimit;
+
+        if (limit < 1 || limit > maxCountByLimit) {
+            throw new IllegalArgumentException("Argument 'limit' must be between 1 and " + maxCountByLimit);
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<?> root = query.from(entityType);
+
+        List<Selection<?>> selections = new ArrayList<>();
+        List<Expression<?>> groupBy = new ArrayList<>();
+
+        for (String attribute : by) {
+            Path<Object> path = root.get(attribute);
+
+            selections.add(path);
+            groupBy.add(path);
+        }
+
+        selections.add(cb.count(root));
+
+        query.multiselect(selections)
+             .groupBy(groupBy)
+             .orderBy(cb.desc(cb.count(root)));
+
+        if (aggregate.where != null) {
+            query.where(whereCriteria.toPredicate(cb, root, entityType, aggregate.where));
+        }
+
+        List<Map<String, Object>> groups = new ArrayList<>();
+
+        for (Tuple tuple : entityManager.createQuery(query)
+                                        .setMaxResults(limit)
+                                        .getResultList()) {
+            Map<String, Object> group = new LinkedHashMap<>();
+
+            for (int i = 0; i < by.size(); i++) {
+                group.put(by.get(i), tuple.get(i));
+            }
+
+            group.put(COUNT_FIELD, tuple.get(by.size()));
+            groups.add(group);
+        }
+
+        return groups;
+    }
+
+    private static boolean isDate(Class<?> javaType) {
+        return Date.class.isAssignableFrom(javaType)
+                || Calendar.class.isAssignableFrom(javaType)
+                || Temporal.class.isAssignableFrom(javaType);
+    }
+
+    /**
+     * Source of aggregate fields, keeps the 'where' argument value for countBy selections
+     */
+    public static class Aggregate {
+
+        private final Map<String, Object> where;
+
+        private Long count;
+
+        private final Map<String, Object> min = new LinkedHashMap<>();
+        private final Map<String, Object> max = new LinkedHashMap<>();
+
+        Aggregate(Map<String, Object> where) {
+            this.where = where;
+        }
+
+        public Long getCount() {
+            return count;
+        }
+
+        public Map<String, Object> getMin() {
+            return min;
+        }
+
+        public Map<String, Object> getMax() {
+            return max;
+        }
+    }
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.util.Assert;
+
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.SelectionSet;
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLObjectType;
+
+/**
+ * Batches lazy association fetches of JPA query results, so that nested selections such as
+ * ProcessInstances { select { tasks { variables } } } issue one query per selected association path
+ * instead of one query per parent entity.
+ *
+ * After a root query field has been fetched, the field selection set is walked level by level and
+ * for every selected association not yet initialized on the fetched entities the parents are re-loaded
+ * in chunks with 'select distinct e from Entity e left join fetch e.association where e.id in :ids'.
+ * Loaded associations are initialized in place in the request persistence context, which acts as the
+ * per-request cache, so the association data fetchers then resolve them without further queries.
+ *
+ * Association fields with arguments are left to their data fetchers.
+ */
+public class ActivitiGraphQLAssociationBatchingInstrumentation extends SimpleInstrumentation {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLAssociationBatchingInstrumentation.class);
+
+    private static final String BATCH_QUERY = "select distinct e from %s e left join fetch e.%s where e.%s in :ids";
+
+    private final EntityManager entityManager;
+
+    private int batchSize = 500;
+
+    private final AtomicLong batchQueryCount = new AtomicLong();
+
+    public ActivitiGraphQLAssociationBatchingInstrumentation(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Sets maximum number of parent ids per batch query, i.e. to stay within database IN list limits
+     */
+    public ActivitiGraphQLAssociationBatchingInstrumentation batchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be greater than 0");
+        this.batchSize = batchSize;
+
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getBatchQueryCount() {
+        return batchQueryCount.get();
+    }
+
+    @Override
+    public DataFetcher<?> instrumentDataFetcher(DataFetcher<?> dataFetcher, InstrumentationFieldFetchParameters parameters) {
+        DataFetchingEnvironment environment = parameters.getEnvironment();
+
+        GraphQLObjectType queryType = environment.getGraphQLSchema().getQueryType();
+
+        if (queryType == null || environment.getParentType() == null
+                || !queryType.getName().equals(environment.getParentType().getName())) {
+            return dataFetcher;
+        }
+
+        return env -> {
+            Object result = dataFetcher.get(env);
+
+            try {
+                batchLoad(result, env.getField(), env.getFragmentsByName());
+            } catch (PersistenceException | IllegalArgumentException | IllegalStateException e) {
+                // Associations not batched are still loaded lazily by their data fetchers
+                log.debug("Unable to batch association fetches for field '{}': {}", env.getField().getName(), e.getMessage());
+            }
+
+            return result;
+        };
+    }
+
+    /**
+     * Batch loads associations selected by root query field. Paged query results are maps of selection
+     * names, i.e. 'select', to fetched entities.
+     */
+    protected void batchLoad(Object result, Field field, Map<String, FragmentDefinition> fragments) {
+        if (result instanceof Map) {
+            Map<?, ?> page = (Map<?, ?>) result;
+
+            for (Field selection : GraphQLSelections.fields(field.getSelectionSet(), fragments)) {
+                Object value = page.get(selection.getName());
+
+                if (value != null) {
+                    loadLevel(values(value), selection.getSelectionSet(), fragments);
+                }
+            }
+        } else if (result != null) {
+            loadLevel(values(result), field.getSelectionSet(), fragments);
+        }
+    }
+
+    protected void loadLevel(Collection<Object> parents, SelectionSet selectionSet, Map<String, FragmentDefinition> fragments) {
+        if (parents.isEmpty() || selectionSet == null) {
+            return;
+        }
+
+        Map<EntityType<?>, List<Object>> parentsByType = new LinkedHashMap<>();
+
+        for (Object parent : parents) {
+            EntityType<?> entityType = entityType(parent);
+
+            if (entityType != null && entityManager.contains(parent)) {
+                parentsByType.computeIfAbsent(entityType, type -> new ArrayList<>()).add(parent);
+            }
+        }
+
+        for (Map.Entry<EntityType<?>, List<Object>> entry : parentsByType.entrySet()) {
+            EntityType<?> entityType = entry.getKey();
+
+            for (Field selection : GraphQLSelections.fields(selectionSet, fragments)) {
+                Attribute<?, ?> attribute = association(entityType, selection);
+
+                if (attribute == null) {
+                    continue;
+                }
+
+                load(entityType, attribute, entry.getValue());
+
+                Set<Object> children = identitySet();
+
+                for (Object parent : entry.getValue()) {
+                    Object value = PropertyAccessorFactory.forBeanPropertyAccess(parent)
+                                                          .getPropertyValue(attribute.getName());
+                    if (value != null) {
+                        children.addAll(values(value));
+                    }
+                }
+
+                loadLevel(children, selection.getSelectionSet(), fragments);
+            }
+        }
+    }
+
+    protected void load(EntityType<?> entityType, Attribute<?, ?> attribute, List<Object> parents) {
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+
+        List<Object> ids = new ArrayList<>();
+
+        for (Object parent : parents) {
+            if (!persistenceUnitUtil.isLoaded(parent, attribute.getName())) {
+                ids.add(persistenceUnitUtil.getIdentifier(parent));
+            }
+        }
+
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        String idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        String query = String.format(BATCH_QUERY, entityType.getName(), attribute.getName(), idName);
+
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            entityManager.createQuery(query)
+                         .setParameter("ids", ids.subList(i, Math.min(i + batchSize, ids.size())))
+                         .getResultList();
+
+            batchQueryCount.incrementAndGet();
+        }
+
+        log.trace("Batch loaded {}.{} for {} parents", entityType.getName(), attribute.getName(), ids.size());
+    }
+
+    protected EntityType<?> entityType(Object value) {
+        try {
+            return entityManager.getMetamodel().entity(Hibernate.getClass(value));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    protected Attribute<?, ?> association(EntityType<?> entityType, Field selection) {
+        if (selection.getSelectionSet() == null || !selection.getArguments().isEmpty()) {
+            return null;
+        }
+
+        try {
+            Attribute<?, ?> attribute = entityType.getAttribute(selection.getName());
+
+            return attribute.isAssociation() ? attribute : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Collection<Object> values(Object value) {
+        Set<Object> values = identitySet();
+
+        if (value instanceof Collection) {
+            values.addAll((Collection<?>) value);
+        } else if (value instanceof Map) {
+            values.addAll(((Map<?, ?>) value).values());
+        } else {
+            values.add(value);
+        }
+
+        values.remove(null);
+
+        return values;
+    }
+
+    private static Set<Object> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import graphql.language.Argument;
+import graphql.language.AstPrinter;
+import graphql.language.Definition;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.IntValue;
+import graphql.language.ObjectField;
+import graphql.language.ObjectValue;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+
+/**
+ * Rewrites query texts to add a default page argument, i.e. page: {start: 1, limit: 100}, to paged root query
+ * fields selected without one, so that unpaged queries cannot pull whole tables.
+ *
+ * Rewritten query texts and the response keys of the paginated fields are kept in a bounded LRU cache keyed by
+ * the original query text, so that the executor can report truncated fields in the 'cost' response extension, i.e.
+ *
+ * "extensions": {"cost": {"estimated": 1210, ..., "paginated": ["Tasks"]}}
+ *
+ * Queries which cannot be parsed are returned unchanged and are reported by execution.
+ */
+public class ActivitiGraphQLAutoPaginator {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLAutoPaginator.class);
+
+    public static final String PAGE_START = "start";
+
+    public static final String PAGINATED = "paginated";
+
+    private final GraphQLSchema graphQLSchema;
+
+    private final Map<String, PaginatedQuery> queries;
+
+    private int defaultPageLimit = 100;
+
+    /**
+     * @param graphQLSchema schema used to find paged query fields
+     * @param maxEntries maximum number of cached query texts
+     */
+    @SuppressWarnings("serial")
+    public ActivitiGraphQLAutoPaginator(GraphQLSchema graphQLSchema, int maxEntries) {
+        Assert.isTrue(maxEntries > 0, "maxEntries must be greater than 0");
+
+        this.graphQLSchema = graphQLSchema;
+        this.queries = new LinkedHashMap<String, PaginatedQuery>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PaginatedQuery> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Adds default page argument to paged root query fields without page argument
+     *
+     * @param query query text
+     * @return paginated query text or the original query if it does not select unpaged query fields
+     */
+    public String paginate(String query) {
+        if (query == null) {
+            return null;
+        }
+
+        return paginatedQuery(query).query;
+    }
+
+    /**
+     * @param query original query text
+     * @return response keys of root query fields which have been given the default page argument
+     */
+    public List<String> getPaginatedFields(String query) {
+        if (query == null) {
+            return Collections.emptyList();
+        }
+
+        return paginatedQuery(query).fields;
+    }
+
+    public ActivitiGraphQLAutoPaginator defaultPageLimit(int defaultPageLimit) {
+        Assert.isTrue(defaultPageLimit > 0, "defaultPageLimit must be greater than 0");
+        this.defaultPageLimit = defaultPageLimit;
+
+        return this;
+    }
+
+    public int getDefaultPageLimit() {
+        return defaultPageLimit;
+    }
+
+    protected PaginatedQuery paginatedQuery(String query) {
+        synchronized (queries) {
+            PaginatedQuery paginated = queries.get(query);
+
+            if (paginated != null) {
+                return paginated;
+            }
+        }
+
+        PaginatedQuery paginated = rewrite(query);
+
+        synchronized (queries) {
+            queries.put(query, paginated);
+        }
+
+        return paginated;
+    }
+
+    public int getSize() {
+        synchronized (queries) {
+            return queries.size();
+        }
+    }
+
+    protected PaginatedQuery rewrite(String query) {
+        Document document;
+
+        try {
+            document = new Parser().parseDocument(query);
+        } catch (RuntimeException e) {
+            return new PaginatedQuery(query, Collections.emptyList());
+        }
+
+        List<String> fields = new ArrayList<>();
+
+        for (Definition definition : document.getDefinitions()) {
+            if (definition instanceof OperationDefinition) {
+                fields.addAll(paginate((OperationDefinition) definition));
+            }
+        }
+
+        if (fields.isEmpty()) {
+            return new PaginatedQuery(query, Collections.emptyList());
+        }
+
+        String paginated = AstPrinter.printAst(document);
+
+        log.debug("Added default page limit {} to query: {}", defaultPageLimit, paginated);
+
+        return new PaginatedQuery(paginated, Collections.unmodifiableList(fields));
+    }
+
+    /**
+     * @return response keys of paginated fields
+     */
+    protected List<String> paginate(OperationDefinition operation) {
+        GraphQLObjectType rootType = ActivitiGraphQLQueryCostAnalyzer.rootType(graphQLSchema, operation);
+
+        if (rootType == null || operation.getOperation() != OperationDefinition.Operation.QUERY) {
+            return Collections.emptyList();
+        }
+
+        List<String> fields = new ArrayList<>();
+
+        for (Selection selection : operation.getSelectionSet().getSelections()) {
+            if (!(selection instanceof Field)) {
+                continue;
+            }
+
+            Field field = (Field) selection;
+            GraphQLFieldDefinition fieldDefinition = rootType.getFieldDefinition(field.getName());
+
+            if (fieldDefinition != null
+                    && fieldDefinition.getArgument(ActivitiGraphQLQueryCostAnalyzer.PAGE_ARGUMENT) != null
+                    && field.getArguments()
+                            .stream()
+                            .noneMatch(argument -> ActivitiGraphQLQueryCostAnalyzer.PAGE_ARGUMENT.equals(argument.getName()))) {
+                field.getArguments().add(pageArgument());
+                fields.add(field.getAlias() != null ? field.getAlias() : field.getName());
+            }
+        }
+
+        return fields;
+    }
+
+    protected Argument pageArgument() {
+        ObjectValue page = new ObjectValue(Arrays.asList(new ObjectField(PAGE_START, new IntValue(BigInteger.ONE)),
+                                                         new ObjectField(ActivitiGraphQLQueryCostAnalyzer.PAGE_LIMIT,
+                                                                         new IntValue(BigInteger.valueOf(defaultPageLimit)))));
+
+        return new Argument(ActivitiGraphQLQueryCostAnalyzer.PAGE_ARGUMENT, page);
+    }
+
+    protected static class PaginatedQuery {
+
+        private final String query;
+
+        private final List<String> fields;
+
+        PaginatedQuery(String query, List<String> fields) {
+            this.query = query;
+            this.fields = fields;
+        }
+    }
+
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import graphql.Scalars;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLInputType;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLModifiedType;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+
+/**
+ * Adds keyset (cursor) paginated variants of paged entity query fields to the GraphQL JPA schema, i.e.
+ *
+ * TasksCursor(first: 100, after: "VGFzazoxMA", where: {status: {EQ: ASSIGNED}}) { select { id name } endCursor hasNextPage }
+ *
+ * Records are ordered by entity id and each page is selected with 'where e.id > :after order by e.id', so that
+ * the page cost depends on the page size only and not on how deep the client has paged, unlike offset pages
+ * which make the database scan and discard all skipped rows. Cursors are opaque, URL safe Base64 encoded
+ * entity names and ids of the last selected records.
+ *
+ * If the selected record fields are all basic entity attributes, i.e. TasksCursor{select{id assignee}}, only the selected
+ * columns are queried into tuples, so that wide rows are neither fetched nor hydrated into entities. Selections of
+ * associations or computed fields query entities.
+ *
+ * Cursor fields take the 'where' argument of their paged query field with the same grammar, see
+ * {@link ActivitiGraphQLWhereCriteria}, which is combined with the keyset predicate, so that filtered lists,
+ * i.e. tasks by status or assignee, are paged as deep as unfiltered ones.
+ */
+public class ActivitiGraphQLCursorPagination {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLCursorPagination.class);
+
+    public static final String FIELD_SUFFIX = "Cursor";
+    public static final String TYPE_SUFFIX = "CursorPage";
+
+    public static final String FIRST_ARGUMENT = "first";
+    public static final String AFTER_ARGUMENT = "after";
+    public static final String WHERE_ARGUMENT = ActivitiGraphQLAggregates.WHERE_ARGUMENT;
+
+    public static final String SELECT_FIELD = GraphQLSelections.SELECT_FIELD;
+    public static final String END_CURSOR_FIELD = "endCursor";
+    public static final String HAS_NEXT_PAGE_FIELD = "hasNextPage";
+
+    private static final String CURSOR_SEPARATOR = ":";
+
+    private final EntityManager entityManager;
+
+    private final ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    private final ActivitiGraphQLWhereCriteria whereCriteria = new ActivitiGraphQLWhereCriteria();
+
+    private int defaultPageSize = 100;
+
+    private int maxPageSize = 1000;
+
+    public ActivitiGraphQLCursorPagination(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Adds cursor query fields for paged query fields of the schema query type selecting JPA entities
+     *
+     * @param graphQLSchema GraphQL JPA schema
+     * @return schema with cursor query fields or the original schema if it has no paged entity query fields
+     */
+    public GraphQLSchema apply(GraphQLSchema graphQLSchema) {
+        GraphQLObjectType queryType = graphQLSchema.getQueryType();
+
+        List<GraphQLFieldDefinition> cursorFields = new ArrayList<>();
+
+        for (GraphQLFieldDefinition fieldDefinition : queryType.getFieldDefinitions()) {
+            GraphQLObjectType recordType = recordType(fieldDefinition);
+
+            if (recordType == null || queryType.getFieldDefinition(fieldDefinition.getName() + FIELD_SUFFIX) != null) {
+                continue;
+            }
+
+            EntityType<?> entityType = GraphQLSelections.entityType(entityManager.getMetamodel(), recordType.getName());
+            SingularAttribute<?, ?> idAttribute = entityType != null ? idAttribute(entityType) : null;
+
+            if (idAttribute != null) {
+                cursorFields.add(cursorField(fieldDefinition, recordType, entityType, idAttribute));
+            }
+        }
+
+        if (cursorFields.isEmpty()) {
+            return graphQLSchema;
+        }
+
+        GraphQLObjectType cursorQueryType = GraphQLObjectType.newObject()
+                                                             .name(queryType.getName())
+                                                             .description(queryType.getDescription())
+                                                             .fields(queryType.getFieldDefinitions())
+                                                             .fields(cursorFields)
+                                                             .build();
+
+        log.debug("Added cursor query fields: {}", cursorFields.stream().map(GraphQLFieldDefinition::getName).toArray());
+
+        return GraphQLSchema.newSchema(graphQLSchema)
+                            .query(cursorQueryType)
+                            .build();
+    }
+
+    public ActivitiGraphQLCursorPagination defaultPageSize(int defaultPageSize) {
+        Assert.isTrue(defaultPageSize > 0, "defaultPageSize must be greater than 0");
+        this.defaultPageSize = defaultPageSize;
+
+        return this;
+    }
+
+    public ActivitiGraphQLCursorPagination maxPageSize(int maxPageSize) {
+        Assert.isTrue(maxPageSize > 0, "maxPageSize must be greater than 0");
+        this.maxPageSize = maxPageSize;
+
+        return this;
+    }
+
+    public int getDefaultPageSize() {
+        return defaultPageSize;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    protected GraphQLFieldDefinition cursorField(GraphQLFieldDefinition fieldDefinition,
+                                                 GraphQLObjectType recordType,
+                                                 EntityType<?> entityType,
+                                                 SingularAttribute<?, ?> idAttribute) {
+        GraphQLObjectType pageType = GraphQLObjectType.newObject()
+                .name(recordType.getName() + TYPE_SUFFIX)
+                .description("Keyset paginated page of " + recordType.getName() + " records ordered by " + idAttribute.getName())
+                .field(GraphQLFieldDefinition.newFieldDefinition()
+                                             .name(SELECT_FIELD)
+                                             .type(new GraphQLList(recordType)))
+                .field(GraphQLFieldDefinition.newFieldDefinition()
+                                             .name(END_CURSOR_FIELD)
+                                             .description("Cursor of the last selected record, pass as 'after' argument to select the next page")
+                                             .type(Scalars.GraphQLString))
+                .field(GraphQLFieldDefinition.newFieldDefinition()
+                                             .name(HAS_NEXT_PAGE_FIELD)
+                                             .type(Scalars.GraphQLBoolean))
+                .build();
+
+        GraphQLFieldDefinition.Builder cursorField = GraphQLFieldDefinition.newFieldDefinition()
+                                                                           .name(fieldDefinition.getName() + FIELD_SUFFIX)
+                                                                           .description("Keyset paginated " + recordType.getName() + " records")
+                                                                           .type(pageType)
+                                                                           .argument(GraphQLArgument.newArgument()
+                                                                                                    .name(FIRST_ARGUMENT)
+                                                                                                    .description("Number of records to select, at most " + maxPageSize)
+                                                                                                    .type(Scalars.GraphQLInt)
+                                                                                                    .defaultValue(defaultPageSize))
+                                                                           .argument(GraphQLArgument.newArgument()
+                                                                                                    .name(AFTER_ARGUMENT)
+                                                                                                    .description("Cursor of the last record of the previous page")
+                                                                                                    .type(Scalars.GraphQLString))
+                                                                           .dataFetcher(environment -> fetch(entityType, idAttribute, environment));
+
+        GraphQLArgument where = fieldDefinition.getArgument(WHERE_ARGUMENT);
+
+        if (where != null) {
+            cursorField.argument(GraphQLArgument.newArgument()
+                                                .name(WHERE_ARGUMENT)
+                                                .description(where.getDescription())
+                                                .type((GraphQLInputType) where.getType()));
+        }
+
+        return cursorField.build();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected Map<String, Object> fetch(EntityType<?> entityType,
+                                        SingularAttribute<?, ?> idAttribute,
+                                        DataFetchingEnvironment environment) {
+        Integer first = environment.getArgument(FIRST_ARGUMENT);
+        String after = environment.getArgument(AFTER_ARGUMENT);
+        Map<String, Object> where = environment.getArgument(WHERE_ARGUMENT);
+
+        int pageSize = first != null ? first : defaultPageSize;
+
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new IllegalArgumentException("Argument 'first' must be between 1 and " + maxPageSize);
+        }
+
+        List<String> projection = GraphQLSelections.projection(entityType,
+                                                               idAttribute,
+                                                               environment.getField(),
+                                                               environment.getFragmentsByName());
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = (CriteriaQuery) (projection == null ? cb.createQuery(entityType.getJavaType())
+                                                                          : cb.createTupleQuery());
+        Root<?> root = query.from(entityType);
+        Path<Comparable<Object>> id = root.get(idAttribute.getName());
+
+        if (projection == null) {
+            query.select(root);
+        } else {
+            query.multiselect(projection.stream()
+                                        .<Selection<?>>map(attribute -> root.get(attribute))
+                                        .collect(Collectors.toList()));
+        }
+
+        List<Predicate> predicates = new ArrayList<>();
+
+        if (after != null) {
+            predicates.add(cb.greaterThan(id, (Comparable<Object>) decodeCursor(entityType, idAttribute, after)));
+        }
+
+        if (where != null) {
+            predicates.add(whereCriteria.toPredicate(cb, root, entityType, where));
+        }
+
+        query.where(predicates.toArray(new Predicate[0]))
+             .orderBy(cb.asc(id));
+
+        // Selects one extra record to find out whether there is a next page
+        List<?> records = entityManager.createQuery(query)
+                                       .setMaxResults(pageSize + 1)
+                                       .getResultList();
+
+        List<Object> select = new ArrayList<>();
+        Object lastId = null;
+
+        for (Object record : records.subList(0, Math.min(pageSize, records.size()))) {
+            if (projection == null) {
+                select.add(record);
+                lastId = entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(record);
+            } else {
+                Map<String, Object> values = new LinkedHashMap<>();
+
+                for (int i = 0; i < projection.size(); i++) {
+                    values.put(projection.get(i), ((Tuple) record).get(i));
+                }
+
+                select.add(values);
+                lastId = values.get(idAttribute.getName());
+            }
+        }
+
+        String endCursor = select.isEmpty() ? after : encodeCursor(entityType, lastId);
+
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put(SELECT_FIELD, select);
+        page.put(END_CURSOR_FIELD, endCursor);
+        page.put(HAS_NEXT_PAGE_FIELD, records.size() > pageSize);
+
+        return page;
+    }
+
+    protected String encodeCursor(EntityType<?> entityType, Object id) {
+        String cursor = entityType.getName() + CURSOR_SEPARATOR + conversionService.convert(id, String.class);
+
+        return Base64.getUrlEncoder()
+                     .withoutPadding()
+                     .encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected Object decodeCursor(EntityType<?> entityType, SingularAttribute<?, ?> idAttribute, String cursor) {
+        String prefix = entityType.getName() + CURSOR_SEPARATOR;
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+
+            if (decoded.startsWith(prefix)) {
+                return conversionService.convert(decoded.substring(prefix.length()), idAttribute.getJavaType());
+            }
+        } catch (RuntimeException e) {
+            log.debug("Unable to decode cursor '{}': {}", cursor, e.getMessage());
+        }
+
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+    /**
+     * Finds record type of paged query fields, i.e. Task of Tasks(page: ...){select{...}}
+     */
+    static GraphQLObjectType recordType(GraphQLFieldDefinition fieldDefinition) {
+        GraphQLType type = ActivitiGraphQLQueryCostAnalyzer.unwrapNonNull(fieldDefinition.getType());
+
+        if (fieldDefinition.getArgument(ActivitiGraphQLQueryCostAnalyzer.PAGE_ARGUMENT) == null
+                || !(type instanceof GraphQLObjectType)) {
+            return null;
+        }
+
+        GraphQLFieldDefinition select = ((GraphQLObjectType) type).getFieldDefinition(SELECT_FIELD);
+
+        if (select == null) {
+            return null;
+        }
+
+        GraphQLType recordType = select.getType();
+
+        while (recordType instanceof GraphQLModifiedType) {
+            recordType = ((GraphQLModifiedType) recordType).getWrappedType();
+        }
+
+        return recordType instanceof GraphQLObjectType ? (GraphQLObjectType) recordType : null;
+    }
+
+    /**
+     * Returns single comparable id attribute, entities with composite ids are not cursor paginated
+     */
+    protected SingularAttribute<?, ?> idAttribute(EntityType<?> entityType) {
+        try {
+            if (!entityType.hasSingleIdAttribute()) {
+                return null;
+            }
+
+            SingularAttribute<?, ?> idAttribute = entityType.getId(entityType.getIdType().getJavaType());
+
+            return Comparable.class.isAssignableFrom(ClassUtils.resolvePrimitiveIfNecessary(idAttribute.getJavaType()))
+                    ? idAttribute : null;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+}
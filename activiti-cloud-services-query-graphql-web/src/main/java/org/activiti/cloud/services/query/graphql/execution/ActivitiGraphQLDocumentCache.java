@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.util.Assert;
+
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+
+/**
+ * Bounded LRU cache of parsed and validated GraphQL query documents keyed by query text.
+ *
+ * The cache is bounded both by the number of entries and by the total length of cached query texts,
+ * so that a few very large queries cannot pin unbounded memory. Validation errors are cached together
+ * with the document, so invalid queries are not re-validated either.
+ */
+public class ActivitiGraphQLDocumentCache implements PreparsedDocumentProvider {
+
+    private final Map<String, PreparsedDocumentEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final int maxEntries;
+
+    private final long maxWeight;
+
+    private long weight;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param maxEntries maximum number of cached documents
+     * @param maxWeight maximum total length of cached query texts
+     */
+    public ActivitiGraphQLDocumentCache(int maxEntries, long maxWeight) {
+        Assert.isTrue(maxEntries > 0, "maxEntries must be greater than 0");
+        Assert.isTrue(maxWeight > 0, "maxWeight must be greater than 0");
+
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    @Override
+    public PreparsedDocumentEntry get(String query, Function<String, PreparsedDocumentEntry> computeFunction) {
+        synchronized (entries) {
+            PreparsedDocumentEntry entry = entries.get(query);
+
+            if (entry != null) {
+                hitCount.incrementAndGet();
+                return entry;
+            }
+        }
+
+        missCount.incrementAndGet();
+
+        // Parse and validate outside of the lock, concurrent misses of the same query may compute it twice
+        PreparsedDocumentEntry entry = computeFunction.apply(query);
+
+        if (query.length() <= maxWeight) {
+            put(query, entry);
+        }
+
+        return entry;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    private void put(String query, PreparsedDocumentEntry entry) {
+        synchronized (entries) {
+            if (entries.put(query, entry) == null) {
+                weight += query.length();
+            }
+
+            Iterator<Map.Entry<String, PreparsedDocumentEntry>> eldest = entries.entrySet().iterator();
+
+            while ((entries.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+                String evicted = eldest.next().getKey();
+
+                eldest.remove();
+                weight -= evicted.length();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.introproventures.graphql.jpa.query.schema.impl.GraphQLJpaExecutor;
+
+import graphql.ExecutionInput;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQL;
+import graphql.GraphQLError;
+import graphql.execution.AsyncExecutionStrategy;
+import graphql.execution.ExecutionStrategy;
+import graphql.execution.defer.DeferredExecutionResult;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.execution.instrumentation.Instrumentation;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.preparsed.NoOpPreparsedDocumentProvider;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import graphql.schema.GraphQLSchema;
+
+/**
+ * GraphQLJpaExecutor with configurable GraphQL execution components, i.e. cache of parsed and validated documents,
+ * query cost and association batching instrumentations, query execution strategy, default pagination of unpaged queries
+ * and cache of query results.
+ *
+ * Fields marked with @defer directive, if the schema declares it, are merged into the data of results returned by
+ * {@link #execute(String, Map)}, and are delivered separately from results returned by {@link #executeIncremental(String, Map)}.
+ */
+public class ActivitiGraphQLExecutor extends GraphQLJpaExecutor {
+
+    private final GraphQLSchema graphQLSchema;
+
+    private PreparsedDocumentProvider preparsedDocumentProvider = NoOpPreparsedDocumentProvider.INSTANCE;
+
+    private final List<Instrumentation> instrumentations = new ArrayList<>();
+
+    private ExecutionStrategy queryExecutionStrategy = new AsyncExecutionStrategy();
+
+    private ActivitiGraphQLAutoPaginator autoPaginator;
+
+    private ActivitiGraphQLResultCache resultCache;
+
+    private GraphQL graphQL;
+
+    /**
+     * Creates instance using GraphQLSchema parameter.
+     *
+     * @param graphQLSchema instance
+     */
+    public ActivitiGraphQLExecutor(GraphQLSchema graphQLSchema) {
+        super(graphQLSchema);
+
+        this.graphQLSchema = graphQLSchema;
+        this.graphQL = buildGraphQL();
+    }
+
+    @Override
+    public ExecutionResult execute(String query) {
+        if (resultCache != null) {
+            return resultCache.get(graphQLSchema, query, null, () -> executeQuery(query));
+        }
+
+        return executeQuery(query);
+    }
+
+    @Override
+    public ExecutionResult execute(String query, Map<String, Object> arguments) {
+        if (arguments == null) {
+            return execute(query);
+        }
+
+        if (resultCache != null) {
+            return resultCache.get(graphQLSchema, query, arguments, () -> executeQuery(query, arguments));
+        }
+
+        return executeQuery(query, arguments);
+    }
+
+    /**
+     * Executes query bypassing result cache, leaving results of deferred fields to be consumed with
+     * {@link #forEachDeferredResult(ExecutionResult, Consumer)} in the same transaction
+     *
+     * @param query query text
+     * @param arguments query variables, may be null
+     * @return initial execution result
+     */
+    public ExecutionResult executeIncremental(String query, Map<String, Object> arguments) {
+        return reportPaginated(query, graphQL.execute(executionInput(query, arguments)));
+    }
+
+    public ActivitiGraphQLExecutor preparsedDocumentProvider(PreparsedDocumentProvider preparsedDocumentProvider) {
+        this.preparsedDocumentProvider = preparsedDocumentProvider;
+        this.graphQL = buildGraphQL();
+
+        return this;
+    }
+
+    /**
+     * Adds instrumentation, chained after previously added instrumentations
+     */
+    public ActivitiGraphQLExecutor instrumentation(Instrumentation instrumentation) {
+        this.instrumentations.add(instrumentation);
+        this.graphQL = buildGraphQL();
+
+        return this;
+    }
+
+    public ActivitiGraphQLExecutor queryExecutionStrategy(ExecutionStrategy queryExecutionStrategy) {
+        this.queryExecutionStrategy = queryExecutionStrategy;
+        this.graphQL = buildGraphQL();
+
+        return this;
+    }
+
+    public ActivitiGraphQLExecutor autoPaginator(ActivitiGraphQLAutoPaginator autoPaginator) {
+        this.autoPaginator = autoPaginator;
+
+        return this;
+    }
+
+    public ActivitiGraphQLExecutor resultCache(ActivitiGraphQLResultCache resultCache) {
+        this.resultCache = resultCache;
+
+        return this;
+    }
+
+    public GraphQLSchema getGraphQLSchema() {
+        return graphQLSchema;
+    }
+
+    public PreparsedDocumentProvider getPreparsedDocumentProvider() {
+        return preparsedDocumentProvider;
+    }
+
+    public Instrumentation getInstrumentation() {
+        if (instrumentations.isEmpty()) {
+            return SimpleInstrumentation.INSTANCE;
+        } else if (instrumentations.size() == 1) {
+            return instrumentations.get(0);
+        }
+
+        return new ChainedInstrumentation(new ArrayList<>(instrumentations));
+    }
+
+    public ExecutionStrategy getQueryExecutionStrategy() {
+        return queryExecutionStrategy;
+    }
+
+    public ActivitiGraphQLAutoPaginator getAutoPaginator() {
+        return autoPaginator;
+    }
+
+    public ActivitiGraphQLResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Consumes results of deferred fields in the order they are resolved, blocking until all deferred fields are resolved
+     *
+     * @param result initial execution result
+     * @param action deferred result consumer
+     * @return true if execution result has deferred fields
+     */
+    @SuppressWarnings("unchecked")
+    public static boolean forEachDeferredResult(ExecutionResult result, Consumer<DeferredExecutionResult> action) {
+        Object deferredResults = result.getExtensions() != null ? result.getExtensions().get(GraphQL.DEFERRED_RESULTS) : null;
+
+        if (!(deferredResults instanceof Publisher)) {
+            return false;
+        }
+
+        CompletableFuture<Void> completed = new CompletableFuture<>();
+
+        ((Publisher<ExecutionResult>) deferredResults).subscribe(new Subscriber<ExecutionResult>() {
+
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ExecutionResult deferredResult) {
+                try {
+                    action.accept((DeferredExecutionResult) deferredResult);
+                    subscription.request(1);
+                } catch (RuntimeException e) {
+                    subscription.cancel();
+                    completed.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completed.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completed.complete(null);
+            }
+        });
+
+        completed.join();
+
+        return true;
+    }
+
+    protected ExecutionResult executeQuery(String query) {
+        return reportPaginated(query, mergeDeferredResults(graphQL.execute(ExecutionInput.newExecutionInput()
+                                                                                         .query(paginate(query))
+                                                                                         .build())));
+    }
+
+    protected ExecutionResult executeQuery(String query, Map<String, Object> arguments) {
+        return reportPaginated(query, mergeDeferredResults(graphQL.execute(executionInput(query, arguments))));
+    }
+
+    protected ExecutionInput executionInput(String query, Map<String, Object> arguments) {
+        // Need to inject variables in context to support parameter bindings in reverse queries
+        Map<String, Object> context = Collections.singletonMap("variables", arguments);
+
+        return ExecutionInput.newExecutionInput()
+                             .query(paginate(query))
+                             .variables(arguments != null ? arguments : Collections.emptyMap())
+                             .root(context)
+                             .context(context)
+                             .build();
+    }
+
+    /**
+     * Resolves deferred fields and sets their values at their paths in the initial result data,
+     * for clients that cannot receive incremental results
+     */
+    protected ExecutionResult mergeDeferredResults(ExecutionResult result) {
+        List<GraphQLError> errors = new ArrayList<>(result.getErrors());
+        Object data = result.getData();
+
+        boolean deferred = forEachDeferredResult(result, deferredResult -> {
+            setValue(data, deferredResult.getPath(), deferredResult.getData());
+            errors.addAll(deferredResult.getErrors());
+        });
+
+        if (!deferred) {
+            return result;
+        }
+
+        Map<Object, Object> extensions = new LinkedHashMap<>(result.getExtensions());
+        extensions.remove(GraphQL.DEFERRED_RESULTS);
+
+        return new ExecutionResultImpl(data, errors, extensions.isEmpty() ? null : extensions);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void setValue(Object data, List<Object> path, Object value) {
+        Object parent = data;
+
+        for (int i = 0; i < path.size() - 1 && parent != null; i++) {
+            Object segment = path.get(i);
+
+            parent = segment instanceof Integer ? ((List<Object>) parent).get((Integer) segment)
+                                                : ((Map<String, Object>) parent).get(segment);
+        }
+
+        if (parent instanceof Map) {
+            ((Map<String, Object>) parent).put(String.valueOf(path.get(path.size() - 1)), value);
+        }
+    }
+
+    protected String paginate(String query) {
+        return autoPaginator != null ? autoPaginator.paginate(query) : query;
+    }
+
+    /**
+     * Adds response keys of root fields given the default page argument to the 'cost' extension, so that clients
+     * can detect results truncated to the default page limit
+     */
+    @SuppressWarnings("unchecked")
+    protected ExecutionResult reportPaginated(String query, ExecutionResult result) {
+        List<String> paginated = autoPaginator != null ? autoPaginator.getPaginatedFields(query) : Collections.emptyList();
+
+        if (paginated.isEmpty()) {
+            return result;
+        }
+
+        Map<Object, Object> extensions = new LinkedHashMap<>();
+
+        if (result.getExtensions() != null) {
+            extensions.putAll(result.getExtensions());
+        }
+
+        Object cost = extensions.get(ActivitiGraphQLQueryCostInstrumentation.COST_EXTENSION);
+        Map<String, Object> costExtension = cost instanceof Map ? new LinkedHashMap<>((Map<String, Object>) cost) : new LinkedHashMap<>();
+
+        costExtension.put(ActivitiGraphQLAutoPaginator.PAGINATED, paginated);
+        extensions.put(ActivitiGraphQLQueryCostInstrumentation.COST_EXTENSION, costExtension);
+
+        return new ExecutionResultImpl(result.getData(), result.getErrors(), extensions);
+    }
+
+    protected GraphQL buildGraphQL() {
+        return GraphQL.newGraphQL(graphQLSchema)
+                      .preparsedDocumentProvider(preparsedDocumentProvider)
+                      .instrumentation(getInstrumentation())
+                      .queryExecutionStrategy(queryExecutionStrategy)
+                      .build();
+    }
+
+}
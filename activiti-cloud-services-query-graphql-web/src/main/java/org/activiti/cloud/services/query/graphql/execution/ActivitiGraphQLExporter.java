@@ -0,0 +1,381 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import graphql.execution.ValuesResolver;
+import graphql.language.Definition;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.OperationDefinition;
+import graphql.language.SelectionSet;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLEnumType;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import graphql.validation.ValidationError;
+import graphql.validation.Validator;
+
+/**
+ * Exports all records matching a paged entity query as newline delimited JSON, one selected record per line, i.e.
+ *
+ * {ProcessInstances(where: {status: {EQ: COMPLETED}}) {select {id businessKey status}}}
+ *
+ * Records are read in one pass with a forward-only scrollable query with fixed fetch size, and the persistence
+ * context is cleared after every fetched batch of records, so that memory use does not depend on the number of
+ * exported records. The 'where' argument has the same grammar as in paged queries, record fields are resolved from
+ * entity properties and serialized with the schema scalar types. The page argument and arguments of nested
+ * fields are ignored. Association and collection fields are rejected, since they would be loaded for every record.
+ */
+public class ActivitiGraphQLExporter {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLExporter.class);
+
+    private static final String TYPENAME_FIELD = "__typename";
+    private static final String SELECT_FIELD = ActivitiGraphQLCursorPagination.SELECT_FIELD;
+    private static final String WHERE_ARGUMENT = ActivitiGraphQLAggregates.WHERE_ARGUMENT;
+
+    private final GraphQLSchema graphQLSchema;
+
+    private final EntityManager entityManager;
+
+    private final ObjectMapper mapper;
+
+    private final ActivitiGraphQLWhereCriteria whereCriteria = new ActivitiGraphQLWhereCriteria();
+
+    private final ValuesResolver valuesResolver = new ValuesResolver();
+
+    private int fetchSize = 500;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final AtomicLong exportedCount = new AtomicLong();
+
+    public ActivitiGraphQLExporter(GraphQLSchema graphQLSchema, EntityManager entityManager, ObjectMapper mapper) {
+        this.graphQLSchema = graphQLSchema;
+        this.entityManager = entityManager;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Parses and validates export query
+     *
+     * @param query query with a single paged entity query field, i.e. Tasks or ProcessInstances
+     * @param variables query variables
+     * @return export query
+     * @throws IllegalArgumentException if query is invalid or cannot be exported
+     */
+    public ExportQuery prepare(String query, Map<String, Object> variables) {
+        Assert.hasText(query, "query is required");
+
+        Document document;
+
+        try {
+            document = new Parser().parseDocument(query);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid query syntax: " + e.getMessage(), e);
+        }
+
+        List<ValidationError> errors = new Validator().validateDocument(graphQLSchema, document);
+
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException(errors.stream()
+                                                     .map(ValidationError::getMessage)
+                                                     .collect(Collectors.joining(", ")));
+        }
+
+        List<OperationDefinition> operations = new ArrayList<>();
+        Map<String, FragmentDefinition> fragments = new LinkedHashMap<>();
+
+        for (Definition definition : document.getDefinitions()) {
+            if (definition instanceof OperationDefinition) {
+                operations.add((OperationDefinition) definition);
+            } else if (definition instanceof FragmentDefinition) {
+                fragments.put(((FragmentDefinition) definition).getName(), (FragmentDefinition) definition);
+            }
+        }
+
+        List<Field> rootFields = operations.size() == 1 && operations.get(0).getOperation() == OperationDefinition.Operation.QUERY
+                ? GraphQLSelections.fields(operations.get(0).getSelectionSet(), fragments)
+                : Collections.emptyList();
+
+        Assert.isTrue(rootFields.size() == 1, "Export query must select a single query field");
+
+        Field rootField = rootFields.get(0);
+
+        GraphQLFieldDefinition fieldDefinition = graphQLSchema.getQueryType().getFieldDefinition(rootField.getName());
+        GraphQLObjectType recordType = ActivitiGraphQLCursorPagination.recordType(fieldDefinition);
+        EntityType<?> entityType = recordType != null ? GraphQLSelections.entityType(entityManager.getMetamodel(), recordType.getName()) : null;
+
+        Assert.notNull(entityType, "Export supports paged entity query fields only, i.e. Tasks or ProcessInstances");
+
+        Field select = GraphQLSelections.fields(rootField.getSelectionSet(), fragments)
+                                        .stream()
+                                        .filter(field -> SELECT_FIELD.equals(field.getName()))
+                                        .findFirst()
+                                        .orElseThrow(() -> new IllegalArgumentException("Export query must select records with 'select'"));
+
+        // Associations would be loaded lazily for every exported record
+        for (Field field : GraphQLSelections.fields(select.getSelectionSet(), fragments)) {
+            Assert.isTrue(!isAssociation(entityType, field.getName()),
+                          "Export supports entity attributes only, association '" + field.getName() + "' cannot be exported");
+        }
+
+        Map<String, Object> arguments = valuesResolver.getArgumentValues(fieldDefinition.getArguments(),
+                                                                         rootField.getArguments(),
+                                                                         variables != null ? variables : Collections.emptyMap());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> where = (Map<String, Object>) arguments.get(WHERE_ARGUMENT);
+
+        // Filters are compiled once the response has started, so they are validated here
+        if (where != null) {
+            whereCriteria.validate(entityType, where);
+        }
+
+        return new ExportQuery(entityType, recordType, where, select.getSelectionSet(), fragments);
+    }
+
+    /**
+     * Writes records of export query to output stream, in a read-only transaction if transaction template is configured
+     *
+     * @param exportQuery prepared export query
+     * @param outputStream output stream, left open
+     * @return number of exported records
+     * @throws IOException if output stream cannot be written
+     */
+    public long export(ExportQuery exportQuery, OutputStream outputStream) throws IOException {
+        try {
+            if (transactionTemplate != null) {
+                return transactionTemplate.execute(status -> write(exportQuery, outputStream));
+            }
+
+            return write(exportQuery, outputStream);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public ActivitiGraphQLExporter fetchSize(int fetchSize) {
+        Assert.isTrue(fetchSize > 0, "fetchSize must be greater than 0");
+        this.fetchSize = fetchSize;
+
+        return this;
+    }
+
+    public ActivitiGraphQLExporter transactionTemplate(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+
+        return this;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public long getExportedCount() {
+        return exportedCount.get();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected long write(ExportQuery exportQuery, OutputStream outputStream) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = (CriteriaQuery) cb.createQuery(exportQuery.entityType.getJavaType());
+        Root<?> root = query.from(exportQuery.entityType);
+
+        query.select(root);
+
+        if (exportQuery.where != null) {
+            query.where(whereCriteria.toPredicate(cb, root, exportQuery.entityType, exportQuery.where));
+        }
+
+        ScrollableResults results = entityManager.createQuery(query)
+                                                 .unwrap(Query.class)
+                                                 .setFetchSize(fetchSize)
+                                                 .setReadOnly(true)
+                                                 .setCacheMode(CacheMode.IGNORE)
+                                                 .scroll(ScrollMode.FORWARD_ONLY);
+        long count = 0;
+
+        try {
+            JsonGenerator generator = mapper.getFactory().createGenerator(outputStream);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+
+            while (results.next()) {
+                generator.writeObject(render(exportQuery.recordType, exportQuery.selectionSet, results.get(0), exportQuery.fragments));
+
+                if (++count % fetchSize == 0) {
+                    // Detaches exported entities, so that the persistence context does not grow with the export
+                    generator.flush();
+                    entityManager.clear();
+                }
+            }
+
+            if (count > 0) {
+                generator.writeRaw('\n');
+            }
+
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            results.close();
+            exportedCount.addAndGet(count);
+        }
+
+        log.debug("Exported {} {} records", count, exportQuery.recordType.getName());
+
+        return count;
+    }
+
+    /**
+     * Resolves selection of value of GraphQL type into JSON serializable value
+     */
+    protected Object render(GraphQLType type, SelectionSet selectionSet, Object value, Map<String, FragmentDefinition> fragments) {
+        if (value == null) {
+            return null;
+        } else if (type instanceof GraphQLNonNull) {
+            return render(((GraphQLNonNull) type).getWrappedType(), selectionSet, value, fragments);
+        } else if (type instanceof GraphQLList) {
+            List<Object> values = new ArrayList<>();
+
+            if (value instanceof Collection) {
+                for (Object element : (Collection<?>) value) {
+                    values.add(render(((GraphQLList) type).getWrappedType(), selectionSet, element, fragments));
+                }
+            } else if (value.getClass().isArray()) {
+                for (int i = 0; i < Array.getLength(value); i++) {
+                    values.add(render(((GraphQLList) type).getWrappedType(), selectionSet, Array.get(value, i), fragments));
+                }
+            }
+
+            return values;
+        } else if (type instanceof GraphQLScalarType) {
+            return ((GraphQLScalarType) type).getCoercing().serialize(value);
+        } else if (type instanceof GraphQLEnumType) {
+            return value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+        } else if (type instanceof GraphQLObjectType) {
+            GraphQLObjectType objectType = (GraphQLObjectType) type;
+            BeanWrapper source = value instanceof Map ? null : PropertyAccessorFactory.forBeanPropertyAccess(value);
+
+            Map<String, Object> record = new LinkedHashMap<>();
+
+            for (Field field : GraphQLSelections.fields(selectionSet, fragments)) {
+                String key = field.getAlias() != null ? field.getAlias() : field.getName();
+
+                if (TYPENAME_FIELD.equals(field.getName())) {
+                    record.put(key, objectType.getName());
+                    continue;
+                }
+
+                Object fieldValue = source == null ? ((Map<?, ?>) value).get(field.getName())
+                                                   : source.isReadableProperty(field.getName()) ? source.getPropertyValue(field.getName())
+                                                                                                : null;
+
+                record.put(key, render(objectType.getFieldDefinition(field.getName()).getType(),
+                                       field.getSelectionSet(),
+                                       fieldValue,
+                                       fragments));
+            }
+
+            return record;
+        }
+
+        return value;
+    }
+
+    private static boolean isAssociation(EntityType<?> entityType, String name) {
+        return entityType.getAttributes()
+                         .stream()
+                         .anyMatch(attribute -> attribute.getName().equals(name) && (attribute.isAssociation() || attribute.isCollection()));
+    }
+
+    /**
+     * Parsed and validated export query
+     */
+    public static class ExportQuery {
+
+        private final EntityType<?> entityType;
+        private final GraphQLObjectType recordType;
+        private final Map<String, Object> where;
+        private final SelectionSet selectionSet;
+        private final Map<String, FragmentDefinition> fragments;
+
+        ExportQuery(EntityType<?> entityType,
+                    GraphQLObjectType recordType,
+                    Map<String, Object> where,
+                    SelectionSet selectionSet,
+                    Map<String, FragmentDefinition> fragments) {
+            this.entityType = entityType;
+            this.recordType = recordType;
+            this.where = where;
+            this.selectionSet = selectionSet;
+            this.fragments = fragments;
+        }
+
+        public EntityType<?> getEntityType() {
+            return entityType;
+        }
+
+        public GraphQLObjectType getRecordType() {
+            return recordType;
+        }
+
+        public Map<String, Object> getWhere() {
+            return where;
+        }
+    }
+
+}
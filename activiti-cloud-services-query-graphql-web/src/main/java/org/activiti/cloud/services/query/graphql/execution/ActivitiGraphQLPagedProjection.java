@@ -0,0 +1,263 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import graphql.language.Argument;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+
+/**
+ * Replaces data fetchers of paged entity query fields of the GraphQL JPA schema, i.e. Tasks(page: ..., where: ...),
+ * with data fetchers querying only the selected columns if the selected record fields are all basic entity attributes, i.e.
+ *
+ * Tasks(page: {start: 1, limit: 100}, where: {status: {EQ: ASSIGNED}}) { select { id assignee } total pages }
+ *
+ * Selected columns are queried into tuples with the page offset and limit, and the total with a count query, so that
+ * wide rows are neither fetched nor hydrated into entities. Queries selecting associations, computed fields or fields
+ * with arguments, i.e. orderBy, or with 'where' filters not supported by {@link ActivitiGraphQLWhereCriteria}, are
+ * resolved by the original GraphQL JPA data fetcher.
+ */
+public class ActivitiGraphQLPagedProjection {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLPagedProjection.class);
+
+    public static final String PAGE_ARGUMENT = ActivitiGraphQLQueryCostAnalyzer.PAGE_ARGUMENT;
+    public static final String PAGE_START = "start";
+    public static final String PAGE_LIMIT = ActivitiGraphQLQueryCostAnalyzer.PAGE_LIMIT;
+    public static final String WHERE_ARGUMENT = ActivitiGraphQLAggregates.WHERE_ARGUMENT;
+
+    public static final String SELECT_FIELD = GraphQLSelections.SELECT_FIELD;
+    public static final String TOTAL_FIELD = "total";
+    public static final String PAGES_FIELD = "pages";
+
+    private final EntityManager entityManager;
+
+    private final ActivitiGraphQLWhereCriteria whereCriteria = new ActivitiGraphQLWhereCriteria();
+
+    private final ActivitiGraphQLCursorPagination cursorPagination;
+
+    public ActivitiGraphQLPagedProjection(EntityManager entityManager) {
+        this.entityManager = entityManager;
+        this.cursorPagination = new ActivitiGraphQLCursorPagination(entityManager);
+    }
+
+    /**
+     * Wraps data fetchers of paged query fields of the schema query type selecting JPA entities
+     *
+     * @param graphQLSchema GraphQL JPA schema
+     * @return schema with projecting paged query fields or the original schema if it has no paged entity query fields
+     */
+    public GraphQLSchema apply(GraphQLSchema graphQLSchema) {
+        GraphQLObjectType queryType = graphQLSchema.getQueryType();
+
+        List<GraphQLFieldDefinition> fieldDefinitions = new ArrayList<>();
+        List<String> projectedFields = new ArrayList<>();
+
+        for (GraphQLFieldDefinition fieldDefinition : queryType.getFieldDefinitions()) {
+            GraphQLObjectType recordType = ActivitiGraphQLCursorPagination.recordType(fieldDefinition);
+            EntityType<?> entityType = recordType != null ? GraphQLSelections.entityType(entityManager.getMetamodel(), recordType.getName()) : null;
+            SingularAttribute<?, ?> idAttribute = entityType != null ? cursorPagination.idAttribute(entityType) : null;
+
+            if (idAttribute == null || fieldDefinition.getDataFetcher() == null) {
+                fieldDefinitions.add(fieldDefinition);
+                continue;
+            }
+
+            fieldDefinitions.add(projectedField(fieldDefinition, entityType, idAttribute));
+            projectedFields.add(fieldDefinition.getName());
+        }
+
+        if (projectedFields.isEmpty()) {
+            return graphQLSchema;
+        }
+
+        GraphQLObjectType projectedQueryType = GraphQLObjectType.newObject()
+                                                                .name(queryType.getName())
+                                                                .description(queryType.getDescription())
+                                                                .fields(fieldDefinitions)
+                                                                .build();
+
+        log.debug("Added column projections to paged query fields: {}", projectedFields);
+
+        return GraphQLSchema.newSchema(graphQLSchema)
+                            .query(projectedQueryType)
+                            .build();
+    }
+
+    protected GraphQLFieldDefinition projectedField(GraphQLFieldDefinition fieldDefinition,
+                                                    EntityType<?> entityType,
+                                                    SingularAttribute<?, ?> idAttribute) {
+        DataFetcher<?> dataFetcher = fieldDefinition.getDataFetcher();
+
+        return GraphQLFieldDefinition.newFieldDefinition()
+                                     .name(fieldDefinition.getName())
+                                     .description(fieldDefinition.getDescription())
+                                     .type(fieldDefinition.getType())
+                                     .argument(fieldDefinition.getArguments())
+                                     .deprecate(fieldDefinition.getDeprecationReason())
+                                     .dataFetcher(environment -> {
+                                         Map<String, Object> result = project(entityType, idAttribute, environment);
+
+                                         return result != null ? result : dataFetcher.get(environment);
+                                     })
+                                     .build();
+    }
+
+    /**
+     * Resolves paged query field from selected columns
+     *
+     * @return paged result or null if the query is resolved by the original data fetcher
+     */
+    protected Map<String, Object> project(EntityType<?> entityType,
+                                          SingularAttribute<?, ?> idAttribute,
+                                          DataFetchingEnvironment environment) {
+        Field field = environment.getField();
+        Map<String, FragmentDefinition> fragments = environment.getFragmentsByName();
+        Map<String, Object> where = environment.getArgument(WHERE_ARGUMENT);
+
+        List<String> projection = isProjectable(entityType, field, where)
+                ? GraphQLSelections.projection(entityType, idAttribute, field, fragments)
+                : null;
+
+        if (projection == null) {
+            return null;
+        }
+
+        Map<String, Object> page = environment.getArgument(PAGE_ARGUMENT);
+        int start = pageValue(page, PAGE_START, 1);
+        int limit = pageValue(page, PAGE_LIMIT, Integer.MAX_VALUE);
+
+        List<String> selected = GraphQLSelections.fields(field.getSelectionSet(), fragments)
+                                                 .stream()
+                                                 .map(Field::getName)
+                                                 .collect(Collectors.toList());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        if (selected.contains(SELECT_FIELD)) {
+            result.put(SELECT_FIELD, select(entityType, projection, where, start, limit));
+        }
+
+        if (selected.contains(TOTAL_FIELD) || selected.contains(PAGES_FIELD)) {
+            long total = count(entityType, where);
+
+            result.put(TOTAL_FIELD, total);
+            result.put(PAGES_FIELD, (long) Math.ceil(total / (double) limit));
+        }
+
+        return result;
+    }
+
+    protected List<Map<String, Object>> select(EntityType<?> entityType,
+                                               List<String> projection,
+                                               Map<String, Object> where,
+                                               int start,
+                                               int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<?> root = query.from(entityType);
+
+        query.multiselect(projection.stream()
+                                    .<Selection<?>>map(attribute -> root.get(attribute))
+                                    .collect(Collectors.toList()));
+
+        if (where != null) {
+            query.where(whereCriteria.toPredicate(cb, root, entityType, where));
+        }
+
+        List<Map<String, Object>> records = new ArrayList<>();
+
+        for (Tuple tuple : entityManager.createQuery(query)
+                                        .setFirstResult((int) Math.min(Integer.MAX_VALUE, (start - 1L) * limit))
+                                        .setMaxResults(limit)
+                                        .getResultList()) {
+            Map<String, Object> record = new LinkedHashMap<>();
+
+            for (int i = 0; i < projection.size(); i++) {
+                record.put(projection.get(i), tuple.get(i));
+            }
+
+            records.add(record);
+        }
+
+        return records;
+    }
+
+    protected long count(EntityType<?> entityType, Map<String, Object> where) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<?> root = query.from(entityType);
+
+        query.select(cb.count(root));
+
+        if (where != null) {
+            query.where(whereCriteria.toPredicate(cb, root, entityType, where));
+        }
+
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    /**
+     * Only page and supported where arguments are resolved with projections
+     */
+    protected boolean isProjectable(EntityType<?> entityType, Field field, Map<String, Object> where) {
+        for (Argument argument : field.getArguments()) {
+            if (!PAGE_ARGUMENT.equals(argument.getName()) && !WHERE_ARGUMENT.equals(argument.getName())) {
+                return false;
+            }
+        }
+
+        if (where != null) {
+            try {
+                whereCriteria.validate(entityType, where);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int pageValue(Map<String, Object> page, String name, int defaultValue) {
+        Object value = page != null ? page.get(name) : null;
+
+        return value instanceof Number ? Math.max(1, ((Number) value).intValue()) : defaultValue;
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.execution.AsyncExecutionStrategy;
+import graphql.execution.ExecutionContext;
+import graphql.execution.ExecutionPath;
+import graphql.execution.ExecutionStrategyParameters;
+import graphql.execution.NonNullableFieldWasNullException;
+import graphql.language.Field;
+
+/**
+ * Query execution strategy resolving independent root query fields concurrently, i.e. Tasks, ProcessInstances and
+ * ProcessDefinitions of a dashboard query, so that the query latency is close to the slowest root field instead of
+ * the sum of all root fields.
+ *
+ * Root fields of a request are queued, and the calling thread takes them one after another in its own transaction,
+ * while up to maxParallelism - 1 query executor threads take them in their own read-only transactions, hence on their own
+ * pooled connections. Each root field is resolved with its whole selection by whichever thread takes it first.
+ * <p>
+ * The calling thread keeps working on the queue instead of blocking on query executor threads, so a request always
+ * completes on the connection of its own transaction even if the connection pool is exhausted and no query executor
+ * thread gets a connection. Query executor threads waiting for a connection take no root fields, and return it unused
+ * if the queue has been drained meanwhile. Queries with a single root field are resolved in the calling thread.
+ */
+public class ActivitiGraphQLParallelExecutionStrategy extends AsyncExecutionStrategy implements DisposableBean {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLParallelExecutionStrategy.class);
+
+    private static final String ROOT_PATH = ExecutionPath.rootPath().toString();
+
+    private final ActivitiGraphQLQueryExecutor queryExecutor;
+
+    private int maxParallelism = 4;
+
+    private final AtomicLong parallelFieldCount = new AtomicLong();
+    private final AtomicLong inlineFieldCount = new AtomicLong();
+
+    public ActivitiGraphQLParallelExecutionStrategy(ActivitiGraphQLQueryExecutor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> execute(ExecutionContext executionContext,
+                                                      ExecutionStrategyParameters parameters) throws NonNullableFieldWasNullException {
+        Map<String, List<Field>> fields = parameters.fields();
+
+        if (fields.size() < 2 || !ROOT_PATH.equals(parameters.getPath().toString())) {
+            return super.execute(executionContext, parameters);
+        }
+
+        Map<String, CompletableFuture<ExecutionResult>> results = new LinkedHashMap<>();
+        Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+        for (Map.Entry<String, List<Field>> field : fields.entrySet()) {
+            ExecutionStrategyParameters fieldParameters = parameters.transform(builder -> builder.fields(Collections.singletonMap(field.getKey(),
+                                                                                                                                  field.getValue())));
+            CompletableFuture<ExecutionResult> result = new CompletableFuture<>();
+
+            results.put(field.getKey(), result);
+            pending.add(() -> resolve(executionContext, fieldParameters, result));
+        }
+
+        int helpers = Math.min(maxParallelism, fields.size()) - 1;
+
+        for (int i = 0; i < helpers; i++) {
+            if (!submit(pending)) {
+                break;
+            }
+        }
+
+        // The calling thread drains the queue on its own connection, only waiting for root fields taken by query executor threads
+        drain(pending, inlineFieldCount);
+
+        return CompletableFuture.allOf(results.values().toArray(new CompletableFuture<?>[0]))
+                                .thenApply(done -> merge(executionContext, results));
+    }
+
+    /**
+     * Sets maximum number of root fields of a single query resolved at the same time
+     */
+    public ActivitiGraphQLParallelExecutionStrategy maxParallelism(int maxParallelism) {
+        Assert.isTrue(maxParallelism > 0, "maxParallelism must be greater than 0");
+        this.maxParallelism = maxParallelism;
+
+        return this;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        queryExecutor.destroy();
+    }
+
+    public int getMaxParallelism() {
+        return maxParallelism;
+    }
+
+    public ActivitiGraphQLQueryExecutor getQueryExecutor() {
+        return queryExecutor;
+    }
+
+    public long getParallelFieldCount() {
+        return parallelFieldCount.get();
+    }
+
+    public long getInlineFieldCount() {
+        return inlineFieldCount.get();
+    }
+
+    /**
+     * Submits query executor thread taking root fields from the queue in its own transaction
+     * @return false if query executor is saturated
+     */
+    protected boolean submit(Queue<Runnable> pending) {
+        try {
+            queryExecutor.submit(() -> drain(pending, parallelFieldCount))
+                         .whenComplete((done, error) -> {
+                             if (error != null) {
+                                 // i.e. no connection available, the calling thread resolves remaining root fields
+                                 log.debug("Query executor thread is unable to resolve root fields: {}", error.getMessage());
+                             }
+                         });
+
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.debug("Query executor is saturated, resolving remaining root fields in calling thread");
+
+            return false;
+        }
+    }
+
+    /**
+     * Resolves root fields taken from the queue until it is empty
+     * @param resolvedCount counter of root fields taken by the current thread
+     */
+    protected Void drain(Queue<Runnable> pending, AtomicLong resolvedCount) {
+        for (Runnable field = pending.poll(); field != null; field = pending.poll()) {
+            resolvedCount.incrementAndGet();
+            field.run();
+        }
+
+        return null;
+    }
+
+    protected void resolve(ExecutionContext executionContext,
+                           ExecutionStrategyParameters fieldParameters,
+                           CompletableFuture<ExecutionResult> result) {
+        try {
+            // Completes within the transaction of the resolving thread, so that lazy associations can be loaded
+            result.complete(executeFields(executionContext, fieldParameters).join());
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    protected CompletableFuture<ExecutionResult> executeFields(ExecutionContext executionContext,
+                                                               ExecutionStrategyParameters fieldParameters) {
+        return super.execute(executionContext, fieldParameters);
+    }
+
+    /**
+     * Merges root field results in query order, errors are collected by the shared execution context
+     */
+    protected ExecutionResult merge(ExecutionContext executionContext, Map<String, CompletableFuture<ExecutionResult>> results) {
+        Map<String, Object> data = new LinkedHashMap<>();
+
+        for (CompletableFuture<ExecutionResult> result : results.values()) {
+            Map<String, Object> fieldData = result.join().getData();
+
+            if (fieldData == null) {
+                // Null of non-null root field nulls the whole data
+                return new ExecutionResultImpl(null, executionContext.getErrors());
+            }
+
+            data.putAll(fieldData);
+        }
+
+        return new ExecutionResultImpl(data, executionContext.getErrors());
+    }
+
+}
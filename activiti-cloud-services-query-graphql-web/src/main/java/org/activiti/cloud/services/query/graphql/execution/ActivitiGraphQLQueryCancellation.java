@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cooperative cancellation of query executions started on behalf of a client request, i.e. when the client disconnects
+ * or the asynchronous request times out.
+ *
+ * Executions started within {@link #run(Supplier)} observe the cancellation with {@link ActivitiGraphQLQueryTimeoutInstrumentation},
+ * which aborts data fetching between fields and registers callbacks cancelling in-flight JDBC statements.
+ */
+public class ActivitiGraphQLQueryCancellation {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLQueryCancellation.class);
+
+    private static final ThreadLocal<ActivitiGraphQLQueryCancellation> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> callbacks = new CopyOnWriteArrayList<>();
+
+    private volatile boolean cancelled;
+
+    /**
+     * @return cancellation bound to the current thread by {@link #run(Supplier)}, or null
+     */
+    public static ActivitiGraphQLQueryCancellation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs query execution with this cancellation bound to the current thread
+     *
+     * @param execution query execution
+     * @return execution result
+     */
+    public <T> T run(Supplier<T> execution) {
+        ActivitiGraphQLQueryCancellation previous = CURRENT.get();
+
+        CURRENT.set(this);
+        try {
+            return execution.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Cancels executions and runs registered callbacks once
+     */
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+        }
+
+        for (Runnable callback : callbacks) {
+            runCallback(callback);
+        }
+        callbacks.clear();
+    }
+
+    /**
+     * Registers callback run on cancellation, or runs it immediately if already cancelled
+     *
+     * @param callback cancellation callback, i.e. cancelling in-flight JDBC statement
+     */
+    public void onCancel(Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+
+        runCallback(callback);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private static void runCallback(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            log.warn("Unable to run query cancellation callback: {}", e.getMessage());
+        }
+    }
+
+}
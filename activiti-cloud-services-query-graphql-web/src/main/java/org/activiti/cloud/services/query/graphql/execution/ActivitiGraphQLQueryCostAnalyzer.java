@@ -0,0 +1,309 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+
+import graphql.execution.ValuesResolver;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.FragmentSpread;
+import graphql.language.InlineFragment;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLFieldsContainer;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLModifiedType;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+
+/**
+ * Estimates the cost of a GraphQL JPA query operation from its parsed document before execution.
+ *
+ * The cost is the estimated number of resolved fields. Fields selected under list fields are multiplied
+ * by the estimated list size: the page limit of paged query fields, i.e. Tasks(page: {start: 1, limit: 10}),
+ * the unpaged list size if the page argument is missing, and the association list size for nested entity
+ * associations, i.e. ProcessInstances{select{tasks{variables}}}. The 'first' argument of cursor query fields,
+ * i.e. TasksCursor(first: 10){select{...}}, is used as page limit. Nested list fields with a 'limit' argument,
+ * i.e. TasksAggregate{countBy(by: [assignee], limit: 10){assignee count}}, are sized by its value.
+ */
+public class ActivitiGraphQLQueryCostAnalyzer {
+
+    public static final String PAGE_ARGUMENT = "page";
+    public static final String PAGE_LIMIT = "limit";
+    public static final String FIRST_ARGUMENT = "first";
+    public static final String LIMIT_ARGUMENT = "limit";
+
+    private final ValuesResolver valuesResolver = new ValuesResolver();
+
+    private int unpagedListSize = 1000;
+
+    private int associationListSize = 10;
+
+    /**
+     * Computed query cost
+     */
+    public static class QueryCost {
+
+        private final long cost;
+        private final int depth;
+
+        public QueryCost(long cost, int depth) {
+            this.cost = cost;
+            this.depth = depth;
+        }
+
+        public long getCost() {
+            return cost;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+    }
+
+    /**
+     * Estimates query operation cost
+     *
+     * @param schema GraphQL schema
+     * @param operation query operation definition
+     * @param fragments fragment definitions by name
+     * @param variables coerced operation variables
+     * @return estimated cost and depth of operation
+     */
+    public QueryCost analyze(GraphQLSchema schema,
+                             OperationDefinition operation,
+                             Map<String, FragmentDefinition> fragments,
+                             Map<String, Object> variables) {
+        GraphQLObjectType rootType = rootType(schema, operation);
+
+        if (rootType == null) {
+            return new QueryCost(0, 0);
+        }
+
+        Calculation calculation = new Calculation(fragments,
+                                                  variables != null ? variables : Collections.emptyMap());
+
+        long cost = calculation.cost(rootType, operation.getSelectionSet(), 1, 1, true, unpagedListSize);
+
+        return new QueryCost(cost, calculation.depth);
+    }
+
+    /**
+     * @param unpagedListSize estimated size of paged query lists selected without page argument
+     */
+    public ActivitiGraphQLQueryCostAnalyzer unpagedListSize(int unpagedListSize) {
+        Assert.isTrue(unpagedListSize > 0, "unpagedListSize must be greater than 0");
+        this.unpagedListSize = unpagedListSize;
+
+        return this;
+    }
+
+    /**
+     * @param associationListSize estimated size of nested entity association lists
+     */
+    public ActivitiGraphQLQueryCostAnalyzer associationListSize(int associationListSize) {
+        Assert.isTrue(associationListSize > 0, "associationListSize must be greater than 0");
+        this.associationListSize = associationListSize;
+
+        return this;
+    }
+
+    public int getUnpagedListSize() {
+        return unpagedListSize;
+    }
+
+    public int getAssociationListSize() {
+        return associationListSize;
+    }
+
+    static GraphQLObjectType rootType(GraphQLSchema schema, OperationDefinition operation) {
+        if (operation.getOperation() == OperationDefinition.Operation.MUTATION) {
+            return schema.getMutationType();
+        } else if (operation.getOperation() == OperationDefinition.Operation.SUBSCRIPTION) {
+            return schema.getSubscriptionType();
+        }
+
+        return schema.getQueryType();
+    }
+
+    static GraphQLType unwrapNonNull(GraphQLType type) {
+        return type instanceof GraphQLNonNull ? ((GraphQLNonNull) type).getWrappedType() : type;
+    }
+
+    class Calculation {
+
+        private final Map<String, FragmentDefinition> fragments;
+
+        private final Map<String, Object> variables;
+
+        private int depth;
+
+        Calculation(Map<String, FragmentDefinition> fragments, Map<String, Object> variables) {
+            this.fragments = fragments;
+            this.variables = variables;
+        }
+
+        /**
+         * @param root true for selections of the operation root type and of paged query result wrappers
+         * @param pagedListSize estimated size of paged query lists selected within the current selection set
+         */
+        long cost(GraphQLFieldsContainer parentType,
+                  SelectionSet selectionSet,
+                  long multiplier,
+                  int level,
+                  boolean root,
+                  long pagedListSize) {
+            if (selectionSet == null) {
+                return 0;
+            }
+
+            depth = Math.max(depth, level);
+
+            long cost = 0;
+
+            for (Selection selection : selectionSet.getSelections()) {
+                if (selection instanceof Field) {
+                    cost = add(cost, fieldCost(parentType, (Field) selection, multiplier, level, root, pagedListSize));
+                } else if (selection instanceof InlineFragment) {
+                    cost = add(cost, cost(parentType, ((InlineFragment) selection).getSelectionSet(), multiplier, level, root, pagedListSize));
+                } else if (selection instanceof FragmentSpread) {
+                    FragmentDefinition fragment = fragments.get(((FragmentSpread) selection).getName());
+
+                    if (fragment != null) {
+                        cost = add(cost, cost(parentType, fragment.getSelectionSet(), multiplier, level, root, pagedListSize));
+                    }
+                }
+            }
+
+            return cost;
+        }
+
+        private long fieldCost(GraphQLFieldsContainer parentType,
+                               Field field,
+                               long multiplier,
+                               int level,
+                               boolean root,
+                               long pagedListSize) {
+            GraphQLFieldDefinition fieldDefinition = parentType.getFieldDefinition(field.getName());
+
+            if (fieldDefinition == null) {
+                return multiplier;
+            }
+
+            GraphQLType type = unwrapNonNull(fieldDefinition.getType());
+
+            long cost = multiplier;
+
+            if (root && isPaged(fieldDefinition)) {
+                // Paged query field, i.e. Tasks(page: ...){select{...}}, selects a page of records
+                pagedListSize = pageLimit(fieldDefinition, field);
+            }
+
+            long listSize = 1;
+            long nestedListSize = root ? pagedListSize : listLimit(fieldDefinition, field);
+
+            while (type instanceof GraphQLModifiedType) {
+                if (type instanceof GraphQLList) {
+                    listSize = multiply(listSize, nestedListSize);
+                }
+                type = ((GraphQLModifiedType) type).getWrappedType();
+            }
+
+            if (type instanceof GraphQLFieldsContainer) {
+                // Direct selections of paged query fields are page wrappers, their record lists are paged lists
+                boolean pagedWrapper = root && isPaged(fieldDefinition);
+
+                cost = add(cost, cost((GraphQLFieldsContainer) type,
+                                      field.getSelectionSet(),
+                                      multiply(multiplier, listSize),
+                                      level + 1,
+                                      pagedWrapper,
+                                      pagedListSize));
+            }
+
+            return cost;
+        }
+
+        @SuppressWarnings("unchecked")
+        private long pageLimit(GraphQLFieldDefinition fieldDefinition, Field field) {
+            try {
+                Map<String, Object> arguments = valuesResolver.getArgumentValues(fieldDefinition.getArguments(),
+                                                                                 field.getArguments(),
+                                                                                 variables);
+                Object page = arguments.get(PAGE_ARGUMENT);
+
+                if (arguments.get(FIRST_ARGUMENT) instanceof Number) {
+                    return Math.max(1, ((Number) arguments.get(FIRST_ARGUMENT)).longValue());
+                }
+
+                if (page instanceof Map && ((Map<String, Object>) page).get(PAGE_LIMIT) instanceof Number) {
+                    return Math.max(1, ((Number) ((Map<String, Object>) page).get(PAGE_LIMIT)).longValue());
+                }
+            } catch (RuntimeException e) {
+                // invalid arguments are reported by execution
+            }
+
+            return unpagedListSize;
+        }
+
+        /**
+         * @return value of 'limit' argument of nested list field, i.e. countBy, or association list size
+         */
+        private long listLimit(GraphQLFieldDefinition fieldDefinition, Field field) {
+            if (fieldDefinition.getArgument(LIMIT_ARGUMENT) == null) {
+                return associationListSize;
+            }
+
+            try {
+                Object limit = valuesResolver.getArgumentValues(fieldDefinition.getArguments(),
+                                                                field.getArguments(),
+                                                                variables)
+                                             .get(LIMIT_ARGUMENT);
+
+                if (limit instanceof Number) {
+                    return Math.max(1, ((Number) limit).longValue());
+                }
+            } catch (RuntimeException e) {
+                // invalid arguments are reported by execution
+            }
+
+            return associationListSize;
+        }
+    }
+
+    private static boolean isPaged(GraphQLFieldDefinition fieldDefinition) {
+        return fieldDefinition.getArgument(PAGE_ARGUMENT) != null || fieldDefinition.getArgument(FIRST_ARGUMENT) != null;
+    }
+
+    private static long add(long a, long b) {
+        long result = a + b;
+
+        return result < 0 ? Long.MAX_VALUE : result;
+    }
+
+    private static long multiply(long a, long b) {
+        return b != 0 && a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLQueryCostAnalyzer.QueryCost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.ExecutionContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+
+/**
+ * Computes the estimated cost of each query operation before execution, aborts operations over the configured
+ * cost or depth budgets and reports the computed cost in the 'cost' entry of the response extensions, i.e.
+ *
+ * "extensions": {"cost": {"estimated": 1210, "depth": 3, "maxCost": 100000, "maxDepth": 10}}
+ */
+public class ActivitiGraphQLQueryCostInstrumentation extends SimpleInstrumentation {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLQueryCostInstrumentation.class);
+
+    public static final String COST_EXTENSION = "cost";
+
+    private final ActivitiGraphQLQueryCostAnalyzer analyzer;
+
+    private long maxCost = 100000;
+
+    private int maxDepth = 10;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public ActivitiGraphQLQueryCostInstrumentation(ActivitiGraphQLQueryCostAnalyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    @Override
+    public InstrumentationState createState() {
+        return new QueryCostState();
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters) {
+        ExecutionContext executionContext = parameters.getExecutionContext();
+
+        QueryCost queryCost = analyzer.analyze(executionContext.getGraphQLSchema(),
+                                               executionContext.getOperationDefinition(),
+                                               executionContext.getFragmentsByName(),
+                                               executionContext.getVariables());
+
+        QueryCostState state = parameters.getInstrumentationState();
+        state.queryCost = queryCost;
+
+        if (queryCost.getCost() > maxCost || queryCost.getDepth() > maxDepth) {
+            rejectedCount.incrementAndGet();
+
+            log.warn("Rejected query with estimated cost {} and depth {}", queryCost.getCost(), queryCost.getDepth());
+
+            throw new AbortExecutionException("Query estimated cost " + queryCost.getCost()
+                    + " and depth " + queryCost.getDepth()
+                    + " exceed the maximum cost " + maxCost
+                    + " or depth " + maxDepth
+                    + ". Use page arguments to limit the size of selected lists.");
+        }
+
+        return super.beginExecuteOperation(parameters);
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult,
+                                                                        InstrumentationExecutionParameters parameters) {
+        QueryCostState state = parameters.getInstrumentationState();
+
+        if (state == null || state.queryCost == null) {
+            return CompletableFuture.completedFuture(executionResult);
+        }
+
+        Map<String, Object> cost = new LinkedHashMap<>();
+        cost.put("estimated", state.queryCost.getCost());
+        cost.put("depth", state.queryCost.getDepth());
+        cost.put("maxCost", maxCost);
+        cost.put("maxDepth", maxDepth);
+
+        Map<Object, Object> extensions = new LinkedHashMap<>();
+
+        if (executionResult.getExtensions() != null) {
+            extensions.putAll(executionResult.getExtensions());
+        }
+        extensions.put(COST_EXTENSION, cost);
+
+        return CompletableFuture.completedFuture(new ExecutionResultImpl(executionResult.getData(),
+                                                                         executionResult.getErrors(),
+                                                                         extensions));
+    }
+
+    public ActivitiGraphQLQueryCostInstrumentation maxCost(long maxCost) {
+        this.maxCost = maxCost;
+
+        return this;
+    }
+
+    public ActivitiGraphQLQueryCostInstrumentation maxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+
+        return this;
+    }
+
+    public long getMaxCost() {
+        return maxCost;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public ActivitiGraphQLQueryCostAnalyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    static class QueryCostState implements InstrumentationState {
+
+        private volatile QueryCost queryCost;
+
+    }
+
+}
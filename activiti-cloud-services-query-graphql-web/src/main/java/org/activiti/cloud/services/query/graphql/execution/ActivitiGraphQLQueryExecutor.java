@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * Dedicated bounded executor of blocking GraphQL JPA queries, separate from servlet container threads.
+ *
+ * Queries are executed by a fixed number of platform threads with a bounded queue, or by virtual threads
+ * on Java runtimes supporting them with the same bound on queries in flight. Submissions above the bound
+ * are rejected immediately with {@link RejectedExecutionException}. Queries run in a read-only transaction
+ * if a transaction template is configured.
+ */
+public class ActivitiGraphQLQueryExecutor implements DisposableBean {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLQueryExecutor.class);
+
+    private final int threads;
+
+    private final int queueCapacity;
+
+    private final ExecutorService executorService;
+
+    private final Semaphore permits;
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * @param threads maximum number of concurrently executing queries
+     * @param queueCapacity maximum number of queries waiting for execution
+     * @param virtualThreads use virtual threads if supported by Java runtime
+     */
+    public ActivitiGraphQLQueryExecutor(int threads, int queueCapacity, boolean virtualThreads) {
+        Assert.isTrue(threads > 0, "threads must be greater than 0");
+        Assert.isTrue(queueCapacity >= 0, "queueCapacity must not be negative");
+
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+
+        ExecutorService virtualThreadExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+
+        if (virtualThreadExecutor != null) {
+            this.executorService = virtualThreadExecutor;
+            this.permits = new Semaphore(threads + queueCapacity);
+        } else {
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads,
+                                                                           threads,
+                                                                           60L,
+                                                                           TimeUnit.SECONDS,
+                                                                           queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity)
+                                                                                             : new SynchronousQueue<>(),
+                                                                           new CustomizableThreadFactory("graphql-query-"),
+                                                                           new ThreadPoolExecutor.AbortPolicy());
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+            this.executorService = threadPoolExecutor;
+            this.permits = null;
+        }
+    }
+
+    /**
+     * Submits query for execution
+     *
+     * @param query blocking query
+     * @return future of query result
+     * @throws RejectedExecutionException if executor is saturated
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> query) {
+        if (permits != null && !permits.tryAcquire()) {
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("GraphQL query executor is saturated");
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> run(query), executorService);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+
+            if (permits != null) {
+                permits.release();
+            }
+            throw e;
+        }
+    }
+
+    public ActivitiGraphQLQueryExecutor transactionTemplate(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+
+        return this;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        executorService.shutdown();
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public boolean isVirtualThreads() {
+        return permits != null;
+    }
+
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public int getQueueSize() {
+        if (executorService instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executorService).getQueue().size();
+        }
+
+        return Math.max(0, threads + queueCapacity - permits.availablePermits() - activeCount.get());
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    private <T> T run(Supplier<T> query) {
+        activeCount.incrementAndGet();
+
+        try {
+            if (transactionTemplate != null) {
+                return transactionTemplate.execute(status -> query.get());
+            }
+
+            return query.get();
+        } finally {
+            activeCount.decrementAndGet();
+            completedCount.incrementAndGet();
+
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not supported by Java runtime, using platform threads");
+
+            return null;
+        }
+    }
+
+}
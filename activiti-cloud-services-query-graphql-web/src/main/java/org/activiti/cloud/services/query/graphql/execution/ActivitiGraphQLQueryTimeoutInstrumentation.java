@@ -0,0 +1,236 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+
+import graphql.ExecutionResult;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLEnumType;
+import graphql.schema.GraphQLModifiedType;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLType;
+
+/**
+ * Enforces a deadline on each query operation and observes cancellation of the client request.
+ *
+ * The deadline starts when the operation is executed, uses the timeout configured for the operation name if any,
+ * and is propagated to JDBC as the remaining transaction timeout of each Hibernate session used by data fetchers,
+ * so that statements are aborted by the database once the deadline has passed. Data fetching is aborted between fields
+ * once the deadline has passed or the {@link ActivitiGraphQLQueryCancellation} of the request has been cancelled,
+ * and cancellation also cancels the in-flight statements of the sessions used by the operation.
+ */
+public class ActivitiGraphQLQueryTimeoutInstrumentation extends SimpleInstrumentation {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLQueryTimeoutInstrumentation.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private long timeoutMs = 0;
+
+    private Map<String, Long> operationTimeoutsMs = Collections.emptyMap();
+
+    private final AtomicLong timedOutCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+
+    public ActivitiGraphQLQueryTimeoutInstrumentation(EntityManager entityManager) {
+        this.entityManagerFactory = entityManager.getEntityManagerFactory();
+    }
+
+    /**
+     * @param timeoutMs default operation timeout in milliseconds, 0 for no timeout
+     */
+    public ActivitiGraphQLQueryTimeoutInstrumentation timeoutMs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+
+        return this;
+    }
+
+    /**
+     * @param operationTimeoutsMs timeouts in milliseconds by operation name, overriding default timeout
+     */
+    public ActivitiGraphQLQueryTimeoutInstrumentation operationTimeoutsMs(Map<String, Long> operationTimeoutsMs) {
+        this.operationTimeoutsMs = new HashMap<>(operationTimeoutsMs);
+
+        return this;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public Map<String, Long> getOperationTimeoutsMs() {
+        return Collections.unmodifiableMap(operationTimeoutsMs);
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    public long getCancelledCount() {
+        return cancelledCount.get();
+    }
+
+    @Override
+    public InstrumentationState createState() {
+        ActivitiGraphQLQueryCancellation cancellation = ActivitiGraphQLQueryCancellation.current();
+
+        return new TimeoutState(cancellation != null ? cancellation : new ActivitiGraphQLQueryCancellation());
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters) {
+        TimeoutState state = parameters.getInstrumentationState();
+
+        String operationName = parameters.getExecutionContext().getOperationDefinition().getName();
+
+        state.timeoutMs = operationName != null ? operationTimeoutsMs.getOrDefault(operationName, timeoutMs) : timeoutMs;
+        state.startNanos = System.nanoTime();
+
+        check(state);
+
+        return super.beginExecuteOperation(parameters);
+    }
+
+    @Override
+    public DataFetcher<?> instrumentDataFetcher(DataFetcher<?> dataFetcher, InstrumentationFieldFetchParameters parameters) {
+        TimeoutState state = parameters.getInstrumentationState();
+
+        if (state == null) {
+            return dataFetcher;
+        }
+
+        // Scalar values are read from already fetched entities, only other fetchers may run statements
+        boolean fetchesData = !isLeafType(parameters.getEnvironment().getFieldType());
+
+        return environment -> {
+            check(state);
+
+            if (fetchesData) {
+                bindSession(state);
+            }
+
+            return dataFetcher.get(environment);
+        };
+    }
+
+    /**
+     * @throws AbortExecutionException if the request has been cancelled or the operation deadline has passed
+     */
+    protected void check(TimeoutState state) {
+        if (state.cancellation.isCancelled()) {
+            if (state.aborted.compareAndSet(false, true)) {
+                cancelledCount.incrementAndGet();
+            }
+            throw new AbortExecutionException("Query execution has been cancelled");
+        }
+
+        if (state.getRemainingMs() <= 0) {
+            if (state.aborted.compareAndSet(false, true)) {
+                timedOutCount.incrementAndGet();
+                log.warn("Aborted query execution after timeout of {} ms", state.timeoutMs);
+            }
+            throw new AbortExecutionException("Query execution exceeded timeout of " + state.timeoutMs + " ms");
+        }
+    }
+
+    /**
+     * Applies remaining deadline as JDBC statement timeout of the Hibernate session bound to the current thread,
+     * and registers cancellation of its in-flight statement, once per session
+     */
+    protected void bindSession(TimeoutState state) {
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+
+        if (entityManager == null) {
+            return;
+        }
+
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+
+        if (!state.sessions.add(session)) {
+            return;
+        }
+
+        long remainingMs = state.getRemainingMs();
+
+        if (remainingMs != Long.MAX_VALUE) {
+            // Remaining transaction timeout is applied by Hibernate to each JDBC statement of the session
+            session.getJdbcCoordinator()
+                   .setTransactionTimeOut((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remainingMs + 999)));
+        }
+
+        state.cancellation.onCancel(() -> {
+            if (session.isOpen()) {
+                session.cancelQuery();
+            }
+        });
+    }
+
+    private static boolean isLeafType(GraphQLType type) {
+        while (type instanceof GraphQLModifiedType) {
+            type = ((GraphQLModifiedType) type).getWrappedType();
+        }
+
+        return type instanceof GraphQLScalarType || type instanceof GraphQLEnumType;
+    }
+
+    static class TimeoutState implements InstrumentationState {
+
+        private final ActivitiGraphQLQueryCancellation cancellation;
+
+        private final Set<SessionImplementor> sessions = ConcurrentHashMap.newKeySet();
+
+        private final AtomicBoolean aborted = new AtomicBoolean();
+
+        private volatile long timeoutMs;
+
+        private volatile long startNanos = System.nanoTime();
+
+        TimeoutState(ActivitiGraphQLQueryCancellation cancellation) {
+            this.cancellation = cancellation;
+        }
+
+        long getRemainingMs() {
+            if (timeoutMs <= 0) {
+                return Long.MAX_VALUE;
+            }
+
+            return timeoutMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+
+}
@@ -0,0 +1,608 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.language.Definition;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.FragmentSpread;
+import graphql.language.InlineFragment;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLFieldsContainer;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLModifiedType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+
+/**
+ * Bounded LRU cache of read-only query results keyed by normalized query text and variables.
+ *
+ * Each cached result is tagged with the entity types and ids it contains: entities selected as single objects
+ * are tagged by type and id, i.e. Task:1, and entity lists are tagged by type, i.e. Task, because any change
+ * of that type may change list membership. Process engine notifications published in-process by the notifications
+ * gateway invalidate the entries tagged with the type and id of each notification event, so repeated polling
+ * queries are served from memory until their data changes. Entries also expire after a time to live, which bounds
+ * staleness when notifications are not delivered to this node.
+ *
+ * Results with errors and results of non-query operations are not cached. Cached results are immutable copies,
+ * so they are never modified by response writers releasing written elements.
+ */
+public class ActivitiGraphQLResultCache {
+
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLResultCache.class);
+
+    public static final String ID = "id";
+    public static final String TASK_ID = "taskId";
+    public static final String ENTITY = "entity";
+    public static final String ENTITY_ID = "entityId";
+
+    private static final String PUNCTUATORS = "{}()[]:!$@=|&.";
+
+    private final int maxEntries;
+
+    private final long timeToLiveMs;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<String, Set<String>> taggedKeys = new HashMap<>();
+
+    private final Map<String, List<String>> eventEntityTypes = new LinkedHashMap<>();
+
+    private final Map<String, String> derivedTypes = new ConcurrentHashMap<>();
+
+    private String eventTypeKey = "eventType";
+
+    private long invalidationSequence;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * @param maxEntries maximum number of cached results
+     * @param timeToLiveMs maximum age of cached results in milliseconds
+     */
+    public ActivitiGraphQLResultCache(int maxEntries, long timeToLiveMs) {
+        Assert.isTrue(maxEntries > 0, "maxEntries must be greater than 0");
+        Assert.isTrue(timeToLiveMs > 0, "timeToLiveMs must be greater than 0");
+
+        this.maxEntries = maxEntries;
+        this.timeToLiveMs = timeToLiveMs;
+
+        eventEntityTypes("PROCESS_DEPLOYED", "ProcessDefinition");
+        eventEntityTypes("PROCESS_", "ProcessInstance");
+        eventEntityTypes("TASK_", "Task");
+        eventEntityTypes("VARIABLE_", "Variable", "ProcessVariable", "TaskVariable");
+    }
+
+    /**
+     * Returns cached result of query or executes it and caches its result
+     *
+     * @param graphQLSchema schema used to resolve entity types of result objects
+     * @param query query text
+     * @param variables query variables
+     * @param execution executes query on cache miss
+     * @return cached or executed result
+     */
+    public ExecutionResult get(GraphQLSchema graphQLSchema,
+                               String query,
+                               Map<String, Object> variables,
+                               Supplier<ExecutionResult> execution) {
+        String key = key(query, variables);
+        long sequence;
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+
+            if (entry != null && !entry.isExpired()) {
+                hitCount.incrementAndGet();
+                return entry.result;
+            } else if (entry != null) {
+                remove(key);
+            }
+            sequence = invalidationSequence;
+        }
+
+        missCount.incrementAndGet();
+
+        ExecutionResult result = execution.get();
+
+        if (result.getErrors() == null || result.getErrors().isEmpty()) {
+            Set<String> tags = tags(graphQLSchema, query, result.getData());
+
+            if (tags != null) {
+                put(key, new Entry(copy(result), tags), sequence);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Invalidates cached results tagged with entity types and ids of process engine notification events, i.e.
+     * {processInstanceId: "1", TASK_CREATED: [{eventType: "TASK_CREATED", entity: {id: "2"}}]}
+     *
+     * @param notification process engine notification
+     */
+    public void onNotification(Map<String, Object> notification) {
+        Set<String> tags = new LinkedHashSet<>();
+
+        for (Object value : notification.values()) {
+            if (value instanceof Collection) {
+                for (Object event : (Collection<?>) value) {
+                    if (event instanceof Map) {
+                        tags.addAll(eventTags((Map<?, ?>) event));
+                    }
+                }
+            }
+        }
+
+        if (!tags.isEmpty()) {
+            invalidate(tags);
+        }
+    }
+
+    /**
+     * Invalidates cached results tagged with any of the tags
+     *
+     * @param tags entity type or entity type and id tags, i.e. Task or Task:1
+     */
+    public void invalidate(Collection<String> tags) {
+        synchronized (entries) {
+            invalidationSequence++;
+
+            for (String tag : tags) {
+                Set<String> keys = taggedKeys.get(tag);
+
+                if (keys != null) {
+                    for (String key : new ArrayList<>(keys)) {
+                        remove(key);
+                        invalidationCount.incrementAndGet();
+                    }
+                }
+            }
+        }
+
+        log.debug("Invalidated cached results tagged with {}", tags);
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            invalidationSequence++;
+            entries.clear();
+            taggedKeys.clear();
+        }
+    }
+
+    /**
+     * Maps process engine event types starting with prefix to GraphQL entity type names
+     */
+    public ActivitiGraphQLResultCache eventEntityTypes(String eventTypePrefix, String... entityTypes) {
+        this.eventEntityTypes.put(eventTypePrefix, Arrays.asList(entityTypes));
+
+        return this;
+    }
+
+    /**
+     * Tags results of derived type, i.e. TaskAggregate, with entity type they are computed from, i.e. Task,
+     * so that any notification of the entity type invalidates them
+     */
+    public ActivitiGraphQLResultCache derivedType(String type, String entityType) {
+        this.derivedTypes.put(type, entityType);
+
+        return this;
+    }
+
+    public ActivitiGraphQLResultCache eventTypeKey(String eventTypeKey) {
+        this.eventTypeKey = eventTypeKey;
+
+        return this;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static String typeTag(String type) {
+        return type;
+    }
+
+    public static String idTag(String type, Object id) {
+        return type + ":" + id;
+    }
+
+    /**
+     * Normalizes insignificant whitespace, commas and comments outside of string literals
+     */
+    public static String normalize(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+
+        boolean separator = false;
+
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+
+            if (c == '"') {
+                int end = endOfString(query, i);
+
+                appendSeparator(normalized, separator, c);
+                normalized.append(query, i, end);
+                separator = false;
+                i = end - 1;
+            } else if (c == '#') {
+                while (i + 1 < query.length() && query.charAt(i + 1) != '\n' && query.charAt(i + 1) != '\r') {
+                    i++;
+                }
+                separator = true;
+            } else if (Character.isWhitespace(c) || c == ',' || c == '\uFEFF') {
+                separator = true;
+            } else {
+                appendSeparator(normalized, separator, c);
+                normalized.append(c);
+                separator = false;
+            }
+        }
+
+        return normalized.toString();
+    }
+
+    protected String key(String query, Map<String, Object> variables) {
+        String normalized = normalize(query);
+
+        if (variables == null || variables.isEmpty()) {
+            return normalized;
+        }
+
+        return normalized + '\n' + new TreeMap<>(variables);
+    }
+
+    /**
+     * Tags result data with the entity types and ids it contains
+     *
+     * @return tags or null if query is not a single read-only query operation
+     */
+    protected Set<String> tags(GraphQLSchema graphQLSchema, String query, Object data) {
+        Document document;
+
+        try {
+            document = new Parser().parseDocument(query);
+        } catch (RuntimeException e) {
+            return null;
+        }
+
+        OperationDefinition operation = null;
+        Map<String, FragmentDefinition> fragments = new HashMap<>();
+
+        for (Definition definition : document.getDefinitions()) {
+            if (definition instanceof OperationDefinition) {
+                if (operation != null) {
+                    return null;
+                }
+                operation = (OperationDefinition) definition;
+            } else if (definition instanceof FragmentDefinition) {
+                fragments.put(((FragmentDefinition) definition).getName(), (FragmentDefinition) definition);
+            }
+        }
+
+        if (operation == null
+                || operation.getOperation() != OperationDefinition.Operation.QUERY
+                || !(data instanceof Map)) {
+            return null;
+        }
+
+        Set<String> tags = new HashSet<>();
+
+        tag(graphQLSchema.getQueryType(), operation.getSelectionSet(), (Map<?, ?>) data, fragments, tags);
+
+        return tags;
+    }
+
+    private void tag(GraphQLFieldsContainer parentType,
+                     SelectionSet selectionSet,
+                     Map<?, ?> data,
+                     Map<String, FragmentDefinition> fragments,
+                     Set<String> tags) {
+        for (Selection selection : selectionSet.getSelections()) {
+            if (selection instanceof Field) {
+                Field field = (Field) selection;
+                GraphQLFieldDefinition fieldDefinition = parentType.getFieldDefinition(field.getName());
+
+                if (fieldDefinition != null && field.getSelectionSet() != null) {
+                    String resultKey = field.getAlias() != null ? field.getAlias() : field.getName();
+
+                    tag(fieldDefinition.getType(), field.getSelectionSet(), data.get(resultKey), fragments, tags);
+                }
+            } else if (selection instanceof InlineFragment) {
+                tag(parentType, ((InlineFragment) selection).getSelectionSet(), data, fragments, tags);
+            } else if (selection instanceof FragmentSpread) {
+                FragmentDefinition fragment = fragments.get(((FragmentSpread) selection).getName());
+
+                if (fragment != null) {
+                    tag(parentType, fragment.getSelectionSet(), data, fragments, tags);
+                }
+            }
+        }
+    }
+
+    private void tag(GraphQLType type,
+                     SelectionSet selectionSet,
+                     Object value,
+                     Map<String, FragmentDefinition> fragments,
+                     Set<String> tags) {
+        boolean list = false;
+
+        while (type instanceof GraphQLModifiedType) {
+            list |= type instanceof GraphQLList;
+            type = ((GraphQLModifiedType) type).getWrappedType();
+        }
+
+        if (!(type instanceof GraphQLFieldsContainer)) {
+            return;
+        }
+
+        GraphQLFieldsContainer objectType = (GraphQLFieldsContainer) type;
+
+        String derivedEntityType = derivedTypes.get(objectType.getName());
+
+        if (derivedEntityType != null) {
+            tags.add(typeTag(derivedEntityType));
+            return;
+        }
+
+        if (list) {
+            tags.add(typeTag(objectType.getName()));
+
+            if (value instanceof Collection) {
+                for (Object element : (Collection<?>) value) {
+                    if (element instanceof Map) {
+                        tag(objectType, selectionSet, (Map<?, ?>) element, fragments, tags);
+                    }
+                }
+            }
+        } else if (value instanceof Map) {
+            Object id = ((Map<?, ?>) value).get(ID);
+
+            // Objects without selected id, i.e. paged query wrappers, are tagged by their nested entities
+            if (id != null) {
+                tags.add(idTag(objectType.getName(), id));
+            }
+
+            tag(objectType, selectionSet, (Map<?, ?>) value, fragments, tags);
+        } else {
+            // Missing entity may be created later
+            tags.add(typeTag(objectType.getName()));
+        }
+    }
+
+    protected Set<String> eventTags(Map<?, ?> event) {
+        Object eventType = event.get(eventTypeKey);
+
+        if (eventType == null) {
+            return Collections.emptySet();
+        }
+
+        List<String> entityTypes = entityTypes(eventType.toString());
+        Object id = eventEntityId(event);
+
+        Set<String> tags = new LinkedHashSet<>();
+
+        for (String entityType : entityTypes) {
+            tags.add(typeTag(entityType));
+
+            if (id != null) {
+                tags.add(idTag(entityType, id));
+            }
+        }
+
+        return tags;
+    }
+
+    protected List<String> entityTypes(String eventType) {
+        String prefix = null;
+
+        for (String eventTypePrefix : eventEntityTypes.keySet()) {
+            if (eventType.startsWith(eventTypePrefix) && (prefix == null || eventTypePrefix.length() > prefix.length())) {
+                prefix = eventTypePrefix;
+            }
+        }
+
+        return prefix != null ? eventEntityTypes.get(prefix) : Collections.emptyList();
+    }
+
+    protected Object eventEntityId(Map<?, ?> event) {
+        Object entity = event.get(ENTITY);
+
+        if (entity instanceof Map) {
+            Object id = ((Map<?, ?>) entity).get(ID);
+
+            if (id == null) {
+                // Task candidate events refer to their task
+                id = ((Map<?, ?>) entity).get(TASK_ID);
+            }
+
+            if (id != null) {
+                return id;
+            }
+        }
+
+        return event.get(ENTITY_ID);
+    }
+
+    private void put(String key, Entry entry, long sequence) {
+        synchronized (entries) {
+            // Result may be stale if notifications were received during execution
+            if (sequence != invalidationSequence) {
+                return;
+            }
+
+            remove(key);
+
+            entries.put(key, entry);
+
+            for (String tag : entry.tags) {
+                taggedKeys.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+            }
+
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+
+                iterator.remove();
+                untag(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+
+        if (entry != null) {
+            untag(key, entry);
+        }
+    }
+
+    private void untag(String key, Entry entry) {
+        for (String tag : entry.tags) {
+            Set<String> keys = taggedKeys.get(tag);
+
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                taggedKeys.remove(tag);
+            }
+        }
+    }
+
+    private static ExecutionResult copy(ExecutionResult result) {
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> extensions = (Map<Object, Object>) copy(result.getExtensions());
+
+        return new ExecutionResultImpl(copy(result.getData()), Collections.emptyList(), extensions);
+    }
+
+    /**
+     * Copies result data into unmodifiable maps and lists
+     */
+    private static Object copy(Object value) {
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), copy(entry.getValue()));
+            }
+
+            return Collections.unmodifiableMap(copy);
+        } else if (value instanceof Collection) {
+            List<Object> copy = new ArrayList<>(((Collection<?>) value).size());
+
+            for (Object element : (Collection<?>) value) {
+                copy.add(copy(element));
+            }
+
+            return Collections.unmodifiableList(copy);
+        }
+
+        return value;
+    }
+
+    private static int endOfString(String query, int start) {
+        if (query.startsWith("\"\"\"", start)) {
+            int end = query.indexOf("\"\"\"", start + 3);
+
+            return end < 0 ? query.length() : end + 3;
+        }
+
+        for (int i = start + 1; i < query.length(); i++) {
+            char c = query.charAt(i);
+
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i + 1;
+            }
+        }
+
+        return query.length();
+    }
+
+    private static void appendSeparator(StringBuilder normalized, boolean separator, char next) {
+        if (separator && normalized.length() > 0
+                && PUNCTUATORS.indexOf(next) < 0
+                && PUNCTUATORS.indexOf(normalized.charAt(normalized.length() - 1)) < 0) {
+            normalized.append(' ');
+        }
+    }
+
+    private class Entry {
+
+        private final ExecutionResult result;
+
+        private final Set<String> tags;
+
+        private final long expiresAt = System.currentTimeMillis() + timeToLiveMs;
+
+        Entry(ExecutionResult result, Set<String> tags) {
+            this.result = result;
+            this.tags = tags;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+}
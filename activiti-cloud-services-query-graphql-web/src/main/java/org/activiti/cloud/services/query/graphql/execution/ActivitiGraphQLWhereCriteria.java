@@ -0,0 +1,263 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.Attribute.PersistentAttributeType;
+import javax.persistence.metamodel.EntityType;
+
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Compiles values of the GraphQL JPA 'where' query argument into JPA criteria predicates, so that query fields
+ * executed outside of GraphQL JPA data fetchers accept the same filter grammar: basic attribute operators EQ, NE,
+ * LIKE, CASE, STARTS, ENDS, GT, GE, LT, LE, IS_NULL, NOT_NULL, IN, NIN, BETWEEN and NOT_BETWEEN, combined with
+ * nested AND and OR expressions.
+ *
+ * Attribute names are validated against the entity metamodel and values are bound as query parameters.
+ */
+public class ActivitiGraphQLWhereCriteria {
+
+    private static final String AND = "AND";
+    private static final String OR = "OR";
+
+    private static final Set<String> OPERATORS = new HashSet<>(Arrays.asList("EQ", "NE", "LIKE", "CASE", "STARTS", "ENDS",
+                                                                            "GT", "GE", "LT", "LE", "IS_NULL", "NOT_NULL",
+                                                                            "IN", "NIN", "BETWEEN", "NOT_BETWEEN"));
+
+    private final ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    /**
+     * Compiles 'where' argument value into predicate
+     *
+     * @param cb criteria builder
+     * @param root query root of the entity
+     * @param entityType entity type used to validate attribute names
+     * @param where 'where' argument value, i.e. {status: {EQ: COMPLETED}, OR: {name: {LIKE: "task"}, assignee: {EQ: "user"}}}
+     * @return predicate
+     * @throws IllegalArgumentException if attribute or operator is not supported
+     */
+    @SuppressWarnings("unchecked")
+    public Predicate toPredicate(CriteriaBuilder cb, Root<?> root, EntityType<?> entityType, Map<String, Object> where) {
+        List<Predicate> predicates = new ArrayList<>();
+
+        for (Map.Entry<String, Object> entry : where.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+
+            if (AND.equals(entry.getKey()) || OR.equals(entry.getKey())) {
+                List<Predicate> operands = new ArrayList<>();
+
+                if (entry.getValue() instanceof Collection) {
+                    for (Object operand : (Collection<?>) entry.getValue()) {
+                        operands.add(toPredicate(cb, root, entityType, (Map<String, Object>) operand));
+                    }
+                } else {
+                    // Each attribute expression of an object operand is a separate operand
+                    ((Map<String, Object>) entry.getValue()).forEach((name, value) -> operands.add(toPredicate(cb, root, entityType, Collections.singletonMap(name, value))));
+                }
+
+                Predicate[] array = operands.toArray(new Predicate[0]);
+
+                predicates.add(AND.equals(entry.getKey()) ? cb.and(array) : cb.or(array));
+            } else {
+                Attribute<?, ?> attribute = basicAttribute(entityType, entry.getKey());
+
+                if (attribute == null) {
+                    throw new IllegalArgumentException("Unsupported where attribute: " + entry.getKey());
+                }
+
+                ((Map<String, Object>) entry.getValue()).forEach((operator, value) -> predicates.add(predicate(cb,
+                                                                                                               root.get(attribute.getName()),
+                                                                                                               attribute.getJavaType(),
+                                                                                                               operator,
+                                                                                                               value)));
+            }
+        }
+
+        return cb.and(predicates.toArray(new Predicate[0]));
+    }
+
+    /**
+     * Validates attribute names, operators and value shapes of 'where' argument value without compiling it,
+     * so that invalid filters can be rejected before query execution starts
+     *
+     * @param entityType entity type used to validate attribute names
+     * @param where 'where' argument value
+     * @throws IllegalArgumentException if attribute, operator or value is not supported
+     */
+    @SuppressWarnings("unchecked")
+    public void validate(EntityType<?> entityType, Map<String, Object> where) {
+        for (Map.Entry<String, Object> entry : where.entrySet()) {
+            Object value = entry.getValue();
+
+            if (value == null) {
+                continue;
+            }
+
+            if (AND.equals(entry.getKey()) || OR.equals(entry.getKey())) {
+                Collection<?> operands = value instanceof Collection ? (Collection<?>) value : Collections.singletonList(value);
+
+                for (Object operand : operands) {
+                    if (!(operand instanceof Map)) {
+                        throw new IllegalArgumentException("Expected where expression in " + entry.getKey() + ": " + operand);
+                    }
+                    validate(entityType, (Map<String, Object>) operand);
+                }
+            } else {
+                if (basicAttribute(entityType, entry.getKey()) == null) {
+                    throw new IllegalArgumentException("Unsupported where attribute: " + entry.getKey());
+                }
+
+                if (!(value instanceof Map)) {
+                    throw new IllegalArgumentException("Expected operators of where attribute " + entry.getKey() + ": " + value);
+                }
+
+                ((Map<String, Object>) value).forEach(ActivitiGraphQLWhereCriteria::validateOperand);
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected Predicate predicate(CriteriaBuilder cb, Path path, Class<?> javaType, String operator, Object value) {
+        Object operand = convert(value, javaType);
+
+        switch (operator) {
+            case "EQ":
+                return cb.equal(path, operand);
+            case "NE":
+                return cb.notEqual(path, operand);
+            case "LIKE":
+                return cb.like(path, "%" + operand + "%");
+            case "CASE":
+                return cb.equal(cb.lower(path), String.valueOf(operand).toLowerCase());
+            case "STARTS":
+                return cb.like(path, operand + "%");
+            case "ENDS":
+                return cb.like(path, "%" + operand);
+            case "GT":
+                return cb.greaterThan(path, (Comparable) operand);
+            case "GE":
+                return cb.greaterThanOrEqualTo(path, (Comparable) operand);
+            case "LT":
+                return cb.lessThan(path, (Comparable) operand);
+            case "LE":
+                return cb.lessThanOrEqualTo(path, (Comparable) operand);
+            case "IS_NULL":
+                return Boolean.TRUE.equals(operand) ? cb.isNull(path) : cb.isNotNull(path);
+            case "NOT_NULL":
+                return Boolean.TRUE.equals(operand) ? cb.isNotNull(path) : cb.isNull(path);
+            case "IN":
+                return path.in(values(operand));
+            case "NIN":
+                return cb.not(path.in(values(operand)));
+            case "BETWEEN": {
+                List<?> range = range(operand);
+
+                return cb.between(path, (Comparable) range.get(0), (Comparable) range.get(1));
+            }
+            case "NOT_BETWEEN": {
+                List<?> range = range(operand);
+
+                return cb.not(cb.between(path, (Comparable) range.get(0), (Comparable) range.get(1)));
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported where operator: " + operator);
+        }
+    }
+
+    protected Object convert(Object value, Class<?> javaType) {
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).stream()
+                                          .map(element -> convert(element, javaType))
+                                          .collect(Collectors.toList());
+        }
+
+        if (value == null || value instanceof Boolean || ClassUtils.resolvePrimitiveIfNecessary(javaType).isInstance(value)
+                || !conversionService.canConvert(value.getClass(), javaType)) {
+            return value;
+        }
+
+        return conversionService.convert(value, javaType);
+    }
+
+    static Attribute<?, ?> basicAttribute(EntityType<?> entityType, String name) {
+        try {
+            Attribute<?, ?> attribute = entityType.getAttribute(name);
+
+            return attribute.getPersistentAttributeType() == PersistentAttributeType.BASIC ? attribute : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void validateOperand(String operator, Object value) {
+        if (!OPERATORS.contains(operator)) {
+            throw new IllegalArgumentException("Unsupported where operator: " + operator);
+        }
+
+        switch (operator) {
+            case "IN":
+            case "NIN":
+                values(value);
+                break;
+            case "BETWEEN":
+            case "NOT_BETWEEN":
+                range(value);
+                break;
+            default:
+                if (value instanceof Collection || value instanceof Map) {
+                    throw new IllegalArgumentException("Expected single value of where operator " + operator + ": " + value);
+                }
+        }
+    }
+
+    private static List<?> values(Object value) {
+        if (!(value instanceof List) || ((List<?>) value).isEmpty()) {
+            throw new IllegalArgumentException("Expected list of values: " + value);
+        }
+
+        return (List<?>) value;
+    }
+
+    private static List<?> range(Object value) {
+        List<?> values = values(value);
+
+        if (values.size() != 2) {
+            throw new IllegalArgumentException("Expected list of two values: " + value);
+        }
+
+        return values;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.Metamodel;
+import javax.persistence.metamodel.SingularAttribute;
+
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.FragmentSpread;
+import graphql.language.InlineFragment;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+
+/**
+ * Selection set helpers shared by JPA query optimizations
+ */
+final class GraphQLSelections {
+
+    static final String SELECT_FIELD = "select";
+    static final String TYPENAME_FIELD = "__typename";
+
+    private GraphQLSelections() {
+    }
+
+    /**
+     * Collects selected fields, including fields of inline fragments and fragment spreads
+     */
+    static List<Field> fields(SelectionSet selectionSet, Map<String, FragmentDefinition> fragments) {
+        List<Field> fields = new ArrayList<>();
+
+        if (selectionSet != null) {
+            for (Selection selection : selectionSet.getSelections()) {
+                if (selection instanceof Field) {
+                    fields.add((Field) selection);
+                } else if (selection instanceof InlineFragment) {
+                    fields.addAll(fields(((InlineFragment) selection).getSelectionSet(), fragments));
+                } else if (selection instanceof FragmentSpread) {
+                    FragmentDefinition fragment = fragments.get(((FragmentSpread) selection).getName());
+
+                    if (fragment != null) {
+                        fields.addAll(fields(fragment.getSelectionSet(), fragments));
+                    }
+                }
+            }
+        }
+
+        return fields;
+    }
+
+    /**
+     * Returns names of entity attributes to query as tuple for records selected with 'select' of paged field,
+     * starting with the id attribute, or null to query entities if record fields other than basic attributes
+     * without arguments are selected
+     */
+    static List<String> projection(EntityType<?> entityType,
+                                   SingularAttribute<?, ?> idAttribute,
+                                   Field pagedField,
+                                   Map<String, FragmentDefinition> fragments) {
+        Set<String> attributes = new LinkedHashSet<>();
+        attributes.add(idAttribute.getName());
+
+        for (Field page : fields(pagedField.getSelectionSet(), fragments)) {
+            if (!SELECT_FIELD.equals(page.getName())) {
+                continue;
+            }
+
+            for (Field field : fields(page.getSelectionSet(), fragments)) {
+                if (TYPENAME_FIELD.equals(field.getName())) {
+                    continue;
+                }
+
+                if (field.getSelectionSet() != null
+                        || !field.getArguments().isEmpty()
+                        || ActivitiGraphQLWhereCriteria.basicAttribute(entityType, field.getName()) == null) {
+                    return null;
+                }
+
+                attributes.add(field.getName());
+            }
+        }
+
+        return new ArrayList<>(attributes);
+    }
+
+    /**
+     * @return JPA entity type with entity name, or null
+     */
+    static EntityType<?> entityType(Metamodel metamodel, String name) {
+        return metamodel.getEntities()
+                        .stream()
+                        .filter(entityType -> entityType.getName().equals(name))
+                        .findFirst()
+                        .orElse(null);
+    }
+
+}
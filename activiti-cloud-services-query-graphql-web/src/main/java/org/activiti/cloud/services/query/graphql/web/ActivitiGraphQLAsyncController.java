@@ -0,0 +1,330 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.web;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLQueryCancellation;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLQueryExecutor;
+import org.activiti.cloud.services.query.graphql.web.ActivitiGraphQLController.GraphQLQueryRequest;
+import org.activiti.cloud.services.query.graphql.web.ActivitiGraphQLController.GraphQLQueryRequestBody;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.introproventures.graphql.jpa.query.schema.GraphQLExecutor;
+
+import graphql.ErrorType;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQLError;
+import graphql.language.SourceLocation;
+
+/**
+ * Asynchronous variant of {@link ActivitiGraphQLController} with the same HTTP mapping endpoints, enabled with
+ * spring.activiti.cloud.services.query.graphql.async-enabled=true property.
+ *
+ * Requests are parsed on servlet threads and executed on dedicated {@link ActivitiGraphQLQueryExecutor},
+ * releasing servlet threads while queries are running. Requests are answered with 503 Service Unavailable
+ * status immediately if the query executor is saturated. Distinct operations of batched requests are executed
+ * in parallel on the query executor.
+ *
+ * Executions of a request are cancelled with {@link ActivitiGraphQLQueryCancellation} if the asynchronous request
+ * times out or fails, i.e. when the client disconnects, so that abandoned queries stop fetching data and their
+ * in-flight statements are cancelled.
+ */
+@RestController
+@ConditionalOnWebApplication
+@ConditionalOnClass(GraphQLExecutor.class)
+@ConditionalOnExpression(ActivitiGraphQLController.ASYNC_ENABLED)
+public class ActivitiGraphQLAsyncController {
+
+    private static final String SATURATED = "GraphQL query executor is saturated, please retry later";
+
+    private final ActivitiGraphQLController delegate;
+
+    private final ActivitiGraphQLQueryExecutor queryExecutor;
+
+    /**
+     * Creates instance of Spring GraphQL asynchronous RestController
+     * @param graphQLExecutor {@link GraphQLExecutor} instance
+     * @param mapper {@link ObjectMapper} instance
+     * @param queryExecutor {@link ActivitiGraphQLQueryExecutor} instance
+     * @param persistedQueryStore optional {@link PersistedQueryStore} instance
+     * @param incrementalDelivery optional {@link ActivitiGraphQLIncrementalDelivery} instance
+     */
+    public ActivitiGraphQLAsyncController(GraphQLExecutor graphQLExecutor,
+                                          ObjectMapper mapper,
+                                          ActivitiGraphQLQueryExecutor queryExecutor,
+                                          ObjectProvider<PersistedQueryStore> persistedQueryStore,
+                                          ObjectProvider<ActivitiGraphQLIncrementalDelivery> incrementalDelivery) {
+        this.delegate = new ActivitiGraphQLController(graphQLExecutor, mapper);
+        this.queryExecutor = queryExecutor;
+
+        persistedQueryStore.ifAvailable(delegate::setPersistedQueryStore);
+        incrementalDelivery.ifAvailable(delegate::setIncrementalDelivery);
+    }
+
+    /**
+     * @see ActivitiGraphQLController#setBatchMaxSize(int)
+     */
+    @Value(ActivitiGraphQLController.BATCH_MAX_SIZE)
+    public void setBatchMaxSize(int batchMaxSize) {
+        delegate.setBatchMaxSize(batchMaxSize);
+    }
+
+    /**
+     * @see ActivitiGraphQLController#setPersistedQueriesCacheMaxAge(long)
+     */
+    @Value(ActivitiGraphQLController.PERSISTED_QUERIES_CACHE_MAX_AGE)
+    public void setPersistedQueriesCacheMaxAge(long persistedQueriesCacheMaxAge) {
+        delegate.setPersistedQueriesCacheMaxAge(persistedQueriesCacheMaxAge);
+    }
+
+    /**
+     * Operations of batched requests are executed in parallel, each in its own transaction. Operations rejected
+     * by saturated query executor are answered with an error in their own result. Multipart/mixed responses with deferred
+     * fields are streamed on query executor, and requests rejected by saturated query executor are answered with 503 status.
+     * @see ActivitiGraphQLController#executePostJsonRequest(GraphQLQueryRequestBody, String, HttpServletResponse)
+     */
+    @PostMapping(value = ActivitiGraphQLController.PATH,
+            consumes = {MediaType.APPLICATION_JSON_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, ActivitiGraphQLController.MULTIPART_MIXED_VALUE})
+    public Object executePostJsonRequest(@RequestBody @Valid final GraphQLQueryRequestBody requestBody,
+                                         @RequestHeader(name = HttpHeaders.ACCEPT, required = false) final String accept,
+                                         final HttpServletResponse response) {
+        if (requestBody.isBatch()) {
+            return submitCancellable(cancellation -> delegate.executeBatch(requestBody.getRequests(),
+                                                                           operation -> submitOperation(() -> cancellation.run(operation))));
+        }
+
+        GraphQLQueryRequest queryRequest = requestBody.getRequests().get(0);
+
+        String incrementalQuery = delegate.incrementalQuery(accept, queryRequest);
+
+        if (incrementalQuery != null) {
+            return submitIncremental(incrementalQuery, queryRequest.getVariables(), response);
+        }
+
+        return submitCancellable(cancellation -> queryExecutor.submit(() -> cancellation.run(() -> delegate.execute(queryRequest.getQuery(),
+                                                                                                                queryRequest.getVariables(),
+                                                                                                                queryRequest.getExtensions()))));
+    }
+
+    /**
+     * @see ActivitiGraphQLController#executeGetQueryRequest(String, String, String, HttpServletResponse)
+     */
+    @GetMapping(value = ActivitiGraphQLController.PATH,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ExecutionResult> executeGetQueryRequest(
+            @RequestParam(name = "query", required = false) final String query,
+            @RequestParam(name = "variables", required = false) final String variables,
+            @RequestParam(name = "extensions", required = false) final String extensions,
+            final HttpServletResponse response) throws Exception {
+        Map<String, Object> variablesMap = delegate.variablesStringToMap(variables);
+        Map<String, Object> extensionsMap = delegate.variablesStringToMap(extensions);
+
+        ActivitiGraphQLController.requireQuery(query, extensionsMap);
+
+        // Headers are set before the deferred result is dispatched and the response is committed
+        return submitCancellable(cancellation -> queryExecutor.submit(() -> {
+            ExecutionResult result = cancellation.run(() -> delegate.execute(query, variablesMap, extensionsMap));
+
+            delegate.cacheControl(query, extensionsMap, result, response);
+
+            return result;
+        }));
+    }
+
+    /**
+     * @see ActivitiGraphQLController#executePostFormRequest(String, String, String)
+     */
+    @PostMapping(value = ActivitiGraphQLController.PATH,
+            consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ExecutionResult> executePostFormRequest(
+            @RequestParam(name = "query", required = false) final String query,
+            @RequestParam(name = "variables", required = false) final String variables,
+            @RequestParam(name = "extensions", required = false) final String extensions) throws Exception {
+        return submit(query, variables, extensions);
+    }
+
+    /**
+     * @see ActivitiGraphQLController#executePostApplicationGraphQL(String)
+     */
+    @PostMapping(value = ActivitiGraphQLController.PATH,
+            consumes = ActivitiGraphQLController.APPLICATION_GRAPHQL_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<ExecutionResult> executePostApplicationGraphQL(
+            @RequestBody final String query) throws IOException {
+        return submitCancellable(cancellation -> queryExecutor.submit(() -> cancellation.run(() -> delegate.execute(query, null, null))));
+    }
+
+    /**
+     * Answers requests rejected by saturated query executor with 503 status
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<ExecutionResult> handleRejectedExecution(RejectedExecutionException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .body(saturatedResult());
+    }
+
+    /**
+     * Submits execution observing cancellation, which is cancelled if the asynchronous request times out or fails
+     * @param submission submits execution with cancellation bound to its thread
+     * @return deferred result of execution
+     */
+    private <T> DeferredResult<T> submitCancellable(Function<ActivitiGraphQLQueryCancellation, CompletableFuture<T>> submission) {
+        ActivitiGraphQLQueryCancellation cancellation = new ActivitiGraphQLQueryCancellation();
+
+        CompletableFuture<T> future = submission.apply(cancellation);
+
+        DeferredResult<T> result = new DeferredResult<>();
+        result.onTimeout(cancellation::cancel);
+        result.onError(error -> cancellation.cancel());
+
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                result.setErrorResult(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                result.setResult(value);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Submits multipart/mixed streaming of query with deferred fields to query executor with cancellation bound to it.
+     * Spring MVC async task executor only hands over the response output stream and waits for streaming to complete,
+     * cancelling it if the asynchronous request times out.
+     * @throws RejectedExecutionException if query executor is saturated, before the response content type is set
+     */
+    private StreamingResponseBody submitIncremental(String query, Map<String, Object> variables, HttpServletResponse response) {
+        StreamingResponseBody body = delegate.executeIncremental(query, variables);
+
+        ActivitiGraphQLQueryCancellation cancellation = new ActivitiGraphQLQueryCancellation();
+        CompletableFuture<OutputStream> outputStream = new CompletableFuture<>();
+
+        cancellation.onCancel(() -> outputStream.cancel(false));
+
+        CompletableFuture<Void> streaming = queryExecutor.submit(() -> cancellation.run(() -> {
+            try {
+                body.writeTo(outputStream.join());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }));
+
+        response.setContentType(ActivitiGraphQLIncrementalDelivery.MULTIPART_MIXED.toString());
+
+        return stream -> {
+            outputStream.complete(stream);
+
+            try {
+                streaming.get();
+            } catch (InterruptedException e) {
+                cancellation.cancel();
+                Thread.currentThread().interrupt();
+
+                throw new InterruptedIOException("GraphQL incremental delivery has been interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        };
+    }
+
+    private CompletableFuture<ExecutionResult> submitOperation(Supplier<ExecutionResult> operation) {
+        try {
+            return queryExecutor.submit(operation);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(saturatedResult());
+        }
+    }
+
+    private static ExecutionResult saturatedResult() {
+        return new ExecutionResultImpl(Collections.singletonList(new SaturatedError()));
+    }
+
+    private DeferredResult<ExecutionResult> submit(String query, String variables, String extensions) throws Exception {
+        Map<String, Object> variablesMap = delegate.variablesStringToMap(variables);
+        Map<String, Object> extensionsMap = delegate.variablesStringToMap(extensions);
+
+        ActivitiGraphQLController.requireQuery(query, extensionsMap);
+
+        return submitCancellable(cancellation -> queryExecutor.submit(() -> cancellation.run(() -> delegate.execute(query, variablesMap, extensionsMap))));
+    }
+
+    @SuppressWarnings("serial")
+    static class SaturatedError implements GraphQLError {
+
+        @Override
+        public String getMessage() {
+            return SATURATED;
+        }
+
+        @Override
+        public List<SourceLocation> getLocations() {
+            return null;
+        }
+
+        @Override
+        public ErrorType getErrorType() {
+            return ErrorType.ExecutionAborted;
+        }
+    }
+
+}
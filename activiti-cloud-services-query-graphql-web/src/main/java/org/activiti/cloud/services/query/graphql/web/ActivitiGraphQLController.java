@@ -16,29 +16,60 @@
 package org.activiti.cloud.services.query.graphql.web;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
-import javax.validation.constraints.NotNull;
+import javax.validation.constraints.AssertTrue;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.introproventures.graphql.jpa.query.schema.GraphQLExecutor;
 import com.introproventures.graphql.jpa.query.schema.impl.GraphQLJpaExecutor;
 
 import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
 
 /**
  * Activiti GraphQL Query Spring Rest Controller with HTTP mapping endpoints for GraphQLExecutor relay
@@ -47,17 +78,37 @@ import graphql.ExecutionResult;
 @RestController
 @ConditionalOnWebApplication
 @ConditionalOnClass(GraphQLExecutor.class)
-@ConditionalOnProperty(name = "spring.activiti.cloud.services.query.graphql.enabled", matchIfMissing = true)
+@ConditionalOnExpression(ActivitiGraphQLController.SYNC_ENABLED)
 @Transactional(readOnly=true) // Fixes unable to access lob stream: 
 							  // Caused by: org.postgresql.util.PSQLException: Large Objects may not be used in auto-commit mode. 
 public class ActivitiGraphQLController {
 
-    private static final String PATH = "${spring.activiti.cloud.services.query.graphql.path:/admin/graphql}";
+    private static Logger log = LoggerFactory.getLogger(ActivitiGraphQLController.class);
+
+    static final String PATH = "${spring.activiti.cloud.services.query.graphql.path:/admin/graphql}";
+    static final String SYNC_ENABLED = "${spring.activiti.cloud.services.query.graphql.enabled:true} and !${spring.activiti.cloud.services.query.graphql.async-enabled:false}";
+    static final String ASYNC_ENABLED = "${spring.activiti.cloud.services.query.graphql.enabled:true} and ${spring.activiti.cloud.services.query.graphql.async-enabled:false}";
+    static final String EXPORT_ENABLED = "${spring.activiti.cloud.services.query.graphql.enabled:true} and ${spring.activiti.cloud.services.query.graphql.export-enabled:false}";
+    static final String BATCH_MAX_SIZE = "${spring.activiti.cloud.services.query.graphql.batch-max-size:25}";
+    static final String PERSISTED_QUERIES_CACHE_MAX_AGE = "${spring.activiti.cloud.services.query.graphql.persisted-queries-cache-max-age-seconds:60}";
     public static final String APPLICATION_GRAPHQL_VALUE = "application/graphql";
+    public static final String MULTIPART_MIXED_VALUE = "multipart/mixed";
+
+    private static final String QUERY = "query";
+    private static final String PERSISTED_QUERY = "persistedQuery";
+    private static final String SHA256_HASH = "sha256Hash";
 
     private final GraphQLExecutor graphQLExecutor;
     private final ObjectMapper mapper;
 
+    private PersistedQueryStore persistedQueryStore;
+
+    private ActivitiGraphQLIncrementalDelivery incrementalDelivery;
+
+    private int batchMaxSize = 25;
+
+    private long persistedQueriesCacheMaxAge = 60;
+
     /**
      * Creates instance of Spring GraphQLController RestController
      * @param graphQLExecutor {@link GraphQLExecutor} instance
@@ -70,6 +121,42 @@ public class ActivitiGraphQLController {
         this.mapper = mapper;
     }
 
+    /**
+     * Enables automatic persisted queries
+     * @param persistedQueryStore {@link PersistedQueryStore} instance
+     */
+    @Autowired(required = false)
+    public void setPersistedQueryStore(PersistedQueryStore persistedQueryStore) {
+        this.persistedQueryStore = persistedQueryStore;
+    }
+
+    /**
+     * Enables incremental delivery of deferred fields as multipart/mixed responses
+     * @param incrementalDelivery {@link ActivitiGraphQLIncrementalDelivery} instance
+     */
+    @Autowired(required = false)
+    public void setIncrementalDelivery(ActivitiGraphQLIncrementalDelivery incrementalDelivery) {
+        this.incrementalDelivery = incrementalDelivery;
+    }
+
+    /**
+     * Limits the number of operations in batched requests
+     * @param batchMaxSize maximum number of operations in batched request
+     */
+    @Value(BATCH_MAX_SIZE)
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    /**
+     * Lets clients cache successful results of GET requests for persisted query hashes
+     * @param persistedQueriesCacheMaxAge Cache-Control max-age in seconds, 0 to disable caching
+     */
+    @Value(PERSISTED_QUERIES_CACHE_MAX_AGE)
+    public void setPersistedQueriesCacheMaxAge(long persistedQueriesCacheMaxAge) {
+        this.persistedQueriesCacheMaxAge = persistedQueriesCacheMaxAge;
+    }
+
     /**
      * Handle standard GraphQL POST request that consumes
      * "application/json" content type with a JSON-encoded body
@@ -77,19 +164,49 @@ public class ActivitiGraphQLController {
      * <pre>
      * {
      *   "query": "...",
-     *   "variables": { "myVariable": "someValue", ... }
+     *   "variables": { "myVariable": "someValue", ... },
+     *   "extensions": { "persistedQuery": { "version": 1, "sha256Hash": "..." } }
      * }
      * </pre>
-     * @param queryRequest object
-     * @return {@link ExecutionResult} response
+     * The query may be omitted if its persisted query hash has been registered before.
+     * <p>
+     * The body may also be a JSON array of requests in the same format. Batched operations are executed
+     * in the request transaction, identical operations are executed once, and the response is a JSON array
+     * of results in the order of requests, with errors of each operation reported in its own result.
+     * <p>
+     * Queries with fields marked with @defer directive are answered with multipart/mixed incremental payloads
+     * if the client accepts multipart/mixed responses, otherwise deferred fields are included in the JSON result.
+     * @param requestBody object or array of objects
+     * @param accept Accept request header
+     * @param response servlet response
+     * @return {@link ExecutionResult} response, list of {@link ExecutionResult} responses for batched request
+     * or streaming multipart/mixed response body
      * @throws IOException
      */
     @PostMapping(value = PATH,
             consumes = {MediaType.APPLICATION_JSON_VALUE},
-            produces = MediaType.APPLICATION_JSON_VALUE)
-    public ExecutionResult executePostJsonRequest(@RequestBody @Valid final GraphQLQueryRequest queryRequest) throws IOException {
-        return graphQLExecutor.execute(queryRequest.getQuery(),
-                                       queryRequest.getVariables());
+            produces = {MediaType.APPLICATION_JSON_VALUE, MULTIPART_MIXED_VALUE})
+    public Object executePostJsonRequest(@RequestBody @Valid final GraphQLQueryRequestBody requestBody,
+                                         @RequestHeader(name = HttpHeaders.ACCEPT, required = false) final String accept,
+                                         final HttpServletResponse response) throws IOException {
+        if (requestBody.isBatch()) {
+            return executeBatch(requestBody.getRequests(),
+                                operation -> CompletableFuture.completedFuture(operation.get())).join();
+        }
+
+        GraphQLQueryRequest queryRequest = requestBody.getRequests().get(0);
+
+        String incrementalQuery = incrementalQuery(accept, queryRequest);
+
+        if (incrementalQuery != null) {
+            response.setContentType(ActivitiGraphQLIncrementalDelivery.MULTIPART_MIXED.toString());
+
+            return executeIncremental(incrementalQuery, queryRequest.getVariables());
+        }
+
+        return execute(queryRequest.getQuery(),
+                       queryRequest.getVariables(),
+                       queryRequest.getExtensions());
     }
 
     /**
@@ -98,22 +215,37 @@ public class ActivitiGraphQLController {
      * i.e. <pre> http://server/graphql?query={query{name}}</pre>
      * <p>
      * Query variables can be sent as a JSON-encoded string in an additional
-     * query parameter called variables.
+     * query parameter called variables, and a persisted query hash in place of the query in
+     * a parameter called extensions.
+     * <p>
+     * GET requests have no body, so any or no Content-Type is accepted. Successful results of requests
+     * with a persisted query hash and no query text are answered with a private Cache-Control max-age.
      * @param query encoded JSON string
      * @param variables encoded JSON string
+     * @param extensions encoded JSON string
+     * @param response servlet response
      * @return {@link ExecutionResult} response
-     * @throws IOException
+     * @throws Exception
      */
     @GetMapping(value = PATH,
-            consumes = {APPLICATION_GRAPHQL_VALUE},
             produces = MediaType.APPLICATION_JSON_VALUE)
     public ExecutionResult executeGetQueryRequest(
-            @RequestParam(name = "query") final String query,
-            @RequestParam(name = "variables", required = false) final String variables) throws IOException {
+            @RequestParam(name = "query", required = false) final String query,
+            @RequestParam(name = "variables", required = false) final String variables,
+            @RequestParam(name = "extensions", required = false) final String extensions,
+            final HttpServletResponse response) throws Exception {
         Map<String, Object> variablesMap = variablesStringToMap(variables);
+        Map<String, Object> extensionsMap = variablesStringToMap(extensions);
 
-        return graphQLExecutor.execute(query,
-                                       variablesMap);
+        requireQuery(query, extensionsMap);
+
+        ExecutionResult result = execute(query,
+                                         variablesMap,
+                                         extensionsMap);
+
+        cacheControl(query, extensionsMap, result, response);
+
+        return result;
     }
 
     /**
@@ -121,22 +253,29 @@ public class ActivitiGraphQLController {
      * The GraphQL query should be specified in the "query" query parameter string.
      * <p>
      * Query variables can be sent as a JSON-encoded string in an additional
-     * query parameter called variables.
+     * query parameter called variables, and a persisted query hash in place of the query in
+     * a parameter called extensions.
      * @param query encoded JSON string
      * @param variables encoded JSON string
+     * @param extensions encoded JSON string
      * @return {@link ExecutionResult} response
-     * @throws IOException
+     * @throws Exception
      */
     @PostMapping(value = PATH,
             consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE)
     public ExecutionResult executePostFormRequest(
-            @RequestParam(name = "query") final String query,
-            @RequestParam(name = "variables", required = false) final String variables) throws IOException {
+            @RequestParam(name = "query", required = false) final String query,
+            @RequestParam(name = "variables", required = false) final String variables,
+            @RequestParam(name = "extensions", required = false) final String extensions) throws Exception {
         Map<String, Object> variablesMap = variablesStringToMap(variables);
+        Map<String, Object> extensionsMap = variablesStringToMap(extensions);
 
-        return graphQLExecutor.execute(query,
-                                       variablesMap);
+        requireQuery(query, extensionsMap);
+
+        return execute(query,
+                       variablesMap,
+                       extensionsMap);
     }
 
     /**
@@ -155,6 +294,186 @@ public class ActivitiGraphQLController {
                                        null);
     }
 
+    /**
+     * Resolves automatic persisted query and executes it. Registers query text with persisted query hash
+     * if both are present, or answers PersistedQueryNotFound if hash is not registered.
+     */
+    protected ExecutionResult execute(String query, Map<String, Object> variables, Map<String, Object> extensions) {
+        String hash = persistedQueryHash(extensions);
+
+        if (hash != null) {
+            if (persistedQueryStore == null) {
+                return errorResult(PersistedQueryError.notSupported());
+            }
+
+            if (query == null) {
+                query = persistedQueryStore.get(hash);
+
+                if (query == null) {
+                    return errorResult(PersistedQueryError.notFound());
+                }
+            } else if (hash.equalsIgnoreCase(sha256Hex(query))) {
+                persistedQueryStore.put(hash.toLowerCase(), query);
+            } else {
+                return errorResult(PersistedQueryError.hashMismatch());
+            }
+        }
+
+        return graphQLExecutor.execute(query,
+                                       variables);
+    }
+
+    /**
+     * Sets private Cache-Control max-age on successful results of GET requests with a persisted query hash only,
+     * so that the same hash is answered from the client cache
+     */
+    void cacheControl(String query, Map<String, Object> extensions, ExecutionResult result, HttpServletResponse response) {
+        if (query == null
+                && persistedQueriesCacheMaxAge > 0
+                && persistedQueryHash(extensions) != null
+                && (result.getErrors() == null || result.getErrors().isEmpty())) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(persistedQueriesCacheMaxAge, TimeUnit.SECONDS)
+                                                                      .cachePrivate()
+                                                                      .getHeaderValue());
+        }
+    }
+
+    /**
+     * Resolves automatic persisted query of request before checking it for deferred fields, and registers
+     * query text with persisted query hash if both are present. Unknown or mismatching hashes are left
+     * to {@link #execute(String, Map, Map)} to answer with persisted query errors.
+     * @return query text if client accepts multipart/mixed response and query has deferred fields, otherwise null
+     */
+    String incrementalQuery(String accept, GraphQLQueryRequest queryRequest) {
+        if (incrementalDelivery == null) {
+            return null;
+        }
+
+        String query = queryRequest.getQuery();
+        String hash = persistedQueryHash(queryRequest.getExtensions());
+
+        if (hash != null) {
+            if (persistedQueryStore == null) {
+                return null;
+            }
+
+            if (query == null) {
+                query = persistedQueryStore.get(hash);
+            } else if (!hash.equalsIgnoreCase(sha256Hex(query))) {
+                return null;
+            } else if (incrementalDelivery.isIncremental(accept, query)) {
+                persistedQueryStore.put(hash.toLowerCase(), query);
+            }
+        }
+
+        return incrementalDelivery.isIncremental(accept, query) ? query : null;
+    }
+
+    /**
+     * Starts multipart/mixed response streaming initial result and deferred fields of query as they are resolved
+     */
+    StreamingResponseBody executeIncremental(String query, Map<String, Object> variables) {
+        return incrementalDelivery.execute(query,
+                                           variables);
+    }
+
+    /**
+     * Executes distinct operations of batched request with executor and collects their results in the order of requests.
+     * Errors of each operation are reported in its own result.
+     * @param requests batched requests
+     * @param executor executes operation, i.e. in parallel with other operations
+     * @return future of results in the order of requests
+     * @throws ResponseStatusException with 400 status if batch is larger than maximum batch size
+     */
+    CompletableFuture<List<ExecutionResult>> executeBatch(List<GraphQLQueryRequest> requests,
+                                                          Function<Supplier<ExecutionResult>, CompletableFuture<ExecutionResult>> executor) {
+        if (requests.size() > batchMaxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                              "Batched request exceeds maximum number of operations " + batchMaxSize);
+        }
+
+        Map<List<Object>, CompletableFuture<ExecutionResult>> operations = new LinkedHashMap<>();
+        List<CompletableFuture<ExecutionResult>> results = new ArrayList<>(requests.size());
+
+        for (GraphQLQueryRequest request : requests) {
+            List<Object> key = request != null ? Arrays.asList(request.getQuery(),
+                                                               request.getVariables(),
+                                                               request.getExtensions())
+                                               : null;
+
+            results.add(operations.computeIfAbsent(key, k -> executor.apply(() -> executeOperation(request))));
+        }
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()]))
+                                .thenApply(done -> results.stream()
+                                                          .map(CompletableFuture::join)
+                                                          .collect(Collectors.toList()));
+    }
+
+    /**
+     * Executes batched operation, reporting failures in its result
+     */
+    private ExecutionResult executeOperation(GraphQLQueryRequest request) {
+        if (request == null || !request.isQueryPresent()) {
+            return new ExecutionResultImpl(Collections.singletonList(BatchOperationError.queryMissing()));
+        }
+
+        try {
+            return execute(request.getQuery(),
+                           request.getVariables(),
+                           request.getExtensions());
+        } catch (RuntimeException e) {
+            log.error("Batched operation failed: {}", e.getMessage(), e);
+
+            return new ExecutionResultImpl(Collections.singletonList(BatchOperationError.failed(e)));
+        }
+    }
+
+    /**
+     * @throws MissingServletRequestParameterException if neither query nor persisted query hash is present
+     */
+    static void requireQuery(String query, Map<String, Object> extensions) throws MissingServletRequestParameterException {
+        if (query == null && persistedQueryHash(extensions) == null) {
+            throw new MissingServletRequestParameterException(QUERY, String.class.getSimpleName());
+        }
+    }
+
+    private static ExecutionResult errorResult(PersistedQueryError error) {
+        return new ExecutionResultImpl(Collections.singletonList(error));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String persistedQueryHash(Map<String, Object> extensions) {
+        if (extensions != null && extensions.get(PERSISTED_QUERY) instanceof Map) {
+            Object hash = ((Map<String, Object>) extensions.get(PERSISTED_QUERY)).get(SHA256_HASH);
+
+            return hash != null ? hash.toString().toLowerCase() : null;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param query query text
+     * @return lower case hex encoded SHA-256 hash of query text
+     */
+    public static String sha256Hex(String query) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(query.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+                   .append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Convert String argument to a Map as expected by {@link GraphQLJpaExecutor#execute(String, Map)}. GraphiQL posts both
      * query and variables as JSON encoded String, so Spring MVC mapping is useless here.
@@ -164,7 +483,7 @@ public class ActivitiGraphQLController {
      * @throws IOException
      */
     @SuppressWarnings("unchecked")
-    private Map<String, Object> variablesStringToMap(final String json) throws IOException {
+    Map<String, Object> variablesStringToMap(final String json) throws IOException {
         Map<String, Object> variables = null;
 
         if (json != null && !json.isEmpty()) {
@@ -181,11 +500,12 @@ public class ActivitiGraphQLController {
     @Validated
     public static class GraphQLQueryRequest {
 
-        @NotNull
         private String query;
 
         private Map<String, Object> variables;
 
+        private Map<String, Object> extensions;
+
         GraphQLQueryRequest() {
         }
 
@@ -224,5 +544,81 @@ public class ActivitiGraphQLController {
         public void setVariables(Map<String, Object> variables) {
             this.variables = variables;
         }
+
+        /**
+         * @return the extensions
+         */
+        public Map<String, Object> getExtensions() {
+            return this.extensions;
+        }
+
+        /**
+         * @param extensions the extensions to set
+         */
+        public void setExtensions(Map<String, Object> extensions) {
+            this.extensions = extensions;
+        }
+
+        /**
+         * @return true if query or persisted query hash is present
+         */
+        @JsonIgnore
+        @AssertTrue(message = "query must not be null")
+        public boolean isQueryPresent() {
+            return query != null || persistedQueryHash(extensions) != null;
+        }
+    }
+
+    /**
+     * GraphQL JSON HTTP Request Body with single request object or array of batched request objects
+     */
+    @Validated
+    @JsonDeserialize(using = GraphQLQueryRequestBody.Deserializer.class)
+    public static class GraphQLQueryRequestBody {
+
+        @Valid
+        private final List<GraphQLQueryRequest> requests;
+
+        private final boolean batch;
+
+        /**
+         * @param requests
+         * @param batch true if requests were sent as JSON array
+         */
+        public GraphQLQueryRequestBody(List<GraphQLQueryRequest> requests, boolean batch) {
+            this.requests = requests;
+            this.batch = batch;
+        }
+
+        /**
+         * @return the requests
+         */
+        public List<GraphQLQueryRequest> getRequests() {
+            return this.requests;
+        }
+
+        /**
+         * @return true if requests were sent as JSON array
+         */
+        public boolean isBatch() {
+            return this.batch;
+        }
+
+        static class Deserializer extends JsonDeserializer<GraphQLQueryRequestBody> {
+
+            @Override
+            public GraphQLQueryRequestBody deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                if (parser.isExpectedStartArrayToken()) {
+                    List<GraphQLQueryRequest> requests = context.readValue(parser,
+                                                                           context.getTypeFactory()
+                                                                                  .constructCollectionType(List.class,
+                                                                                                           GraphQLQueryRequest.class));
+                    return new GraphQLQueryRequestBody(requests, true);
+                }
+
+                return new GraphQLQueryRequestBody(Collections.singletonList(context.readValue(parser, GraphQLQueryRequest.class)),
+                                                   false);
+            }
+        }
     }
 }
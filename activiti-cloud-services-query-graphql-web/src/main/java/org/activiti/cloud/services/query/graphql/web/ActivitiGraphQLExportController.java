@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.web;
+
+import javax.validation.Valid;
+
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLExporter;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLExporter.ExportQuery;
+import org.activiti.cloud.services.query.graphql.web.ActivitiGraphQLController.GraphQLQueryRequest;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.introproventures.graphql.jpa.query.schema.GraphQLExecutor;
+
+/**
+ * Bulk export endpoint streaming all records matching a paged entity query as newline delimited JSON, i.e.
+ * <pre>
+ * POST /admin/graphql/export
+ * {
+ *   "query": "{ProcessInstances(where: {status: {EQ: COMPLETED}}) {select {id businessKey}}}",
+ *   "variables": { ... }
+ * }
+ * </pre>
+ * Queries are validated before the response is started and answered with 400 Bad Request status if invalid.
+ * Records are then written while they are read from the database by {@link ActivitiGraphQLExporter}.
+ * <p>
+ * The endpoint is disabled by default, as exports read all matching rows without row limit or query timeout,
+ * and is enabled with spring.activiti.cloud.services.query.graphql.export-enabled=true property.
+ */
+@RestController
+@ConditionalOnWebApplication
+@ConditionalOnClass(GraphQLExecutor.class)
+@ConditionalOnExpression(ActivitiGraphQLController.EXPORT_ENABLED)
+public class ActivitiGraphQLExportController {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final ActivitiGraphQLExporter exporter;
+
+    /**
+     * Creates instance of Spring GraphQL export RestController
+     * @param exporter {@link ActivitiGraphQLExporter} instance
+     */
+    public ActivitiGraphQLExportController(ActivitiGraphQLExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    @PostMapping(value = ActivitiGraphQLController.PATH + "/export",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(@RequestBody @Valid GraphQLQueryRequest request) {
+        ExportQuery exportQuery;
+
+        try {
+            exportQuery = exporter.prepare(request.getQuery(), request.getVariables());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        return ResponseEntity.ok()
+                             .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                             .body(outputStream -> exporter.export(exportQuery, outputStream));
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLExecutor;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+
+/**
+ * Writes results of queries with @defer directive as multipart/mixed incremental payloads, i.e.
+ * <pre>
+ * ---
+ * Content-Type: application/json; charset=utf-8
+ *
+ * {"data":{"ProcessInstances":{"select":[{"id":"1"}]}},"hasNext":true}
+ * ---
+ * Content-Type: application/json; charset=utf-8
+ *
+ * {"path":["ProcessInstances","select",0,"variables"],"data":[...],"hasNext":true}
+ * ---
+ * Content-Type: application/json; charset=utf-8
+ *
+ * {"hasNext":false}
+ * -----
+ * </pre>
+ * The initial payload with non deferred fields is flushed to the client before deferred fields are resolved,
+ * and each deferred field is flushed as soon as it is resolved. The query and its deferred fields are executed in
+ * the same read-only transaction, so that deferred fields can load associations of entities of the initial payload.
+ */
+public class ActivitiGraphQLIncrementalDelivery {
+
+    public static final String BOUNDARY = "-";
+    public static final MediaType MULTIPART_MIXED = MediaType.parseMediaType("multipart/mixed; boundary=\"" + BOUNDARY + "\"");
+
+    private static final String DEFER_DIRECTIVE = "@defer";
+
+    private static final byte[] DELIMITER = ("\r\n--" + BOUNDARY).getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PART_HEADERS = "\r\nContent-Type: application/json; charset=utf-8\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLOSE_DELIMITER = ("--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private static final String DATA = "data";
+    private static final String ERRORS = "errors";
+    private static final String PATH = "path";
+    private static final String HAS_NEXT = "hasNext";
+
+    private final ActivitiGraphQLExecutor graphQLExecutor;
+
+    private final ObjectMapper mapper;
+
+    private TransactionTemplate transactionTemplate;
+
+    public ActivitiGraphQLIncrementalDelivery(ActivitiGraphQLExecutor graphQLExecutor, ObjectMapper mapper) {
+        this.graphQLExecutor = graphQLExecutor;
+        this.mapper = mapper;
+    }
+
+    /**
+     * @param transactionTemplate transaction template used to execute query and its deferred fields
+     */
+    public ActivitiGraphQLIncrementalDelivery transactionTemplate(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+
+        return this;
+    }
+
+    /**
+     * @param accept Accept request header value
+     * @param query query text
+     * @return true if client accepts multipart/mixed responses and query has deferred fields
+     */
+    public boolean isIncremental(String accept, String query) {
+        return query != null && query.contains(DEFER_DIRECTIVE) && acceptsMultipartMixed(accept);
+    }
+
+    /**
+     * @param query query text with deferred fields
+     * @param variables query variables, may be null
+     * @return response body writing query results as multipart/mixed payloads
+     */
+    public StreamingResponseBody execute(String query, Map<String, Object> variables) {
+        return outputStream -> {
+            try {
+                if (transactionTemplate != null) {
+                    transactionTemplate.execute(status -> write(query, variables, outputStream));
+                } else {
+                    write(query, variables, outputStream);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+    }
+
+    protected Object write(String query, Map<String, Object> variables, OutputStream outputStream) {
+        try {
+            JsonGenerator generator = mapper.getFactory().createGenerator(outputStream);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            ExecutionResult result = graphQLExecutor.executeIncremental(query, variables);
+
+            outputStream.write(DELIMITER);
+
+            writePart(generator, outputStream, null, result.getData(), result.getErrors(), true);
+
+            ActivitiGraphQLExecutor.forEachDeferredResult(result, deferredResult -> {
+                try {
+                    writePart(generator, outputStream, deferredResult.getPath(), deferredResult.getData(), deferredResult.getErrors(), true);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            writePart(generator, outputStream, null, null, null, false);
+
+            outputStream.write(CLOSE_DELIMITER);
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return null;
+    }
+
+    private void writePart(JsonGenerator generator,
+                           OutputStream outputStream,
+                           List<Object> path,
+                           Object data,
+                           List<GraphQLError> errors,
+                           boolean hasNext) throws IOException {
+        outputStream.write(PART_HEADERS);
+
+        generator.writeStartObject();
+
+        if (path != null) {
+            generator.writeFieldName(PATH);
+            generator.writeObject(path);
+        }
+
+        if (data != null || path != null) {
+            generator.writeFieldName(DATA);
+            generator.writeObject(data);
+        }
+
+        if (errors != null && !errors.isEmpty()) {
+            generator.writeFieldName(ERRORS);
+            generator.writeObject(errors);
+        }
+
+        generator.writeBooleanField(HAS_NEXT, hasNext);
+        generator.writeEndObject();
+        generator.flush();
+
+        outputStream.write(DELIMITER);
+        outputStream.flush();
+    }
+
+    private static boolean acceptsMultipartMixed(String accept) {
+        if (!StringUtils.hasText(accept)) {
+            return false;
+        }
+
+        try {
+            return MediaType.parseMediaTypes(accept)
+                            .stream()
+                            .anyMatch(mediaType -> !mediaType.isWildcardType() && MULTIPART_MIXED.includes(mediaType));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+}
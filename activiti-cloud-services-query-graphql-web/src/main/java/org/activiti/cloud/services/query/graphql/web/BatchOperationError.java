@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.web;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import graphql.ErrorType;
+import graphql.GraphQLError;
+import graphql.language.SourceLocation;
+
+/**
+ * Error of a single operation of batched request, reported in the result of that operation
+ */
+@SuppressWarnings("serial")
+public class BatchOperationError implements GraphQLError {
+
+    public static final String QUERY_MISSING = "query must not be null";
+
+    private static final String CODE = "code";
+
+    private final String message;
+    private final String code;
+
+    public BatchOperationError(String message, String code) {
+        this.message = message;
+        this.code = code;
+    }
+
+    public static BatchOperationError queryMissing() {
+        return new BatchOperationError(QUERY_MISSING, "BAD_REQUEST");
+    }
+
+    public static BatchOperationError failed(Exception exception) {
+        return new BatchOperationError(exception.getMessage(), "INTERNAL_SERVER_ERROR");
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public List<SourceLocation> getLocations() {
+        return null;
+    }
+
+    @Override
+    public ErrorType getErrorType() {
+        return ErrorType.ExecutionAborted;
+    }
+
+    @Override
+    public Map<String, Object> getExtensions() {
+        return Collections.singletonMap(CODE, code);
+    }
+
+}
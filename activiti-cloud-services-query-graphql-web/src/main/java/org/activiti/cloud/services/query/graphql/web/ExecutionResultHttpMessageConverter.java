@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.web;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import graphql.ExecutionResult;
+
+/**
+ * Writes {@link ExecutionResult} responses straight to the response output stream with a streaming JSON generator.
+ *
+ * The result data tree is traversed and written incrementally instead of being serialized as a bean, and written
+ * list elements and map entries are released from the result as soon as they are written, so that the already
+ * written part of a large result can be garbage collected while the rest of the response is being written.
+ */
+public class ExecutionResultHttpMessageConverter extends AbstractHttpMessageConverter<ExecutionResult> {
+
+    private static final String ERRORS = "errors";
+    private static final String DATA = "data";
+    private static final String EXTENSIONS = "extensions";
+
+    private final ObjectMapper mapper;
+
+    private final ObjectWriter writer;
+
+    private boolean releaseWritten = true;
+
+    public ExecutionResultHttpMessageConverter(ObjectMapper mapper) {
+        super(MediaType.APPLICATION_JSON, MediaType.APPLICATION_JSON_UTF8);
+        this.mapper = mapper;
+        this.writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * @param releaseWritten release written elements from result data, true by default
+     */
+    public ExecutionResultHttpMessageConverter releaseWritten(boolean releaseWritten) {
+        this.releaseWritten = releaseWritten;
+
+        return this;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ExecutionResult.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected ExecutionResult readInternal(Class<? extends ExecutionResult> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("ExecutionResult cannot be read");
+    }
+
+    @Override
+    protected void writeInternal(ExecutionResult result, HttpOutputMessage outputMessage) throws IOException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(outputMessage.getBody(), JsonEncoding.UTF8);
+
+        write(result, generator);
+        generator.flush();
+    }
+
+    /**
+     * Writes execution result with the same properties as Jackson bean serialization of {@link ExecutionResult}
+     */
+    public void write(ExecutionResult result, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+
+        generator.writeFieldName(ERRORS);
+        writer.writeValue(generator, result.getErrors());
+
+        generator.writeFieldName(DATA);
+        writeValue(result.getData(), generator);
+
+        generator.writeFieldName(EXTENSIONS);
+        writer.writeValue(generator, result.getExtensions());
+
+        generator.writeEndObject();
+    }
+
+    protected void writeValue(Object value, JsonGenerator generator) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Map) {
+            writeMap((Map<?, ?>) value, generator);
+        } else if (value instanceof List && value instanceof RandomAccess) {
+            writeList((List<?>) value, generator);
+        } else if (value instanceof Collection) {
+            generator.writeStartArray();
+
+            for (Object element : (Collection<?>) value) {
+                writeValue(element, generator);
+            }
+            generator.writeEndArray();
+        } else if (value.getClass().isArray() && !value.getClass().getComponentType().isPrimitive()) {
+            generator.writeStartArray();
+
+            for (int i = 0; i < Array.getLength(value); i++) {
+                writeValue(Array.get(value, i), generator);
+            }
+            generator.writeEndArray();
+        } else {
+            writer.writeValue(generator, value);
+        }
+    }
+
+    private void writeMap(Map<?, ?> map, JsonGenerator generator) throws IOException {
+        boolean release = releaseWritten;
+
+        generator.writeStartObject();
+
+        for (Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator(); iterator.hasNext();) {
+            Map.Entry<?, ?> entry = iterator.next();
+
+            generator.writeFieldName(String.valueOf(entry.getKey()));
+            writeValue(entry.getValue(), generator);
+
+            if (release) {
+                release = release(iterator);
+            }
+        }
+
+        generator.writeEndObject();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeList(List<?> list, JsonGenerator generator) throws IOException {
+        boolean release = releaseWritten;
+
+        generator.writeStartArray();
+
+        for (ListIterator<Object> iterator = (ListIterator<Object>) list.listIterator(); iterator.hasNext();) {
+            writeValue(iterator.next(), generator);
+
+            if (release) {
+                try {
+                    iterator.set(null);
+                } catch (UnsupportedOperationException e) {
+                    release = false;
+                }
+            }
+        }
+
+        generator.writeEndArray();
+    }
+
+    private static boolean release(Iterator<?> iterator) {
+        try {
+            iterator.remove();
+            return true;
+        } catch (UnsupportedOperationException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+}
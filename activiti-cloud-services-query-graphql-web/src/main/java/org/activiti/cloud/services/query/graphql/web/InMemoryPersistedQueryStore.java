@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.web;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+
+/**
+ * Default in-memory LRU {@link PersistedQueryStore}. Evicted queries are re-registered by clients on
+ * PersistedQueryNotFound response.
+ */
+public class InMemoryPersistedQueryStore implements PersistedQueryStore {
+
+    private final Map<String, String> queries;
+
+    /**
+     * @param maxEntries maximum number of registered queries
+     */
+    @SuppressWarnings("serial")
+    public InMemoryPersistedQueryStore(int maxEntries) {
+        Assert.isTrue(maxEntries > 0, "maxEntries must be greater than 0");
+
+        this.queries = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    @Override
+    public String get(String hash) {
+        return queries.get(hash);
+    }
+
+    @Override
+    public void put(String hash, String query) {
+        queries.put(hash, query);
+    }
+
+    public int getSize() {
+        return queries.size();
+    }
+
+}
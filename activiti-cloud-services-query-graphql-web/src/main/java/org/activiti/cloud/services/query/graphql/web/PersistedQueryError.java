@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.web;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import graphql.ErrorType;
+import graphql.GraphQLError;
+import graphql.language.SourceLocation;
+
+/**
+ * Automatic persisted query protocol error, i.e. PersistedQueryNotFound
+ */
+@SuppressWarnings("serial")
+public class PersistedQueryError implements GraphQLError {
+
+    public static final String PERSISTED_QUERY_NOT_FOUND = "PersistedQueryNotFound";
+    public static final String PERSISTED_QUERY_NOT_SUPPORTED = "PersistedQueryNotSupported";
+    public static final String PERSISTED_QUERY_HASH_MISMATCH = "provided sha does not match query";
+
+    private static final String CODE = "code";
+
+    private final String message;
+    private final String code;
+
+    public PersistedQueryError(String message, String code) {
+        this.message = message;
+        this.code = code;
+    }
+
+    public static PersistedQueryError notFound() {
+        return new PersistedQueryError(PERSISTED_QUERY_NOT_FOUND, "PERSISTED_QUERY_NOT_FOUND");
+    }
+
+    public static PersistedQueryError notSupported() {
+        return new PersistedQueryError(PERSISTED_QUERY_NOT_SUPPORTED, "PERSISTED_QUERY_NOT_SUPPORTED");
+    }
+
+    public static PersistedQueryError hashMismatch() {
+        return new PersistedQueryError(PERSISTED_QUERY_HASH_MISMATCH, "BAD_REQUEST");
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public List<SourceLocation> getLocations() {
+        return null;
+    }
+
+    @Override
+    public ErrorType getErrorType() {
+        return ErrorType.ExecutionAborted;
+    }
+
+    @Override
+    public Map<String, Object> getExtensions() {
+        return Collections.singletonMap(CODE, code);
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.web;
+
+/**
+ * Store of automatic persisted query texts registered by clients under their SHA-256 hash
+ * @see <a href="https://github.com/apollographql/apollo-link-persisted-queries">Automatic persisted queries</a>
+ */
+public interface PersistedQueryStore {
+
+    /**
+     * @param hash lower case hex encoded SHA-256 hash of query text
+     * @return registered query text or null if hash is not registered
+     */
+    String get(String hash);
+
+    /**
+     * Registers query text under its hash
+     *
+     * @param hash lower case hex encoded SHA-256 hash of query text
+     * @param query query text
+     */
+    void put(String hash, String query);
+
+}
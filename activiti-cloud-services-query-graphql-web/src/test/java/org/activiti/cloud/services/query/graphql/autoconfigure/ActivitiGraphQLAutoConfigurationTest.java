@@ -17,6 +17,8 @@ package org.activiti.cloud.services.query.graphql.autoconfigure;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLDocumentCache;
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLExecutor;
 import org.activiti.cloud.services.query.graphql.web.ActivitiGraphQLController;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -47,6 +49,9 @@ public class ActivitiGraphQLAutoConfigurationTest {
     @Autowired
     private ActivitiGraphQLController graphQLController;
 
+    @Autowired
+    private ActivitiGraphQLDocumentCache documentCache;
+
     @SpringBootApplication
     static class Application {
     }
@@ -61,6 +66,10 @@ public class ActivitiGraphQLAutoConfigurationTest {
         assertThat(graphQLProperties.getName()).isEqualTo("Query");
         assertThat(graphQLProperties.getPath()).isEqualTo("/admin/graphql");
         assertThat(graphQLProperties.isEnabled()).isEqualTo(true);
+        assertThat(graphQLProperties.isDocumentCacheEnabled()).isEqualTo(true);
+
+        assertThat(graphQLExecutor).isInstanceOf(ActivitiGraphQLExecutor.class);
+        assertThat(((ActivitiGraphQLExecutor) graphQLExecutor).getPreparsedDocumentProvider()).isSameAs(documentCache);
 
     }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class ActivitiGraphQLAutoPaginatorTest {
+
+    private final ActivitiGraphQLAutoPaginator paginator =
+            new ActivitiGraphQLAutoPaginator(ActivitiGraphQLQueryCostAnalyzerTest.schema(), 10)
+                    .defaultPageLimit(100);
+
+    @Test
+    public void testAddsPageArgumentToUnpagedQueryFields() {
+        // when
+        String query = paginator.paginate("{Tasks{select{id}}}");
+
+        // then
+        assertThat(query).contains("Tasks(page")
+                         .contains("start")
+                         .contains("limit")
+                         .contains("100");
+        assertThat(paginator.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void testReportsPaginatedFields() {
+        // given
+        String query = "{tasks: Tasks{select{id}} paged: Tasks(page: {start: 2, limit: 10}){select{id}} ProcessInstances{select{id}}}";
+
+        // when
+        paginator.paginate(query);
+
+        // then
+        assertThat(paginator.getPaginatedFields(query)).containsExactly("tasks", "ProcessInstances");
+        assertThat(paginator.getPaginatedFields("{Task(id: \"1\"){id}}")).isEmpty();
+    }
+
+    @Test
+    public void testKeepsExistingPageArgument() {
+        // given
+        String query = "{Tasks(page: {start: 2, limit: 10}){select{id}} Task(id: \"1\"){id}}";
+
+        // when
+        String paginated = paginator.paginate(query);
+
+        // then
+        assertThat(paginated).isSameAs(query);
+    }
+
+    @Test
+    public void testReturnsInvalidQueryUnchanged() {
+        // given
+        String query = "{Tasks{select{id}";
+
+        // when
+        String paginated = paginator.paginate(query);
+
+        // then
+        assertThat(paginated).isSameAs(query);
+    }
+
+}
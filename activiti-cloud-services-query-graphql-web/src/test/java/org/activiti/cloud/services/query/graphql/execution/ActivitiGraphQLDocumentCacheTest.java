@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.Document;
+
+public class ActivitiGraphQLDocumentCacheTest {
+
+    private final AtomicInteger computeCount = new AtomicInteger();
+
+    private final Function<String, PreparsedDocumentEntry> compute = query -> {
+        computeCount.incrementAndGet();
+        return new PreparsedDocumentEntry(new Document(Collections.emptyList()));
+    };
+
+    @Test
+    public void testCachedDocumentIsReused() {
+        // given
+        ActivitiGraphQLDocumentCache cache = new ActivitiGraphQLDocumentCache(10, 1000);
+
+        // when
+        PreparsedDocumentEntry first = cache.get("{Tasks{select{id}}}", compute);
+        PreparsedDocumentEntry second = cache.get("{Tasks{select{id}}}", compute);
+
+        // then
+        assertThat(second).isSameAs(first);
+        assertThat(computeCount.get()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getSize()).isEqualTo(1);
+        assertThat(cache.getWeight()).isEqualTo("{Tasks{select{id}}}".length());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedEntries() {
+        // given
+        ActivitiGraphQLDocumentCache cache = new ActivitiGraphQLDocumentCache(2, 1000);
+
+        cache.get("{a}", compute);
+        cache.get("{b}", compute);
+        cache.get("{a}", compute);
+
+        // when
+        cache.get("{c}", compute);
+
+        // then
+        assertThat(cache.getSize()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+
+        cache.get("{a}", compute);
+        assertThat(computeCount.get()).isEqualTo(3);
+
+        cache.get("{b}", compute);
+        assertThat(computeCount.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testEvictsEntriesAboveMaxWeight() {
+        // given
+        ActivitiGraphQLDocumentCache cache = new ActivitiGraphQLDocumentCache(10, 10);
+
+        cache.get("{aaaa}", compute);
+
+        // when
+        cache.get("{bbbbbb}", compute);
+
+        // then
+        assertThat(cache.getSize()).isEqualTo(1);
+        assertThat(cache.getWeight()).isEqualTo(8);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testQueryLargerThanMaxWeightIsNotCached() {
+        // given
+        ActivitiGraphQLDocumentCache cache = new ActivitiGraphQLDocumentCache(10, 4);
+
+        // when
+        cache.get("{aaaa}", compute);
+
+        // then
+        assertThat(cache.getSize()).isEqualTo(0);
+        assertThat(cache.getEvictionCount()).isEqualTo(0);
+    }
+
+}
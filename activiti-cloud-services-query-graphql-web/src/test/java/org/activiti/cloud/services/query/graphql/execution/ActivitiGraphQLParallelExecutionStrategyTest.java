@@ -0,0 +1,260 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+public class ActivitiGraphQLParallelExecutionStrategyTest {
+
+    private static final String SCHEMA = "schema { query: Query }"
+            + " type Query { Tasks: Item ProcessInstances: Item ProcessDefinitions: Item }"
+            + " type Item { name: String thread: String }";
+
+    private final ActivitiGraphQLQueryExecutor queryExecutor = new ActivitiGraphQLQueryExecutor(4, 10, false);
+
+    private final ActivitiGraphQLParallelExecutionStrategy strategy = new ActivitiGraphQLParallelExecutionStrategy(queryExecutor);
+
+    @After
+    public void tearDown() throws Exception {
+        strategy.destroy();
+    }
+
+    @Test
+    public void testRootFieldsAreResolvedConcurrently() {
+        // given
+        CountDownLatch latch = new CountDownLatch(3);
+
+        GraphQL graphQL = graphQL(environment -> {
+            latch.countDown();
+
+            // would time out if root fields were resolved one after another
+            boolean concurrent = latch.await(5, TimeUnit.SECONDS);
+
+            return item(environment.getField().getName() + (concurrent ? "" : " timed out"));
+        });
+
+        // when
+        ExecutionResult result = graphQL.execute("{Tasks{name thread} ProcessInstances{name thread} ProcessDefinitions{name thread}}");
+
+        // then
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(result.<Map<String, Object>>getData()).containsOnlyKeys("Tasks", "ProcessInstances", "ProcessDefinitions");
+        assertThat(result.getData().toString()).doesNotContain("timed out");
+        assertThat(result.<Map<String, Map<String, Object>>>getData().values()
+                         .stream()
+                         .filter(field -> field.get("thread").toString().startsWith("graphql-query-"))
+                         .count()).isEqualTo(2);
+        assertThat(strategy.getParallelFieldCount()).isEqualTo(2);
+        assertThat(strategy.getInlineFieldCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testMaxParallelismLimitsConcurrentRootFields() {
+        // given
+        strategy.maxParallelism(1);
+
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+
+        GraphQL graphQL = graphQL(environment -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            active.decrementAndGet();
+
+            return item(environment.getField().getName());
+        });
+
+        // when
+        ExecutionResult result = graphQL.execute("{Tasks{name} ProcessInstances{name} ProcessDefinitions{name}}");
+
+        // then
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(maxActive.get()).isEqualTo(1);
+        assertThat(result.getData().toString())
+                .isEqualTo("{Tasks={name=Tasks}, ProcessInstances={name=ProcessInstances}, ProcessDefinitions={name=ProcessDefinitions}}");
+    }
+
+    @Test
+    public void testSingleRootFieldIsResolvedInCallingThread() {
+        // given
+        GraphQL graphQL = graphQL(environment -> item(environment.getField().getName()));
+
+        // when
+        ExecutionResult result = graphQL.execute("{Tasks{thread}}");
+
+        // then
+        assertThat(result.getData().toString()).isEqualTo("{Tasks={thread=" + Thread.currentThread().getName() + "}}");
+        assertThat(strategy.getParallelFieldCount()).isZero();
+    }
+
+    @Test
+    public void testRootFieldErrorsAreReportedWithOtherRootFields() {
+        // given
+        GraphQL graphQL = graphQL(environment -> {
+            if ("Tasks".equals(environment.getField().getName())) {
+                throw new IllegalStateException("Tasks failed");
+            }
+            return item(environment.getField().getName());
+        });
+
+        // when
+        ExecutionResult result = graphQL.execute("{Tasks{name} ProcessInstances{name}}");
+
+        // then
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(result.getData().toString()).isEqualTo("{Tasks=null, ProcessInstances={name=ProcessInstances}}");
+    }
+
+    @Test
+    public void testRootFieldsAreResolvedWhenConnectionPoolIsSmallerThanThreadsTimesRoots() throws Exception {
+        // given
+        ConnectionPoolTransactionManager connectionPool = new ConnectionPoolTransactionManager(2);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(connectionPool);
+
+        queryExecutor.transactionTemplate(transactionTemplate);
+
+        GraphQL graphQL = graphQL(environment -> item(environment.getField().getName()));
+
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+
+        try {
+            // when both requests hold the only pooled connections in their own transactions
+            CountDownLatch started = new CountDownLatch(2);
+
+            List<Future<ExecutionResult>> results = new ArrayList<>();
+
+            for (int i = 0; i < 2; i++) {
+                results.add(requests.submit(() -> transactionTemplate.execute(status -> {
+                    started.countDown();
+                    awaitUninterruptibly(started);
+
+                    return graphQL.execute("{Tasks{name} ProcessInstances{name} ProcessDefinitions{name}}");
+                })));
+            }
+
+            // then requests complete on their own connections well before query threads give up waiting for one
+            for (Future<ExecutionResult> result : results) {
+                ExecutionResult executionResult = result.get(ConnectionPoolTransactionManager.TIMEOUT_SECONDS - 1, TimeUnit.SECONDS);
+
+                assertThat(executionResult.getErrors()).isEmpty();
+                assertThat(executionResult.getData().toString())
+                        .isEqualTo("{Tasks={name=Tasks}, ProcessInstances={name=ProcessInstances}, ProcessDefinitions={name=ProcessDefinitions}}");
+            }
+            assertThat(strategy.getInlineFieldCount()).isEqualTo(6);
+            assertThat(strategy.getParallelFieldCount()).isZero();
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Simulates connection pool, each transaction holds one of the pooled connections
+     */
+    static class ConnectionPoolTransactionManager implements PlatformTransactionManager {
+
+        static final int TIMEOUT_SECONDS = 5;
+
+        private final Semaphore connections;
+
+        ConnectionPoolTransactionManager(int poolSize) {
+            this.connections = new Semaphore(poolSize);
+        }
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            try {
+                if (!connections.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new CannotCreateTransactionException("Connection is not available, request timed out");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CannotCreateTransactionException("Interrupted waiting for connection");
+            }
+
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            connections.release();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            connections.release();
+        }
+    }
+
+    private GraphQL graphQL(DataFetcher<?> dataFetcher) {
+        RuntimeWiring runtimeWiring = RuntimeWiring.newRuntimeWiring()
+                                                   .type("Query", type -> type.dataFetcher("Tasks", dataFetcher)
+                                                                              .dataFetcher("ProcessInstances", dataFetcher)
+                                                                              .dataFetcher("ProcessDefinitions", dataFetcher))
+                                                   .build();
+
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), runtimeWiring);
+
+        return GraphQL.newGraphQL(schema)
+                      .queryExecutionStrategy(strategy)
+                      .build();
+    }
+
+    private static Map<String, Object> item(String name) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("name", name);
+        item.put("thread", Thread.currentThread().getName());
+
+        return item;
+    }
+
+}
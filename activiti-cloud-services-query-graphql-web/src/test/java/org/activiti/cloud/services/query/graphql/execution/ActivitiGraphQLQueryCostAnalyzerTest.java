@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.activiti.cloud.services.query.graphql.execution.ActivitiGraphQLQueryCostAnalyzer.QueryCost;
+import org.junit.Test;
+
+import graphql.language.Document;
+import graphql.language.FragmentDefinition;
+import graphql.language.OperationDefinition;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+public class ActivitiGraphQLQueryCostAnalyzerTest {
+
+    /**
+     * Mimics the shape of GraphQL JPA query schema: paged root query fields with page wrapper and select list
+     */
+    static final String SCHEMA = "schema { query: Query }"
+            + " type Query { Tasks(page: Page): Tasks Task(id: String): Task ProcessInstances(page: Page): ProcessInstances"
+            + "   TasksCursor(first: Int = 100, after: String): TaskCursorPage TasksAggregate: TaskAggregate }"
+            + " type TaskAggregate { count: Int countBy(by: [String!]!, limit: Int = 100): [TaskCountGroup] }"
+            + " type TaskCountGroup { status: String count: Int }"
+            + " input Page { start: Int limit: Int }"
+            + " type Tasks { pages: Int total: Int select: [Task] }"
+            + " type TaskCursorPage { select: [Task] endCursor: String hasNextPage: Boolean }"
+            + " type ProcessInstances { pages: Int total: Int select: [ProcessInstance] }"
+            + " type ProcessInstance { id: String tasks: [Task] variables: [Variable] }"
+            + " type Task { id: String name: String variables: [Variable] }"
+            + " type Variable { name: String value: String }";
+
+    static GraphQLSchema schema() {
+        return new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA),
+                                                          RuntimeWiring.newRuntimeWiring().build());
+    }
+
+    private final GraphQLSchema schema = schema();
+
+    private final ActivitiGraphQLQueryCostAnalyzer analyzer = new ActivitiGraphQLQueryCostAnalyzer()
+            .unpagedListSize(1000)
+            .associationListSize(10);
+
+    @Test
+    public void testPagedQueryCostUsesPageLimit() {
+        // when
+        QueryCost cost = analyze("{Tasks(page: {start: 1, limit: 10}){select{id name}}}",
+                                 Collections.emptyMap());
+
+        // then: Tasks + select + 10 * (id + name)
+        assertThat(cost.getCost()).isEqualTo(22);
+        assertThat(cost.getDepth()).isEqualTo(3);
+    }
+
+    @Test
+    public void testUnpagedQueryCostUsesUnpagedListSize() {
+        // when
+        QueryCost cost = analyze("{Tasks{select{id}}}",
+                                 Collections.emptyMap());
+
+        // then
+        assertThat(cost.getCost()).isEqualTo(1002);
+    }
+
+    @Test
+    public void testNestedAssociationsMultiplyCost() {
+        // when
+        QueryCost cost = analyze("{ProcessInstances{select{id tasks{id variables{name}}}}}",
+                                 Collections.emptyMap());
+
+        // then: 1 + 1 + 1000 * (id + tasks) + 10000 * (id + variables) + 100000 * name
+        assertThat(cost.getCost()).isEqualTo(122002);
+        assertThat(cost.getDepth()).isEqualTo(5);
+    }
+
+    @Test
+    public void testPageLimitIsResolvedFromVariables() {
+        // when
+        QueryCost cost = analyze("query($limit: Int){Tasks(page: {start: 1, limit: $limit}){select{id}}}",
+                                 Collections.singletonMap("limit", 5));
+
+        // then
+        assertThat(cost.getCost()).isEqualTo(7);
+    }
+
+    @Test
+    public void testCursorQueryCostUsesFirstArgument() {
+        // when
+        QueryCost cost = analyze("{TasksCursor(first: 10, after: \"VGFzazox\"){select{id name} endCursor}}",
+                                 Collections.emptyMap());
+
+        // then: TasksCursor + select + 10 * (id + name) + endCursor
+        assertThat(cost.getCost()).isEqualTo(23);
+    }
+
+    @Test
+    public void testCursorQueryCostUsesDefaultFirstArgument() {
+        // when
+        QueryCost cost = analyze("{TasksCursor{select{id}}}",
+                                 Collections.emptyMap());
+
+        // then
+        assertThat(cost.getCost()).isEqualTo(102);
+    }
+
+    @Test
+    public void testCountByCostUsesLimitArgument() {
+        // when
+        QueryCost cost = analyze("{TasksAggregate{countBy(by: [\"status\"], limit: 5){status count}}}",
+                                 Collections.emptyMap());
+
+        // then: TasksAggregate + countBy + 5 * (status + count)
+        assertThat(cost.getCost()).isEqualTo(12);
+    }
+
+    @Test
+    public void testCountByCostUsesDefaultLimitArgument() {
+        // when
+        QueryCost cost = analyze("{TasksAggregate{countBy(by: [\"id\"]){count}}}",
+                                 Collections.emptyMap());
+
+        // then
+        assertThat(cost.getCost()).isEqualTo(102);
+    }
+
+    @Test
+    public void testFragmentsAreResolved() {
+        // when
+        QueryCost cost = analyze("{Tasks(page: {start: 1, limit: 10}){select{...TaskFields}}} fragment TaskFields on Task {id name}",
+                                 Collections.emptyMap());
+
+        // then
+        assertThat(cost.getCost()).isEqualTo(22);
+    }
+
+    @Test
+    public void testSingleEntityQueryCost() {
+        // when
+        QueryCost cost = analyze("{Task(id: \"1\"){id variables{name value}}}",
+                                 Collections.emptyMap());
+
+        // then: Task + id + variables + 10 * (name + value)
+        assertThat(cost.getCost()).isEqualTo(23);
+    }
+
+    private QueryCost analyze(String query, Map<String, Object> variables) {
+        Document document = new Parser().parseDocument(query);
+
+        OperationDefinition operation = document.getDefinitions()
+                                                .stream()
+                                                .filter(OperationDefinition.class::isInstance)
+                                                .map(OperationDefinition.class::cast)
+                                                .findFirst()
+                                                .get();
+
+        Map<String, FragmentDefinition> fragments = document.getDefinitions()
+                                                            .stream()
+                                                            .filter(FragmentDefinition.class::isInstance)
+                                                            .map(FragmentDefinition.class::cast)
+                                                            .collect(Collectors.toMap(FragmentDefinition::getName,
+                                                                                      Function.identity()));
+
+        return analyzer.analyze(schema, operation, fragments, variables);
+    }
+
+}
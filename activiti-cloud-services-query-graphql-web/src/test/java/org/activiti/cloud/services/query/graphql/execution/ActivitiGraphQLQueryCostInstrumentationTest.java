@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+
+public class ActivitiGraphQLQueryCostInstrumentationTest {
+
+    private final ActivitiGraphQLQueryCostInstrumentation instrumentation =
+            new ActivitiGraphQLQueryCostInstrumentation(new ActivitiGraphQLQueryCostAnalyzer())
+                    .maxCost(1000)
+                    .maxDepth(4);
+
+    private final GraphQL graphQL = GraphQL.newGraphQL(ActivitiGraphQLQueryCostAnalyzerTest.schema())
+                                           .instrumentation(instrumentation)
+                                           .build();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReportsCostInExtensions() {
+        // when
+        ExecutionResult result = graphQL.execute("{Tasks(page: {start: 1, limit: 10}){select{id name}}}");
+
+        // then
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(result.getExtensions()).containsKey(ActivitiGraphQLQueryCostInstrumentation.COST_EXTENSION);
+
+        Map<String, Object> cost = (Map<String, Object>) result.getExtensions()
+                                                               .get(ActivitiGraphQLQueryCostInstrumentation.COST_EXTENSION);
+
+        assertThat(cost).containsEntry("estimated", 22L)
+                        .containsEntry("depth", 3)
+                        .containsEntry("maxCost", 1000L)
+                        .containsEntry("maxDepth", 4);
+    }
+
+    @Test
+    public void testRejectsQueryOverMaxCost() {
+        // when
+        ExecutionResult result = graphQL.execute("{Tasks{select{id}}}");
+
+        // then
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(result.getErrors().get(0).getMessage()).contains("estimated cost 1002");
+        assertThat(instrumentation.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRejectsQueryOverMaxDepth() {
+        // when
+        ExecutionResult result = graphQL.execute("{ProcessInstances(page: {start: 1, limit: 1}){select{tasks{variables{name}}}}}");
+
+        // then
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(result.getErrors().get(0).getMessage()).contains("depth 5");
+    }
+
+}
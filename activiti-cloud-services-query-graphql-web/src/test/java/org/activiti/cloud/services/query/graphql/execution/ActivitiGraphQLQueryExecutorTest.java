@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ActivitiGraphQLQueryExecutorTest {
+
+    private ActivitiGraphQLQueryExecutor testSubject;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        testSubject.destroy();
+    }
+
+    @Test
+    public void testSubmitCompletesWithQueryResult() throws Exception {
+        // given
+        testSubject = new ActivitiGraphQLQueryExecutor(1, 1, false);
+
+        // when
+        CompletableFuture<String> result = testSubject.submit(() -> "result");
+
+        // then
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(testSubject.getCompletedCount()).isEqualTo(1);
+        assertThat(testSubject.getActiveCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSubmitRejectedWhenSaturated() throws Exception {
+        // given
+        testSubject = new ActivitiGraphQLQueryExecutor(1, 1, false);
+
+        CompletableFuture<String> running = testSubject.submit(this::blockingQuery);
+        started.await(5, TimeUnit.SECONDS);
+
+        CompletableFuture<String> queued = testSubject.submit(() -> "queued");
+
+        // when
+        Throwable thrown = catchThrowable(() -> testSubject.submit(() -> "rejected"));
+
+        // then
+        assertThat(thrown).isInstanceOf(RejectedExecutionException.class);
+        assertThat(testSubject.getRejectedCount()).isEqualTo(1);
+        assertThat(testSubject.getActiveCount()).isEqualTo(1);
+        assertThat(testSubject.getQueueSize()).isEqualTo(1);
+
+        release.countDown();
+
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("running");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+    }
+
+    private String blockingQuery() {
+        started.countDown();
+
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return "running";
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+
+public class ActivitiGraphQLQueryTimeoutInstrumentationTest {
+
+    private static final String SCHEMA = "schema { query: Query }"
+            + " type Query { Tasks: Item }"
+            + " type Item { name: String parent: Item }";
+
+    private ActivitiGraphQLQueryTimeoutInstrumentation instrumentation;
+
+    private GraphQL graphQL;
+
+    @Before
+    public void setUp() {
+        EntityManager entityManager = mock(EntityManager.class);
+        when(entityManager.getEntityManagerFactory()).thenReturn(mock(EntityManagerFactory.class));
+
+        instrumentation = new ActivitiGraphQLQueryTimeoutInstrumentation(entityManager).timeoutMs(20);
+
+        RuntimeWiring runtimeWiring = RuntimeWiring.newRuntimeWiring()
+                                                   .type("Query", type -> type.dataFetcher("Tasks", environment -> {
+                                                       // slow root field exhausts the deadline before nested fields are fetched
+                                                       Thread.sleep(50);
+
+                                                       return Collections.singletonMap("name", "task");
+                                                   }))
+                                                   .type("Item", type -> type.dataFetcher("parent", environment -> Collections.singletonMap("name", "parent")))
+                                                   .build();
+
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), runtimeWiring);
+
+        graphQL = GraphQL.newGraphQL(schema)
+                         .instrumentation(instrumentation)
+                         .build();
+    }
+
+    @Test
+    public void testAbortsDataFetchingAfterTimeout() {
+        // when
+        ExecutionResult result = graphQL.execute("{Tasks{name parent{name}}}");
+
+        // then
+        assertThat(result.getErrors()).isNotEmpty();
+        assertThat(result.getErrors().get(0).getMessage()).contains("exceeded timeout of 20 ms");
+        assertThat(instrumentation.getTimedOutCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOperationTimeoutOverridesDefaultTimeout() {
+        // given
+        instrumentation.operationTimeoutsMs(Collections.singletonMap("Report", 0L));
+
+        // when
+        ExecutionResult result = graphQL.execute("query Report {Tasks{name parent{name}}}");
+
+        // then
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(result.getData().toString()).isEqualTo("{Tasks={name=task, parent={name=parent}}}");
+    }
+
+    @Test
+    public void testAbortsCancelledExecution() {
+        // given
+        ActivitiGraphQLQueryCancellation cancellation = new ActivitiGraphQLQueryCancellation();
+        cancellation.cancel();
+
+        // when
+        ExecutionResult result = cancellation.run(() -> graphQL.execute("{Tasks{name}}"));
+
+        // then
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(result.getErrors().get(0).getMessage()).contains("cancelled");
+        assertThat(instrumentation.getCancelledCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCancellationRunsCallbacksOnce() {
+        // given
+        ActivitiGraphQLQueryCancellation cancellation = new ActivitiGraphQLQueryCancellation();
+        AtomicInteger callbacks = new AtomicInteger();
+
+        cancellation.onCancel(callbacks::incrementAndGet);
+
+        // when
+        cancellation.cancel();
+        cancellation.cancel();
+        cancellation.onCancel(callbacks::incrementAndGet);
+
+        // then
+        assertThat(cancellation.isCancelled()).isTrue();
+        assertThat(callbacks.get()).isEqualTo(2);
+    }
+
+}
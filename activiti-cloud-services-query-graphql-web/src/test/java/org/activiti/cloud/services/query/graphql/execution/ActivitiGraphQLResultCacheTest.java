@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.InvalidSyntaxError;
+import graphql.schema.GraphQLSchema;
+
+public class ActivitiGraphQLResultCacheTest {
+
+    private static final String TASK_QUERY = "{Task(id: \"1\"){id name}}";
+    private static final String TASKS_QUERY = "{Tasks(page: {start: 1, limit: 10}){select{id name}}}";
+    private static final String PROCESS_INSTANCES_QUERY = "{ProcessInstances{select{id}}}";
+
+    private final GraphQLSchema schema = ActivitiGraphQLQueryCostAnalyzerTest.schema();
+
+    private final ActivitiGraphQLResultCache cache = new ActivitiGraphQLResultCache(10, 60000);
+
+    private final AtomicInteger executionCount = new AtomicInteger();
+
+    @Test
+    public void testRepeatedQueryIsServedFromCache() {
+        // given
+        ExecutionResult first = cache.get(schema, TASK_QUERY, null, execution(task("1")));
+
+        // when
+        ExecutionResult second = cache.get(schema, "{ Task(id: \"1\") { id, name } }", null, execution(task("1")));
+
+        // then
+        assertThat(executionCount.get()).isEqualTo(1);
+        assertThat(second.<Object>getData()).isEqualTo(first.getData());
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testVariablesArePartOfKey() {
+        // given
+        String query = "query($id: String){Task(id: $id){id}}";
+
+        // when
+        cache.get(schema, query, Collections.singletonMap("id", "1"), execution(task("1")));
+        cache.get(schema, query, Collections.singletonMap("id", "2"), execution(task("2")));
+
+        // then
+        assertThat(executionCount.get()).isEqualTo(2);
+        assertThat(cache.getSize()).isEqualTo(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCachedResultIsImmutableCopy() {
+        // given
+        cache.get(schema, TASK_QUERY, null, execution(task("1")));
+
+        // when
+        ExecutionResult cached = cache.get(schema, TASK_QUERY, null, execution(task("1")));
+        Map<String, Object> data = cached.getData();
+
+        // then
+        assertThatThrownBy(() -> ((Map<String, Object>) data.get("Task")).remove("name"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void testTaskEventInvalidatesEntriesTaggedWithTaskId() {
+        // given
+        cache.get(schema, TASK_QUERY, null, execution(task("1")));
+        cache.get(schema, "{Task(id: \"2\"){id name}}", null, execution(task("2")));
+
+        // when
+        cache.onNotification(notification("TASK_ASSIGNED", "1"));
+
+        // then
+        assertThat(cache.getSize()).isEqualTo(1);
+        assertThat(cache.getInvalidationCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEntityEventInvalidatesListsOfItsType() {
+        // given
+        cache.get(schema, TASKS_QUERY, null, execution(tasks("1")));
+        cache.get(schema, PROCESS_INSTANCES_QUERY, null, execution(processInstances("10")));
+
+        // when
+        cache.onNotification(notification("TASK_CREATED", "2"));
+
+        // then
+        assertThat(cache.getSize()).isEqualTo(1);
+
+        cache.get(schema, PROCESS_INSTANCES_QUERY, null, execution(processInstances("10")));
+
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEntityEventInvalidatesDerivedTypesOfEntity() {
+        // given
+        cache.derivedType("TaskAggregate", "Task");
+
+        Map<String, Object> aggregate = new HashMap<>();
+        aggregate.put("TasksAggregate", Collections.singletonMap("count", 2));
+
+        cache.get(schema, "{TasksAggregate{count}}", null, execution(aggregate));
+
+        // when
+        cache.onNotification(notification("TASK_CREATED", "3"));
+
+        // then
+        assertThat(cache.getSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testResultsWithErrorsAreNotCached() {
+        // when
+        cache.get(schema, TASK_QUERY, null, () -> new ExecutionResultImpl(new InvalidSyntaxError(Collections.emptyList(),
+                                                                                                 "error")));
+
+        // then
+        assertThat(cache.getSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedEntries() {
+        // given
+        ActivitiGraphQLResultCache cache = new ActivitiGraphQLResultCache(1, 60000);
+
+        cache.get(schema, TASK_QUERY, null, execution(task("1")));
+
+        // when
+        cache.get(schema, TASKS_QUERY, null, execution(tasks("1")));
+        cache.onNotification(notification("TASK_UPDATED", "1"));
+
+        // then
+        assertThat(cache.getSize()).isEqualTo(0);
+        assertThat(cache.getInvalidationCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testNormalizesInsignificantCharactersOutsideOfStrings() {
+        assertThat(ActivitiGraphQLResultCache.normalize("query {\n  Tasks(where: {name: {EQ: \"a  b\"}}) { select { id, name } } # comment\n}"))
+                .isEqualTo("query{Tasks(where:{name:{EQ:\"a  b\"}}){select{id name}}}");
+    }
+
+    private Supplier<ExecutionResult> execution(Map<String, Object> data) {
+        return () -> {
+            executionCount.incrementAndGet();
+            return new ExecutionResultImpl(data, Collections.emptyList());
+        };
+    }
+
+    private static Map<String, Object> task(String id) {
+        return Collections.singletonMap("Task", entity(id));
+    }
+
+    private static Map<String, Object> tasks(String... ids) {
+        return Collections.singletonMap("Tasks",
+                                        Collections.singletonMap("select", Arrays.asList(Arrays.stream(ids)
+                                                                                               .map(ActivitiGraphQLResultCacheTest::entity)
+                                                                                               .toArray())));
+    }
+
+    private static Map<String, Object> processInstances(String... ids) {
+        return Collections.singletonMap("ProcessInstances",
+                                        Collections.singletonMap("select", Arrays.asList(Arrays.stream(ids)
+                                                                                               .map(ActivitiGraphQLResultCacheTest::entity)
+                                                                                               .toArray())));
+    }
+
+    private static Map<String, Object> entity(String id) {
+        Map<String, Object> entity = new LinkedHashMap<>();
+        entity.put("id", id);
+        entity.put("name", "name" + id);
+
+        return entity;
+    }
+
+    private static Map<String, Object> notification(String eventType, String entityId) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("eventType", eventType);
+        event.put("entity", Collections.singletonMap("id", entityId));
+
+        Map<String, Object> notification = new LinkedHashMap<>();
+        notification.put("processInstanceId", "10");
+        notification.put(eventType, Collections.singletonList(event));
+
+        return notification;
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.execution;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Path;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.Attribute.PersistentAttributeType;
+import javax.persistence.metamodel.EntityType;
+
+import org.junit.Test;
+
+public class ActivitiGraphQLWhereCriteriaTest {
+
+    private final ActivitiGraphQLWhereCriteria whereCriteria = new ActivitiGraphQLWhereCriteria();
+
+    private final CriteriaBuilder cb = mock(CriteriaBuilder.class);
+
+    private final Path<?> path = mock(Path.class);
+
+    @Test
+    public void testBetweenRequiresTwoValues() {
+        // then
+        assertThatThrownBy(() -> whereCriteria.predicate(cb, path, Integer.class, "BETWEEN", Collections.singletonList(1)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Expected list of two values");
+
+        assertThatThrownBy(() -> whereCriteria.predicate(cb, path, Integer.class, "NOT_BETWEEN", Arrays.asList(1, 2, 3)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Expected list of two values");
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void testValidateRejectsUnsupportedAttributesOperatorsAndValues() {
+        // given
+        EntityType<?> entityType = mock(EntityType.class);
+        Attribute status = mock(Attribute.class);
+        Attribute tasks = mock(Attribute.class);
+
+        when(status.getPersistentAttributeType()).thenReturn(PersistentAttributeType.BASIC);
+        when(tasks.getPersistentAttributeType()).thenReturn(PersistentAttributeType.ONE_TO_MANY);
+        when(entityType.getAttribute("status")).thenReturn(status);
+        when(entityType.getAttribute("tasks")).thenReturn(tasks);
+
+        // then
+        whereCriteria.validate(entityType, Collections.singletonMap("OR", Arrays.asList(Collections.singletonMap("status", Collections.singletonMap("EQ", "RUNNING")),
+                                                                                        Collections.singletonMap("status", Collections.singletonMap("IN", Arrays.asList("COMPLETED"))))));
+
+        assertThatThrownBy(() -> whereCriteria.validate(entityType, Collections.singletonMap("tasks", Collections.singletonMap("EQ", "1"))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unsupported where attribute: tasks");
+
+        assertThatThrownBy(() -> whereCriteria.validate(entityType, Collections.singletonMap("status", Collections.singletonMap("MATCHES", "RUNNING"))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unsupported where operator: MATCHES");
+
+        assertThatThrownBy(() -> whereCriteria.validate(entityType, Collections.singletonMap("status", Collections.singletonMap("BETWEEN", Collections.singletonList("A")))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Expected list of two values");
+    }
+
+}
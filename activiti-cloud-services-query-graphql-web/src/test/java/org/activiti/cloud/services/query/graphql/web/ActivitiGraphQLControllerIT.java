@@ -18,16 +18,21 @@ package org.activiti.cloud.services.query.graphql.web;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.persistence.EntityManagerFactory;
+
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import graphql.ExecutionResult;
 import graphql.GraphQLError;
 import org.activiti.cloud.services.query.graphql.autoconfigure.EnableActivitiGraphQLQueryService;
 import org.activiti.cloud.services.query.graphql.web.ActivitiGraphQLController.GraphQLQueryRequest;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,7 +41,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -52,6 +59,9 @@ public class ActivitiGraphQLControllerIT {
     @Autowired
     private TestRestTemplate rest;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @SpringBootApplication
     @EnableActivitiGraphQLQueryService
     static class Application {
@@ -166,6 +176,382 @@ public class ActivitiGraphQLControllerIT {
         assertThat(((Map<String, Object>) result.getData()).get("ProcessInstances")).isNotNull();
     }
 
+    @Test
+    public void testGraphqlNestingBatchesAssociationFetches() {
+        // @formatter:off
+        GraphQLQueryRequest query = new GraphQLQueryRequest(
+                "query {"
+                + "ProcessInstances {"
+                + "    select {"
+                + "      id"
+                + "      tasks {"
+                + "        id"
+                + "        name"
+                + "        variables {"
+                + "          name"
+                + "          value"
+                + "        }"
+                + "        taskCandidateUsers {"
+                + "           taskId"
+                + "           userId"
+                + "        }"
+                + "        taskCandidateGroups {"
+                + "           taskId"
+                + "           groupId"
+                + "        }"
+                + "      }"
+                + "      variables {"
+                + "        name"
+                + "        value"
+                + "      }"
+                + "    }"
+                + "  }"
+                + "}");
+       // @formatter:on
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        ResponseEntity<Result> entity = rest.postForEntity(GRPAPHQL_URL, new HttpEntity<>(query), Result.class);
+
+        assertThat(HttpStatus.OK)
+            .describedAs(entity.toString())
+            .isEqualTo(entity.getStatusCode());
+
+        Result result = entity.getBody();
+
+        assertThat(result).isNotNull();
+        assertThat(result.getErrors().isEmpty())
+            .describedAs(result.getErrors().toString())
+            .isTrue();
+        assertThat(((Map<String, Object>) result.getData()).get("ProcessInstances")).isNotNull();
+
+        // one root query and at most one query per selected association path:
+        // tasks, variables, tasks.variables, tasks.taskCandidateUsers, tasks.taskCandidateGroups
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(6);
+    }
+
+    @Test
+    public void testGraphqlCursorPagination() {
+        // given
+        Map<String, Object> firstPage = cursorPage("{TasksCursor(first: 2){select{id} endCursor hasNextPage}}");
+
+        assertThat(firstPage.get("select").toString()).isEqualTo("[{id=1}, {id=2}]");
+        assertThat(firstPage.get("hasNextPage")).isEqualTo(true);
+
+        // when
+        Map<String, Object> secondPage = cursorPage("{TasksCursor(first: 2, after: \"" + firstPage.get("endCursor") + "\"){select{id} endCursor hasNextPage}}");
+        Map<String, Object> lastPage = cursorPage("{TasksCursor(first: 2, after: \"" + secondPage.get("endCursor") + "\"){select{id} endCursor hasNextPage}}");
+
+        // then
+        assertThat(secondPage.get("select").toString()).isEqualTo("[{id=3}, {id=4}]");
+        assertThat(secondPage.get("hasNextPage")).isEqualTo(true);
+        assertThat(lastPage.get("select").toString()).isEqualTo("[{id=5}]");
+        assertThat(lastPage.get("hasNextPage")).isEqualTo(false);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGraphqlCursorPaginationWithWhere() {
+        // given
+        Map<String, Object> firstPage = cursorPage("{TasksCursor(first: 2, where: {priority: {EQ: 5}}){select{id priority} endCursor hasNextPage}}");
+
+        // when
+        Map<String, Object> lastPage = cursorPage("{TasksCursor(first: 2, after: \"" + firstPage.get("endCursor") + "\", where: {priority: {EQ: 5}})"
+                + "{select{id priority} endCursor hasNextPage}}");
+
+        // then
+        assertThat((List<Map<String, Object>>) firstPage.get("select")).hasSize(2)
+            .allSatisfy(task -> assertThat(task.get("priority")).isEqualTo(5));
+        assertThat(firstPage.get("hasNextPage")).isEqualTo(true);
+
+        assertThat((List<Map<String, Object>>) lastPage.get("select")).hasSize(1)
+            .allSatisfy(task -> assertThat(task.get("priority")).isEqualTo(5));
+        assertThat(lastPage.get("hasNextPage")).isEqualTo(false);
+    }
+
+    @Test
+    public void testGraphqlCursorPaginationProjectsSelectedColumns() {
+        // given
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        // when
+        Map<String, Object> page = cursorPage("{TasksCursor(first: 2){select{id assignee priority}}}");
+
+        // then
+        assertThat(page.get("select").toString())
+            .isEqualTo("[{id=1, assignee=assignee, priority=5}, {id=2, assignee=assignee, priority=10}]");
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    public void testGraphqlCursorPaginationWithAssociations() {
+        // when
+        Map<String, Object> page = cursorPage("{TasksCursor(first: 1){select{id variables{name}}}}");
+
+        // then
+        assertThat(page.get("select").toString()).startsWith("[{id=1, variables=[");
+        assertThat(page.get("select").toString()).contains("variable1", "variable2");
+    }
+
+    @Test
+    public void testGraphqlPagedQueryProjectsSelectedColumns() {
+        // given
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        GraphQLQueryRequest query = new GraphQLQueryRequest("{Tasks(page: {start: 1, limit: 2}, where: {priority: {EQ: 5}})"
+                + "{select{id assignee priority} total pages}}");
+
+        // when
+        ResponseEntity<Result> entity = rest.postForEntity(GRPAPHQL_URL, new HttpEntity<>(query), Result.class);
+
+        // then
+        assertThat(HttpStatus.OK)
+            .describedAs(entity.toString())
+            .isEqualTo(entity.getStatusCode());
+
+        Result result = entity.getBody();
+
+        assertThat(result).isNotNull();
+        assertThat(result.getErrors().isEmpty())
+            .describedAs(result.getErrors().toString())
+            .isTrue();
+        assertThat(result.getData().toString())
+            .isEqualTo("{Tasks={select=[{id=1, assignee=assignee, priority=5}, {id=3, assignee=assignee, priority=5}], total=3, pages=2}}");
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGraphqlAggregates() {
+        // given
+        GraphQLQueryRequest query = new GraphQLQueryRequest("{TasksAggregate(where: {priority: {EQ: 5}}) {"
+                + " count"
+                + " countBy(by: [status]) { status count }"
+                + " max { createdDate }"
+                + "}}");
+
+        // when
+        ResponseEntity<Result> entity = rest.postForEntity(GRPAPHQL_URL, new HttpEntity<>(query), Result.class);
+
+        // then
+        assertThat(HttpStatus.OK)
+            .describedAs(entity.toString())
+            .isEqualTo(entity.getStatusCode());
+
+        Result result = entity.getBody();
+
+        assertThat(result).isNotNull();
+        assertThat(result.getErrors().isEmpty())
+            .describedAs(result.getErrors().toString())
+            .isTrue();
+
+        Map<String, Object> aggregate = (Map<String, Object>) ((Map<String, Object>) result.getData()).get("TasksAggregate");
+
+        assertThat(aggregate.get("count")).isEqualTo(3);
+        assertThat((List<Object>) aggregate.get("countBy")).extracting(Object::toString)
+            .containsExactlyInAnyOrder("{status=COMPLETED, count=2}", "{status=CREATED, count=1}");
+        assertThat(((Map<String, Object>) aggregate.get("max")).get("createdDate")).isNotNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGraphqlAggregatesCountByIsLimitedAndOrderedByCount() {
+        // given
+        GraphQLQueryRequest query = new GraphQLQueryRequest("{TasksAggregate(where: {priority: {EQ: 5}}) {"
+                + " countBy(by: [status], limit: 1) { status count }"
+                + " byId: countBy(by: [id], limit: 2) { id }"
+                + "}}");
+
+        // when
+        ResponseEntity<Result> entity = rest.postForEntity(GRPAPHQL_URL, new HttpEntity<>(query), Result.class);
+
+        // then
+        assertThat(HttpStatus.OK)
+            .describedAs(entity.toString())
+            .isEqualTo(entity.getStatusCode());
+
+        Result result = entity.getBody();
+
+        assertThat(result).isNotNull();
+        assertThat(result.getErrors().isEmpty())
+            .describedAs(result.getErrors().toString())
+            .isTrue();
+
+        Map<String, Object> aggregate = (Map<String, Object>) ((Map<String, Object>) result.getData()).get("TasksAggregate");
+
+        assertThat((List<Object>) aggregate.get("countBy")).extracting(Object::toString)
+            .containsExactly("{status=COMPLETED, count=2}");
+        assertThat((List<Object>) aggregate.get("byId")).hasSize(2);
+    }
+
+    @Test
+    public void testGraphqlExport() {
+        // given
+        GraphQLQueryRequest query = new GraphQLQueryRequest("{ProcessInstances(where: {status: {EQ: RUNNING}}) {select {id status}}}");
+
+        // when
+        ResponseEntity<String> entity = rest.postForEntity(GRPAPHQL_URL + "/export", new HttpEntity<>(query), String.class);
+
+        // then
+        assertThat(HttpStatus.OK)
+            .describedAs(entity.toString())
+            .isEqualTo(entity.getStatusCode());
+
+        assertThat(entity.getBody().split("\n"))
+            .containsExactlyInAnyOrder("{\"id\":\"0\",\"status\":\"RUNNING\"}",
+                                       "{\"id\":\"1\",\"status\":\"RUNNING\"}");
+    }
+
+    @Test
+    public void testGraphqlExportRejectsQueryWithoutEntitySelection() {
+        // given
+        GraphQLQueryRequest query = new GraphQLQueryRequest("{TasksAggregate {count}}");
+
+        // when
+        ResponseEntity<String> entity = rest.postForEntity(GRPAPHQL_URL + "/export", new HttpEntity<>(query), String.class);
+
+        // then
+        assertThat(entity.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void testGraphqlDeferIncrementalDelivery() {
+        // given
+        GraphQLQueryRequest query = new GraphQLQueryRequest("{ProcessInstances(where: {status: {EQ: RUNNING}}) {select {id variables @defer {name}}}}");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(Collections.singletonList(MediaType.parseMediaType("multipart/mixed")));
+
+        // when
+        ResponseEntity<String> entity = rest.postForEntity(GRPAPHQL_URL, new HttpEntity<>(query, headers), String.class);
+
+        // then
+        assertThat(HttpStatus.OK)
+            .describedAs(entity.toString())
+            .isEqualTo(entity.getStatusCode());
+
+        assertThat(entity.getHeaders().getContentType().toString()).startsWith("multipart/mixed");
+
+        String[] parts = entity.getBody().split("\r\n---");
+
+        assertThat(parts[1]).contains("\"ProcessInstances\"").contains("\"hasNext\":true").doesNotContain("\"path\"");
+        assertThat(parts[2]).contains("\"path\":[\"ProcessInstances\",\"select\",0,\"variables\"]").contains("\"hasNext\":true");
+        assertThat(parts[parts.length - 2]).contains("{\"hasNext\":false}");
+        assertThat(entity.getBody()).endsWith("\r\n-----\r\n");
+    }
+
+    @Test
+    public void testGraphqlDeferIncrementalDeliveryOfPersistedQuery() {
+        // given
+        String query = "{ProcessInstances(where: {status: {EQ: RUNNING}}) {select {id variables @defer {name}}}}";
+
+        Map<String, Object> persistedQuery = new HashMap<>();
+        persistedQuery.put("version", 1);
+        persistedQuery.put("sha256Hash", ActivitiGraphQLController.sha256Hex(query));
+
+        GraphQLQueryRequest registration = new GraphQLQueryRequest(query);
+        registration.setExtensions(Collections.singletonMap("persistedQuery", persistedQuery));
+
+        GraphQLQueryRequest hashOnly = new GraphQLQueryRequest(null);
+        hashOnly.setExtensions(Collections.singletonMap("persistedQuery", persistedQuery));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(Collections.singletonList(MediaType.parseMediaType("multipart/mixed")));
+
+        // when
+        ResponseEntity<String> registered = rest.postForEntity(GRPAPHQL_URL, new HttpEntity<>(registration, headers), String.class);
+        ResponseEntity<String> entity = rest.postForEntity(GRPAPHQL_URL, new HttpEntity<>(hashOnly, headers), String.class);
+
+        // then
+        assertThat(registered.getHeaders().getContentType().toString()).startsWith("multipart/mixed");
+
+        assertThat(HttpStatus.OK)
+            .describedAs(entity.toString())
+            .isEqualTo(entity.getStatusCode());
+
+        assertThat(entity.getHeaders().getContentType().toString()).startsWith("multipart/mixed");
+        assertThat(entity.getBody()).contains("\"path\":[\"ProcessInstances\",\"select\",0,\"variables\"]")
+                                    .endsWith("\r\n-----\r\n");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGraphqlDeferMergesDeferredFieldsIntoJsonResult() {
+        // given
+        GraphQLQueryRequest query = new GraphQLQueryRequest("{ProcessInstances(where: {status: {EQ: RUNNING}}) {select {id variables @defer {name}}}}");
+
+        // when
+        ResponseEntity<Result> entity = rest.postForEntity(GRPAPHQL_URL, new HttpEntity<>(query), Result.class);
+
+        // then
+        assertThat(HttpStatus.OK)
+            .describedAs(entity.toString())
+            .isEqualTo(entity.getStatusCode());
+
+        Result result = entity.getBody();
+
+        assertThat(result).isNotNull();
+        assertThat(result.getErrors().isEmpty())
+            .describedAs(result.getErrors().toString())
+            .isTrue();
+
+        Map<String, Object> processInstances = (Map<String, Object>) ((Map<String, Object>) result.getData()).get("ProcessInstances");
+
+        assertThat((List<Map<String, Object>>) processInstances.get("select"))
+            .hasSize(2)
+            .allSatisfy(processInstance -> assertThat(processInstance).containsKeys("id", "variables"));
+    }
+
+    @Test
+    public void testGraphqlExportRejectsAssociationSelection() {
+        // given
+        GraphQLQueryRequest query = new GraphQLQueryRequest("{ProcessInstances {select {id tasks {id}}}}");
+
+        // when
+        ResponseEntity<String> entity = rest.postForEntity(GRPAPHQL_URL + "/export", new HttpEntity<>(query), String.class);
+
+        // then
+        assertThat(entity.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void testGraphqlExportRejectsInvalidWhereBeforeStreaming() {
+        // given
+        GraphQLQueryRequest query = new GraphQLQueryRequest("{Tasks(where: {priority: {BETWEEN: [1]}}) {select {id}}}");
+
+        // when
+        ResponseEntity<String> entity = rest.postForEntity(GRPAPHQL_URL + "/export", new HttpEntity<>(query), String.class);
+
+        // then
+        assertThat(entity.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> cursorPage(String query) {
+        ResponseEntity<Result> entity = rest.postForEntity(GRPAPHQL_URL, new HttpEntity<>(new GraphQLQueryRequest(query)), Result.class);
+
+        assertThat(HttpStatus.OK)
+            .describedAs(entity.toString())
+            .isEqualTo(entity.getStatusCode());
+
+        Result result = entity.getBody();
+
+        assertThat(result).isNotNull();
+        assertThat(result.getErrors().isEmpty())
+            .describedAs(result.getErrors().toString())
+            .isTrue();
+
+        return (Map<String, Object>) ((Map<String, Object>) result.getData()).get("TasksCursor");
+    }
+
     @Test
     public void testGraphqlReverse() {
         // @formatter:off
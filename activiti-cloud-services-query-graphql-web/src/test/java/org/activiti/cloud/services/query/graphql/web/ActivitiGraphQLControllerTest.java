@@ -15,15 +15,22 @@
  */
 package org.activiti.cloud.services.query.graphql.web;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -39,8 +46,10 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
@@ -62,6 +71,11 @@ public class ActivitiGraphQLControllerTest {
     @Configuration
     @Import(ActivitiGraphQLController.class)
     static class Config {
+
+        @Bean
+        public PersistedQueryStore persistedQueryStore() {
+            return new InMemoryPersistedQueryStore(10);
+        }
     }
     
     /**
@@ -175,14 +189,15 @@ public class ActivitiGraphQLControllerTest {
     }
     
     @Test
-    public void testGraphqlQueryGetUnsupportedMediaType() throws Exception {
+    public void testGraphqlQueryGetAnyMediaType() throws Exception {
         mockmvc.perform(get("/admin/graphql")
                .param("query", "{Tasks(where: {name: {EQ: \"name\"}}){select{id}}}")
                .contentType(MediaType.TEXT_HTML))
-            .andExpect(status().is(415))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.CACHE_CONTROL))
             ;
         
-        verify(executor, never())
+        verify(executor)
             .execute("{Tasks(where: {name: {EQ: \"name\"}}){select{id}}}", null);
     }
 
@@ -305,4 +320,134 @@ public class ActivitiGraphQLControllerTest {
 
         verify(executor).execute(query, null);
     }
+
+    @Test
+    public void testPersistedQueryNotFound() throws Exception {
+        String query = "{Tasks{select{id}}}";
+
+        perform(mapper.writeValueAsString(persistedQueryRequest(null, ActivitiGraphQLController.sha256Hex(query))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.errors[0].message").value(PersistedQueryError.PERSISTED_QUERY_NOT_FOUND));
+
+        verify(executor, never()).execute(anyString(), any());
+    }
+
+    @Test
+    public void testPersistedQueryRegisteredAndExecutedByHash() throws Exception {
+        String query = "{Tasks{select{id name}}}";
+        String hash = ActivitiGraphQLController.sha256Hex(query);
+
+        ok(persistedQueryRequest(query, hash));
+
+        mockmvc.perform(get("/admin/graphql")
+               .param("extensions", mapper.writeValueAsString(persistedQueryRequest(null, hash).getExtensions()))
+               .contentType(ActivitiGraphQLController.APPLICATION_GRAPHQL_VALUE)
+               .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk());
+
+        verify(executor, times(2)).execute(query, null);
+    }
+
+    @Test
+    public void testPersistedQueryGetByHashOnlyIsCacheable() throws Exception {
+        // given
+        String query = "{Tasks{select{id}}}";
+        String hash = ActivitiGraphQLController.sha256Hex(query);
+
+        ok(persistedQueryRequest(query, hash));
+
+        // when
+        mockmvc.perform(get("/admin/graphql")
+               .param("extensions", mapper.writeValueAsString(persistedQueryRequest(null, hash).getExtensions())))
+            // then
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=60, private"));
+
+        verify(executor, times(2)).execute(query, null);
+    }
+
+    @Test
+    public void testPersistedQueryGetByUnknownHashIsNotCacheable() throws Exception {
+        // when
+        mockmvc.perform(get("/admin/graphql")
+               .param("extensions", mapper.writeValueAsString(persistedQueryRequest(null, "unknown").getExtensions())))
+            // then
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.errors[0].message").value(PersistedQueryError.PERSISTED_QUERY_NOT_FOUND))
+            .andExpect(header().doesNotExist(HttpHeaders.CACHE_CONTROL));
+
+        verify(executor, never()).execute(anyString(), any());
+    }
+
+    @Test
+    public void testPersistedQueryHashMismatch() throws Exception {
+        perform(mapper.writeValueAsString(persistedQueryRequest("{Tasks{select{id}}}", "invalid")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.errors[0].message").value(PersistedQueryError.PERSISTED_QUERY_HASH_MISMATCH));
+
+        verify(executor, never()).execute(anyString(), any());
+    }
+
+    @Test
+    public void testGraphqlGetQueryMissing() throws Exception {
+        mockmvc.perform(get("/admin/graphql")
+               .contentType(ActivitiGraphQLController.APPLICATION_GRAPHQL_VALUE))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testBatchedRequestReturnsResultsInOrder() throws Exception {
+        when(executor.execute("{Tasks{select{id}}}", null))
+            .thenReturn(new ExecutionResultImpl(Collections.singletonMap("Tasks", "tasks"), new ArrayList<>()));
+        when(executor.execute("{ProcessInstances{select{id}}}", null))
+            .thenReturn(new ExecutionResultImpl(Collections.singletonMap("ProcessInstances", "processInstances"), new ArrayList<>()));
+
+        perform(mapper.writeValueAsString(Arrays.asList(new GraphQLQueryRequest("{Tasks{select{id}}}"),
+                                                        new GraphQLQueryRequest("{ProcessInstances{select{id}}}"))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].data.Tasks").value("tasks"))
+            .andExpect(jsonPath("$[1].data.ProcessInstances").value("processInstances"));
+    }
+
+    @Test
+    public void testBatchedRequestExecutesDuplicateOperationsOnce() throws Exception {
+        perform(mapper.writeValueAsString(Arrays.asList(new GraphQLQueryRequest("{Tasks{select{id}}}"),
+                                                        new GraphQLQueryRequest("{Tasks{select{id}}}"))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2));
+
+        verify(executor, times(1)).execute("{Tasks{select{id}}}", null);
+    }
+
+    @Test
+    public void testBatchedRequestIsolatesOperationErrors() throws Exception {
+        when(executor.execute("{Tasks{select{id}}}", null))
+            .thenThrow(new IllegalStateException("failed"));
+
+        perform(mapper.writeValueAsString(Arrays.asList(new GraphQLQueryRequest("{Tasks{select{id}}}"),
+                                                        new GraphQLQueryRequest("{ProcessInstances{select{id}}}"))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].errors[0].message").value("failed"))
+            .andExpect(jsonPath("$[1].errors").isEmpty());
+    }
+
+    @Test
+    public void testBatchedRequestOverMaxSize() throws Exception {
+        perform(mapper.writeValueAsString(Collections.nCopies(26, new GraphQLQueryRequest("{Tasks{select{id}}}"))))
+            .andExpect(status().isBadRequest());
+
+        verify(executor, never()).execute(anyString(), any());
+    }
+
+    private static GraphQLQueryRequest persistedQueryRequest(String query, String hash) {
+        Map<String, Object> persistedQuery = new HashMap<>();
+        persistedQuery.put("version", 1);
+        persistedQuery.put("sha256Hash", hash);
+
+        GraphQLQueryRequest request = new GraphQLQueryRequest(query);
+        request.setExtensions(Collections.singletonMap("persistedQuery", persistedQuery));
+
+        return request;
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import graphql.ExecutionResultImpl;
+
+public class ExecutionResultHttpMessageConverterTest {
+
+    private ObjectMapper mapper = new ObjectMapper();
+
+    private ExecutionResultHttpMessageConverter testSubject = new ExecutionResultHttpMessageConverter(mapper);
+
+    @Test
+    public void testWriteStreamsResultDataAndReleasesWrittenElements() throws Exception {
+        // given
+        Map<String, Object> task = new LinkedHashMap<>();
+        task.put("id", "1");
+        task.put("priority", 5L);
+
+        List<Object> select = new ArrayList<>(Arrays.asList(task, null));
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("Tasks", Collections.singletonMap("select", select));
+
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+
+        // when
+        testSubject.write(new ExecutionResultImpl(data, Collections.emptyList()), MediaType.APPLICATION_JSON, outputMessage);
+
+        // then
+        assertThat(outputMessage.getBodyAsString(StandardCharsets.UTF_8))
+            .isEqualTo("{\"errors\":[],\"data\":{\"Tasks\":{\"select\":[{\"id\":\"1\",\"priority\":5},null]}},\"extensions\":null}");
+
+        assertThat(task).isEmpty();
+        assertThat(select).containsOnlyNulls();
+        assertThat(data).isEmpty();
+    }
+
+    @Test
+    public void testWriteWithoutReleasingWrittenElements() throws Exception {
+        // given
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("hello", "world");
+
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+
+        // when
+        testSubject.releaseWritten(false)
+                   .write(new ExecutionResultImpl(data, Collections.emptyList()), MediaType.APPLICATION_JSON, outputMessage);
+
+        // then
+        assertThat(outputMessage.getBodyAsString(StandardCharsets.UTF_8))
+            .isEqualTo("{\"errors\":[],\"data\":{\"hello\":\"world\"},\"extensions\":null}");
+        assertThat(data).containsEntry("hello", "world");
+    }
+
+    @Test
+    public void testCanWriteExecutionResultOnly() {
+        assertThat(testSubject.canWrite(ExecutionResultImpl.class, MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(testSubject.canWrite(Map.class, MediaType.APPLICATION_JSON)).isFalse();
+        assertThat(testSubject.canRead(ExecutionResultImpl.class, MediaType.APPLICATION_JSON)).isFalse();
+    }
+
+}
@@ -42,6 +42,9 @@ public class GraphQLSubscriptionsSchemaAutoConfiguration {
         @Autowired
         private GraphQLSubscriptionSchemaProperties subscriptionProperties;
 
+        @Autowired
+        private GraphQLWebSocketMessageBrokerConfigurationProperties configurationProperties;
+
         @Bean
         @ConditionalOnMissingBean
         public StompRelayDestinationResolver stompRelayDestinationResolver() {
@@ -60,7 +63,8 @@ public class GraphQLSubscriptionsSchemaAutoConfiguration {
                                                StompRelayDataFetcher stompRelayDataFetcher) {
             subscriptionSchemaBuilder.withSubscription(subscriptionProperties.getSubscriptionFieldName(), stompRelayDataFetcher);
 
-            return new GraphQLSubscriptionExecutor(subscriptionSchemaBuilder.getGraphQLSchema());
+            return new GraphQLSubscriptionExecutor(subscriptionSchemaBuilder.getGraphQLSchema())
+                    .projectionEnabled(configurationProperties.isSubscriptionProjectionEnabled());
         }
     }
 
@@ -17,10 +17,17 @@ package org.activiti.cloud.services.query.graphql.ws.config;
 
 import graphql.GraphQL;
 import org.activiti.cloud.services.query.graphql.ws.datafetcher.GraphQLSubscriptionExecutor;
+import org.activiti.cloud.services.query.graphql.ws.datafetcher.StompRelayConnectionPool;
+import org.activiti.cloud.services.query.graphql.ws.datafetcher.StompRelayDestinationHub;
 import org.activiti.cloud.services.query.graphql.ws.datafetcher.StompRelayDestinationResolver;
+import org.activiti.cloud.services.query.graphql.ws.datafetcher.StompRelayLocalTransport;
 import org.activiti.cloud.services.query.graphql.ws.datafetcher.StompRelayPublisherFactory;
+import org.activiti.cloud.services.query.graphql.ws.datafetcher.StompRelaySubscriptionProvider;
+import org.activiti.cloud.services.query.graphql.ws.datafetcher.StompRelayTopicDispatcher;
 import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLBrokerMessageHandler;
 import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLBrokerSubProtocolHandler;
+import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLSubscriptionFlushScheduler;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -28,6 +35,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.SubscribableChannel;
@@ -96,11 +104,48 @@ public class GraphQLWebSocketMessageBrokerAutoConfiguration {
 
         @Bean
         @ConditionalOnMissingBean
-        public StompRelayPublisherFactory stompRelayPublisherFactory(ReactorNettyTcpStompClient stompClient,
+        public StompRelayConnectionPool stompRelayConnectionPool(ReactorNettyTcpStompClient stompClient,
+                                                                 TaskScheduler messageBrokerTaskScheduler) {
+            return new StompRelayConnectionPool(stompClient).login(configurationProperties.getClientLogin())
+                                                            .passcode(configurationProperties.getClientPasscode())
+                                                            .poolSize(configurationProperties.getRelayConnectionPoolSize())
+                                                            .taskScheduler(messageBrokerTaskScheduler);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(name="spring.activiti.cloud.services.query.graphql.ws.relay-topic-dispatcher-enabled")
+        public StompRelayTopicDispatcher stompRelayTopicDispatcher(StompRelayConnectionPool stompRelayConnectionPool) {
+            return new StompRelayTopicDispatcher(stompRelayConnectionPool,
+                                                 configurationProperties.getRelayTopicDispatcherDestination());
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(name="spring.activiti.cloud.services.query.graphql.ws.local-transport-enabled")
+        public StompRelayLocalTransport stompRelayLocalTransport(StompRelayConnectionPool stompRelayConnectionPool,
+                                                                 ObjectProvider<StompRelayTopicDispatcher> stompRelayTopicDispatcher) {
+            return new StompRelayLocalTransport(relayUpstream(stompRelayConnectionPool, stompRelayTopicDispatcher));
+        }
+
+        @Bean
+        @Primary
+        @ConditionalOnMissingBean
+        public StompRelayDestinationHub stompRelayDestinationHub(StompRelayConnectionPool stompRelayConnectionPool,
+                                                                 ObjectProvider<StompRelayTopicDispatcher> stompRelayTopicDispatcher,
+                                                                 ObjectProvider<StompRelayLocalTransport> stompRelayLocalTransport) {
+            StompRelaySubscriptionProvider upstream = stompRelayLocalTransport.getIfAvailable();
+
+            return new StompRelayDestinationHub(upstream != null ? upstream
+                                                                 : relayUpstream(stompRelayConnectionPool, stompRelayTopicDispatcher));
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public StompRelayPublisherFactory stompRelayPublisherFactory(StompRelaySubscriptionProvider stompRelaySubscriptionProvider,
                                                                      StompRelayDestinationResolver stompRelayDestinationResolver) {
-            return new StompRelayPublisherFactory(stompClient).login(configurationProperties.getClientLogin())
-                                                              .passcode(configurationProperties.getClientPasscode())
-                                                              .destinationResolver(stompRelayDestinationResolver);
+            return new StompRelayPublisherFactory(stompRelaySubscriptionProvider).destinationResolver(stompRelayDestinationResolver)
+                                                                                 .bufferSize(configurationProperties.getSubscriptionHighWaterMark());
         }
 
         @Bean
@@ -117,11 +162,23 @@ public class GraphQLWebSocketMessageBrokerAutoConfiguration {
 
             messageHandler.setTaskScheduler(messageBrokerTaskScheduler)
                           .setBufferCount(configurationProperties.getBufferCount())
-                          .setBufferTimeSpanMs(configurationProperties.getBufferTimeSpanMs());
+                          .setBufferTimeSpanMs(configurationProperties.getBufferTimeSpanMs())
+                          .setOverflowPolicy(configurationProperties.getSubscriptionOverflowPolicy())
+                          .setHighWaterMark(configurationProperties.getSubscriptionHighWaterMark())
+                          .setFlushScheduler(new GraphQLSubscriptionFlushScheduler(configurationProperties.getSubscriptionFlushThreads()))
+                          .setBatchingMode(configurationProperties.getSubscriptionBatchingMode())
+                          .setSharedExecutionEnabled(configurationProperties.isSubscriptionSharedExecutionEnabled());
 
             return messageHandler;
         }
 
+        private StompRelaySubscriptionProvider relayUpstream(StompRelayConnectionPool stompRelayConnectionPool,
+                                                             ObjectProvider<StompRelayTopicDispatcher> stompRelayTopicDispatcher) {
+            StompRelaySubscriptionProvider upstream = stompRelayTopicDispatcher.getIfAvailable();
+
+            return upstream != null ? upstream : stompRelayConnectionPool;
+        }
+
         @Override
         @Bean
         @ConditionalOnMissingBean(SubProtocolWebSocketHandler.class)
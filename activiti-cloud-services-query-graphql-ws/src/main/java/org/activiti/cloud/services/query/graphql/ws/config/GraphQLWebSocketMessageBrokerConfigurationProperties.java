@@ -18,6 +18,8 @@ package org.activiti.cloud.services.query.graphql.ws.config;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 
+import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLSubscriptionBatchingMode;
+import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLSubscriptionOverflowPolicy;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
@@ -40,6 +42,22 @@ public class GraphQLWebSocketMessageBrokerConfigurationProperties {
     @NotNull
     private Integer relayPort;
 
+    /* Number of pooled Stomp relay sessions shared by all GraphQL subscriptions. Default is 4 */
+    @NotNull
+    private Integer relayConnectionPoolSize;
+
+    /* Subscribe one wildcard relay destination per node and match routing keys in memory. Default is false */
+    @NotNull
+    private Boolean relayTopicDispatcherEnabled;
+
+    /* Wildcard relay destination used by topic dispatcher. Default is ProcessEngineNotification.# */
+    @NotEmpty
+    private String relayTopicDispatcherDestination;
+
+    /* Deliver notifications published by notifications gateway in the same JVM without the broker round-trip. Default is false */
+    @NotNull
+    private Boolean localTransportEnabled;
+
     /* Stomp broker client login. Default is guest */
     @NotEmpty
     private String clientLogin;
@@ -72,6 +90,30 @@ public class GraphQLWebSocketMessageBrokerConfigurationProperties {
     @NotNull
     private Integer bufferTimeSpanMs;
 
+    /* Policy applied to subscription data pending delivery to slow clients: DROP_OLDEST, DROP_NEWEST, LATEST_ONLY or DISCONNECT. Default is DROP_OLDEST */
+    @NotNull
+    private GraphQLSubscriptionOverflowPolicy subscriptionOverflowPolicy;
+
+    /* Maximum number of subscription data items pending delivery to client before applying overflow policy. Default is 1000 */
+    @NotNull
+    private Integer subscriptionHighWaterMark;
+
+    /* Number of threads flushing buffered subscription data to clients. Default is 2 */
+    @NotNull
+    private Integer subscriptionFlushThreads;
+
+    /* Subscription batching mode: FIXED or ADAPTIVE. Buffer count and timespan are the frame size and latency budgets of ADAPTIVE mode. Default is FIXED */
+    @NotNull
+    private GraphQLSubscriptionBatchingMode subscriptionBatchingMode;
+
+    /* Share one execution and JSON serialization per event between subscriptions with identical query and variables. Default is true */
+    @NotNull
+    private Boolean subscriptionSharedExecutionEnabled;
+
+    /* Project subscription events with compiled selection set plans instead of executing the selection set per event. Default is true */
+    @NotNull
+    private Boolean subscriptionProjectionEnabled;
+
     @Configuration
     @PropertySource("classpath:META-INF/graphql-ws.properties")
     @PropertySource(value="classpath:graphql-ws.properties", ignoreResourceNotFound=true)
@@ -104,6 +146,38 @@ public class GraphQLWebSocketMessageBrokerConfigurationProperties {
         this.relayPort = relayPort;
     }
 
+    public Integer getRelayConnectionPoolSize() {
+        return relayConnectionPoolSize;
+    }
+
+    public void setRelayConnectionPoolSize(Integer relayConnectionPoolSize) {
+        this.relayConnectionPoolSize = relayConnectionPoolSize;
+    }
+
+    public Boolean isRelayTopicDispatcherEnabled() {
+        return relayTopicDispatcherEnabled;
+    }
+
+    public void setRelayTopicDispatcherEnabled(Boolean relayTopicDispatcherEnabled) {
+        this.relayTopicDispatcherEnabled = relayTopicDispatcherEnabled;
+    }
+
+    public String getRelayTopicDispatcherDestination() {
+        return relayTopicDispatcherDestination;
+    }
+
+    public void setRelayTopicDispatcherDestination(String relayTopicDispatcherDestination) {
+        this.relayTopicDispatcherDestination = relayTopicDispatcherDestination;
+    }
+
+    public Boolean isLocalTransportEnabled() {
+        return localTransportEnabled;
+    }
+
+    public void setLocalTransportEnabled(Boolean localTransportEnabled) {
+        this.localTransportEnabled = localTransportEnabled;
+    }
+
     public String getClientLogin() {
         return clientLogin;
     }
@@ -155,6 +229,54 @@ public class GraphQLWebSocketMessageBrokerConfigurationProperties {
         this.bufferTimeSpanMs = bufferTimeSpanMs;
     }
 
+    public GraphQLSubscriptionOverflowPolicy getSubscriptionOverflowPolicy() {
+        return subscriptionOverflowPolicy;
+    }
+
+    public void setSubscriptionOverflowPolicy(GraphQLSubscriptionOverflowPolicy subscriptionOverflowPolicy) {
+        this.subscriptionOverflowPolicy = subscriptionOverflowPolicy;
+    }
+
+    public Integer getSubscriptionHighWaterMark() {
+        return subscriptionHighWaterMark;
+    }
+
+    public void setSubscriptionHighWaterMark(Integer subscriptionHighWaterMark) {
+        this.subscriptionHighWaterMark = subscriptionHighWaterMark;
+    }
+
+    public Integer getSubscriptionFlushThreads() {
+        return subscriptionFlushThreads;
+    }
+
+    public void setSubscriptionFlushThreads(Integer subscriptionFlushThreads) {
+        this.subscriptionFlushThreads = subscriptionFlushThreads;
+    }
+
+    public GraphQLSubscriptionBatchingMode getSubscriptionBatchingMode() {
+        return subscriptionBatchingMode;
+    }
+
+    public void setSubscriptionBatchingMode(GraphQLSubscriptionBatchingMode subscriptionBatchingMode) {
+        this.subscriptionBatchingMode = subscriptionBatchingMode;
+    }
+
+    public Boolean isSubscriptionSharedExecutionEnabled() {
+        return subscriptionSharedExecutionEnabled;
+    }
+
+    public void setSubscriptionSharedExecutionEnabled(Boolean subscriptionSharedExecutionEnabled) {
+        this.subscriptionSharedExecutionEnabled = subscriptionSharedExecutionEnabled;
+    }
+
+    public Boolean isSubscriptionProjectionEnabled() {
+        return subscriptionProjectionEnabled;
+    }
+
+    public void setSubscriptionProjectionEnabled(Boolean subscriptionProjectionEnabled) {
+        this.subscriptionProjectionEnabled = subscriptionProjectionEnabled;
+    }
+
     public String getSystemLogin() {
         return systemLogin;
     }
@@ -16,13 +16,21 @@
 package org.activiti.cloud.services.query.graphql.ws.datafetcher;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 import com.introproventures.graphql.jpa.query.schema.GraphQLExecutor;
 import graphql.ExecutionInput;
 import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
 import graphql.GraphQL;
+import graphql.parser.Parser;
 import graphql.schema.GraphQLSchema;
+import io.reactivex.Flowable;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * WebSockets specific GraphQLExecutor implementation with support to execute GraphQL subscription queries
@@ -30,39 +38,103 @@ import graphql.schema.GraphQLSchema;
  */
 public class GraphQLSubscriptionExecutor implements GraphQLExecutor {
 
+    private static Logger log = LoggerFactory.getLogger(GraphQLSubscriptionExecutor.class);
+
+    /**
+     * Context key of the source event publisher returned by subscription data fetcher
+     */
+    public static final String SOURCE_PUBLISHER_KEY = GraphQLSubscriptionExecutor.class.getName() + ".sourcePublisher";
+
+    private final GraphQLSchema graphQLSchema;
+
     private final GraphQL graphQL;
 
+    private boolean projectionEnabled = true;
+
     /**
      * Creates instance using GraphQLSchema parameter.
      *
      * @param graphQLSchema instance
      */
     public GraphQLSubscriptionExecutor(GraphQLSchema graphQLSchema) {
+        this.graphQLSchema = graphQLSchema;
         this.graphQL = GraphQL.newGraphQL(graphQLSchema).build();
     }
 
     @Override
     public ExecutionResult execute(String query) {
-        return graphQL.execute(query);
+        return execute(query, null);
     }
 
     @Override
     public ExecutionResult execute(String query, Map<String, Object> arguments) {
 
         // Need to inject variables in context to support parameter bindings in reverse queries
-        Map<String, Object> context = Collections.singletonMap("variables", arguments);
+        // Context is mutable to let subscription data fetcher expose its source event publisher
+        Map<String, Object> context = new HashMap<>();
+        context.put("variables", arguments);
 
         ExecutionInput executionInput = ExecutionInput.newExecutionInput()
                 .query(query)
-                .variables(arguments)
+                .variables(arguments != null ? arguments : Collections.emptyMap())
                 .root(context)
                 .context(context)
                 .build();
 
-        if (arguments == null)
-            return graphQL.execute(query);
-        else
-            return graphQL.execute(executionInput);
+        ExecutionResult executionResult = graphQL.execute(executionInput);
+
+        return projectionEnabled ? project(query, context, executionResult) : executionResult;
+    }
+
+    /**
+     * Enables projection of subscription events with compiled selection set plans instead of
+     * executing the selection set with graphql-java for every event
+     */
+    public GraphQLSubscriptionExecutor projectionEnabled(boolean projectionEnabled) {
+        this.projectionEnabled = projectionEnabled;
+
+        return this;
+    }
+
+    public boolean isProjectionEnabled() {
+        return projectionEnabled;
+    }
+
+    /**
+     * Replaces subscription result publisher with source event publisher mapped through compiled projection,
+     * if the validated subscription selection set can be compiled
+     */
+    @SuppressWarnings("unchecked")
+    protected ExecutionResult project(String query, Map<String, Object> context, ExecutionResult executionResult) {
+        Object source = context.get(SOURCE_PUBLISHER_KEY);
+
+        if (!executionResult.getErrors().isEmpty()
+                || !(executionResult.getData() instanceof Publisher)
+                || !(source instanceof Publisher)) {
+            return executionResult;
+        }
+
+        Optional<GraphQLSubscriptionProjection> projection;
+
+        try {
+            projection = GraphQLSubscriptionProjection.compile(graphQLSchema, new Parser().parseDocument(query), null);
+        } catch (Exception e) {
+            log.debug("Unable to parse subscription query: {}", e.getMessage());
+
+            projection = Optional.empty();
+        }
+
+        if (!projection.isPresent()) {
+            return executionResult;
+        }
+
+        GraphQLSubscriptionProjection plan = projection.get();
+
+        Publisher<ExecutionResult> publisher = Flowable.fromPublisher((Publisher<Object>) source)
+                                                       .map(event -> new ExecutionResultImpl(plan.project(event),
+                                                                                             Collections.emptyList()));
+
+        return new ExecutionResultImpl(publisher, Collections.emptyList());
     }
 
 }
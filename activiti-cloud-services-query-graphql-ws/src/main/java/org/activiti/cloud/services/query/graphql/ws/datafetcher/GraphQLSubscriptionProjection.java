@@ -0,0 +1,369 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import graphql.introspection.Introspection;
+import graphql.language.Definition;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.FragmentSpread;
+import graphql.language.InlineFragment;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLOutputType;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import graphql.schema.PropertyDataFetcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiled projection of a subscription selection set over event maps.
+ *
+ * The projection copies only selected keys from each event and its nested maps and lists, and coerces
+ * leaf values with scalar type coercing, producing the same data as graphql-java execution of the selection
+ * with default property data fetchers, without re-entering the execution engine for every event.
+ *
+ * Selections with directives, nested field arguments, type conditions other than the field type,
+ * non-null, enum, interface or union types, or custom data fetchers cannot be compiled.
+ */
+public class GraphQLSubscriptionProjection {
+
+    private static Logger log = LoggerFactory.getLogger(GraphQLSubscriptionProjection.class);
+
+    private final String resultKey;
+
+    private final ObjectProjection projection;
+
+    GraphQLSubscriptionProjection(String resultKey, ObjectProjection projection) {
+        this.resultKey = resultKey;
+        this.projection = projection;
+    }
+
+    /**
+     * Compiles projection of validated subscription operation document
+     *
+     * @param schema GraphQL schema
+     * @param document validated operation document
+     * @param operationName operation name, may be null if document has a single operation
+     * @return projection or empty if selection set cannot be compiled
+     */
+    public static Optional<GraphQLSubscriptionProjection> compile(GraphQLSchema schema, Document document, String operationName) {
+        try {
+            return Optional.ofNullable(new Compiler(schema, document).compile(operationName));
+        } catch (UnsupportedSelectionException e) {
+            log.debug("Unable to compile subscription projection: {}", e.getMessage());
+
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Projects event into subscription result data
+     */
+    public Map<String, Object> project(Object event) {
+        return Collections.singletonMap(resultKey, projection.project(event));
+    }
+
+    interface ValueProjection {
+
+        Object project(Object value);
+    }
+
+    static class ScalarProjection implements ValueProjection {
+
+        private final GraphQLScalarType scalarType;
+
+        ScalarProjection(GraphQLScalarType scalarType) {
+            this.scalarType = scalarType;
+        }
+
+        @Override
+        public Object project(Object value) {
+            if (value == null) {
+                return null;
+            }
+
+            try {
+                return scalarType.getCoercing().serialize(value);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+    }
+
+    static class ConstantProjection implements ValueProjection {
+
+        private final Object constant;
+
+        ConstantProjection(Object constant) {
+            this.constant = constant;
+        }
+
+        @Override
+        public Object project(Object value) {
+            return constant;
+        }
+    }
+
+    static class ListProjection implements ValueProjection {
+
+        private final ValueProjection elementProjection;
+
+        ListProjection(ValueProjection elementProjection) {
+            this.elementProjection = elementProjection;
+        }
+
+        @Override
+        public Object project(Object value) {
+            if (value instanceof Iterable) {
+                List<Object> result = new ArrayList<>();
+
+                for (Object element : (Iterable<?>) value) {
+                    result.add(elementProjection.project(element));
+                }
+                return result;
+            } else if (value != null && value.getClass().isArray()) {
+                int length = Array.getLength(value);
+                List<Object> result = new ArrayList<>(length);
+
+                for (int i = 0; i < length; i++) {
+                    result.add(elementProjection.project(Array.get(value, i)));
+                }
+                return result;
+            }
+
+            return null;
+        }
+    }
+
+    static class ObjectProjection implements ValueProjection {
+
+        private final Map<String, String> propertyNames = new LinkedHashMap<>();
+
+        private final Map<String, ValueProjection> fieldProjections = new LinkedHashMap<>();
+
+        void addField(String resultKey, String propertyName, ValueProjection projection) {
+            propertyNames.put(resultKey, propertyName);
+            fieldProjections.put(resultKey, projection);
+        }
+
+        @Override
+        public Object project(Object value) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+
+            Map<?, ?> source = (Map<?, ?>) value;
+            Map<String, Object> result = new LinkedHashMap<>(fieldProjections.size() * 2);
+
+            fieldProjections.forEach((resultKey, projection) -> {
+                String propertyName = propertyNames.get(resultKey);
+
+                result.put(resultKey, projection.project(propertyName != null ? source.get(propertyName) : null));
+            });
+
+            return result;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static class UnsupportedSelectionException extends RuntimeException {
+
+        UnsupportedSelectionException(String message) {
+            super(message);
+        }
+    }
+
+    static class Compiler {
+
+        private final GraphQLSchema schema;
+
+        private final Document document;
+
+        private final Map<String, FragmentDefinition> fragments = new HashMap<>();
+
+        Compiler(GraphQLSchema schema, Document document) {
+            this.schema = schema;
+            this.document = document;
+
+            for (Definition definition : document.getDefinitions()) {
+                if (definition instanceof FragmentDefinition) {
+                    FragmentDefinition fragment = (FragmentDefinition) definition;
+                    fragments.put(fragment.getName(), fragment);
+                }
+            }
+        }
+
+        GraphQLSubscriptionProjection compile(String operationName) {
+            OperationDefinition operation = findOperation(operationName);
+
+            if (operation == null || operation.getOperation() != OperationDefinition.Operation.SUBSCRIPTION
+                    || schema.getSubscriptionType() == null) {
+                return null;
+            }
+
+            if (!operation.getDirectives().isEmpty()) {
+                throw new UnsupportedSelectionException("operation directives");
+            }
+
+            List<Field> rootFields = new ArrayList<>();
+            collectFields(schema.getSubscriptionType(), operation.getSelectionSet(), rootFields);
+
+            if (rootFields.size() != 1) {
+                throw new UnsupportedSelectionException("subscription must select a single root field");
+            }
+
+            Field rootField = rootFields.get(0);
+            GraphQLFieldDefinition fieldDefinition = schema.getSubscriptionType().getFieldDefinition(rootField.getName());
+
+            if (fieldDefinition == null || !(fieldDefinition.getType() instanceof GraphQLObjectType)) {
+                throw new UnsupportedSelectionException("root field type " + rootField.getName());
+            }
+
+            ObjectProjection projection = compileObject((GraphQLObjectType) fieldDefinition.getType(),
+                                                        rootField.getSelectionSet());
+
+            return new GraphQLSubscriptionProjection(resultKey(rootField), projection);
+        }
+
+        private OperationDefinition findOperation(String operationName) {
+            OperationDefinition result = null;
+
+            for (Definition definition : document.getDefinitions()) {
+                if (definition instanceof OperationDefinition) {
+                    OperationDefinition operation = (OperationDefinition) definition;
+
+                    if (operationName == null || operationName.equals(operation.getName())) {
+                        if (result != null) {
+                            return null;
+                        }
+                        result = operation;
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        private ObjectProjection compileObject(GraphQLObjectType type, SelectionSet selectionSet) {
+            if (selectionSet == null) {
+                throw new UnsupportedSelectionException("missing selection set of " + type.getName());
+            }
+
+            List<Field> fields = new ArrayList<>();
+            collectFields(type, selectionSet, fields);
+
+            ObjectProjection projection = new ObjectProjection();
+
+            for (Field field : fields) {
+                if (!field.getDirectives().isEmpty() || !field.getArguments().isEmpty()) {
+                    throw new UnsupportedSelectionException("field directives or arguments " + field.getName());
+                }
+
+                if (Introspection.TypeNameMetaFieldDef.getName().equals(field.getName())) {
+                    projection.addField(resultKey(field), null, new ConstantProjection(type.getName()));
+                    continue;
+                }
+
+                GraphQLFieldDefinition fieldDefinition = type.getFieldDefinition(field.getName());
+
+                if (fieldDefinition == null || !(fieldDefinition.getDataFetcher() instanceof PropertyDataFetcher)) {
+                    throw new UnsupportedSelectionException("field data fetcher " + field.getName());
+                }
+
+                String propertyName = ((PropertyDataFetcher<?>) fieldDefinition.getDataFetcher()).getPropertyName();
+
+                if (projection.fieldProjections.containsKey(resultKey(field))) {
+                    throw new UnsupportedSelectionException("merged field " + resultKey(field));
+                }
+
+                projection.addField(resultKey(field),
+                                    propertyName,
+                                    compileValue(fieldDefinition.getType(), field));
+            }
+
+            return projection;
+        }
+
+        private ValueProjection compileValue(GraphQLOutputType type, Field field) {
+            if (type instanceof GraphQLScalarType) {
+                if (field.getSelectionSet() != null && !field.getSelectionSet().getSelections().isEmpty()) {
+                    throw new UnsupportedSelectionException("selection set of scalar " + field.getName());
+                }
+                return new ScalarProjection((GraphQLScalarType) type);
+            } else if (type instanceof GraphQLList) {
+                GraphQLType elementType = ((GraphQLList) type).getWrappedType();
+
+                if (!(elementType instanceof GraphQLOutputType)) {
+                    throw new UnsupportedSelectionException("list element type of " + field.getName());
+                }
+                return new ListProjection(compileValue((GraphQLOutputType) elementType, field));
+            } else if (type instanceof GraphQLObjectType) {
+                return compileObject((GraphQLObjectType) type, field.getSelectionSet());
+            }
+
+            throw new UnsupportedSelectionException("type " + type.getName() + " of " + field.getName());
+        }
+
+        private void collectFields(GraphQLObjectType type, SelectionSet selectionSet, List<Field> fields) {
+            for (Selection selection : selectionSet.getSelections()) {
+                if (selection instanceof Field) {
+                    fields.add((Field) selection);
+                } else if (selection instanceof InlineFragment) {
+                    InlineFragment fragment = (InlineFragment) selection;
+
+                    if (!fragment.getDirectives().isEmpty() || (fragment.getTypeCondition() != null
+                            && !type.getName().equals(fragment.getTypeCondition().getName()))) {
+                        throw new UnsupportedSelectionException("inline fragment on " + type.getName());
+                    }
+                    collectFields(type, fragment.getSelectionSet(), fields);
+                } else if (selection instanceof FragmentSpread) {
+                    FragmentSpread spread = (FragmentSpread) selection;
+                    FragmentDefinition fragment = fragments.get(spread.getName());
+
+                    if (fragment == null || !spread.getDirectives().isEmpty() || !fragment.getDirectives().isEmpty()
+                            || !type.getName().equals(fragment.getTypeCondition().getName())) {
+                        throw new UnsupportedSelectionException("fragment spread " + spread.getName());
+                    }
+                    collectFields(type, fragment.getSelectionSet(), fields);
+                } else {
+                    throw new UnsupportedSelectionException("selection " + selection);
+                }
+            }
+        }
+
+        private static String resultKey(Field field) {
+            return field.getAlias() != null ? field.getAlias() : field.getName();
+        }
+    }
+
+}
@@ -16,22 +16,29 @@
 package org.activiti.cloud.services.query.graphql.ws.datafetcher;
 
 import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import graphql.schema.DataFetchingEnvironment;
 
 public class SimpleStompRelayDataFetcherDestinationResolver implements StompRelayDestinationResolver {
 
+	private static final Set<String> FILTER_ARGUMENTS = new HashSet<>(Arrays.asList(StompRelayNotificationFilter.EVENT_TYPES_ARGUMENT,
+	                                                                                StompRelayNotificationFilter.WHERE_ARGUMENT));
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public List<String> resolveDestinations(DataFetchingEnvironment environment) {
 		String fieldName = environment.getFields().iterator().next().getName();
 
-		// fieldName.argumentName.[argumentValue...]
+		// fieldName.argumentName.[argumentValue...], filter arguments are applied to received events instead
 		List<String> destinations = environment.getArguments().entrySet().stream()
 			.filter(arg -> arg.getValue() instanceof Collection)
+			.filter(arg -> !FILTER_ARGUMENTS.contains(arg.getKey()))
 			.map(arg -> new SimpleEntry<String, Collection<Object>>(fieldName+"."+arg.getKey(),
 								(Collection<Object>) arg.getValue()))
 			.map(entry -> entry.getValue()
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.messaging.simp.stomp.ReactorNettyTcpStompClient;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSession.Subscription;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * Multiplexes Stomp relay subscriptions onto a fixed number of long-lived Stomp sessions.
+ *
+ * Each pooled session carries many Stomp subscription ids and the Stomp session routes every
+ * received frame to the handler of the matching subscription id. Sessions are connected lazily
+ * on first use and are re-connected with all their subscriptions after transport errors.
+ */
+public class StompRelayConnectionPool implements StompRelaySubscriptionProvider, DisposableBean {
+
+    private static Logger log = LoggerFactory.getLogger(StompRelayConnectionPool.class);
+
+    private static final String TOPIC_PREFIX = "/topic/";
+
+    private final ReactorNettyTcpStompClient stompClient;
+
+    private final List<PooledStompSession> sessions = new ArrayList<>();
+
+    private String login = "guest";
+    private String passcode = "guest";
+
+    private int poolSize = 4;
+
+    private long reconnectDelayMs = 5000;
+
+    private TaskScheduler taskScheduler;
+
+    private volatile boolean running = true;
+
+    public StompRelayConnectionPool(ReactorNettyTcpStompClient stompClient) {
+        this.stompClient = stompClient;
+    }
+
+    @Override
+    public StompRelaySubscription subscribe(String destination, StompFrameHandler handler) {
+        Assert.state(running, "Stomp relay connection pool has been shut down");
+
+        return nextSession().subscribe(destination, handler);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        running = false;
+
+        synchronized (sessions) {
+            sessions.forEach(PooledStompSession::disconnect);
+            sessions.clear();
+        }
+    }
+
+    public int getSubscriptionCount() {
+        synchronized (sessions) {
+            return sessions.stream()
+                           .mapToInt(PooledStompSession::getSubscriptionCount)
+                           .sum();
+        }
+    }
+
+    public int getConnectedSessionCount() {
+        synchronized (sessions) {
+            return (int) sessions.stream()
+                                 .filter(PooledStompSession::isConnected)
+                                 .count();
+        }
+    }
+
+    public StompRelayConnectionPool login(String login) {
+        this.login = login;
+
+        return this;
+    }
+
+    public StompRelayConnectionPool passcode(String passcode) {
+        this.passcode = passcode;
+
+        return this;
+    }
+
+    public StompRelayConnectionPool poolSize(int poolSize) {
+        Assert.isTrue(poolSize > 0, "poolSize must be greater than 0");
+        this.poolSize = poolSize;
+
+        return this;
+    }
+
+    public StompRelayConnectionPool reconnectDelayMs(long reconnectDelayMs) {
+        this.reconnectDelayMs = reconnectDelayMs;
+
+        return this;
+    }
+
+    public StompRelayConnectionPool taskScheduler(TaskScheduler taskScheduler) {
+        this.taskScheduler = taskScheduler;
+
+        return this;
+    }
+
+    /**
+     * Opens new sessions until the pool is full, then balances subscriptions across the least loaded session
+     */
+    protected PooledStompSession nextSession() {
+        synchronized (sessions) {
+            if (sessions.size() < poolSize) {
+                PooledStompSession session = new PooledStompSession(sessions.size());
+                sessions.add(session);
+                session.connect();
+
+                return session;
+            }
+
+            return sessions.stream()
+                           .min(Comparator.comparingInt(PooledStompSession::getSubscriptionCount))
+                           .get();
+        }
+    }
+
+    protected class PooledStompSession extends StompSessionHandlerAdapter {
+
+        private final int index;
+
+        private final Set<PooledStompSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+        private StompSession session;
+
+        private boolean connecting;
+
+        PooledStompSession(int index) {
+            this.index = index;
+        }
+
+        public synchronized boolean isConnected() {
+            return session != null && session.isConnected();
+        }
+
+        public int getSubscriptionCount() {
+            return subscriptions.size();
+        }
+
+        public synchronized StompRelaySubscription subscribe(String destination, StompFrameHandler handler) {
+            PooledStompSubscription subscription = new PooledStompSubscription(this, destination, handler);
+
+            subscriptions.add(subscription);
+
+            if (isConnected()) {
+                subscription.subscribe(session);
+            }
+
+            return subscription;
+        }
+
+        synchronized void unsubscribe(PooledStompSubscription subscription) {
+            if (subscriptions.remove(subscription) && isConnected()) {
+                subscription.unsubscribe(session);
+            }
+        }
+
+        synchronized void connect() {
+            if (!running || connecting) {
+                return;
+            }
+
+            connecting = true;
+
+            StompHeaders stompHeaders = new StompHeaders();
+            stompHeaders.setLogin(login);
+            stompHeaders.setPasscode(passcode);
+
+            stompClient.connect(stompHeaders, this);
+        }
+
+        synchronized void disconnect() {
+            if (isConnected()) {
+                log.info("Stomp relay pool session[{}] disconnected: {}", index, session.getSessionId());
+                session.disconnect();
+            }
+            session = null;
+            subscriptions.clear();
+        }
+
+        @Override
+        public synchronized void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+            this.session = session;
+            this.connecting = false;
+
+            log.info("Stomp relay pool session[{}] connected: {}", index, session.getSessionId());
+
+            if (!running) {
+                disconnect();
+                return;
+            }
+
+            for (PooledStompSubscription subscription : subscriptions) {
+                subscription.subscribe(session);
+            }
+        }
+
+        @Override
+        public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload,
+                                    Throwable exception) {
+            log.error(exception.getMessage(), exception);
+        }
+
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            log.error("Stomp relay pool session[{}] transport error: {}", index, exception.getMessage());
+
+            synchronized (this) {
+                this.session = null;
+                this.connecting = false;
+            }
+
+            scheduleReconnect();
+        }
+
+        protected void scheduleReconnect() {
+            if (!running) {
+                return;
+            }
+
+            if (taskScheduler != null) {
+                taskScheduler.schedule(this::connect, new Date(System.currentTimeMillis() + reconnectDelayMs));
+            } else {
+                connect();
+            }
+        }
+    }
+
+    protected static class PooledStompSubscription implements StompRelaySubscription {
+
+        private final PooledStompSession pooledSession;
+        private final String destination;
+        private final StompFrameHandler handler;
+
+        private Subscription subscription;
+
+        PooledStompSubscription(PooledStompSession pooledSession, String destination, StompFrameHandler handler) {
+            this.pooledSession = pooledSession;
+            this.destination = destination;
+            this.handler = handler;
+        }
+
+        @Override
+        public String getDestination() {
+            return destination;
+        }
+
+        @Override
+        public void unsubscribe() {
+            pooledSession.unsubscribe(this);
+        }
+
+        void subscribe(StompSession session) {
+            subscription = session.subscribe(TOPIC_PREFIX + destination, handler);
+
+            log.info("Subscribed {}['{}'] with Stomp session: {}", subscription.getSubscriptionId(), destination, session.getSessionId());
+        }
+
+        void unsubscribe(StompSession session) {
+            if (subscription != null) {
+                try {
+                    subscription.unsubscribe();
+
+                    log.info("Unsubscribed {}['{}'] with Stomp session: {}", subscription.getSubscriptionId(), destination, session.getSessionId());
+                } catch (Exception e) {
+                    log.warn("Unable to unsubscribe {}['{}']: {}", subscription.getSubscriptionId(), destination, e.getMessage());
+                }
+                subscription = null;
+            }
+        }
+    }
+
+}
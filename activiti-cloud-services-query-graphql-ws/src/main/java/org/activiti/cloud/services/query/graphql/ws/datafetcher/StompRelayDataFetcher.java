@@ -32,7 +32,14 @@ public class StompRelayDataFetcher implements DataFetcher<Publisher<Map<String,O
 	@Override
 	public Publisher<Map<String,Object>> get(DataFetchingEnvironment environment) {
 
-        return stompRelayPublisherFactory.getPublisher(environment);
+        Publisher<Map<String,Object>> publisher = stompRelayPublisherFactory.getPublisher(environment);
+
+        // Expose source publisher to subscription executor for compiled event projection
+        if (environment.getContext() instanceof Map) {
+            environment.<Map<String,Object>>getContext().put(GraphQLSubscriptionExecutor.SOURCE_PUBLISHER_KEY, publisher);
+        }
+
+        return publisher;
     }
 
 }
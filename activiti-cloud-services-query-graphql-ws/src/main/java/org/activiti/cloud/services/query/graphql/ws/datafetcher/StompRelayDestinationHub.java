@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+/**
+ * Reference counted hub that keeps a single upstream relay subscription per distinct destination
+ * and fans received frames out in-process to all local subscribers of that destination.
+ *
+ * The upstream subscription is created for the first local subscriber and torn down when the last
+ * local subscriber leaves, so broker load grows with the number of distinct destinations rather
+ * than with the number of connected clients.
+ */
+public class StompRelayDestinationHub implements StompRelaySubscriptionProvider {
+
+    private static Logger log = LoggerFactory.getLogger(StompRelayDestinationHub.class);
+
+    private final StompRelaySubscriptionProvider upstream;
+
+    private final Map<String, SharedDestination> destinations = new HashMap<>();
+
+    public StompRelayDestinationHub(StompRelaySubscriptionProvider upstream) {
+        this.upstream = upstream;
+    }
+
+    @Override
+    public StompRelaySubscription subscribe(String destination, StompFrameHandler handler) {
+        synchronized (destinations) {
+            SharedDestination shared = destinations.get(destination);
+
+            if (shared == null) {
+                shared = new SharedDestination(destination);
+                shared.upstreamSubscription = upstream.subscribe(destination, shared);
+
+                destinations.put(destination, shared);
+
+                log.debug("Opened upstream subscription for destination '{}'", destination);
+            }
+
+            shared.handlers.add(handler);
+
+            return new LocalSubscription(shared, handler);
+        }
+    }
+
+    public int getDestinationCount() {
+        synchronized (destinations) {
+            return destinations.size();
+        }
+    }
+
+    public int getSubscriberCount(String destination) {
+        synchronized (destinations) {
+            SharedDestination shared = destinations.get(destination);
+
+            return shared != null ? shared.handlers.size() : 0;
+        }
+    }
+
+    protected void unsubscribe(SharedDestination shared, StompFrameHandler handler) {
+        synchronized (destinations) {
+            if (shared.handlers.remove(handler) && shared.handlers.isEmpty()) {
+                destinations.remove(shared.destination, shared);
+                shared.upstreamSubscription.unsubscribe();
+
+                log.debug("Closed upstream subscription for destination '{}'", shared.destination);
+            }
+        }
+    }
+
+    protected static class SharedDestination implements StompFrameHandler {
+
+        private final String destination;
+
+        private final List<StompFrameHandler> handlers = new CopyOnWriteArrayList<>();
+
+        private StompRelaySubscription upstreamSubscription;
+
+        SharedDestination(String destination) {
+            this.destination = destination;
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return Map.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            for (StompFrameHandler handler : handlers) {
+                try {
+                    handler.handleFrame(headers, payload);
+                } catch (Exception e) {
+                    log.error("Unable to deliver frame for destination '{}': {}", destination, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    protected class LocalSubscription implements StompRelaySubscription {
+
+        private final SharedDestination shared;
+        private final StompFrameHandler handler;
+
+        LocalSubscription(SharedDestination shared, StompFrameHandler handler) {
+            this.shared = shared;
+            this.handler = handler;
+        }
+
+        @Override
+        public String getDestination() {
+            return shared.destination;
+        }
+
+        @Override
+        public void unsubscribe() {
+            StompRelayDestinationHub.this.unsubscribe(shared, handler);
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activiti.cloud.services.query.graphql.ws.util.TopicMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+/**
+ * In-process notification transport for deployments running the notifications gateway in the same JVM.
+ *
+ * Notifications published by the gateway as Spring messages with 'routingKey' and 'notificationId' headers
+ * are matched against local subscription destination patterns and delivered to their frame handlers directly,
+ * without the broker round-trip and JSON conversion. The broker relay is still subscribed for notifications
+ * published by other nodes, and relay frames of notifications already delivered locally are dropped using
+ * a bounded window of recently delivered notification ids.
+ */
+public class StompRelayLocalTransport implements StompRelaySubscriptionProvider {
+
+    private static Logger log = LoggerFactory.getLogger(StompRelayLocalTransport.class);
+
+    public static final String ROUTING_KEY_HEADER = "routingKey";
+    public static final String NOTIFICATION_ID_HEADER = "notificationId";
+
+    private final StompRelaySubscriptionProvider upstream;
+
+    private final TopicMatcher<StompFrameHandler> topicMatcher = new TopicMatcher<>();
+
+    private final Set<String> deliveredNotificationIds;
+
+    private final AtomicLong localDeliveryCount = new AtomicLong();
+    private final AtomicLong duplicateFrameCount = new AtomicLong();
+
+    public StompRelayLocalTransport(StompRelaySubscriptionProvider upstream) {
+        this(upstream, 10000);
+    }
+
+    @SuppressWarnings("serial")
+    public StompRelayLocalTransport(StompRelaySubscriptionProvider upstream, int deliveredNotificationIdsWindow) {
+        this.upstream = upstream;
+        this.deliveredNotificationIds = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > deliveredNotificationIdsWindow;
+            }
+        }));
+    }
+
+    @Override
+    public StompRelaySubscription subscribe(String destination, StompFrameHandler handler) {
+        topicMatcher.add(destination, handler);
+
+        StompRelaySubscription relaySubscription = upstream.subscribe(destination, new RelayFrameHandler(handler));
+
+        return new StompRelaySubscription() {
+
+            @Override
+            public String getDestination() {
+                return destination;
+            }
+
+            @Override
+            public void unsubscribe() {
+                topicMatcher.remove(destination, handler);
+                relaySubscription.unsubscribe();
+            }
+        };
+    }
+
+    @EventListener
+    public void onNotification(Message<?> message) {
+        String routingKey = message.getHeaders().get(ROUTING_KEY_HEADER, String.class);
+
+        if (routingKey == null || !(message.getPayload() instanceof Map)) {
+            return;
+        }
+
+        String notificationId = message.getHeaders().get(NOTIFICATION_ID_HEADER, String.class);
+
+        if (notificationId != null) {
+            deliveredNotificationIds.add(notificationId);
+        }
+
+        StompHeaders headers = new StompHeaders();
+        headers.set(ROUTING_KEY_HEADER, routingKey);
+
+        if (notificationId != null) {
+            headers.set(NOTIFICATION_ID_HEADER, notificationId);
+        }
+
+        for (StompFrameHandler handler : topicMatcher.match(routingKey)) {
+            try {
+                handler.handleFrame(headers, message.getPayload());
+                localDeliveryCount.incrementAndGet();
+            } catch (Exception e) {
+                log.error("Unable to deliver local notification with routing key '{}': {}", routingKey, e.getMessage(), e);
+            }
+        }
+    }
+
+    public long getLocalDeliveryCount() {
+        return localDeliveryCount.get();
+    }
+
+    public long getDuplicateFrameCount() {
+        return duplicateFrameCount.get();
+    }
+
+    protected boolean isDeliveredLocally(StompHeaders headers) {
+        String notificationId = headers.getFirst(NOTIFICATION_ID_HEADER);
+
+        return notificationId != null && deliveredNotificationIds.contains(notificationId);
+    }
+
+    protected class RelayFrameHandler implements StompFrameHandler {
+
+        private final StompFrameHandler delegate;
+
+        RelayFrameHandler(StompFrameHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return delegate.getPayloadType(headers);
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            if (isDeliveredLocally(headers)) {
+                duplicateFrameCount.incrementAndGet();
+                return;
+            }
+
+            delegate.handleFrame(headers, payload);
+        }
+    }
+
+}
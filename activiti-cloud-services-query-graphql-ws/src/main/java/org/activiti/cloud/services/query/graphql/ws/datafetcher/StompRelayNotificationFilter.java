@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Compiled event type and event field predicate filter of subscription notifications.
+ *
+ * Notifications carry lists of events keyed by event type, i.e. TASK_ASSIGNED. The filter removes event
+ * type lists not listed in 'eventTypes' argument and events not matching all 'where' argument predicates,
+ * and drops notifications without any remaining events, before notifications are buffered and serialized.
+ */
+public class StompRelayNotificationFilter {
+
+    public static final String EVENT_TYPES_ARGUMENT = "eventTypes";
+    public static final String WHERE_ARGUMENT = "where";
+
+    public static final String PATH = "path";
+    public static final String EQ = "EQ";
+    public static final String IN = "IN";
+
+    private static final String DOT = ".";
+
+    private final Set<String> eventTypes;
+
+    private final List<Predicate<Object>> predicates;
+
+    StompRelayNotificationFilter(Set<String> eventTypes, List<Predicate<Object>> predicates) {
+        this.eventTypes = eventTypes;
+        this.predicates = predicates;
+    }
+
+    /**
+     * Compiles filter from subscription field arguments
+     *
+     * @param arguments subscription field arguments
+     * @return filter or empty if arguments do not contain filter arguments
+     */
+    @SuppressWarnings("unchecked")
+    public static Optional<StompRelayNotificationFilter> of(Map<String, Object> arguments) {
+        Collection<Object> eventTypes = (Collection<Object>) arguments.get(EVENT_TYPES_ARGUMENT);
+        Collection<Map<String, Object>> where = (Collection<Map<String, Object>>) arguments.get(WHERE_ARGUMENT);
+
+        if (eventTypes == null && (where == null || where.isEmpty())) {
+            return Optional.empty();
+        }
+
+        Set<String> eventTypeSet = null;
+
+        if (eventTypes != null) {
+            eventTypeSet = new HashSet<>();
+
+            for (Object eventType : eventTypes) {
+                eventTypeSet.add(String.valueOf(eventType));
+            }
+        }
+
+        List<Predicate<Object>> predicates = new ArrayList<>();
+
+        if (where != null) {
+            for (Map<String, Object> predicate : where) {
+                predicates.add(compile(predicate));
+            }
+        }
+
+        return Optional.of(new StompRelayNotificationFilter(eventTypeSet, predicates));
+    }
+
+    /**
+     * Filters notification events
+     *
+     * @param notification notification payload
+     * @return notification with matching events only, or empty map if no events match
+     */
+    public Map<String, Object> apply(Map<String, Object> notification) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        boolean matched = false;
+
+        for (Map.Entry<String, Object> entry : notification.entrySet()) {
+            Object value = entry.getValue();
+
+            if (!(value instanceof Collection)) {
+                result.put(entry.getKey(), value);
+                continue;
+            }
+
+            if (eventTypes != null && !eventTypes.contains(entry.getKey())) {
+                continue;
+            }
+
+            List<Object> events = filter((Collection<?>) value);
+
+            if (!events.isEmpty()) {
+                result.put(entry.getKey(), events);
+                matched = true;
+            }
+        }
+
+        return matched ? result : Collections.emptyMap();
+    }
+
+    private List<Object> filter(Collection<?> events) {
+        List<Object> result = new ArrayList<>(events.size());
+
+        for (Object event : events) {
+            if (matches(event)) {
+                result.add(event);
+            }
+        }
+
+        return result;
+    }
+
+    private boolean matches(Object event) {
+        for (Predicate<Object> predicate : predicates) {
+            if (!predicate.test(event)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Predicate<Object> compile(Map<String, Object> predicate) {
+        Object path = predicate.get(PATH);
+
+        if (!(path instanceof String) || !StringUtils.hasText((String) path)) {
+            throw new IllegalArgumentException("Event predicate path is required");
+        }
+
+        Object eq = predicate.get(EQ);
+        Collection<Object> in = (Collection<Object>) predicate.get(IN);
+
+        if (eq == null && in == null) {
+            throw new IllegalArgumentException("Event predicate " + path + " requires " + EQ + " or " + IN + " value");
+        }
+
+        String[] names = StringUtils.delimitedListToStringArray((String) path, DOT);
+
+        Predicate<Object> result = event -> true;
+
+        if (eq != null) {
+            String expected = String.valueOf(eq);
+
+            result = result.and(event -> {
+                Object value = resolve(event, names);
+
+                return value != null && expected.equals(String.valueOf(value));
+            });
+        }
+
+        if (in != null) {
+            Set<String> expected = new HashSet<>();
+
+            for (Object value : in) {
+                expected.add(String.valueOf(value));
+            }
+
+            result = result.and(event -> {
+                Object value = resolve(event, names);
+
+                return value != null && expected.contains(String.valueOf(value));
+            });
+        }
+
+        return result;
+    }
+
+    private static Object resolve(Object event, String[] names) {
+        Object value = event;
+
+        for (String name : names) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+            value = ((Map<?, ?>) value).get(name);
+        }
+
+        return value;
+    }
+
+}
@@ -16,6 +16,7 @@
 package org.activiti.cloud.services.query.graphql.ws.datafetcher;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -23,30 +24,30 @@ import io.reactivex.ObservableEmitter;
 import io.reactivex.functions.Cancellable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
 import org.springframework.messaging.simp.stomp.StompHeaders;
-import org.springframework.messaging.simp.stomp.StompSession;
-import org.springframework.messaging.simp.stomp.StompSession.Subscription;
-import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
 
-public class StompRelayObservableEmitterHandler extends StompSessionHandlerAdapter implements Cancellable {
+public class StompRelayObservableEmitterHandler implements StompFrameHandler, Cancellable {
 
     private static Logger log = LoggerFactory.getLogger(StompRelayObservableEmitterHandler.class);
 
 	private final List<String> destinations;
 	private final ObservableEmitter<Map<String, Object>> emitter;
 
-	private StompSession session;
+	private final List<StompRelaySubscription> subscriptions = new ArrayList<>();
 
 	/**
+	 * Frames of destinations subscribed on different pooled sessions arrive on different threads,
+	 * so all events are emitted through a serialized emitter
+	 *
 	 * @param destinations
 	 * @param emitter
 	 */
 	public StompRelayObservableEmitterHandler(List<String> destinations, ObservableEmitter<Map<String, Object>> emitter) {
 		this.destinations = destinations;
-		this.emitter = emitter;
+		this.emitter = emitter.serialize();
 
-		emitter.setCancellable(this);
+		this.emitter.setCancellable(this);
 	}
 
 	@Override
@@ -54,15 +55,20 @@ public class StompRelayObservableEmitterHandler extends StompSessionHandlerAdapt
 		return Map.class;
 	}
 
-	@Override
-	public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
-		this.session = session;
-
-		log.info("Stomp session connected: {}", session.getSessionId());
-
+	/**
+	 * Subscribes this handler to all destinations using shared relay sessions from subscription provider
+	 *
+	 * @param subscriptionProvider
+	 */
+	public synchronized void subscribe(StompRelaySubscriptionProvider subscriptionProvider) {
 		for (String destination : destinations) {
-			Subscription subs = session.subscribe("/topic/" + destination, this);
-			log.info("Subscribed {}['{}'] with Stomp session: {}", subs.getSubscriptionId(), destination, session.getSessionId());
+			try {
+				subscriptions.add(subscriptionProvider.subscribe(destination, this));
+			} catch (Exception e) {
+				log.error(e.getMessage(), e);
+				emitter.onError(e);
+				return;
+			}
 		}
 	}
 
@@ -73,24 +79,12 @@ public class StompRelayObservableEmitterHandler extends StompSessionHandlerAdapt
 	}
 
 	@Override
-	public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload,
-			Throwable exception) {
-		log.error(exception.getMessage(), exception);
-		emitter.onError(exception);
-	}
-
-	@Override
-	public void handleTransportError(StompSession session, Throwable exception) {
-		log.error(exception.getMessage(), exception);
-		emitter.onError(exception);
-	}
-
-	@Override
-	public void cancel() throws Exception {
-		if(session != null) {
-			log.info("Stomp session canceled: {}", session.getSessionId());
-			session.disconnect();
+	public synchronized void cancel() throws Exception {
+		for (StompRelaySubscription subscription : subscriptions) {
+			log.info("Stomp relay subscription canceled: {}", subscription.getDestination());
+			subscription.unsubscribe();
 		}
+		subscriptions.clear();
 	}
 
 }
@@ -17,8 +17,10 @@ package org.activiti.cloud.services.query.graphql.ws.datafetcher;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import graphql.schema.DataFetchingEnvironment;
+import io.reactivex.BackpressureOverflowStrategy;
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
@@ -26,9 +28,7 @@ import io.reactivex.observables.ConnectableObservable;
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.messaging.simp.stomp.ReactorNettyTcpStompClient;
-import org.springframework.messaging.simp.stomp.StompHeaders;
-import org.springframework.messaging.simp.stomp.StompSessionHandler;
+import org.springframework.util.Assert;
 
 public class StompRelayPublisherFactory {
 
@@ -37,29 +37,34 @@ public class StompRelayPublisherFactory {
     private StompRelayDestinationResolver destinationResolver =
             new SimpleStompRelayDataFetcherDestinationResolver();
 
-    private String login = "guest";
-    private String passcode = "guest";
+    private final StompRelaySubscriptionProvider subscriptionProvider;
 
-    private final ReactorNettyTcpStompClient stompClient;
+    private int bufferSize = 1000;
 
-    public StompRelayPublisherFactory(ReactorNettyTcpStompClient stompClient) {
-        this.stompClient = stompClient;
+    public StompRelayPublisherFactory(StompRelaySubscriptionProvider subscriptionProvider) {
+        this.subscriptionProvider = subscriptionProvider;
     }
 
     public Publisher<Map<String,Object>> getPublisher(DataFetchingEnvironment environment) {
+        Optional<StompRelayNotificationFilter> notificationFilter = StompRelayNotificationFilter.of(environment.getArguments());
+
         Observable<Map<String,Object>> stompRelayObservable = Observable.create(emitter -> {
 
             List<String> destinations = destinationResolver.resolveDestinations(environment);
 
-            StompSessionHandler handler = new StompRelayObservableEmitterHandler(destinations, emitter);
-
-            StompHeaders stompHeaders = new StompHeaders();
-            stompHeaders.setLogin(login);
-            stompHeaders.setPasscode(passcode);
+            StompRelayObservableEmitterHandler handler = new StompRelayObservableEmitterHandler(destinations, emitter);
 
-            stompClient.connect(stompHeaders, handler);
+            handler.subscribe(subscriptionProvider);
         });
 
+        // Drop unmatched events before buffering and serialization
+        if (notificationFilter.isPresent()) {
+            StompRelayNotificationFilter filter = notificationFilter.get();
+
+            stompRelayObservable = stompRelayObservable.map(filter::apply)
+                                                       .filter(notification -> !notification.isEmpty());
+        }
+
         ConnectableObservable<Map<String, Object>> connectableObservable =
                 stompRelayObservable
                     .share()
@@ -68,22 +73,22 @@ public class StompRelayPublisherFactory {
         Disposable handle = connectableObservable.connect();
 
         return connectableObservable
-                .toFlowable(BackpressureStrategy.BUFFER)
+                .toFlowable(BackpressureStrategy.MISSING)
+                .onBackpressureBuffer(bufferSize,
+                                      () -> log.warn("Relay publisher buffer overflow, dropped oldest notification"),
+                                      BackpressureOverflowStrategy.DROP_OLDEST)
                 .doOnCancel(() -> {
                     handle.dispose();
                 });
     }
 
 
-    public StompRelayPublisherFactory login(String login) {
-        this.login = login;
-
-        return this;
-    }
-
-
-    public StompRelayPublisherFactory passcode(String passcode) {
-        this.passcode = passcode;
+    /**
+     * @param bufferSize maximum number of notifications buffered for a subscriber not requesting more
+     */
+    public StompRelayPublisherFactory bufferSize(int bufferSize) {
+        Assert.isTrue(bufferSize > 0, "bufferSize must be greater than 0");
+        this.bufferSize = bufferSize;
 
         return this;
     }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.activiti.cloud.services.query.graphql.ws.util.TopicMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.util.StringUtils;
+
+/**
+ * Subscribes a single upstream wildcard destination, i.e. ProcessEngineNotification.#, and dispatches
+ * received frames to local subscribers by matching frame routing keys against their destination patterns
+ * in memory, so that each node uses one broker queue and binding instead of one per subscription.
+ *
+ * The routing key is taken from the 'routingKey' frame header set by the notifications gateway and falls
+ * back to the last segment of the frame 'destination' header.
+ */
+public class StompRelayTopicDispatcher implements StompRelaySubscriptionProvider, StompFrameHandler {
+
+    private static Logger log = LoggerFactory.getLogger(StompRelayTopicDispatcher.class);
+
+    public static final String ROUTING_KEY_HEADER = "routingKey";
+
+    private static final String SLASH = "/";
+
+    private final StompRelaySubscriptionProvider upstream;
+
+    private final String destination;
+
+    private final TopicMatcher<StompFrameHandler> topicMatcher = new TopicMatcher<>();
+
+    private StompRelaySubscription upstreamSubscription;
+
+    private final AtomicLong unroutedFrameCount = new AtomicLong();
+
+    public StompRelayTopicDispatcher(StompRelaySubscriptionProvider upstream, String destination) {
+        this.upstream = upstream;
+        this.destination = destination;
+    }
+
+    @Override
+    public synchronized StompRelaySubscription subscribe(String pattern, StompFrameHandler handler) {
+        topicMatcher.add(pattern, handler);
+
+        if (upstreamSubscription == null) {
+            upstreamSubscription = upstream.subscribe(destination, this);
+        }
+
+        return new TopicSubscription(pattern, handler);
+    }
+
+    @Override
+    public Type getPayloadType(StompHeaders headers) {
+        return Map.class;
+    }
+
+    @Override
+    public void handleFrame(StompHeaders headers, Object payload) {
+        String routingKey = resolveRoutingKey(headers);
+
+        Set<StompFrameHandler> handlers = topicMatcher.match(routingKey);
+
+        if (handlers.isEmpty()) {
+            unroutedFrameCount.incrementAndGet();
+            log.trace("No subscribers matched routing key '{}'", routingKey);
+            return;
+        }
+
+        for (StompFrameHandler handler : handlers) {
+            try {
+                handler.handleFrame(headers, payload);
+            } catch (Exception e) {
+                log.error("Unable to dispatch frame with routing key '{}': {}", routingKey, e.getMessage(), e);
+            }
+        }
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public int getPatternCount() {
+        return topicMatcher.getPatternCount();
+    }
+
+    public long getUnroutedFrameCount() {
+        return unroutedFrameCount.get();
+    }
+
+    protected String resolveRoutingKey(StompHeaders headers) {
+        String routingKey = headers.getFirst(ROUTING_KEY_HEADER);
+
+        if (StringUtils.hasText(routingKey)) {
+            return routingKey;
+        }
+
+        String frameDestination = headers.getDestination();
+
+        if (frameDestination != null) {
+            return frameDestination.substring(frameDestination.lastIndexOf(SLASH) + 1);
+        }
+
+        return null;
+    }
+
+    protected synchronized void unsubscribe(String pattern, StompFrameHandler handler) {
+        topicMatcher.remove(pattern, handler);
+
+        if (topicMatcher.isEmpty() && upstreamSubscription != null) {
+            upstreamSubscription.unsubscribe();
+            upstreamSubscription = null;
+        }
+    }
+
+    protected class TopicSubscription implements StompRelaySubscription {
+
+        private final String pattern;
+        private final StompFrameHandler handler;
+
+        TopicSubscription(String pattern, StompFrameHandler handler) {
+            this.pattern = pattern;
+            this.handler = handler;
+        }
+
+        @Override
+        public String getDestination() {
+            return pattern;
+        }
+
+        @Override
+        public void unsubscribe() {
+            StompRelayTopicDispatcher.this.unsubscribe(pattern, handler);
+        }
+    }
+
+}
@@ -15,14 +15,18 @@
  */
 package org.activiti.cloud.services.query.graphql.ws.transport;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import graphql.ExecutionResult;
-import io.reactivex.subjects.PublishSubject;
+import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLBrokerSubscriptionRegistry.SessionSubscriptionInfo;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
@@ -32,36 +36,115 @@ import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.util.Assert;
 
+/**
+ * Sends subscription data to client in buffered DATA messages.
+ *
+ * Data is appended to an accumulator which is flushed when it reaches buffer count, or by a one-shot
+ * task on the shared {@link GraphQLSubscriptionFlushScheduler} buffer timespan after the first
+ * data was appended, so idle subscriptions do not schedule any work. In adaptive batching mode the
+ * flush delay is derived from the exponentially weighted moving average of the subscription event rate.
+ *
+ * Pending data is held in a bounded queue and only one DATA message per subscription is in flight
+ * to the client at a time. The sub-protocol handler runs the {@link #DELIVERY_CALLBACK_HEADER} callback
+ * once the message has been written to the WebSocket session, so a slow client accumulates at most
+ * high-water mark items, and the overflow policy decides what happens to data beyond that.
+ */
 public class GraphQLBrokerChannelSubscriber implements Subscriber<ExecutionResult>{
 
     private static Logger log = LoggerFactory.getLogger(GraphQLBrokerChannelSubscriber.class);
 
+    public static final String DELIVERY_CALLBACK_HEADER = "graphQLDeliveryCallback";
+
+    public static final String SLOW_CONSUMER_EVICTED = "Slow consumer evicted.";
+
+    public static final int DEFAULT_HIGH_WATER_MARK = 1000;
+
+    private static final double EVENT_INTERVAL_WEIGHT = 0.2;
+
 	private final MessageChannel outboundChannel;
 
 	private final MessageHeaderAccessor headerAccessor;
 
 	private final String operationMessageId;
 
-	private final PublishSubject<ExecutionResult> publishSubject = PublishSubject.create();
-
     private final AtomicReference<Subscription> subscriptionRef = new AtomicReference<>();
 
+    private final long bufferTimeSpanMs;
+
+    private final int bufferCount;
+
+    private final GraphQLSubscriptionOverflowPolicy overflowPolicy;
+
+    private final int highWaterMark;
+
+    private final GraphQLSubscriptionFlushScheduler flushScheduler;
+
+    private final List<Object> accumulator = new ArrayList<>();
+
+    private final Deque<Object> pendingData = new ArrayDeque<>();
+
+    private ScheduledFuture<?> flushFuture;
+
+    private GraphQLSubscriptionBatchingMode batchingMode = GraphQLSubscriptionBatchingMode.FIXED;
+
+    private long lastEventNanos;
+
+    private double averageEventIntervalMs = -1;
+
+    private final Runnable deliveryCallback = this::onDataDelivered;
+
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    private boolean inFlight;
+
+    private volatile boolean evicted;
+
+    private volatile SessionSubscriptionInfo sessionSubscriptionInfo;
+
 	public GraphQLBrokerChannelSubscriber(Message<?> message,  String operationMessageId,
 			MessageChannel outboundChannel,
-			long bufferTimeSpanMs, int bufferCount)
+			long bufferTimeSpanMs, int bufferCount,
+			GraphQLSubscriptionFlushScheduler flushScheduler)
 	{
-		this.outboundChannel = outboundChannel;
-		this.operationMessageId = operationMessageId;
-		this.headerAccessor = SimpMessageHeaderAccessor.getMutableAccessor(message);
-
-		publishSubject
-			.map(ExecutionResult::getData)
-			.buffer(bufferTimeSpanMs, TimeUnit.MILLISECONDS, bufferCount)
-			.subscribe(this::sendDataToClient);
+		this(message, operationMessageId, outboundChannel, bufferTimeSpanMs, bufferCount,
+		     GraphQLSubscriptionOverflowPolicy.DROP_OLDEST, DEFAULT_HIGH_WATER_MARK, flushScheduler);
 	}
 
+    public GraphQLBrokerChannelSubscriber(Message<?> message, String operationMessageId,
+                                          MessageChannel outboundChannel,
+                                          long bufferTimeSpanMs, int bufferCount,
+                                          GraphQLSubscriptionOverflowPolicy overflowPolicy, int highWaterMark,
+                                          GraphQLSubscriptionFlushScheduler flushScheduler)
+    {
+        Assert.notNull(overflowPolicy, "overflowPolicy must not be null");
+        Assert.isTrue(highWaterMark > 0, "highWaterMark must be greater than 0");
+        Assert.notNull(flushScheduler, "flushScheduler must not be null");
+
+        this.outboundChannel = outboundChannel;
+        this.operationMessageId = operationMessageId;
+        this.headerAccessor = SimpMessageHeaderAccessor.getMutableAccessor(message);
+        this.bufferTimeSpanMs = bufferTimeSpanMs;
+        this.bufferCount = Math.max(bufferCount, 1);
+        this.overflowPolicy = overflowPolicy;
+        this.highWaterMark = highWaterMark;
+        this.flushScheduler = flushScheduler;
+    }
+
+    public GraphQLBrokerChannelSubscriber batchingMode(GraphQLSubscriptionBatchingMode batchingMode) {
+        Assert.notNull(batchingMode, "batchingMode must not be null");
+        this.batchingMode = batchingMode;
+
+        return this;
+    }
+
 	public void cancel() {
+        synchronized (pendingData) {
+            cancelFlush();
+            accumulator.clear();
+        }
+
         Subscription subscription = subscriptionRef.get();
         if (subscription != null) {
             subscription.cancel();
@@ -76,7 +159,11 @@ public class GraphQLBrokerChannelSubscriber implements Subscriber<ExecutionResul
 
     @Override
     public void onNext(ExecutionResult executionResult) {
-    	publishSubject.onNext(executionResult);
+        if (evicted) {
+            return;
+        }
+
+        accumulate(executionResult.getData());
 
         requestNext(1);
     }
@@ -85,14 +172,7 @@ public class GraphQLBrokerChannelSubscriber implements Subscriber<ExecutionResul
     public void onError(Throwable t) {
         log.error("Subscription threw an exception", t);
 
-        Map<String, Object> payload = Collections.singletonMap("errors", Collections.singletonList(t.getMessage()));
-
-        GraphQLMessage operationMessage = new GraphQLMessage(operationMessageId, GraphQLMessageType.ERROR, payload);
-
-		Message<GraphQLMessage> responseMessage =
-				MessageBuilder.createMessage(operationMessage, headerAccessor.getMessageHeaders());
-
-		outboundChannel.send(responseMessage);
+        sendErrorToClient(t.getMessage());
     }
 
     @Override
@@ -101,6 +181,10 @@ public class GraphQLBrokerChannelSubscriber implements Subscriber<ExecutionResul
 
         cancel();
 
+        synchronized (pendingData) {
+            pendingData.clear();
+        }
+
         GraphQLMessage operationMessage = new GraphQLMessage(operationMessageId, GraphQLMessageType.COMPLETE, Collections.emptyMap());
 
 		Message<?> responseMessage = MessageBuilder.createMessage(operationMessage, headerAccessor.getMessageHeaders());
@@ -108,6 +192,53 @@ public class GraphQLBrokerChannelSubscriber implements Subscriber<ExecutionResul
 		outboundChannel.send(responseMessage);
     }
 
+    public GraphQLSubscriptionOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public GraphQLSubscriptionBatchingMode getBatchingMode() {
+        return batchingMode;
+    }
+
+    public long getBufferTimeSpanMs() {
+        return bufferTimeSpanMs;
+    }
+
+    public int getBufferCount() {
+        return bufferCount;
+    }
+
+    /**
+     * Average subscription event rate per second, or 0 before the second event
+     */
+    public double getEventRate() {
+        synchronized (pendingData) {
+            return averageEventIntervalMs > 0 ? 1000 / averageEventIntervalMs : 0;
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (pendingData) {
+            return pendingData.size();
+        }
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    public boolean isEvicted() {
+        return evicted;
+    }
+
+    void setSessionSubscriptionInfo(SessionSubscriptionInfo sessionSubscriptionInfo) {
+        this.sessionSubscriptionInfo = sessionSubscriptionInfo;
+    }
+
     private void requestNext(int n) {
         Subscription subscription = subscriptionRef.get();
         if (subscription != null) {
@@ -115,16 +246,209 @@ public class GraphQLBrokerChannelSubscriber implements Subscriber<ExecutionResul
         }
     }
 
-    protected void sendDataToClient(List<Object> data) {
-    	if(data.size() > 0) {
-		    Map<String, Object> payload = Collections.singletonMap("data", data);
-		    GraphQLMessage operationData = new GraphQLMessage(operationMessageId, GraphQLMessageType.DATA, payload);
+    /**
+     * Appends data to accumulator, flushing it at buffer count or scheduling a flush for the first data
+     */
+    protected void accumulate(Object data) {
+        synchronized (pendingData) {
+            recordEvent(System.nanoTime());
+
+            accumulator.add(data);
+
+            if (accumulator.size() >= bufferCount) {
+                flush();
+            } else if (flushFuture == null) {
+                long flushDelayMs = flushDelayMs();
+
+                if (flushDelayMs > 0) {
+                    flushFuture = flushScheduler.schedule(this::flush, flushDelayMs);
+                } else {
+                    flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Flush delay for the first data appended to accumulator.
+     *
+     * In adaptive mode the delay is proportional to the number of events expected within buffer timespan,
+     * reaching buffer timespan when a full batch of buffer count events is expected. Data is flushed
+     * immediately if less than one more event is expected within buffer timespan.
+     */
+    protected long flushDelayMs() {
+        if (batchingMode == GraphQLSubscriptionBatchingMode.FIXED || bufferTimeSpanMs <= 0) {
+            return bufferTimeSpanMs;
+        }
+
+        if (averageEventIntervalMs <= 0) {
+            return 0;
+        }
+
+        double expectedEvents = bufferTimeSpanMs / averageEventIntervalMs;
+
+        if (expectedEvents < 1) {
+            return 0;
+        }
+
+        return (long) (bufferTimeSpanMs * Math.min(1.0, expectedEvents / bufferCount));
+    }
+
+    void recordEvent(long eventNanos) {
+        if (lastEventNanos != 0) {
+            double intervalMs = Math.max((eventNanos - lastEventNanos) / 1_000_000.0, 0.001);
+
+            averageEventIntervalMs = averageEventIntervalMs < 0
+                    ? intervalMs
+                    : EVENT_INTERVAL_WEIGHT * intervalMs + (1 - EVENT_INTERVAL_WEIGHT) * averageEventIntervalMs;
+        }
+
+        lastEventNanos = eventNanos;
+    }
+
+    protected void flush() {
+        synchronized (pendingData) {
+            cancelFlush();
+
+            if (accumulator.isEmpty()) {
+                return;
+            }
+
+            List<Object> data = new ArrayList<>(accumulator);
+            accumulator.clear();
+
+            enqueueData(data);
+        }
+    }
+
+    private void cancelFlush() {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+    }
+
+    /**
+     * Adds buffered data to pending queue applying overflow policy at high-water mark
+     */
+    protected void enqueueData(List<Object> data) {
+        if (data.isEmpty()) {
+            return;
+        }
+
+        synchronized (pendingData) {
+            for (Object item : data) {
+                if (evicted) {
+                    return;
+                }
+
+                if (pendingData.size() < highWaterMark) {
+                    pendingData.add(item);
+                    continue;
+                }
+
+                recordOverflow();
+
+                switch (overflowPolicy) {
+                    case DROP_OLDEST:
+                        pendingData.poll();
+                        pendingData.add(item);
+                        break;
+                    case DROP_NEWEST:
+                        break;
+                    case LATEST_ONLY:
+                        pendingData.clear();
+                        pendingData.add(item);
+                        break;
+                    case DISCONNECT:
+                        evict();
+                        return;
+                }
+            }
+
+            drain();
+        }
+    }
+
+    protected void onDataDelivered() {
+        synchronized (pendingData) {
+            inFlight = false;
+
+            drain();
+        }
+    }
+
+    private void drain() {
+        if (inFlight || evicted || pendingData.isEmpty()) {
+            return;
+        }
+
+        List<Object> batch = new ArrayList<>(Math.min(bufferCount, pendingData.size()));
+
+        while (batch.size() < bufferCount && !pendingData.isEmpty()) {
+            batch.add(pendingData.poll());
+        }
+
+        inFlight = true;
+
+        try {
+            if (!sendDataToClient(batch)) {
+                inFlight = false;
+            }
+        } catch (Exception e) {
+            inFlight = false;
+            log.error("Unable to send data to client for subscription {}: {}", operationMessageId, e.getMessage());
+        }
+    }
+
+    private void recordOverflow() {
+        overflowCount.incrementAndGet();
+
+        SessionSubscriptionInfo sessionInfo = this.sessionSubscriptionInfo;
+        if (sessionInfo != null) {
+            sessionInfo.recordOverflow();
+        }
+    }
+
+    private void evict() {
+        evicted = true;
+        pendingData.clear();
+
+        log.warn("Evicting slow subscription {} after reaching high-water mark {}", operationMessageId, highWaterMark);
+
+        SessionSubscriptionInfo sessionInfo = this.sessionSubscriptionInfo;
+        if (sessionInfo != null) {
+            sessionInfo.recordEviction();
+            sessionInfo.removeSubscription(operationMessageId);
+        }
+
+        cancel();
+
+        sendErrorToClient(SLOW_CONSUMER_EVICTED);
+    }
+
+    private void sendErrorToClient(String error) {
+        Map<String, Object> payload = Collections.singletonMap("errors", Collections.singletonList(error));
+
+        GraphQLMessage operationMessage = new GraphQLMessage(operationMessageId, GraphQLMessageType.ERROR, payload);
+
+		Message<GraphQLMessage> responseMessage =
+				MessageBuilder.createMessage(operationMessage, headerAccessor.getMessageHeaders());
+
+		outboundChannel.send(responseMessage);
+    }
+
+    protected boolean sendDataToClient(List<Object> data) {
+	    Map<String, Object> payload = Collections.singletonMap("data", data);
+	    GraphQLMessage operationData = new GraphQLMessage(operationMessageId, GraphQLMessageType.DATA, payload);
 
-			Message<?> responseMessage = MessageBuilder.createMessage(operationData, headerAccessor.getMessageHeaders());
+		Message<?> responseMessage = MessageBuilder.withPayload(operationData)
+		                                           .copyHeaders(headerAccessor.getMessageHeaders())
+		                                           .setHeader(DELIVERY_CALLBACK_HEADER, deliveryCallback)
+		                                           .build();
 
-			// Send message directly to user
-		    outboundChannel.send(responseMessage);
-    	}
+		// Send message directly to user
+	    return outboundChannel.send(responseMessage);
     }
 
 }
@@ -50,6 +50,12 @@ public class GraphQLBrokerMessageHandler extends AbstractBrokerMessageHandler {
 
     public final static String BROKER_NOT_AVAILABLE = "Broker Not Available.";
 
+    public final static String BATCHING_EXTENSION = "batching";
+
+    public final static String MAX_LATENCY_MS_HINT = "maxLatencyMs";
+
+    public final static String MAX_BATCH_SIZE_HINT = "maxBatchSize";
+
 	private final Map<String, SessionInfo> sessions = new ConcurrentHashMap<String, SessionInfo>();
 
 	private MessageHeaderInitializer headerInitializer;
@@ -66,10 +72,22 @@ public class GraphQLBrokerMessageHandler extends AbstractBrokerMessageHandler {
 
     private final GraphQLBrokerSubscriptionRegistry graphQLsubscriptionRegistry;
 
+    private final GraphQLSharedSubscriptionRegistry sharedSubscriptionRegistry = new GraphQLSharedSubscriptionRegistry();
+
+    private boolean sharedExecutionEnabled = true;
+
 	private long bufferTimeSpanMs = 1000;
 
 	private int bufferCount = 50;
 
+	private GraphQLSubscriptionOverflowPolicy overflowPolicy = GraphQLSubscriptionOverflowPolicy.DROP_OLDEST;
+
+	private int highWaterMark = GraphQLBrokerChannelSubscriber.DEFAULT_HIGH_WATER_MARK;
+
+	private GraphQLSubscriptionFlushScheduler flushScheduler = new GraphQLSubscriptionFlushScheduler(1);
+
+	private GraphQLSubscriptionBatchingMode batchingMode = GraphQLSubscriptionBatchingMode.FIXED;
+
 	public GraphQLBrokerMessageHandler(SubscribableChannel inboundChannel, MessageChannel outboundChannel,
 			SubscribableChannel brokerChannel, GraphQLExecutor graphQLSubscriptionExecutor) {
 		super(inboundChannel, outboundChannel, brokerChannel);
@@ -102,6 +120,64 @@ public class GraphQLBrokerMessageHandler extends AbstractBrokerMessageHandler {
         return this;
     }
 
+    public GraphQLSubscriptionOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public GraphQLBrokerMessageHandler setOverflowPolicy(GraphQLSubscriptionOverflowPolicy overflowPolicy) {
+        Assert.notNull(overflowPolicy, "overflowPolicy must not be null");
+        this.overflowPolicy = overflowPolicy;
+
+        return this;
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public GraphQLBrokerMessageHandler setHighWaterMark(int highWaterMark) {
+        Assert.isTrue(highWaterMark > 0, "highWaterMark must be greater than 0");
+        this.highWaterMark = highWaterMark;
+
+        return this;
+    }
+
+    public GraphQLSubscriptionFlushScheduler getFlushScheduler() {
+        return flushScheduler;
+    }
+
+    public GraphQLBrokerMessageHandler setFlushScheduler(GraphQLSubscriptionFlushScheduler flushScheduler) {
+        Assert.notNull(flushScheduler, "flushScheduler must not be null");
+        this.flushScheduler = flushScheduler;
+
+        return this;
+    }
+
+    public GraphQLSharedSubscriptionRegistry getSharedSubscriptionRegistry() {
+        return sharedSubscriptionRegistry;
+    }
+
+    public boolean isSharedExecutionEnabled() {
+        return sharedExecutionEnabled;
+    }
+
+    public GraphQLBrokerMessageHandler setSharedExecutionEnabled(boolean sharedExecutionEnabled) {
+        this.sharedExecutionEnabled = sharedExecutionEnabled;
+
+        return this;
+    }
+
+    public GraphQLSubscriptionBatchingMode getBatchingMode() {
+        return batchingMode;
+    }
+
+    public GraphQLBrokerMessageHandler setBatchingMode(GraphQLSubscriptionBatchingMode batchingMode) {
+        Assert.notNull(batchingMode, "batchingMode must not be null");
+        this.batchingMode = batchingMode;
+
+        return this;
+    }
+
     @EventListener
 	public void on(BrokerAvailabilityEvent event) {
 	    this.brokerAvailable.set(event.isBrokerAvailable());
@@ -146,6 +222,7 @@ public class GraphQLBrokerMessageHandler extends AbstractBrokerMessageHandler {
 			if (this.heartbeatFuture != null) {
 				this.heartbeatFuture.cancel(true);
 			}
+			this.flushScheduler.shutdown();
 
 		}
 		catch (Throwable ex) {
@@ -257,8 +334,9 @@ public class GraphQLBrokerMessageHandler extends AbstractBrokerMessageHandler {
             sendErrorMessageToClient(e.getMessage(), GraphQLMessageType.ERROR, message);
             return;
         }
-        ExecutionResult executionResult = graphQLSubscriptionExecutor.execute(parameters.getQuery(),
-                                                                              parameters.getVariables());
+        ExecutionResult executionResult = executeSubscription(parameters);
+
+        Map<String, Object> batchingHints = getBatchingHints(parameters);
 
         if (executionResult.getErrors().isEmpty()) {
             Optional.ofNullable(executionResult.<Publisher<ExecutionResult>> getData())
@@ -266,8 +344,12 @@ public class GraphQLBrokerMessageHandler extends AbstractBrokerMessageHandler {
                         GraphQLBrokerChannelSubscriber subscriber = new GraphQLBrokerChannelSubscriber(message,
                                                                                                        operationPayload.getId(),
                                                                                                        getClientOutboundChannel(),
-                                                                                                       bufferTimeSpanMs,
-                                                                                                       bufferCount);
+                                                                                                       batchingHint(batchingHints, MAX_LATENCY_MS_HINT, 0, bufferTimeSpanMs),
+                                                                                                       (int) batchingHint(batchingHints, MAX_BATCH_SIZE_HINT, 1, bufferCount),
+                                                                                                       overflowPolicy,
+                                                                                                       highWaterMark,
+                                                                                                       flushScheduler)
+                                                                                                       .batchingMode(batchingMode);
 
                         graphQLsubscriptionRegistry.subscribe(sessionId,
                                                               operationPayload.getId(),
@@ -321,6 +403,39 @@ public class GraphQLBrokerMessageHandler extends AbstractBrokerMessageHandler {
         });
     }
 
+    /**
+     * Executes subscription operation, sharing the execution between identical operations if enabled
+     */
+    private ExecutionResult executeSubscription(QueryParameters parameters) {
+        if (!sharedExecutionEnabled) {
+            return graphQLSubscriptionExecutor.execute(parameters.getQuery(), parameters.getVariables());
+        }
+
+        return sharedSubscriptionRegistry.execute(GraphQLSharedSubscriptionRegistry.operationKey(parameters),
+                                                  () -> graphQLSubscriptionExecutor.execute(parameters.getQuery(),
+                                                                                            parameters.getVariables()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getBatchingHints(QueryParameters parameters) {
+        Object batching = parameters.getExtensions().get(BATCHING_EXTENSION);
+
+        return batching instanceof Map ? (Map<String, Object>) batching : Collections.emptyMap();
+    }
+
+    /**
+     * Resolves client batching hint clamped to server bounds, i.e. a client can only lower configured values
+     */
+    private long batchingHint(Map<String, Object> hints, String name, long min, long max) {
+        Object value = hints.get(name);
+
+        if (!(value instanceof Number)) {
+            return max;
+        }
+
+        return Math.max(min, Math.min(max, ((Number) value).longValue()));
+    }
+
     private void sendErrorMessageToClient(String errorText, GraphQLMessageType type, Message<?> inputMessage) {
         Map<String, Object> payload = Collections.singletonMap("errors", Collections.singletonList(errorText));
         GraphQLMessage inputOperation = (GraphQLMessage) inputMessage.getPayload();
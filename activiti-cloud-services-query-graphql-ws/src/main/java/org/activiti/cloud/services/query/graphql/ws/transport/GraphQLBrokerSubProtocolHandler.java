@@ -201,6 +201,8 @@ public class GraphQLBrokerSubProtocolHandler implements SubProtocolHandler, Appl
 			closeWebSocketSession = true;
 		}
 		finally {
+			notifyDelivered(message);
+
 			if (closeWebSocketSession) {
 				try {
 					session.close(CloseStatus.PROTOCOL_ERROR);
@@ -213,6 +215,22 @@ public class GraphQLBrokerSubProtocolHandler implements SubProtocolHandler, Appl
 
 	}
 
+	/**
+	 * Releases in-flight message of subscriber waiting for delivery to client
+	 */
+	private void notifyDelivered(Message<?> message) {
+		Object callback = message.getHeaders().get(GraphQLBrokerChannelSubscriber.DELIVERY_CALLBACK_HEADER);
+
+		if (callback instanceof Runnable) {
+			try {
+				((Runnable) callback).run();
+			}
+			catch (Throwable ex) {
+				logger.error("Failed to run delivery callback in session " + resolveSessionId(message) + ".", ex);
+			}
+		}
+	}
+
 	@Override
 	public String resolveSessionId(Message<?> message) {
 		return SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
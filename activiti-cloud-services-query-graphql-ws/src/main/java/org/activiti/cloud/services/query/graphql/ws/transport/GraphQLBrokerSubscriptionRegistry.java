@@ -21,6 +21,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import org.springframework.util.Assert;
@@ -91,7 +92,7 @@ public class GraphQLBrokerSubscriptionRegistry {
 
 
 	/**
-	 * Hold subscriptions for a session.
+	 * Hold subscriptions and slow consumer statistics for a session.
 	 */
     public static class SessionSubscriptionInfo {
 
@@ -101,6 +102,10 @@ public class GraphQLBrokerSubscriptionRegistry {
 		private final Map<String, GraphQLBrokerChannelSubscriber> subscriberLookup =
 				new ConcurrentHashMap<String, GraphQLBrokerChannelSubscriber>(4);
 
+		private final AtomicLong overflowCount = new AtomicLong();
+
+		private final AtomicLong evictionCount = new AtomicLong();
+
 		public SessionSubscriptionInfo(String sessionId) {
 			Assert.notNull(sessionId, "'sessionId' must not be null");
 			this.sessionId = sessionId;
@@ -120,6 +125,7 @@ public class GraphQLBrokerSubscriptionRegistry {
 
 		public void addSubscription(String subscriptionId, GraphQLBrokerChannelSubscriber subscriber) {
 			subscriberLookup.put(subscriptionId, subscriber);
+			subscriber.setSessionSubscriptionInfo(this);
 		}
 
 		public GraphQLBrokerChannelSubscriber removeSubscription(String destination) {
@@ -133,9 +139,32 @@ public class GraphQLBrokerSubscriptionRegistry {
 			return values;
 		}
 
+		/**
+		 * Number of subscription data items dropped or evicted after reaching high-water mark
+		 */
+		public long getOverflowCount() {
+			return this.overflowCount.get();
+		}
+
+		/**
+		 * Number of subscriptions evicted as slow consumers
+		 */
+		public long getEvictionCount() {
+			return this.evictionCount.get();
+		}
+
+		void recordOverflow() {
+			this.overflowCount.incrementAndGet();
+		}
+
+		void recordEviction() {
+			this.evictionCount.incrementAndGet();
+		}
+
 		@Override
 		public String toString() {
-			return "[sessionId=" + this.sessionId + ", subscriptions=" + this.subscriberLookup + "]";
+			return "[sessionId=" + this.sessionId + ", subscriptions=" + this.subscriberLookup
+					+ ", overflowCount=" + this.overflowCount + ", evictionCount=" + this.evictionCount + "]";
 		}
 	}
 
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.transport;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.language.AstPrinter;
+import graphql.parser.Parser;
+import org.activiti.cloud.services.query.graphql.ws.util.JsonConverter;
+import org.activiti.cloud.services.query.graphql.ws.util.QueryParameters;
+import org.activiti.cloud.services.query.graphql.ws.util.RawJsonValue;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares a single subscription execution between clients subscribing identical operations,
+ * i.e. the same normalized query, operation name and variables.
+ *
+ * The first subscriber of an operation executes it, and every execution result is serialized to JSON
+ * once and fanned out to all subscribers of the operation as {@link RawJsonValue} data, so that
+ * selection and serialization cost per event does not grow with the number of identical subscribers.
+ * The execution is cancelled when its last subscriber leaves. Subscribers arriving after the execution they were
+ * handed has been released are re-subscribed to a new execution of the same operation, or receive the terminal signal
+ * of the released execution if it has completed or failed.
+ *
+ * The registry lock only guards lookup and insertion of the execution of an operation, so that operations are executed,
+ * and upstream subscriptions are cancelled, outside of it. Concurrent subscribers of an operation being executed wait
+ * for that execution only, without blocking subscribers of other operations.
+ *
+ * Shared subscriptions ignore the demand of their subscribers: every result of the shared execution is pushed to all
+ * subscribers as soon as it is emitted, and the next result is requested from upstream after it has been delivered.
+ * Subscribers must therefore buffer or drop results they cannot consume, as the broker channel subscribers do.
+ */
+public class GraphQLSharedSubscriptionRegistry {
+
+    private static Logger log = LoggerFactory.getLogger(GraphQLSharedSubscriptionRegistry.class);
+
+    // guarded by registry lock, completed with null if operation execution failed
+    private final Map<String, CompletableFuture<SharedExecution>> executions = new HashMap<>();
+
+    /**
+     * Builds operation key from normalized query, operation name and variables
+     */
+    public static String operationKey(QueryParameters parameters) {
+        String query = normalize(parameters.getQuery());
+
+        String variables;
+        try {
+            variables = JsonConverter.toSortedJsonString(parameters.getVariables());
+        } catch (Exception e) {
+            variables = String.valueOf(parameters.getVariables());
+        }
+
+        return query + "|" + parameters.getOperationName() + "|" + variables;
+    }
+
+    /**
+     * Normalizes query by printing its parsed document, so that insignificant whitespace, commas and comments
+     * are ignored while string literals are kept verbatim. Queries that cannot be parsed are only trimmed,
+     * their execution fails anyway.
+     */
+    static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+
+        try {
+            return AstPrinter.printAst(new Parser().parseDocument(query));
+        } catch (Exception e) {
+            return query.trim();
+        }
+    }
+
+    /**
+     * Returns execution result with shared publisher of the operation, executing it if there is none
+     *
+     * @param operationKey operation key
+     * @param execution executes operation
+     * @return shared execution result, or result of execution with errors
+     */
+    public ExecutionResult execute(String operationKey, Supplier<ExecutionResult> execution) {
+        CompletableFuture<SharedExecution> pending;
+        boolean executing = false;
+
+        synchronized (this) {
+            pending = executions.get(operationKey);
+
+            if (pending == null) {
+                pending = new CompletableFuture<>();
+                executions.put(operationKey, pending);
+                executing = true;
+            }
+        }
+
+        if (executing) {
+            return execute(operationKey, execution, pending);
+        }
+
+        SharedExecution shared = pending.join();
+
+        if (shared == null) {
+            // execution of the operation failed and has been removed, executes it on behalf of this subscriber
+            return execute(operationKey, execution);
+        }
+
+        return new ExecutionResultImpl(shared, Collections.emptyList());
+    }
+
+    public synchronized int getExecutionCount() {
+        return executions.size();
+    }
+
+    public synchronized int getSubscriberCount(String operationKey) {
+        SharedExecution shared = shared(operationKey);
+
+        return shared != null ? shared.subscribers.size() : 0;
+    }
+
+    /**
+     * Executes operation outside of registry lock, completing pending execution other subscribers of the operation wait for
+     */
+    @SuppressWarnings("unchecked")
+    protected ExecutionResult execute(String operationKey, Supplier<ExecutionResult> execution, CompletableFuture<SharedExecution> pending) {
+        SharedExecution shared = null;
+
+        try {
+            ExecutionResult executionResult = execution.get();
+            Object data = executionResult.getData();
+
+            if (!executionResult.getErrors().isEmpty() || !(data instanceof Publisher)) {
+                return executionResult;
+            }
+
+            shared = new SharedExecution(operationKey, execution, (Publisher<ExecutionResult>) data);
+
+            log.debug("Created shared execution for operation '{}'", operationKey);
+
+            return new ExecutionResultImpl(shared, Collections.emptyList());
+        } finally {
+            if (shared == null) {
+                synchronized (this) {
+                    executions.remove(operationKey, pending);
+                }
+            }
+            pending.complete(shared);
+        }
+    }
+
+    protected void remove(SharedExecution shared, Subscriber<? super ExecutionResult> subscriber) {
+        boolean last;
+
+        synchronized (this) {
+            last = shared.subscribers.remove(subscriber) && shared.subscribers.isEmpty();
+
+            if (last) {
+                release(shared);
+            }
+        }
+
+        // Cancels upstream subscription outside of registry lock, i.e. unsubscribing from the broker relay
+        if (last) {
+            shared.cancel();
+        }
+    }
+
+    protected synchronized void release(SharedExecution shared) {
+        shared.released = true;
+
+        if (shared(shared.operationKey) == shared) {
+            executions.remove(shared.operationKey);
+
+            log.debug("Released shared execution for operation '{}'", shared.operationKey);
+        }
+    }
+
+    // guarded by registry lock
+    private SharedExecution shared(String operationKey) {
+        CompletableFuture<SharedExecution> pending = executions.get(operationKey);
+
+        return pending != null ? pending.getNow(null) : null;
+    }
+
+    protected class SharedExecution implements Publisher<ExecutionResult>, Subscriber<ExecutionResult> {
+
+        private final String operationKey;
+
+        private final Supplier<ExecutionResult> execution;
+
+        private final Publisher<ExecutionResult> upstream;
+
+        private final List<Subscriber<? super ExecutionResult>> subscribers = new CopyOnWriteArrayList<>();
+
+        private final AtomicReference<Subscription> subscriptionRef = new AtomicReference<>();
+
+        private final AtomicBoolean subscribed = new AtomicBoolean();
+
+        // guarded by registry lock
+        private boolean released;
+
+        private volatile boolean completed;
+
+        private volatile Throwable error;
+
+        SharedExecution(String operationKey, Supplier<ExecutionResult> execution, Publisher<ExecutionResult> upstream) {
+            this.operationKey = operationKey;
+            this.execution = execution;
+            this.upstream = upstream;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super ExecutionResult> subscriber) {
+            boolean active;
+
+            synchronized (GraphQLSharedSubscriptionRegistry.this) {
+                active = !released;
+
+                if (active) {
+                    subscribers.add(subscriber);
+                }
+            }
+
+            if (!active) {
+                resubscribe(subscriber);
+                return;
+            }
+
+            subscriber.onSubscribe(new SharedSubscription(subscriber));
+
+            if (subscribed.compareAndSet(false, true)) {
+                upstream.subscribe(this);
+            }
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            subscriptionRef.set(subscription);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ExecutionResult executionResult) {
+            ExecutionResult sharedResult = serialize(executionResult);
+
+            for (Subscriber<? super ExecutionResult> subscriber : subscribers) {
+                try {
+                    subscriber.onNext(sharedResult);
+                } catch (Exception e) {
+                    log.error("Unable to deliver shared execution result for operation '{}': {}", operationKey, e.getMessage(), e);
+                }
+            }
+
+            Subscription subscription = subscriptionRef.get();
+            if (subscription != null) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            release(this);
+
+            subscribers.forEach(subscriber -> subscriber.onError(t));
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            release(this);
+
+            subscribers.forEach(Subscriber::onComplete);
+        }
+
+        /**
+         * Subscribes late subscriber of released execution to a new shared execution of the same operation,
+         * or passes on the terminal signal of this execution
+         */
+        @SuppressWarnings("unchecked")
+        protected void resubscribe(Subscriber<? super ExecutionResult> subscriber) {
+            Throwable terminalError = error;
+
+            if (terminalError == null && !completed) {
+                ExecutionResult executionResult = execute(operationKey, execution);
+
+                if (executionResult.getData() instanceof Publisher) {
+                    log.debug("Re-subscribing late subscriber of released execution for operation '{}'", operationKey);
+
+                    ((Publisher<ExecutionResult>) executionResult.getData()).subscribe(subscriber);
+                    return;
+                }
+
+                terminalError = new IllegalStateException("Unable to re-execute operation: " + executionResult.getErrors());
+            }
+
+            subscriber.onSubscribe(new SharedSubscription(subscriber));
+
+            if (terminalError != null) {
+                subscriber.onError(terminalError);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+
+        void cancel() {
+            Subscription subscription = subscriptionRef.get();
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+
+        private ExecutionResult serialize(ExecutionResult executionResult) {
+            try {
+                return new ExecutionResultImpl(RawJsonValue.of(executionResult.getData()), executionResult.getErrors());
+            } catch (Exception e) {
+                log.warn("Unable to serialize shared execution result for operation '{}': {}", operationKey, e.getMessage());
+
+                return executionResult;
+            }
+        }
+
+        protected class SharedSubscription implements Subscription {
+
+            private final Subscriber<? super ExecutionResult> subscriber;
+
+            SharedSubscription(Subscriber<? super ExecutionResult> subscriber) {
+                this.subscriber = subscriber;
+            }
+
+            /**
+             * Ignores subscriber demand, shared execution requests next result after it has been delivered to all subscribers
+             */
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+                remove(SharedExecution.this, subscriber);
+            }
+        }
+    }
+
+}
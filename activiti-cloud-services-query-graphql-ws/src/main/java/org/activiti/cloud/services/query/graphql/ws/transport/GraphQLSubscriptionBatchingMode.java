@@ -0,0 +1,33 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.transport;
+
+/**
+ * Batching of subscription data sent to clients in DATA messages.
+ */
+public enum GraphQLSubscriptionBatchingMode {
+
+    /* Flush buffer count items or after fixed buffer timespan */
+    FIXED,
+
+    /*
+     * Flush immediately when subscription event rate is low and widen the flush window up to
+     * buffer timespan as the rate rises, so that a full batch of buffer count items
+     * is collected within the latency budget
+     */
+    ADAPTIVE
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.transport;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Shared scheduler for time based flushes of subscription data accumulators.
+ *
+ * A subscription schedules a one-shot flush only when data is appended to its empty accumulator,
+ * so idle subscriptions have no scheduled tasks and a small number of flush threads serve all
+ * subscriptions. Flush threads are started on first use and can be re-started after shutdown.
+ */
+public class GraphQLSubscriptionFlushScheduler {
+
+    private static final String THREAD_NAME_PREFIX = "graphql-flush-";
+
+    private final int flushThreads;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    public GraphQLSubscriptionFlushScheduler(int flushThreads) {
+        Assert.isTrue(flushThreads > 0, "flushThreads must be greater than 0");
+
+        this.flushThreads = flushThreads;
+    }
+
+    /**
+     * Schedules one-shot flush task
+     *
+     * @param task flush task
+     * @param delayMs delay in ms
+     * @return scheduled future to cancel flush
+     */
+    public synchronized ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        if (executor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(THREAD_NAME_PREFIX);
+            threadFactory.setDaemon(true);
+
+            executor = new ScheduledThreadPoolExecutor(flushThreads, threadFactory);
+            executor.setRemoveOnCancelPolicy(true);
+        }
+
+        return executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    public int getFlushThreads() {
+        return flushThreads;
+    }
+
+    /**
+     * Number of subscriptions waiting for a scheduled flush
+     */
+    public synchronized int getScheduledCount() {
+        return executor != null ? executor.getQueue().size() : 0;
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.transport;
+
+/**
+ * Policy applied when pending data of a GraphQL subscription reaches its high-water mark
+ * because the client does not keep up with outbound messages.
+ */
+public enum GraphQLSubscriptionOverflowPolicy {
+
+    /* Discard the oldest pending data to make room for new data */
+    DROP_OLDEST,
+
+    /* Discard new data until pending data is delivered */
+    DROP_NEWEST,
+
+    /* Discard all pending data and keep only the latest data */
+    LATEST_ONLY,
+
+    /* Evict the slow subscription and send error message to client */
+    DISCONNECT
+
+}
@@ -39,6 +39,9 @@ public class JsonConverter {
     		.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, true)
     		.setSerializationInclusion(Include.ALWAYS);
 
+    static final ObjectMapper SORTED_JSON = JSON.copy()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
     public static Map<String, Object> toMap(String jsonStr) throws JsonParseException, JsonMappingException, IOException {
         if (jsonStr == null || jsonStr.trim().length() == 0) {
             return Collections.emptyMap();
@@ -51,4 +54,11 @@ public class JsonConverter {
     public static String toJsonString(Object obj) throws JsonProcessingException {
         return JSON.writeValueAsString(obj);
     }
+
+    /**
+     * Serializes object with map entries ordered by keys, i.e. to compare or hash JSON documents
+     */
+    public static String toSortedJsonString(Object obj) throws JsonProcessingException {
+        return SORTED_JSON.writeValueAsString(obj);
+    }
 }
@@ -41,6 +41,7 @@ public class QueryParameters {
     String query;
     String operationName;
     Map<String, Object> variables = Collections.emptyMap();
+    Map<String, Object> extensions = Collections.emptyMap();
 
     public String getQuery() {
         return query;
@@ -54,6 +55,10 @@ public class QueryParameters {
         return variables;
     }
 
+    public Map<String, Object> getExtensions() {
+        return extensions;
+    }
+
     public static QueryParameters from(String queryMessage) throws JsonParseException, JsonMappingException, IOException {
         Map<String, Object> json = JsonConverter.toMap(queryMessage);
         return from(json);
@@ -64,6 +69,7 @@ public class QueryParameters {
         parameters.query = (String) json.get("query");
         parameters.operationName = (String) json.get("operationName");
         parameters.variables = getVariables(json.get("variables"));
+        parameters.extensions = getExtensions(json.get("extensions"));
         return parameters;
     }
 
@@ -78,4 +84,14 @@ public class QueryParameters {
         return JsonConverter.toMap(String.valueOf(variables));
     }
 
+    private static Map<String, Object> getExtensions(Object extensions) {
+        if (extensions instanceof Map) {
+            Map<?, ?> inputExtensions = (Map) extensions;
+            Map<String, Object> result = new HashMap<>();
+            inputExtensions.forEach((k, v) -> result.put(String.valueOf(k), v));
+            return result;
+        }
+        return Collections.emptyMap();
+    }
+
 }
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.util;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Trie of AMQP topic patterns, i.e. dot separated words where '*' matches exactly one word
+ * and '#' matches zero or more words.
+ *
+ * Matching a routing key walks the trie one word at a time, so its cost depends on the number of
+ * routing key words and wildcard branches in the trie, but not on the number of registered patterns
+ * or values. Lookups are lock free and may run concurrently with registrations.
+ *
+ * @param <T> type of values registered with patterns
+ */
+public class TopicMatcher<T> {
+
+    private static final String DOT = ".";
+    private static final String WILDCARD = "*";
+    private static final String HASH = "#";
+
+    private final Node<T> root = new Node<>();
+
+    private int patternCount;
+
+    /**
+     * Registers value with topic pattern
+     *
+     * @param pattern topic pattern, i.e. ProcessEngineNotification.rb.*.#
+     * @param value
+     */
+    public synchronized void add(String pattern, T value) {
+        Node<T> node = root;
+
+        for (String word : split(pattern)) {
+            node = node.child(word);
+        }
+
+        if (node.values.isEmpty()) {
+            patternCount++;
+        }
+
+        node.values.add(value);
+    }
+
+    /**
+     * Removes value registered with topic pattern and prunes empty trie branches
+     *
+     * @param pattern topic pattern
+     * @param value
+     * @return true if the value was registered with pattern
+     */
+    public synchronized boolean remove(String pattern, T value) {
+        return remove(root, split(pattern), 0, value);
+    }
+
+    /**
+     * Finds all values with patterns matching routing key
+     *
+     * @param routingKey dot separated routing key
+     * @return set of matched values, never null
+     */
+    public Set<T> match(String routingKey) {
+        if (routingKey == null) {
+            return Collections.emptySet();
+        }
+
+        Set<T> result = new LinkedHashSet<>();
+
+        match(root, split(routingKey), 0, result);
+
+        return result;
+    }
+
+    public synchronized int getPatternCount() {
+        return patternCount;
+    }
+
+    public boolean isEmpty() {
+        return root.isEmpty();
+    }
+
+    private boolean remove(Node<T> node, String[] words, int index, T value) {
+        if (index == words.length) {
+            boolean removed = node.values.remove(value);
+
+            if (removed && node.values.isEmpty()) {
+                patternCount--;
+            }
+
+            return removed;
+        }
+
+        Node<T> child = node.get(words[index]);
+
+        if (child == null) {
+            return false;
+        }
+
+        boolean removed = remove(child, words, index + 1, value);
+
+        if (child.isEmpty()) {
+            node.prune(words[index]);
+        }
+
+        return removed;
+    }
+
+    private void match(Node<T> node, String[] words, int index, Set<T> result) {
+        Node<T> hash = node.hash;
+
+        if (index == words.length) {
+            result.addAll(node.values);
+
+            // trailing '#' also matches zero words
+            if (hash != null) {
+                match(hash, words, index, result);
+            }
+            return;
+        }
+
+        Node<T> child = node.children.get(words[index]);
+
+        if (child != null) {
+            match(child, words, index + 1, result);
+        }
+
+        Node<T> wildcard = node.wildcard;
+
+        if (wildcard != null) {
+            match(wildcard, words, index + 1, result);
+        }
+
+        if (hash != null) {
+            for (int i = index; i <= words.length; i++) {
+                match(hash, words, i, result);
+            }
+        }
+    }
+
+    private static String[] split(String topic) {
+        return StringUtils.delimitedListToStringArray(topic, DOT);
+    }
+
+    private static class Node<T> {
+
+        private final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+
+        private final Set<T> values = new CopyOnWriteArraySet<>();
+
+        private volatile Node<T> wildcard;
+
+        private volatile Node<T> hash;
+
+        Node<T> get(String word) {
+            if (WILDCARD.equals(word)) {
+                return wildcard;
+            } else if (HASH.equals(word)) {
+                return hash;
+            }
+
+            return children.get(word);
+        }
+
+        Node<T> child(String word) {
+            if (WILDCARD.equals(word)) {
+                if (wildcard == null) {
+                    wildcard = new Node<>();
+                }
+                return wildcard;
+            } else if (HASH.equals(word)) {
+                if (hash == null) {
+                    hash = new Node<>();
+                }
+                return hash;
+            }
+
+            return children.computeIfAbsent(word, key -> new Node<>());
+        }
+
+        void prune(String word) {
+            if (WILDCARD.equals(word)) {
+                wildcard = null;
+            } else if (HASH.equals(word)) {
+                hash = null;
+            } else {
+                children.remove(word);
+            }
+        }
+
+        boolean isEmpty() {
+            return values.isEmpty() && children.isEmpty() && wildcard == null && hash == null;
+        }
+    }
+
+}
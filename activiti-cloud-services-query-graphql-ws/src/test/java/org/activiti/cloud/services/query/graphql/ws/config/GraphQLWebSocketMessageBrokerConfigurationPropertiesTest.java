@@ -18,6 +18,8 @@ package org.activiti.cloud.services.query.graphql.ws.config;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import org.activiti.cloud.services.query.graphql.ws.config.GraphQLWebSocketMessageBrokerConfigurationProperties;
+import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLSubscriptionBatchingMode;
+import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLSubscriptionOverflowPolicy;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,6 +47,10 @@ public class GraphQLWebSocketMessageBrokerConfigurationPropertiesTest {
     public void testConfigurationProperties() {
         assertThat(configurationProperties.isEnabled()).isEqualTo(true);
         assertThat(configurationProperties.getRelayPort()).isEqualTo(61613);
+        assertThat(configurationProperties.getRelayConnectionPoolSize()).isEqualTo(4);
+        assertThat(configurationProperties.isRelayTopicDispatcherEnabled()).isEqualTo(false);
+        assertThat(configurationProperties.getRelayTopicDispatcherDestination()).isEqualTo("ProcessEngineNotification.#");
+        assertThat(configurationProperties.isLocalTransportEnabled()).isEqualTo(false);
         assertThat(configurationProperties.getRelayHost()).isEqualTo("rabbitmq"); // overrides from application-graphql-ws.properties
         assertThat(configurationProperties.getClientLogin()).isEqualTo("guest");
         assertThat(configurationProperties.getClientPasscode()).isEqualTo("guest");
@@ -54,6 +60,12 @@ public class GraphQLWebSocketMessageBrokerConfigurationPropertiesTest {
         assertThat(configurationProperties.getEndpoint()).isEqualTo("/ws/graphql");
         assertThat(configurationProperties.getBufferCount()).isEqualTo(50);
         assertThat(configurationProperties.getBufferTimeSpanMs()).isEqualTo(999); // overrides from graphql-ws.properties
+        assertThat(configurationProperties.getSubscriptionOverflowPolicy()).isEqualTo(GraphQLSubscriptionOverflowPolicy.DROP_OLDEST);
+        assertThat(configurationProperties.getSubscriptionHighWaterMark()).isEqualTo(1000);
+        assertThat(configurationProperties.getSubscriptionFlushThreads()).isEqualTo(2);
+        assertThat(configurationProperties.getSubscriptionBatchingMode()).isEqualTo(GraphQLSubscriptionBatchingMode.FIXED);
+        assertThat(configurationProperties.isSubscriptionSharedExecutionEnabled()).isEqualTo(true);
+        assertThat(configurationProperties.isSubscriptionProjectionEnabled()).isEqualTo(true);
     }
 
 }
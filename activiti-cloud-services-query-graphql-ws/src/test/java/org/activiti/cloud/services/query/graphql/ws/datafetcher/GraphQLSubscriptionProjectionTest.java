@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import graphql.language.Document;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GraphQLSubscriptionProjectionTest {
+
+    private static final String SCHEMA = "schema { query: Query subscription: Subscription }\n"
+            + "type Query { hello: String }\n"
+            + "type Subscription { Notification(appName: String): Notification }\n"
+            + "type Notification { appName: String events: [Event] status: Status }\n"
+            + "type Event { id: String timestamp: Long entity: Entity }\n"
+            + "type Entity { name: String }\n"
+            + "enum Status { ACTIVE }\n";
+
+    private GraphQLSchema schema;
+
+    @Before
+    public void setUp() {
+        schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA),
+                                                            RuntimeWiring.newRuntimeWiring().build());
+    }
+
+    @Test
+    public void testProjectSelectedKeys() {
+        // given
+        GraphQLSubscriptionProjection projection = compile("subscription { "
+                + "Notification(appName: \"app\") { "
+                + "  name: appName __typename "
+                + "  events { ...EventFields entity { name } } } } "
+                + "fragment EventFields on Event { id timestamp }").get();
+
+        Map<String, Object> entity = new HashMap<>();
+        entity.put("name", "task");
+        entity.put("description", "ignored");
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("id", "1");
+        event.put("timestamp", 2);
+        event.put("serviceName", "ignored");
+        event.put("entity", entity);
+
+        Map<String, Object> notification = new HashMap<>();
+        notification.put("appName", "app");
+        notification.put("serviceName", "ignored");
+        notification.put("events", Arrays.asList(event));
+
+        // when
+        Map<String, Object> result = projection.project(notification);
+
+        // then
+        assertThat(result).containsOnlyKeys("Notification");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> data = (Map<String, Object>) result.get("Notification");
+
+        assertThat(data).containsOnlyKeys("name", "__typename", "events");
+        assertThat(data.get("name")).isEqualTo("app");
+        assertThat(data.get("__typename")).isEqualTo("Notification");
+        assertThat(data.get("events")).asList().hasSize(1);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> projectedEvent = (Map<String, Object>) ((List<Object>) data.get("events")).get(0);
+
+        assertThat(projectedEvent).containsOnlyKeys("id", "timestamp", "entity");
+        assertThat(projectedEvent.get("timestamp")).isEqualTo(2L);
+        assertThat(projectedEvent.get("entity")).isEqualTo(Collections.singletonMap("name", "task"));
+    }
+
+    @Test
+    public void testProjectMissingValuesAsNull() {
+        // given
+        GraphQLSubscriptionProjection projection = compile("subscription { Notification { appName events { id } } }").get();
+
+        // when
+        Map<String, Object> result = projection.project(new HashMap<>());
+
+        // then
+        @SuppressWarnings("unchecked")
+        Map<String, Object> data = (Map<String, Object>) result.get("Notification");
+
+        assertThat(data).containsEntry("appName", null)
+                        .containsEntry("events", null);
+    }
+
+    @Test
+    public void testUnsupportedSelectionsAreNotCompiled() {
+        assertThat(compile("subscription { Notification { appName @include(if: true) } }")).isEmpty();
+        assertThat(compile("subscription { Notification { status } }")).isEmpty();
+        assertThat(compile("subscription { a: Notification { appName } b: Notification { appName } }")).isEmpty();
+        assertThat(compile("query { hello }")).isEmpty();
+    }
+
+    private Optional<GraphQLSubscriptionProjection> compile(String query) {
+        Document document = new Parser().parseDocument(query);
+
+        return GraphQLSubscriptionProjection.compile(schema, document, null);
+    }
+
+}
@@ -15,19 +15,64 @@
  */
 package org.activiti.cloud.services.query.graphql.ws.datafetcher;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import graphql.language.Field;
+import graphql.schema.DataFetchingEnvironment;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
 
 
 public class SimpleStompRelayDataFetcherDestinationResolverTest {
 
+    private SimpleStompRelayDataFetcherDestinationResolver testSubject;
+
+    @Mock
+    private DataFetchingEnvironment environment;
+
     @Before
     public void setUp() throws Exception {
-        // TODO
+        MockitoAnnotations.initMocks(this);
+
+        when(environment.getFields()).thenReturn(Collections.singletonList(new Field("ProcessEngineNotification")));
+
+        testSubject = new SimpleStompRelayDataFetcherDestinationResolver();
     }
 
     @Test
     public void testResolveDestinations() {
-        // TODO
+        // given
+        when(environment.getArguments()).thenReturn(Collections.singletonMap("processInstanceId", Arrays.asList("1", "2")));
+
+        // when
+        List<String> destinations = testSubject.resolveDestinations(environment);
+
+        // then
+        assertThat(destinations).containsExactly("ProcessEngineNotification.processInstanceId.1",
+                                                 "ProcessEngineNotification.processInstanceId.2");
+    }
+
+    @Test
+    public void testResolveDestinationsIgnoresFilterArguments() {
+        // given
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("eventTypes", Arrays.asList("TASK_ASSIGNED"));
+        arguments.put("where", Arrays.asList(Collections.singletonMap("path", "entity.assignee")));
+        when(environment.getArguments()).thenReturn(arguments);
+
+        // when
+        List<String> destinations = testSubject.resolveDestinations(environment);
+
+        // then
+        assertThat(destinations).containsExactly("ProcessEngineNotification.#");
     }
 }
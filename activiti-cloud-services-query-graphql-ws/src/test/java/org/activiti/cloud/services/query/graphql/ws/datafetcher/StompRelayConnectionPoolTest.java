@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.simp.stomp.ReactorNettyTcpStompClient;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSession.Subscription;
+import org.springframework.messaging.simp.stomp.StompSessionHandler;
+
+
+public class StompRelayConnectionPoolTest {
+
+    private StompRelayConnectionPool testSubject;
+
+    @Mock
+    private ReactorNettyTcpStompClient stompClient;
+
+    @Mock
+    private StompFrameHandler frameHandler;
+
+    @Captor
+    private ArgumentCaptor<StompSessionHandler> sessionHandlerCaptor;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        testSubject = new StompRelayConnectionPool(stompClient).login("login")
+                                                               .passcode("passcode")
+                                                               .poolSize(2);
+    }
+
+    @Test
+    public void testSubscribeOpensNoMoreSessionsThanPoolSize() {
+        // when
+        for (int i = 0; i < 10; i++) {
+            testSubject.subscribe("destination" + i, frameHandler);
+        }
+
+        // then
+        verify(stompClient, times(2)).connect(any(StompHeaders.class), any(StompSessionHandler.class));
+        assertThat(testSubject.getSubscriptionCount()).isEqualTo(10);
+    }
+
+    @Test
+    public void testSubscribeAfterConnected() {
+        // given
+        testSubject.subscribe("destination", frameHandler);
+
+        verify(stompClient).connect(any(StompHeaders.class), sessionHandlerCaptor.capture());
+
+        StompSession session = connectedSession();
+
+        // when
+        sessionHandlerCaptor.getValue().afterConnected(session, new StompHeaders());
+
+        // then
+        verify(session).subscribe("/topic/destination", frameHandler);
+        assertThat(testSubject.getConnectedSessionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSubscribeWithConnectedSession() {
+        // given
+        StompRelaySubscription first = testSubject.subscribe("destination1", frameHandler);
+        testSubject.subscribe("destination2", frameHandler);
+
+        verify(stompClient, times(2)).connect(any(StompHeaders.class), sessionHandlerCaptor.capture());
+
+        List<StompSession> sessions = new ArrayList<>();
+        for (StompSessionHandler handler : sessionHandlerCaptor.getAllValues()) {
+            StompSession session = connectedSession();
+            handler.afterConnected(session, new StompHeaders());
+            sessions.add(session);
+        }
+
+        // when
+        first.unsubscribe();
+        testSubject.subscribe("destination3", frameHandler);
+
+        // then
+        verify(sessions.get(0)).subscribe("/topic/destination3", frameHandler);
+        verify(sessions.get(1), never()).subscribe(eq("/topic/destination3"), any());
+    }
+
+    @Test
+    public void testUnsubscribe() {
+        // given
+        StompRelaySubscription subscription = testSubject.subscribe("destination", frameHandler);
+
+        verify(stompClient).connect(any(StompHeaders.class), sessionHandlerCaptor.capture());
+
+        StompSession session = connectedSession();
+        Subscription stompSubscription = mock(Subscription.class);
+        when(session.subscribe(any(String.class), any(StompFrameHandler.class))).thenReturn(stompSubscription);
+
+        sessionHandlerCaptor.getValue().afterConnected(session, new StompHeaders());
+
+        // when
+        subscription.unsubscribe();
+
+        // then
+        verify(stompSubscription).unsubscribe();
+        verify(session, never()).disconnect();
+        assertThat(testSubject.getSubscriptionCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testTransportErrorResubscribes() {
+        // given
+        testSubject.subscribe("destination", frameHandler);
+
+        verify(stompClient).connect(any(StompHeaders.class), sessionHandlerCaptor.capture());
+
+        StompSessionHandler handler = sessionHandlerCaptor.getValue();
+        StompSession session = connectedSession();
+        handler.afterConnected(session, new StompHeaders());
+
+        // when
+        handler.handleTransportError(session, new RuntimeException("connection lost"));
+
+        // then
+        verify(stompClient, times(2)).connect(any(StompHeaders.class), eq(handler));
+
+        // when
+        StompSession reconnected = connectedSession();
+        handler.afterConnected(reconnected, new StompHeaders());
+
+        // then
+        verify(reconnected).subscribe("/topic/destination", frameHandler);
+    }
+
+    @Test
+    public void testDestroy() throws Exception {
+        // given
+        testSubject.subscribe("destination", frameHandler);
+
+        verify(stompClient).connect(any(StompHeaders.class), sessionHandlerCaptor.capture());
+
+        StompSession session = connectedSession();
+        sessionHandlerCaptor.getValue().afterConnected(session, new StompHeaders());
+
+        // when
+        testSubject.destroy();
+
+        // then
+        verify(session).disconnect();
+    }
+
+    private StompSession connectedSession() {
+        StompSession session = mock(StompSession.class);
+        when(session.isConnected()).thenReturn(true);
+        when(session.getSessionId()).thenReturn("sessionId");
+        when(session.subscribe(any(String.class), any(StompFrameHandler.class))).thenReturn(mock(Subscription.class));
+
+        return session;
+    }
+
+}
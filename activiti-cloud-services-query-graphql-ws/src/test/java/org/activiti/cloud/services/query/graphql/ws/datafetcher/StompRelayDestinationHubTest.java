@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+
+public class StompRelayDestinationHubTest {
+
+    private StompRelayDestinationHub testSubject;
+
+    @Mock
+    private StompRelaySubscriptionProvider upstream;
+
+    @Mock
+    private StompRelaySubscription upstreamSubscription;
+
+    @Mock
+    private StompFrameHandler handler1;
+
+    @Mock
+    private StompFrameHandler handler2;
+
+    @Captor
+    private ArgumentCaptor<StompFrameHandler> upstreamHandlerCaptor;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        when(upstream.subscribe(any(String.class), any(StompFrameHandler.class))).thenReturn(upstreamSubscription);
+
+        testSubject = new StompRelayDestinationHub(upstream);
+    }
+
+    @Test
+    public void testSubscribeSharesUpstreamSubscription() {
+        // when
+        testSubject.subscribe("ProcessEngineNotification.rb.app.*.*.*", handler1);
+        testSubject.subscribe("ProcessEngineNotification.rb.app.*.*.*", handler2);
+
+        // then
+        verify(upstream, times(1)).subscribe(eq("ProcessEngineNotification.rb.app.*.*.*"), any());
+        assertThat(testSubject.getDestinationCount()).isEqualTo(1);
+        assertThat(testSubject.getSubscriberCount("ProcessEngineNotification.rb.app.*.*.*")).isEqualTo(2);
+    }
+
+    @Test
+    public void testSubscribeDistinctDestinations() {
+        // when
+        testSubject.subscribe("ProcessEngineNotification.rb.app1.*.*.*", handler1);
+        testSubject.subscribe("ProcessEngineNotification.rb.app2.*.*.*", handler2);
+
+        // then
+        verify(upstream).subscribe(eq("ProcessEngineNotification.rb.app1.*.*.*"), any());
+        verify(upstream).subscribe(eq("ProcessEngineNotification.rb.app2.*.*.*"), any());
+        assertThat(testSubject.getDestinationCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testHandleFrameFansOutToAllSubscribers() {
+        // given
+        testSubject.subscribe("destination", handler1);
+        testSubject.subscribe("destination", handler2);
+
+        verify(upstream).subscribe(eq("destination"), upstreamHandlerCaptor.capture());
+
+        StompHeaders headers = new StompHeaders();
+        Map<String, Object> payload = Collections.singletonMap("key", "value");
+
+        doThrow(new RuntimeException("failed")).when(handler1).handleFrame(headers, payload);
+
+        // when
+        upstreamHandlerCaptor.getValue().handleFrame(headers, payload);
+
+        // then
+        verify(handler1).handleFrame(headers, payload);
+        verify(handler2).handleFrame(headers, payload);
+        assertThat(upstreamHandlerCaptor.getValue().getPayloadType(headers)).isEqualTo(Map.class);
+    }
+
+    @Test
+    public void testUnsubscribeLastSubscriberTearsDownUpstream() {
+        // given
+        StompRelaySubscription subscription1 = testSubject.subscribe("destination", handler1);
+        StompRelaySubscription subscription2 = testSubject.subscribe("destination", handler2);
+
+        // when
+        subscription1.unsubscribe();
+
+        // then
+        verify(upstreamSubscription, never()).unsubscribe();
+        assertThat(testSubject.getSubscriberCount("destination")).isEqualTo(1);
+
+        // when
+        subscription2.unsubscribe();
+
+        // then
+        verify(upstreamSubscription).unsubscribe();
+        assertThat(testSubject.getDestinationCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testResubscribeAfterTearDown() {
+        // given
+        testSubject.subscribe("destination", handler1).unsubscribe();
+
+        // when
+        StompRelaySubscription subscription = testSubject.subscribe("destination", mock(StompFrameHandler.class));
+
+        // then
+        verify(upstream, times(2)).subscribe(eq("destination"), any());
+        assertThat(subscription.getDestination()).isEqualTo("destination");
+    }
+
+}
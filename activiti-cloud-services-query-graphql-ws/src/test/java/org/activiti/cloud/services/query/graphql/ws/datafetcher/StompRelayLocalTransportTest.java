@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+
+public class StompRelayLocalTransportTest {
+
+    private static final String ROUTING_KEY = "ProcessEngineNotification.rb.app.pdk.pid.bk";
+
+    private StompRelayLocalTransport testSubject;
+
+    @Mock
+    private StompRelaySubscriptionProvider upstream;
+
+    @Mock
+    private StompRelaySubscription upstreamSubscription;
+
+    @Mock
+    private StompFrameHandler handler;
+
+    @Captor
+    private ArgumentCaptor<StompFrameHandler> relayHandlerCaptor;
+
+    @Captor
+    private ArgumentCaptor<StompHeaders> headersCaptor;
+
+    private Map<String, Object> notification = new LinkedHashMap<>();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        when(upstream.subscribe(any(String.class), any(StompFrameHandler.class))).thenReturn(upstreamSubscription);
+
+        testSubject = new StompRelayLocalTransport(upstream);
+    }
+
+    @Test
+    public void testOnNotificationDeliversToMatchingSubscribers() {
+        // given
+        testSubject.subscribe("ProcessEngineNotification.rb.app.*.*.*", handler);
+
+        // when
+        testSubject.onNotification(notification(ROUTING_KEY, "id1"));
+
+        // then
+        verify(handler).handleFrame(headersCaptor.capture(), eq(notification));
+        assertThat(headersCaptor.getValue().getFirst(StompRelayLocalTransport.ROUTING_KEY_HEADER)).isEqualTo(ROUTING_KEY);
+        assertThat(testSubject.getLocalDeliveryCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOnNotificationSkipsNonMatchingSubscribers() {
+        // given
+        testSubject.subscribe("ProcessEngineNotification.rb.other.*.*.*", handler);
+
+        // when
+        testSubject.onNotification(notification(ROUTING_KEY, "id1"));
+
+        // then
+        verify(handler, never()).handleFrame(any(), any());
+    }
+
+    @Test
+    public void testOnNotificationIgnoresOtherMessages() {
+        // given
+        testSubject.subscribe("ProcessEngineNotification.#", handler);
+
+        // when
+        testSubject.onNotification(MessageBuilder.withPayload("payload").build());
+
+        // then
+        verify(handler, never()).handleFrame(any(), any());
+    }
+
+    @Test
+    public void testRelayFrameDroppedWhenDeliveredLocally() {
+        // given
+        testSubject.subscribe("ProcessEngineNotification.#", handler);
+        verify(upstream).subscribe(eq("ProcessEngineNotification.#"), relayHandlerCaptor.capture());
+
+        testSubject.onNotification(notification(ROUTING_KEY, "id1"));
+
+        StompHeaders headers = new StompHeaders();
+        headers.set(StompRelayLocalTransport.NOTIFICATION_ID_HEADER, "id1");
+
+        // when
+        relayHandlerCaptor.getValue().handleFrame(headers, notification);
+
+        // then
+        verify(handler, never()).handleFrame(eq(headers), any());
+        assertThat(testSubject.getDuplicateFrameCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRelayFrameFromOtherNodeDelivered() {
+        // given
+        testSubject.subscribe("ProcessEngineNotification.#", handler);
+        verify(upstream).subscribe(eq("ProcessEngineNotification.#"), relayHandlerCaptor.capture());
+
+        StompHeaders headers = new StompHeaders();
+        headers.set(StompRelayLocalTransport.NOTIFICATION_ID_HEADER, "remote");
+
+        // when
+        relayHandlerCaptor.getValue().handleFrame(headers, notification);
+
+        // then
+        verify(handler).handleFrame(headers, notification);
+    }
+
+    @Test
+    public void testUnsubscribe() {
+        // given
+        StompRelaySubscription subscription = testSubject.subscribe("ProcessEngineNotification.#", handler);
+
+        // when
+        subscription.unsubscribe();
+        testSubject.onNotification(notification(ROUTING_KEY, "id1"));
+
+        // then
+        verify(upstreamSubscription).unsubscribe();
+        verify(handler, never()).handleFrame(any(), any());
+    }
+
+    private Message<Map<String, Object>> notification(String routingKey, String notificationId) {
+        return MessageBuilder.withPayload(notification)
+                             .setHeader(StompRelayLocalTransport.ROUTING_KEY_HEADER, routingKey)
+                             .setHeader(StompRelayLocalTransport.NOTIFICATION_ID_HEADER, notificationId)
+                             .build();
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class StompRelayNotificationFilterTest {
+
+    @Test
+    public void testNoFilterArguments() {
+        assertThat(StompRelayNotificationFilter.of(Collections.singletonMap("appName", "app"))).isEmpty();
+    }
+
+    @Test
+    public void testFilterEventTypes() {
+        // given
+        StompRelayNotificationFilter filter = StompRelayNotificationFilter.of(
+                Collections.singletonMap("eventTypes", Arrays.asList("TASK_ASSIGNED"))).get();
+
+        // when
+        Map<String, Object> result = filter.apply(notification());
+
+        // then
+        assertThat(result).containsOnlyKeys("appName", "TASK_ASSIGNED");
+        assertThat(result.get("TASK_ASSIGNED")).asList().hasSize(2);
+    }
+
+    @Test
+    public void testFilterEventFieldPredicates() {
+        // given
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("eventTypes", Arrays.asList("TASK_ASSIGNED"));
+        arguments.put("where", Arrays.asList(predicate("entity.assignee", "hruser", null)));
+
+        StompRelayNotificationFilter filter = StompRelayNotificationFilter.of(arguments).get();
+
+        // when
+        Map<String, Object> result = filter.apply(notification());
+
+        // then
+        assertThat(result.get("TASK_ASSIGNED")).asList().containsExactly(event("TASK_ASSIGNED", "hruser"));
+    }
+
+    @Test
+    public void testFilterEventFieldInPredicate() {
+        // given
+        StompRelayNotificationFilter filter = StompRelayNotificationFilter.of(
+                Collections.singletonMap("where", Arrays.asList(predicate("entity.assignee", null, Arrays.asList("admin", "other"))))).get();
+
+        // when
+        Map<String, Object> result = filter.apply(notification());
+
+        // then
+        assertThat(result).containsOnlyKeys("appName", "TASK_ASSIGNED");
+        assertThat(result.get("TASK_ASSIGNED")).asList().containsExactly(event("TASK_ASSIGNED", "admin"));
+    }
+
+    @Test
+    public void testDropNotificationWithoutMatchingEvents() {
+        // given
+        StompRelayNotificationFilter filter = StompRelayNotificationFilter.of(
+                Collections.singletonMap("where", Arrays.asList(predicate("entity.assignee", "nobody", null)))).get();
+
+        // when
+        Map<String, Object> result = filter.apply(notification());
+
+        // then
+        assertThat(result).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPredicatePathIsRequired() {
+        StompRelayNotificationFilter.of(Collections.singletonMap("where", Arrays.asList(predicate(null, "value", null))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPredicateValueIsRequired() {
+        StompRelayNotificationFilter.of(Collections.singletonMap("where", Arrays.asList(predicate("entity.assignee", null, null))));
+    }
+
+    private static Map<String, Object> notification() {
+        Map<String, Object> notification = new LinkedHashMap<>();
+        notification.put("appName", "app");
+        notification.put("PROCESS_STARTED", Arrays.asList(event("PROCESS_STARTED", null)));
+        notification.put("TASK_ASSIGNED", Arrays.asList(event("TASK_ASSIGNED", "hruser"), event("TASK_ASSIGNED", "admin")));
+
+        return notification;
+    }
+
+    private static Map<String, Object> event(String eventType, String assignee) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("eventType", eventType);
+        event.put("entity", Collections.singletonMap("assignee", assignee));
+
+        return event;
+    }
+
+    private static Map<String, Object> predicate(String path, String eq, Object in) {
+        Map<String, Object> predicate = new HashMap<>();
+        predicate.put("path", path);
+        predicate.put("EQ", eq);
+        predicate.put("IN", in);
+
+        return predicate;
+    }
+
+}
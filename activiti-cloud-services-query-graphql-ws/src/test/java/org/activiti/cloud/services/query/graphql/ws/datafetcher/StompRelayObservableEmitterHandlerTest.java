@@ -1,59 +1,170 @@
-/*
- * Copyright 2018 Alfresco, Inc. and/or its affiliates.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *       http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package org.activiti.cloud.services.query.graphql.ws.datafetcher;
-
-import org.junit.Before;
-import org.junit.Test;
-
-
-public class StompRelayObservableEmitterHandlerTest {
-
-    @Before
-    public void setUp() throws Exception {
-        // TODO
-    }
-
-    @Test
-    public void testGetPayloadTypeStompHeaders() {
-        // TODO
-    }
-
-    @Test
-    public void testAfterConnectedStompSessionStompHeaders() {
-        // TODO
-    }
-
-    @Test
-    public void testHandleFrameStompHeadersObject() {
-        // TODO
-    }
-
-    @Test
-    public void testHandleExceptionStompSessionStompCommandStompHeadersByteArrayThrowable() {
-        // TODO
-    }
-
-    @Test
-    public void testHandleTransportErrorStompSessionThrowable() {
-        // TODO
-    }
-
-    @Test
-    public void testCancel() {
-        // TODO
-    }
-
-}
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.observers.TestObserver;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+
+public class StompRelayObservableEmitterHandlerTest {
+
+    private StompRelayObservableEmitterHandler testSubject;
+
+    @Mock
+    private ObservableEmitter<Map<String, Object>> emitter;
+
+    @Mock
+    private ObservableEmitter<Map<String, Object>> serializedEmitter;
+
+    @Mock
+    private StompRelaySubscriptionProvider subscriptionProvider;
+
+    @Mock
+    private StompRelaySubscription subscription1;
+
+    @Mock
+    private StompRelaySubscription subscription2;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        when(emitter.serialize()).thenReturn(serializedEmitter);
+
+        when(subscriptionProvider.subscribe(eq("destination1"), any())).thenReturn(subscription1);
+        when(subscriptionProvider.subscribe(eq("destination2"), any())).thenReturn(subscription2);
+
+        testSubject = new StompRelayObservableEmitterHandler(Arrays.asList("destination1", "destination2"), emitter);
+    }
+
+    @Test
+    public void testGetPayloadTypeStompHeaders() {
+        assertThat(testSubject.getPayloadType(new StompHeaders())).isEqualTo(Map.class);
+    }
+
+    @Test
+    public void testSubscribe() {
+        // when
+        testSubject.subscribe(subscriptionProvider);
+
+        // then
+        verify(serializedEmitter).setCancellable(testSubject);
+        verify(subscriptionProvider).subscribe("destination1", testSubject);
+        verify(subscriptionProvider).subscribe("destination2", testSubject);
+    }
+
+    @Test
+    public void testSubscribeError() {
+        // given
+        IllegalStateException error = new IllegalStateException("shut down");
+        when(subscriptionProvider.subscribe(eq("destination1"), any())).thenThrow(error);
+
+        // when
+        testSubject.subscribe(subscriptionProvider);
+
+        // then
+        verify(serializedEmitter).onError(error);
+    }
+
+    @Test
+    public void testHandleFrameStompHeadersObject() {
+        // given
+        Map<String, Object> payload = Collections.singletonMap("key", "value");
+
+        // when
+        testSubject.handleFrame(new StompHeaders(), payload);
+
+        // then
+        verify(serializedEmitter).onNext(payload);
+    }
+
+    @Test
+    public void testHandleFrameFromConcurrentSessionsIsSerialized() throws Exception {
+        // given
+        AtomicInteger active = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        AtomicReference<StompRelayObservableEmitterHandler> handler = new AtomicReference<>();
+
+        TestObserver<Map<String, Object>> observer = Observable.<Map<String, Object>>create(emitter -> handler.set(new StompRelayObservableEmitterHandler(Arrays.asList("destination1", "destination2"), emitter)))
+                .doOnNext(payload -> {
+                    if (active.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    Thread.yield();
+                    active.decrementAndGet();
+                })
+                .test();
+
+        Map<String, Object> payload = Collections.singletonMap("key", "value");
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService sessions = Executors.newFixedThreadPool(2);
+
+        // when
+        for (int i = 0; i < 2; i++) {
+            sessions.submit(() -> {
+                start.await();
+                for (int j = 0; j < 1000; j++) {
+                    handler.get().handleFrame(new StompHeaders(), payload);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        sessions.shutdown();
+        sessions.awaitTermination(10, TimeUnit.SECONDS);
+
+        // then
+        observer.assertValueCount(2000);
+        assertThat(overlapped).isFalse();
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        // given
+        testSubject.subscribe(subscriptionProvider);
+
+        // when
+        testSubject.cancel();
+
+        // then
+        verify(subscription1).unsubscribe();
+        verify(subscription2).unsubscribe();
+    }
+
+}
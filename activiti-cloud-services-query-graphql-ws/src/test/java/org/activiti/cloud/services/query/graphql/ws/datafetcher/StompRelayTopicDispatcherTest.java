@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.datafetcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+
+public class StompRelayTopicDispatcherTest {
+
+    private StompRelayTopicDispatcher testSubject;
+
+    @Mock
+    private StompRelaySubscriptionProvider upstream;
+
+    @Mock
+    private StompRelaySubscription upstreamSubscription;
+
+    @Mock
+    private StompFrameHandler appHandler;
+
+    @Mock
+    private StompFrameHandler processHandler;
+
+    private Map<String, Object> payload = Collections.singletonMap("key", "value");
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        when(upstream.subscribe(any(String.class), any(StompFrameHandler.class))).thenReturn(upstreamSubscription);
+
+        testSubject = new StompRelayTopicDispatcher(upstream, "ProcessEngineNotification.#");
+    }
+
+    @Test
+    public void testSubscribeUsesSingleUpstreamSubscription() {
+        // when
+        testSubject.subscribe("ProcessEngineNotification.rb.app.*.*.*", appHandler);
+        testSubject.subscribe("ProcessEngineNotification.*.*.*.pid.*", processHandler);
+
+        // then
+        verify(upstream, times(1)).subscribe(eq("ProcessEngineNotification.#"), eq(testSubject));
+        assertThat(testSubject.getPatternCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testHandleFrameRoutingKeyHeader() {
+        // given
+        testSubject.subscribe("ProcessEngineNotification.rb.app.*.*.*", appHandler);
+        testSubject.subscribe("ProcessEngineNotification.*.*.*.pid.*", processHandler);
+
+        StompHeaders headers = new StompHeaders();
+        headers.add(StompRelayTopicDispatcher.ROUTING_KEY_HEADER, "ProcessEngineNotification.rb.app.pdk.other.bk");
+
+        // when
+        testSubject.handleFrame(headers, payload);
+
+        // then
+        verify(appHandler).handleFrame(headers, payload);
+        verify(processHandler, never()).handleFrame(any(), any());
+    }
+
+    @Test
+    public void testHandleFrameDestinationHeader() {
+        // given
+        testSubject.subscribe("ProcessEngineNotification.*.*.*.pid.*", processHandler);
+
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination("/exchange/amq.topic/ProcessEngineNotification.rb.app.pdk.pid.bk");
+
+        // when
+        testSubject.handleFrame(headers, payload);
+
+        // then
+        verify(processHandler).handleFrame(headers, payload);
+    }
+
+    @Test
+    public void testHandleFrameUnrouted() {
+        // given
+        testSubject.subscribe("ProcessEngineNotification.rb.app.*.*.*", appHandler);
+
+        StompHeaders headers = new StompHeaders();
+        headers.add(StompRelayTopicDispatcher.ROUTING_KEY_HEADER, "ProcessEngineNotification.rb.other.pdk.pid.bk");
+
+        // when
+        testSubject.handleFrame(headers, payload);
+
+        // then
+        verify(appHandler, never()).handleFrame(any(), any());
+        assertThat(testSubject.getUnroutedFrameCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUnsubscribeLastPatternTearsDownUpstream() {
+        // given
+        StompRelaySubscription appSubscription = testSubject.subscribe("ProcessEngineNotification.rb.app.*.*.*", appHandler);
+        StompRelaySubscription processSubscription = testSubject.subscribe("ProcessEngineNotification.*.*.*.pid.*", processHandler);
+
+        // when
+        appSubscription.unsubscribe();
+
+        // then
+        verify(upstreamSubscription, never()).unsubscribe();
+
+        // when
+        processSubscription.unsubscribe();
+
+        // then
+        verify(upstreamSubscription).unsubscribe();
+        assertThat(testSubject.getPatternCount()).isEqualTo(0);
+    }
+
+}
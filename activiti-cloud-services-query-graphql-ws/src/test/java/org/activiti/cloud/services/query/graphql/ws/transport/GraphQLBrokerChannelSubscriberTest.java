@@ -2,6 +2,9 @@ package org.activiti.cloud.services.query.graphql.ws.transport;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -9,15 +12,20 @@ import static org.mockito.Mockito.when;
 import java.security.Principal;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.websocket.Session;
 
+import graphql.ExecutionResult;
 import graphql.ExecutionResultImpl;
 
 import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLBrokerChannelSubscriber;
 import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLMessage;
 import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLMessageType;
+import org.activiti.cloud.services.query.graphql.ws.transport.GraphQLBrokerSubscriptionRegistry.SessionSubscriptionInfo;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -47,13 +55,22 @@ public class GraphQLBrokerChannelSubscriberTest {
     @Captor
     private ArgumentCaptor<Message<GraphQLMessage>> messageCaptor;
 
+    private long eventNanos = TimeUnit.SECONDS.toNanos(1);
+
+    private GraphQLSubscriptionFlushScheduler flushScheduler = new GraphQLSubscriptionFlushScheduler(1);
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
 
         Message<GraphQLMessage> startMessage = startMessage("operationId", "sessionId");
 
-        this.testSubject = new GraphQLBrokerChannelSubscriber(startMessage, "operationId", messageChannel, 1000, 1);
+        this.testSubject = new GraphQLBrokerChannelSubscriber(startMessage, "operationId", messageChannel, 1000, 1, flushScheduler);
+    }
+
+    @After
+    public void tearDown() {
+        flushScheduler.shutdown();
     }
 
     @Test
@@ -125,6 +142,254 @@ public class GraphQLBrokerChannelSubscriberTest {
 
     }
 
+    @Test
+    public void testOnNextHoldsDataWhileMessageInFlight() {
+        // given
+        when(messageChannel.send(ArgumentMatchers.any())).thenReturn(true);
+        testOnSubscribe();
+
+        // when
+        testSubject.onNext(executionResult(1));
+        testSubject.onNext(executionResult(2));
+
+        // then
+        verify(messageChannel).send(messageCaptor.capture());
+        assertThat(testSubject.getPendingCount()).isEqualTo(1);
+
+        // when
+        deliver(messageCaptor.getValue());
+
+        // then
+        verify(messageChannel, times(2)).send(messageCaptor.capture());
+        assertThat(messageCaptor.getValue().getPayload().getPayload().get("data")).asList()
+                                                                           .containsExactly(Collections.singletonMap("key", 2));
+        assertThat(testSubject.getPendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testOnNextFlushesAccumulatedDataAfterBufferTimeSpan() {
+        // given
+        GraphQLSubscriptionFlushScheduler flushScheduler = new GraphQLSubscriptionFlushScheduler(1);
+        this.testSubject = flushingSubscriber(flushScheduler);
+        testOnSubscribe();
+
+        // when
+        publish(1, 2);
+
+        // then
+        verify(messageChannel, never()).send(ArgumentMatchers.any());
+        assertThat(flushScheduler.getScheduledCount()).isEqualTo(1);
+
+        verify(messageChannel, timeout(1000)).send(messageCaptor.capture());
+        assertThat(messageCaptor.getValue().getPayload().getPayload().get("data")).asList()
+                                                                           .containsExactly(Collections.singletonMap("key", 1),
+                                                                                            Collections.singletonMap("key", 2));
+        assertThat(flushScheduler.getScheduledCount()).isEqualTo(0);
+
+        flushScheduler.shutdown();
+    }
+
+    @Test
+    public void testCancelRemovesScheduledFlush() {
+        // given
+        GraphQLSubscriptionFlushScheduler flushScheduler = new GraphQLSubscriptionFlushScheduler(1);
+        this.testSubject = flushingSubscriber(flushScheduler);
+        testOnSubscribe();
+        publish(1);
+
+        // when
+        testSubject.cancel();
+
+        // then
+        assertThat(flushScheduler.getScheduledCount()).isEqualTo(0);
+        verify(messageChannel, never()).send(ArgumentMatchers.any());
+
+        flushScheduler.shutdown();
+    }
+
+    @Test
+    public void testAdaptiveBatchingFlushesImmediatelyAtLowEventRate() {
+        // given
+        this.testSubject = flushingSubscriber(new GraphQLSubscriptionFlushScheduler(1)).batchingMode(GraphQLSubscriptionBatchingMode.ADAPTIVE);
+
+        // when
+        recordEvents(1000, 3);
+
+        // then
+        assertThat(testSubject.getEventRate()).isEqualTo(1.0);
+        assertThat(testSubject.flushDelayMs()).isEqualTo(0);
+    }
+
+    @Test
+    public void testAdaptiveBatchingWidensFlushWindowWithEventRate() {
+        // given
+        this.testSubject = flushingSubscriber(new GraphQLSubscriptionFlushScheduler(1)).batchingMode(GraphQLSubscriptionBatchingMode.ADAPTIVE);
+
+        // when 4 events expected within 100 ms timespan
+        recordEvents(25, 3);
+
+        // then
+        assertThat(testSubject.flushDelayMs()).isEqualTo(40);
+
+        // when 100 events expected within 100 ms timespan
+        recordEvents(1, 50);
+
+        // then
+        assertThat(testSubject.flushDelayMs()).isEqualTo(100);
+    }
+
+    @Test
+    public void testAdaptiveBatchingFlushesFirstEventImmediately() {
+        // given
+        this.testSubject = flushingSubscriber(new GraphQLSubscriptionFlushScheduler(1)).batchingMode(GraphQLSubscriptionBatchingMode.ADAPTIVE);
+        testOnSubscribe();
+
+        // when
+        publish(1);
+
+        // then
+        verify(messageChannel).send(messageCaptor.capture());
+        assertThat(messageCaptor.getValue().getPayload().getType()).isEqualTo(GraphQLMessageType.DATA);
+    }
+
+    @Test
+    public void testFixedBatchingUsesBufferTimeSpan() {
+        // given
+        this.testSubject = flushingSubscriber(new GraphQLSubscriptionFlushScheduler(1));
+
+        // when
+        recordEvents(1000, 3);
+
+        // then
+        assertThat(testSubject.flushDelayMs()).isEqualTo(100);
+    }
+
+    @Test
+    public void testDropOldestOverflowPolicy() {
+        // given
+        SessionSubscriptionInfo sessionInfo = overflowSubscriber(GraphQLSubscriptionOverflowPolicy.DROP_OLDEST);
+
+        // when
+        publish(1, 2, 3, 4);
+
+        // then
+        assertThat(testSubject.getPendingCount()).isEqualTo(2);
+        assertThat(testSubject.getOverflowCount()).isEqualTo(1);
+        assertThat(sessionInfo.getOverflowCount()).isEqualTo(1);
+        assertThat(nextDeliveredData()).containsExactly(Collections.singletonMap("key", 3));
+    }
+
+    @Test
+    public void testDropNewestOverflowPolicy() {
+        // given
+        SessionSubscriptionInfo sessionInfo = overflowSubscriber(GraphQLSubscriptionOverflowPolicy.DROP_NEWEST);
+
+        // when
+        publish(1, 2, 3, 4);
+
+        // then
+        assertThat(testSubject.getPendingCount()).isEqualTo(2);
+        assertThat(sessionInfo.getOverflowCount()).isEqualTo(1);
+        assertThat(nextDeliveredData()).containsExactly(Collections.singletonMap("key", 2));
+    }
+
+    @Test
+    public void testLatestOnlyOverflowPolicy() {
+        // given
+        SessionSubscriptionInfo sessionInfo = overflowSubscriber(GraphQLSubscriptionOverflowPolicy.LATEST_ONLY);
+
+        // when
+        publish(1, 2, 3, 4);
+
+        // then
+        assertThat(testSubject.getPendingCount()).isEqualTo(1);
+        assertThat(sessionInfo.getOverflowCount()).isEqualTo(1);
+        assertThat(nextDeliveredData()).containsExactly(Collections.singletonMap("key", 4));
+    }
+
+    @Test
+    public void testDisconnectOverflowPolicyEvictsSubscription() {
+        // given
+        SessionSubscriptionInfo sessionInfo = overflowSubscriber(GraphQLSubscriptionOverflowPolicy.DISCONNECT);
+
+        // when
+        publish(1, 2, 3, 4);
+
+        // then
+        verify(subscription).cancel();
+        verify(messageChannel, times(2)).send(messageCaptor.capture());
+
+        assertThat(messageCaptor.getValue().getPayload().getType()).isEqualTo(GraphQLMessageType.ERROR);
+        assertThat(messageCaptor.getValue().getPayload().getPayload()).containsEntry("errors",
+                                                                                    Collections.singletonList(GraphQLBrokerChannelSubscriber.SLOW_CONSUMER_EVICTED));
+        assertThat(testSubject.isEvicted()).isTrue();
+        assertThat(testSubject.getPendingCount()).isEqualTo(0);
+        assertThat(sessionInfo.getEvictionCount()).isEqualTo(1);
+        assertThat(sessionInfo.getSubscriptions()).isEmpty();
+    }
+
+    private SessionSubscriptionInfo overflowSubscriber(GraphQLSubscriptionOverflowPolicy overflowPolicy) {
+        when(messageChannel.send(ArgumentMatchers.any())).thenReturn(true);
+
+        this.testSubject = new GraphQLBrokerChannelSubscriber(startMessage("operationId", "sessionId"),
+                                                              "operationId",
+                                                              messageChannel,
+                                                              1000,
+                                                              1,
+                                                              overflowPolicy,
+                                                              2,
+                                                              flushScheduler);
+        SessionSubscriptionInfo sessionInfo = new SessionSubscriptionInfo("sessionId");
+        sessionInfo.addSubscription("operationId", testSubject);
+
+        testOnSubscribe();
+
+        return sessionInfo;
+    }
+
+    private GraphQLBrokerChannelSubscriber flushingSubscriber(GraphQLSubscriptionFlushScheduler flushScheduler) {
+        return new GraphQLBrokerChannelSubscriber(startMessage("operationId", "sessionId"),
+                                                  "operationId",
+                                                  messageChannel,
+                                                  100,
+                                                  10,
+                                                  GraphQLSubscriptionOverflowPolicy.DROP_OLDEST,
+                                                  1000,
+                                                  flushScheduler);
+    }
+
+    private void recordEvents(long intervalMs, int count) {
+        for (int i = 0; i < count; i++) {
+            eventNanos += TimeUnit.MILLISECONDS.toNanos(intervalMs);
+            testSubject.recordEvent(eventNanos);
+        }
+    }
+
+    private void publish(int... keys) {
+        for (int key : keys) {
+            testSubject.onNext(executionResult(key));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> nextDeliveredData() {
+        verify(messageChannel).send(messageCaptor.capture());
+
+        deliver(messageCaptor.getValue());
+
+        verify(messageChannel, times(2)).send(messageCaptor.capture());
+
+        return (List<Object>) messageCaptor.getValue().getPayload().getPayload().get("data");
+    }
+
+    private void deliver(Message<GraphQLMessage> message) {
+        message.getHeaders().get(GraphQLBrokerChannelSubscriber.DELIVERY_CALLBACK_HEADER, Runnable.class).run();
+    }
+
+    private ExecutionResult executionResult(Object value) {
+        return new ExecutionResultImpl(Collections.singletonMap("key", value), Collections.emptyList());
+    }
+
     private Message<GraphQLMessage> startMessage(String operationId, String sessionId) {
         SimpMessageHeaderAccessor headerAccessor = simpHeaderAccessor(mockWebSocketSession(sessionId));
 
@@ -243,6 +243,34 @@ public class GraphQLBrokerMessageHandlerTest {
         assertThat(completeLatch.await(5000, TimeUnit.MILLISECONDS)).isTrue();
     }
 
+    @Test
+    public void testHandleStartMessageClampsClientBatchingHints() {
+        // given
+        Map<String, Object> batching = new HashMap<>();
+        batching.put(GraphQLBrokerMessageHandler.MAX_LATENCY_MS_HINT, 100);
+        batching.put(GraphQLBrokerMessageHandler.MAX_BATCH_SIZE_HINT, 500);
+
+        Message<GraphQLMessage> message = startMessage("operationId", "sess1");
+        message.getPayload().getPayload().put("extensions", Collections.singletonMap(GraphQLBrokerMessageHandler.BATCHING_EXTENSION, batching));
+
+        ExecutionResult executionResult = stubExecutionResult(Observable.never(), new CountDownLatch(1));
+        when(graphQLExecutor.execute(Mockito.anyString(), Mockito.any())).thenReturn(executionResult);
+
+        this.messageHandler.setBatchingMode(GraphQLSubscriptionBatchingMode.ADAPTIVE);
+
+        // when
+        this.messageHandler.handleMessage(message);
+
+        // then
+        GraphQLBrokerChannelSubscriber subscriber = messageHandler.getGraphQLsubscriptionRegistry()
+                                                                  .get("sess1")
+                                                                  .getSubscriber("operationId");
+
+        assertThat(subscriber.getBufferTimeSpanMs()).isEqualTo(100);
+        assertThat(subscriber.getBufferCount()).isEqualTo(50);
+        assertThat(subscriber.getBatchingMode()).isEqualTo(GraphQLSubscriptionBatchingMode.ADAPTIVE);
+    }
+
     @Test
     public void testHandleStartMessageBrokerAvailableDataNullSendError() {
         // given
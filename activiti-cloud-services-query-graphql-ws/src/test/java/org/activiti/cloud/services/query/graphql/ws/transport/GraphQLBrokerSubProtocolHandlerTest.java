@@ -211,6 +211,26 @@ public class GraphQLBrokerSubProtocolHandlerTest {
 
     }
 
+    @Test
+    public void testHandleDataMessageToClientRunsDeliveryCallback() throws IOException {
+        // given
+        WebSocketSession session = spy(mockWebSocketSession("sess1"));
+        doNothing().when(session).sendMessage(ArgumentMatchers.any(TextMessage.class));
+
+        Runnable deliveryCallback = mock(Runnable.class);
+
+        Message<GraphQLMessage> message = MessageBuilder.fromMessage(connectionAckMessage("operationId", session))
+                                                        .setHeader(GraphQLBrokerChannelSubscriber.DELIVERY_CALLBACK_HEADER, deliveryCallback)
+                                                        .build();
+
+        // when
+        testSubject.handleMessageToClient(session, message);
+
+        // then
+        verify(session).sendMessage(ArgumentMatchers.any(TextMessage.class));
+        verify(deliveryCallback).run();
+    }
+
     @Test
     public void testAfterSessionEnded() throws Exception {
         // given
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQLError;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.TestSubscriber;
+import org.activiti.cloud.services.query.graphql.ws.util.QueryParameters;
+import org.activiti.cloud.services.query.graphql.ws.util.RawJsonValue;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+
+public class GraphQLSharedSubscriptionRegistryTest {
+
+    private GraphQLSharedSubscriptionRegistry registry;
+
+    private PublishProcessor<ExecutionResult> upstream;
+
+    private AtomicInteger executionCount;
+
+    @Before
+    public void setUp() {
+        registry = new GraphQLSharedSubscriptionRegistry();
+        upstream = PublishProcessor.create();
+        executionCount = new AtomicInteger();
+    }
+
+    @Test
+    public void testOperationKeyNormalizesQueryAndVariables() throws Exception {
+        // given
+        Map<String, Object> variables1 = new HashMap<>();
+        variables1.put("a", 1);
+        variables1.put("b", 2);
+
+        Map<String, Object> variables2 = new HashMap<>();
+        variables2.put("b", 2);
+        variables2.put("a", 1);
+
+        // when
+        String key1 = GraphQLSharedSubscriptionRegistry.operationKey(queryParameters("subscription { ProcessEngineNotification { key } }", variables1));
+        String key2 = GraphQLSharedSubscriptionRegistry.operationKey(queryParameters("subscription {\n  ProcessEngineNotification {\n    key\n  }\n}", variables2));
+        String key3 = GraphQLSharedSubscriptionRegistry.operationKey(queryParameters("subscription { ProcessEngineNotification { key } }", Collections.emptyMap()));
+
+        // then
+        assertThat(key1).isEqualTo(key2);
+        assertThat(key1).isNotEqualTo(key3);
+    }
+
+    @Test
+    public void testOperationKeyKeepsWhitespaceOfStringLiterals() throws Exception {
+        // when
+        String key1 = GraphQLSharedSubscriptionRegistry.operationKey(queryParameters("subscription { ProcessEngineNotification(businessKey: \"a b\") { key } }", Collections.emptyMap()));
+        String key2 = GraphQLSharedSubscriptionRegistry.operationKey(queryParameters("subscription { ProcessEngineNotification(businessKey: \"a  b\") { key } }", Collections.emptyMap()));
+
+        // then
+        assertThat(key1).isNotEqualTo(key2);
+    }
+
+    @Test
+    public void testIdenticalOperationsAreExecutedOnce() {
+        // when
+        ExecutionResult result1 = registry.execute("key", this::execute);
+        ExecutionResult result2 = registry.execute("key", this::execute);
+
+        // then
+        assertThat(executionCount.get()).isEqualTo(1);
+        assertThat(registry.getExecutionCount()).isEqualTo(1);
+        assertThat((Object) result1.getData()).isSameAs(result2.getData());
+    }
+
+    @Test
+    public void testOperationExecutionDoesNotBlockOtherOperations() throws Exception {
+        // given
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<ExecutionResult> result1 = threads.submit(() -> registry.execute("key1", () -> {
+                executing.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return execute();
+            }));
+
+            executing.await(5, TimeUnit.SECONDS);
+
+            Future<ExecutionResult> result2 = threads.submit(() -> registry.execute("key1", this::execute));
+
+            // when
+            ExecutionResult otherResult = registry.execute("key2", this::execute);
+
+            // then
+            assertThat((Object) otherResult.getData()).isInstanceOf(Publisher.class);
+            assertThat(result1.isDone()).isFalse();
+            assertThat(result2.isDone()).isFalse();
+
+            // when
+            release.countDown();
+
+            // then
+            assertThat((Object) result1.get(5, TimeUnit.SECONDS).getData()).isSameAs(result2.get(5, TimeUnit.SECONDS).getData());
+            assertThat(executionCount.get()).isEqualTo(2);
+            assertThat(registry.getExecutionCount()).isEqualTo(2);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedExecutionIsRemovedAndExecutedAgain() {
+        // given
+        AtomicInteger failures = new AtomicInteger();
+
+        try {
+            registry.execute("key", () -> {
+                failures.incrementAndGet();
+                throw new IllegalStateException("failed");
+            });
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // when
+        ExecutionResult result = registry.execute("key", this::execute);
+
+        // then
+        assertThat(failures.get()).isEqualTo(1);
+        assertThat((Object) result.getData()).isInstanceOf(Publisher.class);
+        assertThat(registry.getExecutionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExecutionErrorsAreNotShared() {
+        // given
+        ExecutionResult errorResult = new ExecutionResultImpl(Collections.singletonList(mock(GraphQLError.class)));
+
+        // when
+        ExecutionResult result = registry.execute("key", () -> errorResult);
+
+        // then
+        assertThat(result).isSameAs(errorResult);
+        assertThat(registry.getExecutionCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSharedExecutionSerializesResultOnceForAllSubscribers() {
+        // given
+        TestSubscriber<ExecutionResult> subscriber1 = subscribe("key");
+        TestSubscriber<ExecutionResult> subscriber2 = subscribe("key");
+
+        // when
+        upstream.onNext(new ExecutionResultImpl(Collections.singletonMap("key", "value"), Collections.emptyList()));
+
+        // then
+        assertThat(executionCount.get()).isEqualTo(1);
+        assertThat(registry.getSubscriberCount("key")).isEqualTo(2);
+
+        subscriber1.assertValueCount(1);
+        subscriber2.assertValueCount(1);
+
+        Object data1 = subscriber1.values().get(0).getData();
+        Object data2 = subscriber2.values().get(0).getData();
+
+        assertThat(data1).isInstanceOf(RawJsonValue.class)
+                         .isSameAs(data2);
+        assertThat(((RawJsonValue) data1).getJson()).isEqualTo("{\"key\":\"value\"}");
+    }
+
+    @Test
+    public void testLastSubscriberCancelReleasesExecution() {
+        // given
+        TestSubscriber<ExecutionResult> subscriber1 = subscribe("key");
+        TestSubscriber<ExecutionResult> subscriber2 = subscribe("key");
+
+        // when
+        subscriber1.cancel();
+
+        // then
+        assertThat(upstream.hasSubscribers()).isTrue();
+        assertThat(registry.getSubscriberCount("key")).isEqualTo(1);
+
+        // when
+        subscriber2.cancel();
+
+        // then
+        assertThat(upstream.hasSubscribers()).isFalse();
+        assertThat(registry.getExecutionCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testUpstreamCompleteCompletesSubscribersAndReleasesExecution() {
+        // given
+        TestSubscriber<ExecutionResult> subscriber = subscribe("key");
+
+        // when
+        upstream.onComplete();
+
+        // then
+        subscriber.assertComplete();
+        assertThat(registry.getExecutionCount()).isEqualTo(0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSubscriberOfExecutionReleasedBeforeSubscribeIsResubscribed() {
+        // given
+        TestSubscriber<ExecutionResult> subscriber1 = subscribe("key");
+
+        Publisher<ExecutionResult> publisher = (Publisher<ExecutionResult>) registry.execute("key", this::execute)
+                                                                                    .getData();
+
+        // when
+        subscriber1.cancel();
+
+        TestSubscriber<ExecutionResult> subscriber2 = new TestSubscriber<>();
+        publisher.subscribe(subscriber2);
+
+        upstream.onNext(new ExecutionResultImpl(Collections.singletonMap("key", "value"), Collections.emptyList()));
+
+        // then
+        assertThat(executionCount.get()).isEqualTo(2);
+        assertThat(registry.getExecutionCount()).isEqualTo(1);
+        assertThat(registry.getSubscriberCount("key")).isEqualTo(1);
+
+        subscriber1.assertValueCount(0);
+        subscriber2.assertValueCount(1);
+        subscriber2.assertNotTerminated();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSubscriberOfCompletedExecutionIsCompleted() {
+        // given
+        TestSubscriber<ExecutionResult> subscriber1 = subscribe("key");
+
+        Publisher<ExecutionResult> publisher = (Publisher<ExecutionResult>) registry.execute("key", this::execute)
+                                                                                    .getData();
+
+        // when
+        upstream.onComplete();
+
+        TestSubscriber<ExecutionResult> subscriber2 = new TestSubscriber<>();
+        publisher.subscribe(subscriber2);
+
+        // then
+        subscriber1.assertComplete();
+        subscriber2.assertComplete();
+        assertThat(executionCount.get()).isEqualTo(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private TestSubscriber<ExecutionResult> subscribe(String operationKey) {
+        TestSubscriber<ExecutionResult> subscriber = new TestSubscriber<>();
+
+        Publisher<ExecutionResult> publisher = (Publisher<ExecutionResult>) registry.execute(operationKey, this::execute)
+                                                                                    .getData();
+        publisher.subscribe(subscriber);
+
+        return subscriber;
+    }
+
+    private ExecutionResult execute() {
+        executionCount.incrementAndGet();
+
+        return new ExecutionResultImpl(upstream, Collections.emptyList());
+    }
+
+    private QueryParameters queryParameters(String query, Map<String, Object> variables) throws Exception {
+        Map<String, Object> json = new HashMap<>();
+        json.put("query", query);
+        json.put("variables", variables);
+
+        return QueryParameters.from(json);
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.util;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures routing key matching cost against a large number of registered subscription patterns
+ * in the same shape as produced by GraphQLStompRelayDataFetcherDestinationResolver.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.activiti.cloud.services.query.graphql.ws.util.TopicMatcherBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicMatcherBenchmark {
+
+    private static final String FIELD_NAME = "ProcessEngineNotification";
+
+    @Param({"1000", "100000"})
+    private int patternCount;
+
+    private TopicMatcher<Integer> topicMatcher;
+
+    private String[] routingKeys;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+
+        topicMatcher = new TopicMatcher<>();
+
+        for (int i = 0; i < patternCount; i++) {
+            topicMatcher.add(pattern(random), i);
+        }
+
+        routingKeys = new String[1024];
+
+        for (int i = 0; i < routingKeys.length; i++) {
+            routingKeys[i] = String.join(".",
+                                         FIELD_NAME,
+                                         "rb",
+                                         "app" + random.nextInt(100),
+                                         "pdk" + random.nextInt(1000),
+                                         "pid" + random.nextInt(100000),
+                                         "bk" + random.nextInt(100000));
+        }
+    }
+
+    @Benchmark
+    public Set<Integer> match() {
+        return topicMatcher.match(routingKeys[index++ & (routingKeys.length - 1)]);
+    }
+
+    private static String pattern(Random random) {
+        if (random.nextInt(100) == 0) {
+            return FIELD_NAME + ".#";
+        }
+
+        return String.join(".",
+                           FIELD_NAME,
+                           "rb",
+                           "app" + random.nextInt(100),
+                           random.nextBoolean() ? "pdk" + random.nextInt(1000) : "*",
+                           random.nextInt(10) > 0 ? "pid" + random.nextInt(100000) : "*",
+                           "*");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(TopicMatcherBenchmark.class.getSimpleName())
+                                              .build();
+
+        new Runner(options).run();
+    }
+
+}
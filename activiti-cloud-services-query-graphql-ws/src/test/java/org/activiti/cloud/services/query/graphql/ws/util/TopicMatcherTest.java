@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Alfresco, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.activiti.cloud.services.query.graphql.ws.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TopicMatcherTest {
+
+    private TopicMatcher<String> testSubject;
+
+    @Before
+    public void setUp() throws Exception {
+        testSubject = new TopicMatcher<>();
+    }
+
+    @Test
+    public void testMatchExactPattern() {
+        // given
+        testSubject.add("ProcessEngineNotification.rb.app.pdk.pid.bk", "exact");
+
+        // then
+        assertThat(testSubject.match("ProcessEngineNotification.rb.app.pdk.pid.bk")).containsExactly("exact");
+        assertThat(testSubject.match("ProcessEngineNotification.rb.app.pdk.pid")).isEmpty();
+        assertThat(testSubject.match("ProcessEngineNotification.rb.app.pdk.pid.bk.other")).isEmpty();
+    }
+
+    @Test
+    public void testMatchWildcardPattern() {
+        // given
+        testSubject.add("ProcessEngineNotification.rb.app.*.*.*", "app");
+        testSubject.add("ProcessEngineNotification.*.*.*.pid.*", "pid");
+
+        // then
+        assertThat(testSubject.match("ProcessEngineNotification.rb.app.pdk.pid.bk")).containsOnly("app", "pid");
+        assertThat(testSubject.match("ProcessEngineNotification.rb.app.pdk.other.bk")).containsOnly("app");
+        assertThat(testSubject.match("ProcessEngineNotification.rb.app.pdk.pid")).isEmpty();
+    }
+
+    @Test
+    public void testMatchHashPattern() {
+        // given
+        testSubject.add("ProcessEngineNotification.#", "all");
+        testSubject.add("ProcessEngineNotification.rb.#.bk", "bk");
+
+        // then
+        assertThat(testSubject.match("ProcessEngineNotification")).containsOnly("all");
+        assertThat(testSubject.match("ProcessEngineNotification.rb.bk")).containsOnly("all", "bk");
+        assertThat(testSubject.match("ProcessEngineNotification.rb.app.pdk.pid.bk")).containsOnly("all", "bk");
+        assertThat(testSubject.match("Other.rb.app.pdk.pid.bk")).isEmpty();
+    }
+
+    @Test
+    public void testMatchReturnsDistinctValues() {
+        // given
+        testSubject.add("ProcessEngineNotification.#", "value");
+        testSubject.add("ProcessEngineNotification.*.#", "value");
+
+        // then
+        assertThat(testSubject.match("ProcessEngineNotification.rb.app")).containsExactly("value");
+    }
+
+    @Test
+    public void testMatchNullRoutingKey() {
+        // given
+        testSubject.add("ProcessEngineNotification.#", "value");
+
+        // then
+        assertThat(testSubject.match(null)).isEmpty();
+    }
+
+    @Test
+    public void testRemovePrunesEmptyBranches() {
+        // given
+        testSubject.add("ProcessEngineNotification.rb.app.*.*.*", "value1");
+        testSubject.add("ProcessEngineNotification.rb.app.*.*.*", "value2");
+        testSubject.add("ProcessEngineNotification.#", "value3");
+
+        assertThat(testSubject.getPatternCount()).isEqualTo(2);
+
+        // when
+        boolean removed = testSubject.remove("ProcessEngineNotification.rb.app.*.*.*", "value1");
+
+        // then
+        assertThat(removed).isTrue();
+        assertThat(testSubject.getPatternCount()).isEqualTo(2);
+        assertThat(testSubject.match("ProcessEngineNotification.rb.app.pdk.pid.bk")).containsOnly("value2", "value3");
+
+        // when
+        testSubject.remove("ProcessEngineNotification.rb.app.*.*.*", "value2");
+        testSubject.remove("ProcessEngineNotification.#", "value3");
+
+        // then
+        assertThat(testSubject.getPatternCount()).isEqualTo(0);
+        assertThat(testSubject.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testRemoveUnknownPattern() {
+        // given
+        testSubject.add("ProcessEngineNotification.#", "value");
+
+        // then
+        assertThat(testSubject.remove("ProcessEngineNotification.rb", "value")).isFalse();
+        assertThat(testSubject.remove("ProcessEngineNotification.#", "other")).isFalse();
+        assertThat(testSubject.getPatternCount()).isEqualTo(1);
+    }
+
+}